@@ -0,0 +1,278 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.EncryptedDocuments;
+import fr.petrus.lib.core.State;
+import fr.petrus.lib.core.StorageCryptException;
+import fr.petrus.lib.core.StorageType;
+import fr.petrus.lib.core.SyncAction;
+import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.cloud.exceptions.NetworkException;
+import fr.petrus.lib.core.cloud.exceptions.OauthException;
+import fr.petrus.lib.core.cloud.exceptions.RemoteException;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionException;
+import fr.petrus.lib.core.platform.AppContext;
+import fr.petrus.lib.core.processes.ChangesSyncProcess;
+import fr.petrus.lib.core.processes.DocumentsImportProcess;
+import fr.petrus.lib.core.processes.DocumentsSyncProcess;
+import fr.petrus.tools.storagecrypt.benchmarks.cloud.EmulatedCloud;
+import fr.petrus.tools.storagecrypt.benchmarks.cloud.EmulatedStorage;
+import fr.petrus.tools.storagecrypt.benchmarks.cloud.NetworkConditions;
+
+/**
+ * An application instance, with its own database and documents, connected to an account of an
+ * {@link EmulatedStorage}.
+ *
+ * <p>The emulated storage replaces the storage of the {@link #STORAGE_TYPE} type, so the processes
+ * access it exactly like they access a real service.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class BenchmarkClient {
+    /** The storage type replaced by the emulated storage */
+    public static final StorageType STORAGE_TYPE = StorageType.Dropbox;
+
+    /** The name of the emulated account */
+    public static final String ACCOUNT_NAME = "benchmark@storagecrypt";
+
+    /** The password of the key store and of the database */
+    private static final String PASSWORD = "benchmark password";
+
+    /** The alias of the key used to encrypt the documents */
+    private static final String KEY_ALIAS = "benchmark";
+
+    /** The number of documents in each folder of the generated trees */
+    private static final int FOLDER_SIZE = 100;
+
+    private final File appDir;
+    private final AppContext appContext;
+    private final EmulatedStorage storage;
+    private final Account account;
+    private final EncryptedDocument root;
+
+    /**
+     * Creates a key store, with the key used to encrypt the documents.
+     *
+     * @param keyStoreFolder the folder where the key store is created
+     */
+    public static void createKeyStore(File keyStoreFolder) {
+        KeyManager keyManager = new KeyManager(CryptoImplementation.BCLightWeightApi.newCrypto(), keyStoreFolder);
+        if (!keyManager.createKeyStore(PASSWORD) || !keyManager.generateKeys(KEY_ALIAS)) {
+            throw new IllegalStateException("Failed to create the key store");
+        }
+        keyManager.lockKeyStore();
+    }
+
+    /**
+     * Creates a new client with an empty database, and connects it to the emulated account.
+     *
+     * <p>The connection is done without latency nor errors : the given {@code networkConditions}
+     * are only applied once connected.
+     *
+     * @param keyStoreFolder    the folder of the key store created by {@link #createKeyStore}
+     * @param cloud             the emulated cloud which stores the remote documents
+     * @param networkConditions the conditions simulated for the requests of this client
+     * @throws IOException                 if an error occurs when creating the app folder
+     * @throws DatabaseConnectionException if an error occurs when opening the database
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     * @throws RemoteException             if an error occurs when connecting to the account
+     * @throws NetworkException            if an error occurs when connecting to the account
+     * @throws OauthException              if an error occurs when connecting to the account
+     */
+    public BenchmarkClient(File keyStoreFolder, EmulatedCloud cloud, NetworkConditions networkConditions)
+            throws IOException, DatabaseConnectionException, DatabaseConnectionClosedException,
+            RemoteException, NetworkException, OauthException {
+        appDir = BenchmarkFiles.createTempFolder("client");
+        appContext = new AppContext(new BenchmarkPlatformFactory(appDir, keyStoreFolder));
+        if (!appContext.getKeyManager().unlockKeyStore(PASSWORD)) {
+            throw new IllegalStateException("Failed to unlock the key store");
+        }
+        appContext.getDatabase().open(PASSWORD);
+
+        storage = new EmulatedStorage(appContext.getCrypto(), appContext.getCloudAppKeys(),
+                appContext.getAccounts(), STORAGE_TYPE, cloud, NetworkConditions.UNLIMITED, 0);
+        appContext.setRemoteStorage(STORAGE_TYPE, storage);
+        EncryptedDocuments encryptedDocuments = appContext.getEncryptedDocuments();
+        encryptedDocuments.updateRoots();
+        Map<String, String> responseParameters = new HashMap<>();
+        responseParameters.put("code", ACCOUNT_NAME);
+        account = appContext.getAccounts().connectWithAccessCode(STORAGE_TYPE, KEY_ALIAS, responseParameters);
+        root = encryptedDocuments.root(STORAGE_TYPE, account);
+        storage.setNetworkConditions(networkConditions);
+    }
+
+    /**
+     * Returns the emulated storage this client is connected to.
+     *
+     * @return the emulated storage this client is connected to
+     */
+    public EmulatedStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Creates a tree of documents in the root folder of the account, waiting to be uploaded.
+     *
+     * <p>Each folder holds {@value #FOLDER_SIZE} documents. The first documents are the folders,
+     * and the other ones are files filled with random data.
+     *
+     * @param numDocuments the number of documents to create
+     * @param fileSize     the size of each file
+     * @throws StorageCryptException             if an error occurs when creating a document
+     * @throws IOException                       if an error occurs when writing a file
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public void createTree(int numDocuments, int fileSize)
+            throws StorageCryptException, IOException, DatabaseConnectionClosedException {
+        int numFolders = (numDocuments + FOLDER_SIZE - 1) / FOLDER_SIZE;
+        List<EncryptedDocument> folders = new ArrayList<>();
+        Random random = new Random(0);
+        byte[] data = new byte[fileSize];
+        for (int i = 0; i < numDocuments; i++) {
+            EncryptedDocument parent = i < FOLDER_SIZE ? root : folders.get(i / FOLDER_SIZE - 1);
+            if (i < numFolders) {
+                folders.add(parent.createChild("folder " + i, Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE, KEY_ALIAS));
+            } else {
+                EncryptedDocument file = parent.createChild("file " + i + ".bin",
+                        Constants.STORAGE.DEFAULT_BINARY_MIME_TYPE, KEY_ALIAS);
+                random.nextBytes(data);
+                Files.write(file.file().toPath(), data);
+            }
+        }
+    }
+
+    /**
+     * Runs a {@code DocumentsSyncProcess}, which uploads and downloads the documents waiting to be
+     * synchronized.
+     *
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     * @throws OauthException                    if the account access token cannot be refreshed
+     */
+    public void syncDocuments() throws DatabaseConnectionClosedException, OauthException {
+        new DocumentsSyncProcess(appContext.getTextI18n(), appContext.getNetwork(),
+                appContext.getAccounts(), appContext.getEncryptedDocuments()).run();
+    }
+
+    /**
+     * Returns the number of documents waiting to be synchronized, including the failed ones.
+     *
+     * @return the number of documents waiting to be synchronized
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public int numPendingDocuments() throws DatabaseConnectionClosedException {
+        int numPendingDocuments = 0;
+        for (SyncAction syncAction : SyncAction.values()) {
+            numPendingDocuments += numDocumentsWithSyncState(syncAction, State.Planned);
+            numPendingDocuments += numDocumentsWithSyncState(syncAction, State.Failed);
+        }
+        return numPendingDocuments;
+    }
+
+    private int numDocumentsWithSyncState(SyncAction syncAction, State state)
+            throws DatabaseConnectionClosedException {
+        return appContext.getEncryptedDocuments().encryptedDocumentsWithSyncState(syncAction, state).size();
+    }
+
+    /**
+     * Runs a {@code ChangesSyncProcess}, which adds the documents found in the remote changes of
+     * the account.
+     *
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public void syncChanges() throws DatabaseConnectionClosedException {
+        ChangesSyncProcess.sync(account);
+        new ChangesSyncProcess(appContext.getCrypto(), appContext.getKeyManager(), appContext.getTextI18n(),
+                appContext.getNetwork(), appContext.getAccounts(), appContext.getEncryptedDocuments()).run();
+    }
+
+    /**
+     * Runs a {@code DocumentsImportProcess}, which imports the remote documents of the account.
+     *
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public void importDocuments() throws DatabaseConnectionClosedException {
+        DocumentsImportProcess process = new DocumentsImportProcess(appContext.getCrypto(),
+                appContext.getKeyManager(), appContext.getTextI18n(), appContext.getAccounts(),
+                appContext.getEncryptedDocuments());
+        process.importDocuments(root);
+        process.run();
+    }
+
+    /**
+     * Returns the number of documents of the account in the database, without the root folder.
+     *
+     * @return the number of documents of the account in the database
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public int numDocuments() throws DatabaseConnectionClosedException {
+        return appContext.getEncryptedDocuments().encryptedDocumentsWithAccount(account).size() - 1;
+    }
+
+    /**
+     * Returns a summary of the requests received by the emulated storage.
+     *
+     * @return a summary of the requests received by the emulated storage
+     */
+    public String requestsSummary() {
+        return String.format("%d requests, %d bytes transferred, %d network errors, %d too many requests errors",
+                storage.getNumRequests(), storage.getNumTransferredBytes(),
+                storage.getNumNetworkErrors(), storage.getNumTooManyRequestsErrors());
+    }
+
+    /**
+     * Closes the database and deletes all the files of this client.
+     */
+    public void close() {
+        appContext.getDatabase().close();
+        BenchmarkFiles.delete(appDir);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks;
+
+import java.io.File;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.StorageType;
+import fr.petrus.lib.core.SyncAction;
+import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.cloud.appkeys.AbstractCloudAppKeys;
+import fr.petrus.lib.core.cloud.appkeys.CloudAppKeys;
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.db.Database;
+import fr.petrus.lib.core.db.H2Database;
+import fr.petrus.lib.core.filesystem.AbstractFileSystem;
+import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.i18n.TextI18n;
+import fr.petrus.lib.core.network.Network;
+import fr.petrus.lib.core.platform.AppContext;
+import fr.petrus.lib.core.platform.PlatformFactory;
+import fr.petrus.lib.core.platform.TaskCreationException;
+import fr.petrus.lib.core.tasks.Task;
+import fr.petrus.lib.core.thumbnails.ThumbnailGenerator;
+
+/**
+ * The {@code PlatformFactory} used by the benchmarks which need a whole {@link AppContext}.
+ *
+ * <p>All the files are kept in the given folders instead of the user home, the network is always
+ * connected, and no task can be created : the benchmarks run the processes directly.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class BenchmarkPlatformFactory implements PlatformFactory {
+
+    /**
+     * The {@code FileSystem} implementation, which stores the application files in a given folder.
+     */
+    private static class BenchmarkFileSystem extends AbstractFileSystem {
+        private final File appDir;
+
+        private BenchmarkFileSystem(File appDir) {
+            this.appDir = appDir;
+        }
+
+        @Override
+        public File getAppDir() {
+            return appDir;
+        }
+
+        @Override
+        public File getCacheFilesDir() {
+            return getTempFilesDir();
+        }
+
+        @Override
+        public void removeCacheFiles() {
+            deleteFolder(getTempFilesDir());
+        }
+
+        @Override
+        public String getMimeType(String url) {
+            return Constants.STORAGE.DEFAULT_BINARY_MIME_TYPE;
+        }
+
+        @Override
+        public String getMimeType(File file) {
+            return Constants.STORAGE.DEFAULT_BINARY_MIME_TYPE;
+        }
+    }
+
+    /**
+     * The {@code TextI18n} implementation, which returns untranslated texts.
+     */
+    private static class BenchmarkTextI18n implements TextI18n {
+        @Override
+        public String getSizeText(long size) {
+            return size + " B";
+        }
+
+        @Override
+        public String getTimeText(long time) {
+            return String.valueOf(time);
+        }
+
+        @Override
+        public String getStorageTypeText(StorageType storageType) {
+            return storageType.name();
+        }
+
+        @Override
+        public String getStorageText(StorageType storageType, Account account) {
+            if (null == account) {
+                return storageType.name();
+            }
+            return storageType.name() + " : " + account.getAccountName();
+        }
+
+        @Override
+        public String getExceptionDescription(Exception exception) {
+            return exception.getMessage();
+        }
+    }
+
+    private final File appDir;
+    private final File keyStoreFolder;
+
+    /**
+     * Creates a new {@code BenchmarkPlatformFactory}.
+     *
+     * @param appDir         the folder where the database and the documents are stored
+     * @param keyStoreFolder the folder of the key store, which may be shared by several app contexts
+     */
+    public BenchmarkPlatformFactory(File appDir, File keyStoreFolder) {
+        this.appDir = appDir;
+        this.keyStoreFolder = keyStoreFolder;
+    }
+
+    @Override
+    public Crypto crypto() {
+        return CryptoImplementation.BCLightWeightApi.newCrypto();
+    }
+
+    @Override
+    public KeyManager keyManager(Crypto crypto) {
+        return new KeyManager(crypto, keyStoreFolder);
+    }
+
+    @Override
+    public FileSystem fileSystem() {
+        return new BenchmarkFileSystem(appDir);
+    }
+
+    @Override
+    public CloudAppKeys cloudAppKeys(FileSystem fileSystem) {
+        return new AbstractCloudAppKeys();
+    }
+
+    @Override
+    public Network network() {
+        return new Network() {
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+
+            @Override
+            public boolean isNetworkReadyForSyncAction(SyncAction syncAction) {
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public TextI18n textI18n() {
+        return new BenchmarkTextI18n();
+    }
+
+    @Override
+    public ThumbnailGenerator thumbnailGenerator() {
+        return null;
+    }
+
+    @Override
+    public Database database(FileSystem fileSystem, TextI18n textI18n) {
+        return new H2Database(fileSystem.getAppDirPath(), textI18n);
+    }
+
+    @Override
+    public <T extends Task> T task(AppContext appContext, Class<T> taskClass) throws TaskCreationException {
+        throw new TaskCreationException("The benchmarks do not run tasks", taskClass);
+    }
+}
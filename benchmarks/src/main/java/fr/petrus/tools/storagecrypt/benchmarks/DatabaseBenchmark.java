@@ -0,0 +1,277 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.EncryptedDocumentMetadata;
+import fr.petrus.lib.core.EncryptedDocuments;
+import fr.petrus.lib.core.OrderBy;
+import fr.petrus.lib.core.StorageCryptException;
+import fr.petrus.lib.core.StorageType;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.db.Database;
+import fr.petrus.lib.core.db.H2Database;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.platform.AppContext;
+
+/**
+ * Measures the latency of the document lookups and of the tree walks in an encrypted H2 database
+ * holding 10k, 100k and 1M documents.
+ *
+ * <p>The documents form a tree under the local root, where each folder holds {@value #FOLDER_SIZE}
+ * documents. The first documents are the folders, so the tree is about
+ * log<sub>{@value #FOLDER_SIZE}</sub>(n) levels deep. Only the rows of the documents are created :
+ * they have no file.
+ *
+ * <p>Filling a database takes several minutes for 1M documents, so each database is kept in the
+ * {@value #DATABASES_FOLDER} folder and reused by the next runs. The benchmarks do not modify it.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseBenchmark {
+    /** The folder where the filled databases are kept */
+    private static final String DATABASES_FOLDER = "build/databases";
+
+    /** The file created in a database folder once the database is completely filled */
+    private static final String FILLED_MARKER_FILE = "filled";
+
+    /** The number of documents in each folder */
+    private static final int FOLDER_SIZE = 100;
+
+    /** The number of documents added in each transaction when filling the database */
+    private static final int TRANSACTION_SIZE = 10000;
+
+    private static final String PASSWORD = "benchmark password";
+    private static final String KEY_ALIAS = "benchmark";
+
+    /** The words used in the names of the documents */
+    private static final String[] NAME_WORDS = {
+            "holidays", "report", "invoice", "photo", "contract", "budget", "meeting", "letter"
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    public int numDocuments;
+
+    private Database database;
+    private int numFolders;
+    private long rootId;
+    private Random random = new Random(0);
+
+    @Setup
+    public void setUp() throws Exception {
+        numFolders = (numDocuments + FOLDER_SIZE - 1) / FOLDER_SIZE;
+        File databaseFolder = new File(DATABASES_FOLDER, String.valueOf(numDocuments));
+        File filledMarkerFile = new File(databaseFolder, FILLED_MARKER_FILE);
+        if (!filledMarkerFile.exists()) {
+            BenchmarkFiles.delete(databaseFolder);
+            if (!databaseFolder.mkdirs()) {
+                throw new IOException("Failed to create folder " + databaseFolder.getPath());
+            }
+        }
+        if (!filledMarkerFile.exists()) {
+            fill(databaseFolder);
+            if (!filledMarkerFile.createNewFile()) {
+                throw new IOException("Failed to create file " + filledMarkerFile.getPath());
+            }
+        }
+        /* The benchmarks query the database directly, without the timing proxy of the AppContext */
+        database = new H2Database(databaseFolder.getAbsolutePath(), null);
+        database.open(PASSWORD);
+        rootId = database.getRootEncryptedDocument(StorageType.Unsynchronized, null).getId();
+    }
+
+    /**
+     * Creates the local root, then adds all the documents to the empty database of an
+     * {@code AppContext}, as the application does.
+     *
+     * <p>The roots are given the default key alias, so a temporary key store is created.
+     */
+    private void fill(File databaseFolder) throws Exception {
+        File keyStoreFolder = BenchmarkFiles.createTempFolder("keystore");
+        AppContext appContext = new AppContext(new BenchmarkPlatformFactory(databaseFolder, keyStoreFolder));
+        KeyManager keyManager = appContext.getKeyManager();
+        if (!keyManager.createKeyStore(PASSWORD) || !keyManager.generateKeys(KEY_ALIAS)) {
+            throw new IllegalStateException("Failed to create the key store");
+        }
+        appContext.getDatabase().open(PASSWORD);
+        try {
+            final EncryptedDocuments encryptedDocuments = appContext.getEncryptedDocuments();
+            encryptedDocuments.updateRoots();
+            final EncryptedDocument root = encryptedDocuments.root(StorageType.Unsynchronized, null);
+            rootId = root.getId();
+            final EncryptedDocumentMetadata metadata =
+                    new EncryptedDocumentMetadata(appContext.getCrypto(), appContext.getKeyManager());
+            final List<EncryptedDocument> folders = new ArrayList<>();
+            for (int start = 0; start < numDocuments; start += TRANSACTION_SIZE) {
+                final int from = start;
+                final int to = Math.min(numDocuments, start + TRANSACTION_SIZE);
+                encryptedDocuments.callInTransaction(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = from; i < to; i++) {
+                            EncryptedDocument parent = i < FOLDER_SIZE ? root : folders.get(i / FOLDER_SIZE - 1);
+                            EncryptedDocument document = addDocument(parent, metadata, i);
+                            if (i < numFolders) {
+                                folders.add(document);
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+        } finally {
+            appContext.getDatabase().close();
+            keyManager.lockKeyStore();
+            BenchmarkFiles.delete(keyStoreFolder);
+        }
+    }
+
+    /**
+     * Adds the document with the given {@code index} to the given {@code parent} folder.
+     *
+     * <p>Each folder {@code j} holds the documents from {@code (j+1)*FOLDER_SIZE} to
+     * {@code (j+2)*FOLDER_SIZE-1}, so the parent of a document is always added before it.
+     */
+    private EncryptedDocument addDocument(EncryptedDocument parent, EncryptedDocumentMetadata metadata,
+                                          int index)
+            throws StorageCryptException, DatabaseConnectionClosedException {
+        if (index < numFolders) {
+            metadata.setMetadata(Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE, documentName(index), KEY_ALIAS);
+        } else {
+            metadata.setMetadata("application/pdf", documentName(index) + ".pdf", KEY_ALIAS);
+        }
+        /* The file is only used for its name : it does not exist */
+        EncryptedDocument document = parent.createChild(metadata, new File(metadata.getDisplayName()));
+        if (id(index) != document.getId()) {
+            throw new IllegalStateException("Unexpected id " + document.getId() + " for document " + index);
+        }
+        return document;
+    }
+
+    /**
+     * Returns the id of the document with the given {@code index} : the documents are added in
+     * order to a new database, right after the local root, so their ids follow the root id.
+     */
+    private long id(int index) {
+        return rootId + 1 + index;
+    }
+
+    private long parentId(int index) {
+        if (index < FOLDER_SIZE) {
+            return rootId;
+        }
+        return id(index / FOLDER_SIZE - 1);
+    }
+
+    private static String documentName(int index) {
+        return NAME_WORDS[index % NAME_WORDS.length] + " " + index;
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public EncryptedDocument getById() throws DatabaseConnectionClosedException {
+        return database.getEncryptedDocumentById(id(random.nextInt(numDocuments)));
+    }
+
+    @Benchmark
+    public EncryptedDocument getByNameAndParentId() throws DatabaseConnectionClosedException {
+        int index = random.nextInt(numFolders);
+        return database.getEncryptedDocumentByNameAndParentId(documentName(index), parentId(index));
+    }
+
+    @Benchmark
+    public List<EncryptedDocument> getChildrenPage() throws DatabaseConnectionClosedException {
+        return database.getEncryptedDocumentsByParentId(id(random.nextInt(numFolders)), true,
+                OrderBy.NameAsc, 0, FOLDER_SIZE);
+    }
+
+    @Benchmark
+    public long walkTree() throws DatabaseConnectionClosedException {
+        return walkTree(id(random.nextInt(Math.min(FOLDER_SIZE, numFolders))));
+    }
+
+    private long walkTree(long folderId) throws DatabaseConnectionClosedException {
+        long count = 0;
+        for (EncryptedDocument child : database.getEncryptedDocumentsByParentId(folderId, false)) {
+            count++;
+            if (Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE.equals(child.getMimeType())) {
+                count += walkTree(child.getId());
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public List<EncryptedDocument> search() throws DatabaseConnectionClosedException {
+        String word = NAME_WORDS[random.nextInt(NAME_WORDS.length)];
+        return database.searchEncryptedDocuments(word.substring(0, 3) + " " + random.nextInt(10),
+                true, OrderBy.NameAsc, FOLDER_SIZE);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.crypto.CryptoException;
+import fr.petrus.lib.core.crypto.EncryptedDataStream;
+import fr.petrus.lib.core.crypto.SecretKeys;
+
+/**
+ * Measures the time needed to encrypt and decrypt a whole document with an
+ * {@code EncryptedDataStream}, signatures included.
+ *
+ * <p>The throughput in MB/s is the data size divided by the measured time.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptedDataStreamBenchmark {
+
+    @Param({"Jca", "BCLightWeightApi"})
+    public CryptoImplementation implementation;
+
+    @Param({"1048576", "16777216"})
+    public int dataSize;
+
+    private EncryptedDataStream encryptedDataStream;
+    private byte[] clearData;
+    private byte[] encryptedData;
+
+    @Setup
+    public void setUp() throws CryptoException {
+        Crypto crypto = implementation.newCrypto();
+        encryptedDataStream = new EncryptedDataStream(crypto,
+                new SecretKeys(crypto.generateEncryptionKey(256), crypto.generateSignatureKey(256)));
+        clearData = new byte[dataSize];
+        new Random(dataSize).nextBytes(clearData);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(dataSize + dataSize / 16);
+        encryptedDataStream.encrypt(new ByteArrayInputStream(clearData), outputStream, null);
+        encryptedData = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public long encrypt() throws CryptoException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        encryptedDataStream.encrypt(new ByteArrayInputStream(clearData), outputStream, null);
+        return outputStream.count;
+    }
+
+    @Benchmark
+    public long decrypt() throws CryptoException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        encryptedDataStream.decrypt(new ByteArrayInputStream(encryptedData), outputStream, null);
+        return outputStream.count;
+    }
+
+    /**
+     * An output stream which only counts the bytes written to it, so that the measures do not
+     * include the cost of storing the output.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.EncryptedDocumentMetadata;
+import fr.petrus.lib.core.StorageCryptException;
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.crypto.KeyManager;
+
+/**
+ * Measures the encryption and decryption of the metadata of a document, which is done for each
+ * document created locally or found in the remote changes.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptedDocumentMetadataBenchmark {
+    private static final String KEY_ALIAS = "benchmark";
+
+    @Param({"Jca", "BCLightWeightApi"})
+    public CryptoImplementation implementation;
+
+    private File keyStoreFolder;
+    private Crypto crypto;
+    private KeyManager keyManager;
+    private String encryptedMetadata;
+
+    @Setup
+    public void setUp() throws IOException, StorageCryptException {
+        keyStoreFolder = BenchmarkFiles.createTempFolder("metadata");
+        crypto = implementation.newCrypto();
+        keyManager = new KeyManager(crypto, keyStoreFolder);
+        if (!keyManager.createKeyStore("benchmark password") || !keyManager.generateKeys(KEY_ALIAS)) {
+            throw new IllegalStateException("Failed to create the key store");
+        }
+        encryptedMetadata = encrypt();
+    }
+
+    @TearDown
+    public void tearDown() {
+        keyManager.lockKeyStore();
+        BenchmarkFiles.delete(keyStoreFolder);
+    }
+
+    @Benchmark
+    public String encrypt() throws StorageCryptException {
+        EncryptedDocumentMetadata metadata = new EncryptedDocumentMetadata(crypto, keyManager);
+        metadata.setMetadata(Constants.STORAGE.DEFAULT_BINARY_MIME_TYPE,
+                "A document with a rather long name, like many documents have.pdf", KEY_ALIAS);
+        return metadata.encryptToBase64();
+    }
+
+    @Benchmark
+    public String decrypt() throws StorageCryptException {
+        EncryptedDocumentMetadata metadata = new EncryptedDocumentMetadata(crypto, keyManager);
+        metadata.decrypt(encryptedMetadata, KEY_ALIAS);
+        return metadata.getDisplayName();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import fr.petrus.tools.storagecrypt.benchmarks.cloud.EmulatedCloud;
+import fr.petrus.tools.storagecrypt.benchmarks.cloud.NetworkConditions;
+
+/**
+ * Measures the synchronization processes against an emulated storage, with synthetic trees of
+ * documents and several network conditions.
+ *
+ * <ul>
+ *     <li>{@code documentsSync} uploads a new tree with a {@code DocumentsSyncProcess}</li>
+ *     <li>{@code changesSync} lists a remote tree with a {@code ChangesSyncProcess}, from a new
+ *     database</li>
+ *     <li>{@code documentsImport} imports a remote tree with a {@code DocumentsImportProcess}, from a
+ *     new database</li>
+ * </ul>
+ *
+ * <p>Each iteration runs the process once, on a new client. The {@code DocumentsSyncProcess} and
+ * the {@code ChangesSyncProcess} wait 1 second before checking whether there is more work to do,
+ * so their scores include this second.
+ *
+ * <p>After each iteration, the number of documents processed and the requests received by the
+ * emulated storage are logged, to check that injected errors did not leave documents behind.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SyncBenchmark {
+    private static Logger LOG = LoggerFactory.getLogger(SyncBenchmark.class);
+
+    @Param({"100", "1000"})
+    public int numDocuments;
+
+    @Param({"16384"})
+    public int fileSize;
+
+    @Param({"Unlimited", "Broadband", "Unreliable"})
+    public NetworkProfile network;
+
+    private File keyStoreFolder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keyStoreFolder = BenchmarkFiles.createTempFolder("keystore");
+        BenchmarkClient.createKeyStore(keyStoreFolder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.delete(keyStoreFolder);
+    }
+
+    /**
+     * An emulated cloud holding a tree of documents, uploaded once by another client.
+     */
+    @State(Scope.Benchmark)
+    public static class RemoteTree {
+        private EmulatedCloud cloud;
+
+        @Setup(Level.Trial)
+        public void setUp(SyncBenchmark benchmark) throws Exception {
+            cloud = new EmulatedCloud();
+            BenchmarkClient client = new BenchmarkClient(benchmark.keyStoreFolder, cloud,
+                    NetworkConditions.UNLIMITED);
+            try {
+                client.createTree(benchmark.numDocuments, benchmark.fileSize);
+                client.syncDocuments();
+                if (client.numPendingDocuments() > 0) {
+                    throw new IllegalStateException("Failed to upload the remote tree");
+                }
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * A client holding a new tree of documents waiting to be uploaded to an empty cloud.
+     */
+    @State(Scope.Thread)
+    public static class UploadingClient {
+        private BenchmarkClient client;
+
+        @Setup(Level.Iteration)
+        public void setUp(SyncBenchmark benchmark) throws Exception {
+            client = new BenchmarkClient(benchmark.keyStoreFolder, new EmulatedCloud(),
+                    benchmark.network.conditions());
+            client.createTree(benchmark.numDocuments, benchmark.fileSize);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws Exception {
+            LOG.info("{} documents not uploaded : {}",
+                    client.numPendingDocuments(), client.requestsSummary());
+            client.close();
+        }
+    }
+
+    /**
+     * A client with an empty database, connected to the cloud holding the remote tree.
+     */
+    @State(Scope.Thread)
+    public static class NewClient {
+        private BenchmarkClient client;
+
+        @Setup(Level.Iteration)
+        public void setUp(SyncBenchmark benchmark, RemoteTree remoteTree) throws Exception {
+            client = new BenchmarkClient(benchmark.keyStoreFolder, remoteTree.cloud,
+                    benchmark.network.conditions());
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws Exception {
+            LOG.info("{} documents found : {}", client.numDocuments(), client.requestsSummary());
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public void documentsSync(UploadingClient uploadingClient) throws Exception {
+        uploadingClient.client.syncDocuments();
+    }
+
+    @Benchmark
+    public void changesSync(NewClient newClient) throws Exception {
+        newClient.client.syncChanges();
+    }
+
+    @Benchmark
+    public void documentsImport(NewClient newClient) throws Exception {
+        newClient.client.importDocuments();
+    }
+}
@@ -0,0 +1,568 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks.cloud;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.cloud.exceptions.RemoteException;
+
+/**
+ * The in-memory documents tree of an emulated remote storage service.
+ *
+ * <p>It plays the role of the server : each {@link EmulatedStorage} connected to it sees the same
+ * documents, so that documents uploaded by a client can be listed or imported by another one.
+ *
+ * <p>Every modification is recorded in a change log, which is used to answer the changes requests.
+ * The change ids are the positions in this log.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class EmulatedCloud {
+
+    /**
+     * The state of a remote document at a given time.
+     *
+     * <p>A new {@code Node} replaces the previous one each time a document is modified, so a
+     * {@code Node} can safely be read without holding the lock of the {@code EmulatedCloud}.
+     */
+    public static class Node {
+        private final String accountName;
+        private final String id;
+        private final String parentId;
+        private final String name;
+        private final boolean folder;
+        private final byte[] data;
+        private final long version;
+        private final long modificationTime;
+
+        private Node(String accountName, String id, String parentId, String name, boolean folder,
+                     byte[] data, long version) {
+            this.accountName = accountName;
+            this.id = id;
+            this.parentId = parentId;
+            this.name = name;
+            this.folder = folder;
+            this.data = data;
+            this.version = version;
+            this.modificationTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Returns the user name of the account owning this document.
+         *
+         * @return the user name of the account owning this document
+         */
+        public String getAccountName() {
+            return accountName;
+        }
+
+        /**
+         * Returns the id of this document.
+         *
+         * @return the id of this document
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the id of the parent folder of this document, or null if it is a root folder.
+         *
+         * @return the id of the parent folder of this document, or null if it is a root folder
+         */
+        public String getParentId() {
+            return parentId;
+        }
+
+        /**
+         * Returns the name of this document.
+         *
+         * @return the name of this document
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns whether this document is a folder.
+         *
+         * @return true if this document is a folder
+         */
+        public boolean isFolder() {
+            return folder;
+        }
+
+        /**
+         * Returns the size of the contents of this document.
+         *
+         * @return the size of the contents of this document
+         */
+        public long getSize() {
+            return null == data ? 0L : data.length;
+        }
+
+        /**
+         * Returns the version of this document, incremented at each modification.
+         *
+         * @return the version of this document, incremented at each modification
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the time of the last modification of this document.
+         *
+         * @return the time of the last modification of this document
+         */
+        public long getModificationTime() {
+            return modificationTime;
+        }
+
+        /**
+         * Returns the contents of this document (this array must not be modified).
+         *
+         * @return the contents of this document, or null if it is a folder
+         */
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * A change of a remote document : its new state, or its deletion.
+     */
+    public static class Change {
+        private final String documentId;
+        private final Node node;
+
+        private Change(String documentId, Node node) {
+            this.documentId = documentId;
+            this.node = node;
+        }
+
+        /**
+         * Returns the id of the changed document.
+         *
+         * @return the id of the changed document
+         */
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        /**
+         * Returns the new state of the document.
+         *
+         * @return the new state of the document, or null if it was deleted
+         */
+        public Node getNode() {
+            return node;
+        }
+
+        /**
+         * Returns whether the document was deleted.
+         *
+         * @return true if the document was deleted
+         */
+        public boolean isDeleted() {
+            return null == node;
+        }
+    }
+
+    /**
+     * The changes found since a given change id.
+     */
+    public static class Changes {
+        private final boolean deltaMode;
+        private final String lastChangeId;
+        private final List<Change> changes;
+
+        private Changes(boolean deltaMode, String lastChangeId, List<Change> changes) {
+            this.deltaMode = deltaMode;
+            this.lastChangeId = lastChangeId;
+            this.changes = changes;
+        }
+
+        /**
+         * Returns whether the changes are a delta, or the list of all the documents.
+         *
+         * @return true if the changes are a delta, or false if they are the list of all the documents
+         */
+        public boolean isDeltaMode() {
+            return deltaMode;
+        }
+
+        /**
+         * Returns the id of the last change, to pass to the next changes request.
+         *
+         * @return the id of the last change, to pass to the next changes request
+         */
+        public String getLastChangeId() {
+            return lastChangeId;
+        }
+
+        /**
+         * Returns the changes, each folder being listed before its contents.
+         *
+         * @return the changes, each folder being listed before its contents
+         */
+        public List<Change> getChanges() {
+            return changes;
+        }
+    }
+
+    /**
+     * An entry of the change log.
+     */
+    private static class LoggedChange {
+        private final String accountName;
+        private final String documentId;
+        private final boolean inAppFolder;
+
+        private LoggedChange(String accountName, String documentId, boolean inAppFolder) {
+            this.accountName = accountName;
+            this.documentId = documentId;
+            this.inAppFolder = inAppFolder;
+        }
+    }
+
+    private Map<String, Node> nodes = new HashMap<>();
+    private Map<String, Set<String>> childrenIds = new HashMap<>();
+    private Map<String, String> rootIds = new HashMap<>();
+    private List<LoggedChange> changeLog = new ArrayList<>();
+    private long nextId = 1;
+    private long nextVersion = 1;
+
+    /**
+     * Returns the root folder of the given account, creating it the first time.
+     *
+     * @param accountName the account user name
+     * @return the root folder of the given account
+     */
+    public synchronized Node root(String accountName) {
+        String rootId = rootIds.get(accountName);
+        if (null == rootId) {
+            Node root = new Node(accountName, newId(), null, "", true, null, nextVersion++);
+            nodes.put(root.getId(), root);
+            childrenIds.put(root.getId(), new LinkedHashSet<String>());
+            rootIds.put(accountName, root.getId());
+            return root;
+        }
+        return nodes.get(rootId);
+    }
+
+    /**
+     * Returns the document with the given {@code id}.
+     *
+     * @param accountName the account user name
+     * @param id          the id of the document
+     * @return the document with the given {@code id}
+     * @throws RemoteException if the document does not exist
+     */
+    public synchronized Node document(String accountName, String id) throws RemoteException {
+        Node node = nodes.get(id);
+        if (null == node || !node.getAccountName().equals(accountName)) {
+            throw new RemoteException("Document not found", RemoteException.Reason.NotFound);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the child of the given folder with the given {@code name}.
+     *
+     * @param accountName the account user name
+     * @param parentId    the id of the parent folder
+     * @param name        the name of the child
+     * @return the child of the given folder with the given {@code name}
+     * @throws RemoteException if the folder or the child does not exist
+     */
+    public synchronized Node child(String accountName, String parentId, String name) throws RemoteException {
+        Node child = findChild(folder(accountName, parentId), name);
+        if (null == child) {
+            throw new RemoteException("Document not found", RemoteException.Reason.NotFound);
+        }
+        return child;
+    }
+
+    /**
+     * Returns the children of the given folder.
+     *
+     * @param accountName the account user name
+     * @param parentId    the id of the parent folder
+     * @return the children of the given folder, in their creation order
+     * @throws RemoteException if the folder does not exist
+     */
+    public synchronized List<Node> children(String accountName, String parentId) throws RemoteException {
+        folder(accountName, parentId);
+        List<Node> children = new ArrayList<>();
+        for (String childId : childrenIds.get(parentId)) {
+            children.add(nodes.get(childId));
+        }
+        return children;
+    }
+
+    /**
+     * Creates a new folder.
+     *
+     * @param accountName the account user name
+     * @param parentId    the id of the parent folder
+     * @param name        the name of the new folder
+     * @return the new folder
+     * @throws RemoteException if the parent folder does not exist, or if a document with the same
+     *                         name already exists in it
+     */
+    public synchronized Node createFolder(String accountName, String parentId, String name)
+            throws RemoteException {
+        if (null != findChild(folder(accountName, parentId), name)) {
+            throw new RemoteException("A document with the same name already exists",
+                    RemoteException.Reason.Conflict);
+        }
+        Node folder = new Node(accountName, newId(), parentId, name, true, null, nextVersion++);
+        childrenIds.put(folder.getId(), new LinkedHashSet<String>());
+        put(folder);
+        return folder;
+    }
+
+    /**
+     * Writes a file into the given folder, replacing the file with the same name if any.
+     *
+     * @param accountName the account user name
+     * @param parentId    the id of the parent folder
+     * @param name        the name of the file
+     * @param data        the new contents of the file
+     * @return the written file
+     * @throws RemoteException if the parent folder does not exist, or if a folder with the same
+     *                         name already exists in it
+     */
+    public synchronized Node writeChildFile(String accountName, String parentId, String name, byte[] data)
+            throws RemoteException {
+        Node existingFile = findChild(folder(accountName, parentId), name);
+        if (null == existingFile) {
+            Node file = new Node(accountName, newId(), parentId, name, false, data, nextVersion++);
+            put(file);
+            return file;
+        }
+        if (existingFile.isFolder()) {
+            throw new RemoteException("A folder with the same name already exists",
+                    RemoteException.Reason.Conflict);
+        }
+        return writeFile(accountName, existingFile.getId(), data);
+    }
+
+    /**
+     * Replaces the contents of a file.
+     *
+     * @param accountName the account user name
+     * @param id          the id of the file
+     * @param data        the new contents of the file
+     * @return the written file
+     * @throws RemoteException if the file does not exist
+     */
+    public synchronized Node writeFile(String accountName, String id, byte[] data) throws RemoteException {
+        Node file = document(accountName, id);
+        if (file.isFolder()) {
+            throw new RemoteException("The document is not a file", RemoteException.Reason.NotAFile);
+        }
+        Node writtenFile = new Node(accountName, id, file.getParentId(), file.getName(), false, data,
+                nextVersion++);
+        put(writtenFile);
+        return writtenFile;
+    }
+
+    /**
+     * Moves a document into another folder.
+     *
+     * @param accountName the account user name
+     * @param id          the id of the document to move
+     * @param newParentId the id of the destination folder
+     * @param newName     the new name of the document, or null to keep its current name
+     * @return the moved document
+     * @throws RemoteException if one of the documents does not exist, or if a document with the
+     *                         same name already exists in the destination folder
+     */
+    public synchronized Node move(String accountName, String id, String newParentId, String newName)
+            throws RemoteException {
+        Node document = document(accountName, id);
+        String name = null == newName ? document.getName() : newName;
+        Node existingDocument = findChild(folder(accountName, newParentId), name);
+        if (null != existingDocument && existingDocument != document) {
+            throw new RemoteException("A document with the same name already exists",
+                    RemoteException.Reason.Conflict);
+        }
+        childrenIds.get(document.getParentId()).remove(id);
+        Node movedDocument = new Node(accountName, id, newParentId, name, document.isFolder(),
+                document.getData(), nextVersion++);
+        put(movedDocument);
+        return movedDocument;
+    }
+
+    /**
+     * Deletes a document, and all its contents if it is a folder.
+     *
+     * @param accountName the account user name
+     * @param id          the id of the document to delete
+     * @throws RemoteException if the document does not exist
+     */
+    public synchronized void delete(String accountName, String id) throws RemoteException {
+        Node document = document(accountName, id);
+        if (null == document.getParentId()) {
+            throw new RemoteException("The root folder cannot be deleted", RemoteException.Reason.Forbidden);
+        }
+        boolean inAppFolder = isInAppFolder(document);
+        childrenIds.get(document.getParentId()).remove(id);
+        deleteTree(document, inAppFolder);
+    }
+
+    private void deleteTree(Node document, boolean inAppFolder) {
+        if (document.isFolder()) {
+            for (String childId : childrenIds.remove(document.getId())) {
+                deleteTree(nodes.get(childId), inAppFolder);
+            }
+        }
+        nodes.remove(document.getId());
+        changeLog.add(new LoggedChange(document.getAccountName(), document.getId(), inAppFolder));
+    }
+
+    /**
+     * Returns the changes of the documents of the app folder since the given change id.
+     *
+     * <p>If {@code lastChangeId} is null, all the documents of the app folder are returned, each
+     * folder being listed before its contents.
+     *
+     * @param accountName  the account user name
+     * @param lastChangeId the id of the last change already known, or null to list all the documents
+     * @return the changes since the given change id
+     */
+    public synchronized Changes changes(String accountName, String lastChangeId) {
+        String currentChangeId = String.valueOf(changeLog.size());
+        List<Change> changes = new ArrayList<>();
+        if (null == lastChangeId) {
+            Node root = root(accountName);
+            Node appFolder = findChild(root, Constants.FILE.APP_DIR_NAME);
+            if (null != appFolder) {
+                listTree(appFolder, changes);
+            }
+            return new Changes(false, currentChangeId, changes);
+        }
+
+        /* Each document is listed once, at the position of its first change, with its current state */
+        Map<String, Change> changesById = new LinkedHashMap<>();
+        for (int i = Integer.parseInt(lastChangeId); i < changeLog.size(); i++) {
+            LoggedChange loggedChange = changeLog.get(i);
+            if (loggedChange.inAppFolder && loggedChange.accountName.equals(accountName)) {
+                changesById.put(loggedChange.documentId,
+                        new Change(loggedChange.documentId, nodes.get(loggedChange.documentId)));
+            }
+        }
+        changes.addAll(changesById.values());
+        return new Changes(true, currentChangeId, changes);
+    }
+
+    private void listTree(Node folder, List<Change> changes) {
+        for (String childId : childrenIds.get(folder.getId())) {
+            Node child = nodes.get(childId);
+            changes.add(new Change(childId, child));
+            if (child.isFolder()) {
+                listTree(child, changes);
+            }
+        }
+    }
+
+    /**
+     * Returns the total size of the files of the given account.
+     *
+     * @param accountName the account user name
+     * @return the total size of the files of the given account
+     */
+    public synchronized long usedSpace(String accountName) {
+        long usedSpace = 0L;
+        for (Node node : nodes.values()) {
+            if (node.getAccountName().equals(accountName)) {
+                usedSpace += node.getSize();
+            }
+        }
+        return usedSpace;
+    }
+
+    private String newId() {
+        return "id:" + nextId++;
+    }
+
+    private Node folder(String accountName, String id) throws RemoteException {
+        Node folder = document(accountName, id);
+        if (!folder.isFolder()) {
+            throw new RemoteException("The document is not a folder", RemoteException.Reason.NotAFolder);
+        }
+        return folder;
+    }
+
+    private Node findChild(Node folder, String name) {
+        for (String childId : childrenIds.get(folder.getId())) {
+            Node child = nodes.get(childId);
+            if (child.getName().equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private void put(Node node) {
+        nodes.put(node.getId(), node);
+        childrenIds.get(node.getParentId()).add(node.getId());
+        changeLog.add(new LoggedChange(node.getAccountName(), node.getId(), isInAppFolder(node)));
+    }
+
+    private boolean isInAppFolder(Node node) {
+        Node parent = nodes.get(node.getParentId());
+        while (null != parent && null != parent.getParentId()) {
+            if (Constants.FILE.APP_DIR_NAME.equals(parent.getName())
+                    && null == nodes.get(parent.getParentId()).getParentId()) {
+                return true;
+            }
+            parent = nodes.get(parent.getParentId());
+        }
+        return false;
+    }
+}
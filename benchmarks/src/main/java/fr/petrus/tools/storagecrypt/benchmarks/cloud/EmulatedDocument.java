@@ -0,0 +1,231 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks.cloud;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import fr.petrus.lib.core.StorageType;
+import fr.petrus.lib.core.cloud.AbstractRemoteDocument;
+import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.cloud.exceptions.NetworkException;
+import fr.petrus.lib.core.cloud.exceptions.OauthException;
+import fr.petrus.lib.core.cloud.exceptions.RemoteException;
+import fr.petrus.lib.core.cloud.exceptions.UserCanceledException;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.result.ProcessProgressListener;
+
+/**
+ * The {@code RemoteDocument} implementation for the {@link EmulatedStorage}.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class EmulatedDocument extends AbstractRemoteDocument<EmulatedStorage, EmulatedDocument> {
+    private String id;
+    private String parentId;
+
+    /**
+     * Creates a new {@code EmulatedDocument} from the state of a document of the {@link EmulatedCloud}.
+     *
+     * @param storage the {@code EmulatedStorage} instance
+     * @param node    the state of the document
+     */
+    EmulatedDocument(EmulatedStorage storage, EmulatedCloud.Node node) {
+        super(storage);
+        setAccountName(node.getAccountName());
+        id = node.getId();
+        parentId = node.getParentId();
+        setName(node.getName());
+        setFolder(node.isFolder());
+        setSize(node.getSize());
+        setVersion(node.getVersion());
+        setModificationTime(node.getModificationTime());
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return storage.getStorageType();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getParentId() {
+        return parentId;
+    }
+
+    @Override
+    public EmulatedDocument childFile(String name)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        EmulatedDocument document = childDocument(name);
+        if (document.isFolder()) {
+            throw new RemoteException("Failed to get file : the document found is not a file",
+                    RemoteException.Reason.NotAFile);
+        }
+        return document;
+    }
+
+    @Override
+    public EmulatedDocument childFolder(String name)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        EmulatedDocument document = childDocument(name);
+        if (!document.isFolder()) {
+            throw new RemoteException("Failed to get folder : the document found is not a folder",
+                    RemoteException.Reason.NotAFolder);
+        }
+        return document;
+    }
+
+    @Override
+    public EmulatedDocument childDocument(String name)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = storage.refreshedAccount(getAccountName());
+        storage.request(account, "Failed to get child document");
+        return new EmulatedDocument(storage, storage.getCloud().child(getAccountName(), id, name));
+    }
+
+    @Override
+    public List<EmulatedDocument> childDocuments(ProcessProgressListener listener)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException, OauthException {
+        return storage.childDocuments(this, listener);
+    }
+
+    @Override
+    public EmulatedDocument createChildFolder(String name)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = storage.refreshedAccount(getAccountName());
+        storage.request(account, "Failed to create folder");
+        return new EmulatedDocument(storage, storage.getCloud().createFolder(getAccountName(), id, name));
+    }
+
+    @Override
+    public EmulatedDocument createChildFile(String name, String mimeType)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return uploadNewChildData(name, mimeType, name, new byte[0]);
+    }
+
+    @Override
+    public EmulatedDocument uploadNewChildFile(String name, String mimeType, File localFile,
+                                               ProcessProgressListener listener)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException, OauthException {
+        byte[] data = readFile(localFile, "Failed to upload new file");
+        Account account = storage.refreshedAccount(getAccountName());
+        storage.request(account, "Failed to upload new file", data.length, listener);
+        return new EmulatedDocument(storage, storage.getCloud().writeChildFile(getAccountName(), id, name, data));
+    }
+
+    @Override
+    public EmulatedDocument uploadNewChildData(String name, String mimeType, String fileName, byte[] data)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = storage.refreshedAccount(getAccountName());
+        try {
+            storage.request(account, "Failed to upload new file data", data.length, null);
+        } catch (UserCanceledException e) {
+            throw new NetworkException("Failed to upload new file data", e);
+        }
+        return new EmulatedDocument(storage, storage.getCloud().writeChildFile(getAccountName(), id, name, data));
+    }
+
+    @Override
+    public EmulatedDocument uploadFile(String mimeType, File localFile, ProcessProgressListener listener)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException, OauthException {
+        byte[] data = readFile(localFile, "Failed to upload file");
+        Account account = storage.refreshedAccount(getAccountName());
+        storage.request(account, "Failed to upload file", data.length, listener);
+        return new EmulatedDocument(storage, storage.getCloud().writeFile(getAccountName(), id, data));
+    }
+
+    @Override
+    public EmulatedDocument uploadData(String mimeType, String fileName, byte[] data)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = storage.refreshedAccount(getAccountName());
+        try {
+            storage.request(account, "Failed to upload file data", data.length, null);
+        } catch (UserCanceledException e) {
+            throw new NetworkException("Failed to upload file data", e);
+        }
+        return new EmulatedDocument(storage, storage.getCloud().writeFile(getAccountName(), id, data));
+    }
+
+    @Override
+    public void downloadFile(File localFile, ProcessProgressListener listener)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException, OauthException {
+        byte[] data = fileData();
+        Account account = storage.refreshedAccount(getAccountName());
+        storage.request(account, "Failed to download file", data.length, listener);
+        try {
+            Files.write(localFile.toPath(), data);
+        } catch (IOException e) {
+            throw new RemoteException("Failed to download file", RemoteException.Reason.UnknownError, e);
+        }
+    }
+
+    @Override
+    public byte[] downloadData()
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        byte[] data = fileData();
+        Account account = storage.refreshedAccount(getAccountName());
+        try {
+            storage.request(account, "Failed to download file data", data.length, null);
+        } catch (UserCanceledException e) {
+            throw new NetworkException("Failed to download file data", e);
+        }
+        return data.clone();
+    }
+
+    private byte[] fileData() throws RemoteException {
+        EmulatedCloud.Node node = storage.getCloud().document(getAccountName(), id);
+        if (node.isFolder()) {
+            throw new RemoteException("The document is not a file", RemoteException.Reason.NotAFile);
+        }
+        return node.getData();
+    }
+
+    private static byte[] readFile(File localFile, String description) throws NetworkException {
+        try {
+            return Files.readAllBytes(localFile.toPath());
+        } catch (IOException e) {
+            throw new NetworkException(description, e);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks.cloud;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.StorageType;
+import fr.petrus.lib.core.cloud.AbstractRemoteStorage;
+import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.cloud.Accounts;
+import fr.petrus.lib.core.cloud.RemoteChange;
+import fr.petrus.lib.core.cloud.RemoteChanges;
+import fr.petrus.lib.core.cloud.appkeys.CloudAppKeys;
+import fr.petrus.lib.core.cloud.exceptions.NetworkException;
+import fr.petrus.lib.core.cloud.exceptions.OauthException;
+import fr.petrus.lib.core.cloud.exceptions.RemoteException;
+import fr.petrus.lib.core.cloud.exceptions.UserCanceledException;
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.result.ProcessProgressListener;
+
+/**
+ * A {@code RemoteStorage} implementation which stores the documents in an {@link EmulatedCloud},
+ * in memory, instead of calling the API of a real service.
+ *
+ * <p>Each request waits for the latency and the transfer time set by the {@link NetworkConditions},
+ * and may fail with a {@link NetworkException} or with a "Too Many Requests" {@link RemoteException},
+ * like a real service would.
+ *
+ * <p>The access code passed to {@link #connectWithAccessCode} is used as the account name.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class EmulatedStorage extends AbstractRemoteStorage<EmulatedStorage, EmulatedDocument> {
+
+    /** The prefix of the access tokens, followed by the account name */
+    private static final String ACCESS_TOKEN_PREFIX = "emulated:";
+
+    /** The lifetime of the access tokens */
+    private static final int ACCESS_TOKEN_LIFETIME_S = 3600;
+
+    /** The quota of each account */
+    private static final long QUOTA_AMOUNT = 1L << 40;
+
+    /** The estimated size of the metadata of a document in a listing */
+    private static final long METADATA_SIZE = 512L;
+
+    /** The maximum number of documents returned by a listing request */
+    private static final int PAGE_SIZE = 1000;
+
+    private final StorageType storageType;
+    private final EmulatedCloud cloud;
+    private volatile NetworkConditions networkConditions;
+    private final Random random;
+
+    private final AtomicLong numRequests = new AtomicLong();
+    private final AtomicLong numTransferredBytes = new AtomicLong();
+    private final AtomicLong numNetworkErrors = new AtomicLong();
+    private final AtomicLong numTooManyRequestsErrors = new AtomicLong();
+
+    /**
+     * Creates a new {@code EmulatedStorage}, providing its dependencies.
+     *
+     * @param crypto            a {@code Crypto} instance
+     * @param cloudAppKeys      a {@code CloudAppKeys} instance
+     * @param accounts          a {@code Accounts} instance
+     * @param storageType       the {@code StorageType} this storage replaces
+     * @param cloud             the {@code EmulatedCloud} where the documents are stored
+     * @param networkConditions the conditions simulated for each request
+     * @param seed              the seed of the random generator which decides which requests fail
+     */
+    public EmulatedStorage(Crypto crypto, CloudAppKeys cloudAppKeys, Accounts accounts,
+                           StorageType storageType, EmulatedCloud cloud,
+                           NetworkConditions networkConditions, long seed) {
+        super(crypto, cloudAppKeys, accounts);
+        this.storageType = storageType;
+        this.cloud = cloud;
+        this.networkConditions = networkConditions;
+        random = new Random(seed);
+    }
+
+    /**
+     * Sets the conditions simulated for the next requests.
+     *
+     * @param networkConditions the conditions simulated for the next requests
+     */
+    public void setNetworkConditions(NetworkConditions networkConditions) {
+        this.networkConditions = networkConditions;
+    }
+
+    /**
+     * Returns the number of requests received by this storage, including the failed ones.
+     *
+     * @return the number of requests received by this storage
+     */
+    public long getNumRequests() {
+        return numRequests.get();
+    }
+
+    /**
+     * Returns the number of bytes uploaded and downloaded, including the metadata listings.
+     *
+     * @return the number of bytes uploaded and downloaded
+     */
+    public long getNumTransferredBytes() {
+        return numTransferredBytes.get();
+    }
+
+    /**
+     * Returns the number of requests which failed with an injected network error.
+     *
+     * @return the number of requests which failed with an injected network error
+     */
+    public long getNumNetworkErrors() {
+        return numNetworkErrors.get();
+    }
+
+    /**
+     * Returns the number of requests which were rejected with an injected "Too Many Requests" error.
+     *
+     * @return the number of requests which were rejected with an injected "Too Many Requests" error
+     */
+    public long getNumTooManyRequestsErrors() {
+        return numTooManyRequestsErrors.get();
+    }
+
+    /**
+     * Simulates a request : waits for the latency and the transfer time, and injects the errors.
+     *
+     * @param account     the account sending the request, or null if it is not known yet
+     * @param description the description of the request, used in the exceptions messages
+     * @param bytes       the number of bytes transferred by the request
+     * @param listener    the listener to report the transfer progress to, or null
+     * @throws RemoteException                   if a "Too Many Requests" error is injected
+     * @throws NetworkException                  if a network error is injected
+     * @throws UserCanceledException             if the transfer is canceled
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    void request(Account account, String description, long bytes, ProcessProgressListener listener)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException {
+        NetworkConditions networkConditions = this.networkConditions;
+        numRequests.incrementAndGet();
+        long start = System.nanoTime();
+        sleepUntil(start + networkConditions.getLatencyMs() * 1000000L, description);
+        if (random.nextDouble() < networkConditions.getTooManyRequestsRate()) {
+            numTooManyRequestsErrors.incrementAndGet();
+            if (null != account) {
+                account.notifyTooManyRequests();
+            }
+            throw new RemoteException(description + " : too many requests",
+                    RemoteException.Reason.TooManyRequests);
+        }
+        if (random.nextDouble() < networkConditions.getErrorRate()) {
+            numNetworkErrors.incrementAndGet();
+            throw new NetworkException(description, new IOException("Connection reset"));
+        }
+
+        if (null != listener) {
+            listener.onSetMax(0, (int) bytes);
+        }
+        start = System.nanoTime();
+        long transferred = 0;
+        while (transferred < bytes) {
+            long chunk = Math.min(Constants.STORAGE.CLOUD_SYNC_PROGRESS_UPDATE_DELTA, bytes - transferred);
+            transferred += chunk;
+            sleepUntil(start + networkConditions.transferTimeNanos(transferred), description);
+            if (null != listener) {
+                listener.onProgress(0, (int) transferred);
+                listener.pauseIfNeeded();
+                if (listener.isCanceled()) {
+                    throw new UserCanceledException("Canceled");
+                }
+            }
+        }
+        numTransferredBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Simulates a request which does not transfer any contents.
+     *
+     * @param account     the account sending the request
+     * @param description the description of the request, used in the exceptions messages
+     * @throws RemoteException                   if a "Too Many Requests" error is injected
+     * @throws NetworkException                  if a network error is injected
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    void request(Account account, String description)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException {
+        try {
+            request(account, description, METADATA_SIZE, null);
+        } catch (UserCanceledException e) {
+            throw new NetworkException(description, e);
+        }
+    }
+
+    private static void sleepUntil(long time, String description) throws NetworkException {
+        long delay = time - System.nanoTime();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NetworkException(description, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the emulated cloud where the documents are stored.
+     *
+     * @return the emulated cloud where the documents are stored
+     */
+    EmulatedCloud getCloud() {
+        return cloud;
+    }
+
+    /**
+     * Lists the children of the given folder, sending one request for each page of
+     * {@value #PAGE_SIZE} documents.
+     *
+     * @param folder   the folder to list
+     * @param listener the listener to report the progress to, or null
+     * @return the children of the given folder
+     * @throws RemoteException                   if the folder does not exist, or if an error is injected
+     * @throws NetworkException                  if a network error is injected
+     * @throws UserCanceledException             if the listing is canceled
+     * @throws OauthException                    if the account access token cannot be refreshed
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    List<EmulatedDocument> childDocuments(EmulatedDocument folder, ProcessProgressListener listener)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException, OauthException {
+        Account account = refreshedAccount(folder.getAccountName());
+        List<EmulatedCloud.Node> children = cloud.children(folder.getAccountName(), folder.getId());
+        List<EmulatedDocument> documents = new ArrayList<>();
+        int start = 0;
+        do {
+            int end = Math.min(start + PAGE_SIZE, children.size());
+            request(account, "Failed to get child documents", (end - start + 1) * METADATA_SIZE, null);
+            if (null != listener) {
+                listener.onSetMax(0, end);
+            }
+            for (EmulatedCloud.Node child : children.subList(start, end)) {
+                documents.add(new EmulatedDocument(this, child));
+            }
+            if (null != listener) {
+                listener.onProgress(0, end);
+                listener.pauseIfNeeded();
+                if (listener.isCanceled()) {
+                    throw new UserCanceledException("Canceled");
+                }
+            }
+            start = end;
+        } while (start < children.size());
+        return documents;
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    @Override
+    public String oauthAuthorizeUrl(boolean mobileVersion, String loginHint) throws RemoteException {
+        throw new RemoteException("The emulated storage does not use OAuth", RemoteException.Reason.NotSupported);
+    }
+
+    @Override
+    public String oauthAuthorizeRedirectUri() throws RemoteException {
+        throw new RemoteException("The emulated storage does not use OAuth", RemoteException.Reason.NotSupported);
+    }
+
+    @Override
+    public Account connectWithAccessCode(Map<String, String> responseParameters)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException {
+        String accountName = responseParameters.get("code");
+        request(null, "Failed to get oauth token");
+        Account account = createAccount();
+        account.setAccountName(accountName);
+        account.setAccessToken(ACCESS_TOKEN_PREFIX + accountName);
+        account.setExpiresInSeconds(ACCESS_TOKEN_LIFETIME_S);
+        accounts.add(account);
+        return account;
+    }
+
+    @Override
+    public String refreshTokensWithAccessCode(Account account, Map<String, String> responseParameters)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException {
+        String accountName = responseParameters.get("code");
+        request(account, "Failed to get oauth token");
+        if (null != accountName && accountName.equals(account.getAccountName())) {
+            account.setAccessToken(ACCESS_TOKEN_PREFIX + accountName);
+            account.setExpiresInSeconds(ACCESS_TOKEN_LIFETIME_S);
+            account.update();
+        }
+        return accountName;
+    }
+
+    @Override
+    public String accountNameFromAccessToken(String accessToken) throws RemoteException, NetworkException {
+        if (null == accessToken) {
+            throw new RemoteException("Failed to get account name : access token is null",
+                    RemoteException.Reason.AccessTokenIsNull);
+        }
+        try {
+            request(null, "Failed to get account name");
+        } catch (DatabaseConnectionClosedException e) {
+            throw new NetworkException("Failed to get account name", e);
+        }
+        if (!accessToken.startsWith(ACCESS_TOKEN_PREFIX)) {
+            throw new RemoteException("Failed to get account name", RemoteException.Reason.Unauthorized);
+        }
+        return accessToken.substring(ACCESS_TOKEN_PREFIX.length());
+    }
+
+    @Override
+    public Account refreshToken(String accountName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException {
+        Account account = account(accountName);
+        if (null == account) {
+            throw new RemoteException("Failed to refresh token : account not found",
+                    RemoteException.Reason.AccountNotFound);
+        }
+        request(account, "Failed to refresh token");
+        account.setExpiresInSeconds(ACCESS_TOKEN_LIFETIME_S);
+        account.update();
+        return account;
+    }
+
+    @Override
+    public Account refreshQuota(Account account)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException {
+        request(account, "Failed to get quota");
+        account.setQuotaAmount(QUOTA_AMOUNT);
+        account.setQuotaUsed(cloud.usedSpace(account.getAccountName()));
+        account.update();
+        return account;
+    }
+
+    @Override
+    public void revokeToken(String accountName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException {
+        if (null == accountName) {
+            throw new RemoteException("Failed to revoke access token : account name is null",
+                    RemoteException.Reason.AccountNameIsNull);
+        }
+        Account account = account(accountName);
+        if (null == account) {
+            throw new RemoteException("Failed to revoke access token : account is null",
+                    RemoteException.Reason.AccountNotFound);
+        }
+        request(account, "Failed to revoke access token");
+    }
+
+    @Override
+    public EmulatedDocument rootFolder(String accountName) throws RemoteException {
+        return new EmulatedDocument(this, cloud.root(accountName));
+    }
+
+    @Override
+    public EmulatedDocument folder(String accountName, String id)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        EmulatedDocument document = document(accountName, id);
+        if (!document.isFolder()) {
+            throw new RemoteException("Failed to get folder : the document found is not a folder",
+                    RemoteException.Reason.NotAFolder);
+        }
+        return document;
+    }
+
+    @Override
+    public EmulatedDocument file(String accountName, String id)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        EmulatedDocument document = document(accountName, id);
+        if (document.isFolder()) {
+            throw new RemoteException("Failed to get file : the document found is not a file",
+                    RemoteException.Reason.NotAFile);
+        }
+        return document;
+    }
+
+    @Override
+    public EmulatedDocument document(String accountName, String id)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = refreshedAccount(accountName);
+        request(account, "Failed to get document");
+        return new EmulatedDocument(this, cloud.document(accountName, id));
+    }
+
+    @Override
+    public RemoteChanges changes(String accountName, String lastChangeId, ProcessProgressListener listener)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException, OauthException {
+        Account account = refreshedAccount(accountName);
+        EmulatedCloud.Changes cloudChanges = cloud.changes(accountName, lastChangeId);
+        List<EmulatedCloud.Change> changesList = cloudChanges.getChanges();
+        RemoteChanges changes = new RemoteChanges(cloudChanges.getLastChangeId(), cloudChanges.isDeltaMode());
+        int start = 0;
+        do {
+            int end = Math.min(start + PAGE_SIZE, changesList.size());
+            request(account, "Failed to get changes", (end - start + 1) * METADATA_SIZE, null);
+            if (null != listener) {
+                listener.onSetMax(0, end);
+            }
+            for (EmulatedCloud.Change change : changesList.subList(start, end)) {
+                if (change.isDeleted()) {
+                    changes.addChange(RemoteChange.deletion(change.getDocumentId()));
+                } else {
+                    changes.addChange(RemoteChange.modification(change.getDocumentId(),
+                            new EmulatedDocument(this, change.getNode())));
+                }
+            }
+            if (null != listener) {
+                listener.onProgress(0, end);
+                listener.pauseIfNeeded();
+                if (listener.isCanceled()) {
+                    throw new UserCanceledException("Canceled");
+                }
+            }
+            start = end;
+        } while (start < changesList.size());
+        return changes;
+    }
+
+    @Override
+    public void deleteFolder(String accountName, String id)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        deleteDocument(accountName, id);
+    }
+
+    @Override
+    public void deleteFile(String accountName, String id)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        deleteDocument(accountName, id);
+    }
+
+    private void deleteDocument(String accountName, String id)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = refreshedAccount(accountName);
+        request(account, "Failed to delete document");
+        try {
+            cloud.delete(accountName, id);
+        } catch (RemoteException e) {
+            if (!e.isNotFoundError()) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public EmulatedDocument moveFile(String accountName, String id, String newParentId)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, null);
+    }
+
+    @Override
+    public EmulatedDocument moveFolder(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, newName);
+    }
+
+    private EmulatedDocument moveDocument(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = refreshedAccount(accountName);
+        request(account, "Failed to move document");
+        return new EmulatedDocument(this, cloud.move(accountName, id, newParentId, newName));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.benchmarks.cloud;
+
+/**
+ * The conditions simulated by an {@link EmulatedStorage} for each request : latency, bandwidth,
+ * and the rates of the injected errors.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class NetworkConditions {
+    /** No latency, no bandwidth limit, and no errors */
+    public static final NetworkConditions UNLIMITED = new NetworkConditions(0, 0, 0.0, 0.0);
+
+    private final long latencyMs;
+    private final long bandwidth;
+    private final double errorRate;
+    private final double tooManyRequestsRate;
+
+    /**
+     * Creates a new {@code NetworkConditions} instance.
+     *
+     * @param latencyMs           the time (in ms) waited before each request is answered
+     * @param bandwidth           the maximum transfer rate of each request (in bytes per second),
+     *                            or 0 for no limit
+     * @param errorRate           the probability for each request to fail with a network error
+     * @param tooManyRequestsRate the probability for each request to be rejected with a
+     *                            "Too Many Requests" error
+     */
+    public NetworkConditions(long latencyMs, long bandwidth, double errorRate, double tooManyRequestsRate) {
+        this.latencyMs = latencyMs;
+        this.bandwidth = bandwidth;
+        this.errorRate = errorRate;
+        this.tooManyRequestsRate = tooManyRequestsRate;
+    }
+
+    /**
+     * Returns the time (in ms) waited before each request is answered.
+     *
+     * @return the time (in ms) waited before each request is answered
+     */
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    /**
+     * Returns the maximum transfer rate of each request (in bytes per second).
+     *
+     * @return the maximum transfer rate of each request (in bytes per second), or 0 for no limit
+     */
+    public long getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Returns the probability for each request to fail with a network error.
+     *
+     * @return the probability for each request to fail with a network error
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Returns the probability for each request to be rejected with a "Too Many Requests" error.
+     *
+     * @return the probability for each request to be rejected with a "Too Many Requests" error
+     */
+    public double getTooManyRequestsRate() {
+        return tooManyRequestsRate;
+    }
+
+    /**
+     * Returns the time (in ns) needed to transfer the given number of {@code bytes}.
+     *
+     * @param bytes the number of bytes to transfer
+     * @return the time (in ns) needed to transfer the given number of {@code bytes}
+     */
+    long transferTimeNanos(long bytes) {
+        if (bandwidth <= 0) {
+            return 0;
+        }
+        return bytes * 1000000000L / bandwidth;
+    }
+}
@@ -53,8 +53,10 @@ public class Constants {
         short STREAM_VERSION = 0;
         byte[] CHUNK_PREFIX = "SCDC".getBytes(StandardCharsets.UTF_8);
         short CHUNK_VERSION = 0;
+        byte[] FINGERPRINT_PREFIX = "SCFP".getBytes(StandardCharsets.UTF_8);
 
         int MAX_CHUNK_SIZE = 1024 * 1024; // 1MB
+        long DECRYPTED_CHUNKS_CACHE_MAX_SIZE = 32 * 1024 * 1024; // 32MB
 
         String KEY_STORE_UBER_FILE_NAME = "StorageCrypt.ubr";
         String KEY_STORE_UBER_DEFAULT_EXPORT_FILE_NAME = "ExportedKeys.ubr";
@@ -83,6 +85,14 @@ public class Constants {
 
         int CLOUD_SYNC_MAX_FAILURES = 5;
         int CLOUD_SYNC_FAILURE_RESET_DELAY_S = 600; // 10 minutes
+
+        int REMOTE_DOCUMENTS_CACHE_MAX_SIZE = 10000;
+        int REMOTE_DOCUMENTS_CACHE_TTL_S = 120; // 2 minutes
+
+        int CHILD_FOLDER_IDS_CACHE_MAX_SIZE = 1000;
+        int CHILD_FOLDER_ID_RESERVATION_TTL_S = 600; // 10 minutes
+
+        int ACCESS_TOKEN_RENEWAL_MARGIN_S = 300; // 5 minutes
     }
 
     public interface RETROFIT {
@@ -141,6 +151,7 @@ public class Constants {
         String REFRESH_TOKEN_GRANT_TYPE = "refresh_token";
         String FOLDER_MIME_TYPE = STORAGE.DEFAULT_FOLDER_MIME_TYPE;
         String OPENSTACK_CONTAINER = "default";
+        int MOVED_FILE_DELETE_ATTEMPTS = 3;
         int CONNECT_TIMEOUT_S = 60;
         int READ_TIMEOUT_S = 60;
         int WRITE_TIMEOUT_S = 60;
@@ -162,6 +173,7 @@ public class Constants {
     public interface FILE {
         String APP_DIR_NAME = "StorageCrypt";
         String TEMP_FILES_DIR_NAME = "tmp";
+        String THUMBNAILS_DIR_NAME = "thumbnails";
 
         String LOCAL_FILES_DIR_NAME = "Unsynchronized";
         String GDRIVE_FILES_DIR_NAME = "Drive";
@@ -177,6 +189,13 @@ public class Constants {
         long QUOTA_USED_ESTIMATION_BEFORE_REFRESH = 1024 * 1024;
     }
 
+    public interface THUMBNAILS {
+        int SIZE = 256;
+        int JPEG_QUALITY = 85;
+        long MAX_SOURCE_SIZE = 64 * 1024 * 1024; // 64MB
+        String FILE_EXTENSION = ".thumb";
+    }
+
     public interface CONTENT_PROVIDER {
         String DIRECTORY_MIME_TYPE = "vnd.android.document/directory";
     }
@@ -49,6 +49,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.cloud.Accounts;
 import fr.petrus.lib.core.cloud.RemoteDocument;
 import fr.petrus.lib.core.cloud.RemoteStorage;
 import fr.petrus.lib.core.cloud.exceptions.NetworkException;
@@ -63,6 +64,7 @@ import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
 import fr.petrus.lib.core.filesystem.tree.PathNode;
 import fr.petrus.lib.core.filesystem.tree.PathTree;
 import fr.petrus.lib.core.result.ProcessProgressListener;
+import fr.petrus.lib.core.thumbnails.Thumbnails;
 import fr.petrus.lib.core.filesystem.FileSystem;
 import fr.petrus.lib.core.i18n.TextI18n;
 
@@ -128,8 +130,13 @@ public class EncryptedDocument {
     @DatabaseField(columnName = DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_BACK_STORAGE_TYPE)
     private StorageType backStorageType;
 
-    /** The account where this document is synchronized, or null if StorageType is "Unsynchronized" */
-    @DatabaseField(foreign = true, foreignAutoRefresh=true, columnName = DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_BACK_STORAGE_ACCOUNT)
+    /**
+     * The account where this document is synchronized, or null if StorageType is "Unsynchronized".
+     *
+     * <p>Only its id is loaded from the database : the full account is resolved through the
+     * {@link fr.petrus.lib.core.cloud.Accounts} cache when the dependencies of this document are set.
+     */
+    @DatabaseField(foreign = true, columnName = DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_BACK_STORAGE_ACCOUNT)
     private Account backStorageAccount;
 
     /**
@@ -183,6 +190,18 @@ public class EncryptedDocument {
     @DatabaseField(columnName = DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_BACK_ENTRY_CREATION_INCOMPLETE)
     private boolean backEntryCreationIncomplete;
 
+    /** The size of the clear file this document was last encrypted from, if known */
+    @DatabaseField(columnName = DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_SIZE)
+    private long plaintextSize;
+
+    /** The last modification time of the clear file this document was last encrypted from, if known */
+    @DatabaseField(columnName = DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_MODIFICATION_TIME)
+    private long plaintextModificationTime;
+
+    /** The keyed fingerprint of the clear file this document was last encrypted from, if known */
+    @DatabaseField(columnName = DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_FINGERPRINT)
+    private String plaintextFingerprint;
+
     /**
      * Creates a new empty {@code EncryptedDocument} instance, with default values.
      *
@@ -210,6 +229,9 @@ public class EncryptedDocument {
         backEntryNumSyncFailures = 0;
         backEntryLastFailureTime = -1;
         backEntryCreationIncomplete = false;
+        plaintextSize = -1;
+        plaintextModificationTime = -1;
+        plaintextFingerprint = null;
     }
 
     /**
@@ -249,14 +271,32 @@ public class EncryptedDocument {
      * Sets the dependencies needed by this instance to perform its tasks, from the dependencies of
      * the given {@code srcEncryptedDocument}.
      *
+     * <p>If this document is stored on the same account as the {@code srcEncryptedDocument},
+     * it shares its {@code Account} instance, which is not loaded again from the database.
+     * Otherwise, its {@code Account} is resolved through the
+     * {@link fr.petrus.lib.core.cloud.Accounts} cache.
+     *
      * @param srcEncryptedDocument the {@code EncryptedDocument} to get the dependencies from
+     * @throws DatabaseConnectionClosedException if the database connection is closed
      */
-    public void setDependenciesFrom(EncryptedDocument srcEncryptedDocument) {
+    public void setDependenciesFrom(EncryptedDocument srcEncryptedDocument)
+            throws DatabaseConnectionClosedException {
         setDependencies(srcEncryptedDocument.crypto, srcEncryptedDocument.keyManager,
                 srcEncryptedDocument.fileSystem, srcEncryptedDocument.textI18n,
                 srcEncryptedDocument.database);
         if (null!=backStorageAccount && null!=srcEncryptedDocument.backStorageAccount) {
-            this.backStorageAccount.setDependenciesFrom(srcEncryptedDocument.backStorageAccount);
+            if (backStorageAccount.getId() == srcEncryptedDocument.backStorageAccount.getId()) {
+                backStorageAccount = srcEncryptedDocument.backStorageAccount;
+            } else {
+                Accounts accounts = srcEncryptedDocument.backStorageAccount.getAccounts();
+                Account account = null==accounts ? null : accounts.accountWithId(backStorageAccount.getId());
+                if (null!=account) {
+                    backStorageAccount = account;
+                } else {
+                    backStorageAccount.setDependenciesFrom(srcEncryptedDocument.backStorageAccount);
+                    backStorageAccount.refresh();
+                }
+            }
         }
     }
 
@@ -768,6 +808,78 @@ public class EncryptedDocument {
         return backEntryCreationIncomplete;
     }
 
+    /**
+     * Sets the size, the last modification time and the keyed fingerprint of the clear file this
+     * document was encrypted from.
+     *
+     * @param size             the size of the clear file
+     * @param modificationTime the last modification time of the clear file (in ms from the epoch)
+     * @param fingerprint      the keyed fingerprint of the clear file, encoded in Base64
+     */
+    public void setPlaintextFingerprint(long size, long modificationTime, String fingerprint) {
+        this.plaintextSize = size;
+        this.plaintextModificationTime = modificationTime;
+        this.plaintextFingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the size of the clear file this document was encrypted from.
+     *
+     * @return the size of the clear file this document was encrypted from, or -1 if unknown
+     */
+    public long getPlaintextSize() {
+        return plaintextSize;
+    }
+
+    /**
+     * Returns the last modification time of the clear file this document was encrypted from.
+     *
+     * @return the last modification time of the clear file this document was encrypted from
+     *         (in ms from the epoch), or -1 if unknown
+     */
+    public long getPlaintextModificationTime() {
+        return plaintextModificationTime;
+    }
+
+    /**
+     * Returns the keyed fingerprint of the clear file this document was encrypted from.
+     *
+     * @return the keyed fingerprint of the clear file this document was encrypted from, encoded
+     *         in Base64, or null if unknown
+     */
+    public String getPlaintextFingerprint() {
+        return plaintextFingerprint;
+    }
+
+    /**
+     * Returns whether the given clear file may be the one this document was last encrypted from,
+     * meaning its size and last modification time match the ones recorded with the fingerprint.
+     *
+     * <p>The fingerprint of the clear file still has to be compared to be sure it did not change.
+     *
+     * @param file the clear file to check
+     * @return true if the fingerprint of the given {@code file} should be compared to the one of this document
+     */
+    public boolean mayHavePlaintext(File file) {
+        return mayHavePlaintext(file.length(), file.lastModified());
+    }
+
+    /**
+     * Returns whether a clear file with the given {@code size} and {@code modificationTime} may be
+     * the one this document was last encrypted from.
+     *
+     * <p>The fingerprint of the clear file still has to be compared to be sure it did not change.
+     *
+     * @param size             the size of the clear file, in bytes
+     * @param modificationTime the last modification time of the clear file (in ms from the epoch)
+     * @return true if the fingerprint of the clear file should be compared to the one of this document
+     */
+    public boolean mayHavePlaintext(long size, long modificationTime) {
+        return null != plaintextFingerprint
+                && size == plaintextSize
+                && modificationTime == plaintextModificationTime;
+    }
+
     /**
      * {@inheritDoc}
      * This implementation simply returns the name of this document.
@@ -825,23 +937,6 @@ public class EncryptedDocument {
         return parents;
     }
 
-    /**
-     * Returns the next identifier to assign to a child folder of this folder.
-     *
-     * <p>Remote folder are stored with a simple integer as name. This method increments the last
-     * identifier assigned to a child folder of this folder, persists it into the database and
-     * returns it
-     *
-     * @return the next identifier to assign to a child folder of this folder
-     * @throws DatabaseConnectionClosedException if the database connection is closed
-     */
-    public long nextBackEntryFolderId() throws DatabaseConnectionClosedException {
-        long backEntryFolderId = getBackEntryFolderLastSubfolderId() + 1;
-        setBackEntryFolderLastSubfolderId(backEntryFolderId);
-        database.updateEncryptedDocumentBackEntryFolderLastSubfolderId(getId(), backEntryFolderId);
-        return backEntryFolderId;
-    }
-
     /**
      * Returns the logical path of this document, built from the names of the hierarchy of its parents.
      *
@@ -1155,6 +1250,38 @@ public class EncryptedDocument {
         return children;
     }
 
+    /**
+     * Returns a window of the children encrypted documents of this folder, sorted by the given
+     * {@code orderBy} criterion.
+     *
+     * @param foldersFirst if true, the folders are listed before the files, otherwise they are mixed
+     * @param orderBy      the criterion used to sort the documents
+     * @param offset       the position of the first child to return
+     * @param limit        the maximum number of children to return
+     * @return the list of at most {@code limit} children encrypted documents of this folder,
+     *         starting at the given {@code offset}
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public List<EncryptedDocument> children(boolean foldersFirst, OrderBy orderBy, long offset, long limit)
+            throws DatabaseConnectionClosedException {
+        List<EncryptedDocument> children =
+                database.getEncryptedDocumentsByParentId(getId(), foldersFirst, orderBy, offset, limit);
+        for (EncryptedDocument child : children) {
+            child.setDependenciesFrom(this);
+        }
+        return children;
+    }
+
+    /**
+     * Returns the number of children encrypted documents of this folder.
+     *
+     * @return the number of children encrypted documents of this folder
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public long numChildren() throws DatabaseConnectionClosedException {
+        return database.getNumEncryptedDocumentsByParentId(getId());
+    }
+
     /**
      * Returns whether the given {@code encryptedDocument} is this document or is part of this document tree.
      *
@@ -1283,6 +1410,22 @@ public class EncryptedDocument {
         database.updateEncryptedDocumentBackEntryFolderLastSubfolderId(getId(), getBackEntryFolderLastSubfolderId());
     }
 
+    /**
+     * Raises the last identifier assigned to a child folder of this folder to the given one, then
+     * persists it into the database.
+     *
+     * <p>Unlike {@link #updateBackEntryFolderLastSubfolderId(long)}, this method never decreases the
+     * last identifier, neither in this document nor in the database, so that the identifiers
+     * reserved concurrently for child folders are never assigned again.
+     *
+     * @param backEntryFolderLastSubfolderId an identifier assigned to a child folder of this folder
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public void raiseBackEntryFolderLastSubfolderId(long backEntryFolderLastSubfolderId) throws DatabaseConnectionClosedException {
+        setBackEntryFolderLastSubfolderId(Math.max(getBackEntryFolderLastSubfolderId(), backEntryFolderLastSubfolderId));
+        database.raiseEncryptedDocumentBackEntryFolderLastSubfolderId(getId(), getBackEntryFolderLastSubfolderId());
+    }
+
     /**
      * Sets the version of the remote document on the remote storage, then persists it into
      * the database.
@@ -1307,6 +1450,22 @@ public class EncryptedDocument {
         database.updateEncryptedDocumentBackEntryCreationIncomplete(getId(), isBackEntryCreationIncomplete());
     }
 
+    /**
+     * Sets the size, the last modification time and the keyed fingerprint of the clear file this
+     * document was encrypted from, then persists them into the database.
+     *
+     * @param size             the size of the clear file
+     * @param modificationTime the last modification time of the clear file (in ms from the epoch)
+     * @param fingerprint      the keyed fingerprint of the clear file, encoded in Base64
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public void updatePlaintextFingerprint(long size, long modificationTime, String fingerprint)
+            throws DatabaseConnectionClosedException {
+        setPlaintextFingerprint(size, modificationTime, fingerprint);
+        database.updateEncryptedDocumentPlaintextFingerprint(getId(), getPlaintextSize(),
+                getPlaintextModificationTime(), getPlaintextFingerprint());
+    }
+
     /**
      * Sets the given {@code state} for the given {@code syncAction} of this document, then persists
      * it into the database.
@@ -1432,7 +1591,7 @@ public class EncryptedDocument {
             RemoteDocument parent;
             try {
                 try {
-                    parent = storage.folder(accountName, parentEncryptedDocument.getBackEntryId());
+                    parent = storage.cachedFolder(accountName, parentEncryptedDocument.getBackEntryId());
                 } catch (RemoteException e) {
                     incrementFailuresCount();
                     throw new StorageCryptException("Failed to upload new document : impossible to get parent",
@@ -1445,18 +1604,7 @@ public class EncryptedDocument {
                             listener.onSetMax(0, 2);
                             listener.onProgress(0, 0);
                         }
-                        // try to get a free folder id
-                        long backEntryFolderId;
-                        do {
-                            backEntryFolderId = parentEncryptedDocument.nextBackEntryFolderId();
-                            try {
-                                document = parent.childFolder(String.valueOf(backEntryFolderId));
-                            } catch (RemoteException e) {
-                                if (!e.isNotFoundError()) {
-                                    throw e;
-                                }
-                            }
-                        } while (null != document);
+                        long backEntryFolderId = parentEncryptedDocument.freeBackEntryFolderId(parent);
                         if (null != listener) {
                             listener.onProgress(0, 1);
                         }
@@ -1471,6 +1619,7 @@ public class EncryptedDocument {
                                 Constants.STORAGE.DEFAULT_BINARY_MIME_TYPE, file(), listener);
                     }
                     if (null != document) {
+                        cacheDocument(storage, document);
                         updateBackEntryId(document.getId());
                         updateBackEntryVersion(document.getVersion());
                         updateRemoteModificationTime(document.getModificationTime());
@@ -1493,6 +1642,111 @@ public class EncryptedDocument {
         }
     }
 
+    /**
+     * Returns a folder identifier which is not used yet by any child folder of the given remote folder,
+     * and persists it as the last identifier assigned to a child folder of this folder.
+     *
+     * @param remoteFolder the remote folder associated with this document
+     * @return a folder identifier which is not used yet by any child folder of {@code remoteFolder}
+     * @throws RemoteException                   if an error occurs when listing the remote folder
+     * @throws NetworkException                  if a network connectivity error occurs
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private long freeBackEntryFolderId(RemoteDocument remoteFolder)
+            throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException {
+        RemoteStorage storage = getBackStorageAccount().getRemoteStorage();
+        long backEntryFolderId = reserveChildFolderId(storage, remoteFolder, getBackEntryFolderLastSubfolderId() + 1);
+        raiseBackEntryFolderLastSubfolderId(backEntryFolderId);
+        return backEntryFolderId;
+    }
+
+    /**
+     * Stores the given {@code document} in the remote documents cache of the given {@code storage}.
+     *
+     * @param storage  the storage the {@code document} belongs to
+     * @param document the remote document to cache
+     */
+    @SuppressWarnings("unchecked")
+    private static void cacheDocument(RemoteStorage storage, RemoteDocument document) {
+        storage.cacheDocument(document);
+    }
+
+    /**
+     * Reserves a child folder identifier of the given {@code remoteFolder}, not lower than
+     * {@code minId}, using the given {@code storage}.
+     *
+     * @param storage      the storage the {@code remoteFolder} belongs to
+     * @param remoteFolder the remote folder
+     * @param minId        the lowest identifier which may be returned
+     * @return the reserved identifier
+     * @throws RemoteException                   if an error occurs when listing the remote folder
+     * @throws NetworkException                  if a network connectivity error occurs
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    @SuppressWarnings("unchecked")
+    private static long reserveChildFolderId(RemoteStorage storage, RemoteDocument remoteFolder, long minId)
+            throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException {
+        return storage.reserveChildFolderId(remoteFolder, minId);
+    }
+
+    /**
+     * Moves this document into the given folder of the same storage.
+     *
+     * <p>The local file is renamed in place, and if this document is synchronized, the remote
+     * document is moved on the server side, so that nothing has to be encrypted or uploaded again.
+     * If the remote move fails, the local file is moved back.
+     *
+     * @param dstFolder the folder to move this document into
+     * @throws StorageCryptException             if an error occurs when moving the local or the remote document
+     * @throws NetworkException                  if a network connectivity error occurs
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public void moveTo(EncryptedDocument dstFolder)
+            throws StorageCryptException, DatabaseConnectionClosedException, NetworkException, OauthException {
+        if (null != dstFolder.child(getDisplayName())) {
+            throw new StorageCryptException("Failed to move document : a document with the same name already exists",
+                    StorageCryptException.Reason.DocumentExists);
+        }
+        File srcFile = file();
+        File dstFile = new File(dstFolder.file(), getFileName());
+        if (!srcFile.renameTo(dstFile)) {
+            throw new StorageCryptException("Failed to move local document",
+                    StorageCryptException.Reason.CreationError);
+        }
+        if (!isUnsynchronized() && null != getBackEntryId()) {
+            String accountName = getBackStorageAccount().getAccountName();
+            RemoteStorage storage = getBackStorageAccount().getRemoteStorage();
+            boolean moved = false;
+            try {
+                RemoteDocument document;
+                if (isFolder()) {
+                    RemoteDocument remoteDstFolder = storage.cachedFolder(accountName, dstFolder.getBackEntryId());
+                    long backEntryFolderId = dstFolder.freeBackEntryFolderId(remoteDstFolder);
+                    document = storage.moveFolder(accountName, getBackEntryId(), dstFolder.getBackEntryId(),
+                            String.valueOf(backEntryFolderId));
+                    /* the remote folder was moved : the local folder must stay where it is now */
+                    moved = true;
+                    updateBackEntryFolderId(backEntryFolderId);
+                } else {
+                    document = storage.moveFile(accountName, getBackEntryId(), dstFolder.getBackEntryId());
+                    moved = true;
+                }
+                storage.uncacheDocument(accountName, getBackEntryId());
+                cacheDocument(storage, document);
+                updateBackEntryId(document.getId());
+            } catch (RemoteException e) {
+                throw new StorageCryptException("Failed to move remote document",
+                        StorageCryptException.Reason.RemoteCreationError, e);
+            } finally {
+                if (!moved && !dstFile.renameTo(srcFile)) {
+                    LOG.error("Failed to move back local document \"{}\"", dstFile.getAbsolutePath());
+                }
+            }
+        }
+        setParentId(dstFolder.getId());
+        update();
+    }
+
     /**
      * Uploads this document to the associated account, if any.
      *
@@ -1520,7 +1774,7 @@ public class EncryptedDocument {
             RemoteDocument document;
             try {
                 try {
-                    document = storage.file(accountName, getBackEntryId());
+                    document = storage.cachedFile(accountName, getBackEntryId());
                 } catch (RemoteException e) {
                     if (e.isNotFoundError()) {
                         throw new NotFoundException("The remote file does not exist", e);
@@ -1532,6 +1786,7 @@ public class EncryptedDocument {
                 }
                 try {
                     document = document.uploadFile(Constants.STORAGE.DEFAULT_BINARY_MIME_TYPE, file(), listener);
+                    cacheDocument(storage, document);
 
                     Account account = getBackStorageAccount();
                     account.refresh();
@@ -1539,6 +1794,7 @@ public class EncryptedDocument {
                     account.update();
                     account.refreshQuotaIfNeeded();
                 } catch (RemoteException e) {
+                    storage.uncacheDocument(accountName, getBackEntryId());
                     incrementFailuresCount();
                     throw new StorageCryptException("Failed to upload document",
                             StorageCryptException.Reason.UploadError, e);
@@ -1579,9 +1835,13 @@ public class EncryptedDocument {
             RemoteDocument document;
             try {
                 try {
+                    /* the cached entry may be stale : fetch the metadata matching the downloaded
+                       content, so that the recorded version is the one of the local file */
                     document = storage.file(accountName, getBackEntryId());
+                    cacheDocument(storage, document);
                 } catch (RemoteException e) {
                     if (e.isNotFoundError()) {
+                        storage.uncacheDocument(accountName, getBackEntryId());
                         throw new NotFoundException("The remote file does not exist", e);
                     } else {
                         incrementFailuresCount();
@@ -1592,6 +1852,7 @@ public class EncryptedDocument {
                 try {
                     document.downloadFile(file(), listener);
                 } catch (RemoteException e) {
+                    storage.uncacheDocument(accountName, getBackEntryId());
                     incrementFailuresCount();
                     throw new StorageCryptException("Failed to download document",
                             StorageCryptException.Reason.DownloadError, e);
@@ -1672,6 +1933,9 @@ public class EncryptedDocument {
     public void deleteLocal() throws DatabaseConnectionClosedException {
         // physically remove the file
         file().delete();
+        if (!isFolder()) {
+            Thumbnails.deleteThumbnail(fileSystem, this);
+        }
 
         //delete the encryptedDocument if it is strictly local
         database.deleteEncryptedDocument(this);
@@ -1693,6 +1957,7 @@ public class EncryptedDocument {
                 LOG.error("RemoteStorage instance not found for storage type {}", getBackStorageType().name());
                 return;
             }
+            storage.uncacheDocument(getBackStorageAccount().getAccountName(), getBackEntryId());
             try {
                 if (isFolder()) {
                     storage.deleteFolder(getBackStorageAccount().getAccountName(), getBackEntryId());
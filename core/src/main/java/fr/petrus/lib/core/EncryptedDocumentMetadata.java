@@ -39,6 +39,8 @@ package fr.petrus.lib.core;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.crypto.CryptoException;
 import fr.petrus.lib.core.crypto.EncryptedDataChunk;
@@ -125,22 +127,64 @@ public class EncryptedDocumentMetadata {
      * @throws StorageCryptException if no key can decrypt the given {@code encryptedMetadata}
      */
     public void decrypt(String encryptedMetadata) throws StorageCryptException {
-        for (String alias : keyManager.getKeyAliases()) {
-            try {
-                String[] documentNameData = decryptMetadata(encryptedMetadata, keyManager.getKeys(alias));
-                this.keyAlias = alias;
-                this.mimeType = documentNameData[0];
-                this.displayName = documentNameData[1];
-                return;
-            } catch (StorageCryptException e) {
-                LOG.info("Unable to decrypt file with {} key, trying the next one.", alias);
-            } catch (CryptoException e) {
-                LOG.info("Unable to get {} key", alias);
+        decrypt(encryptedMetadata, null);
+    }
+
+    /**
+     * Decrypts the given {@code encryptedMetadata} and stores the decrypted metadata in this object.
+     *
+     * <p>The key referenced by the given {@code preferredKeyAlias} is tried first, then all the other
+     * keys. As the metadata does not reference the key it was encrypted with, passing the alias of
+     * the key which most probably matches (the key of the parent folder for instance) avoids trying
+     * all the keys one by one.
+     *
+     * @param encryptedMetadata the encrypted metadata to decrypt
+     * @param preferredKeyAlias the alias of the key to try first, or null to try all keys in order
+     * @throws StorageCryptException if no key can decrypt the given {@code encryptedMetadata}
+     */
+    public void decrypt(String encryptedMetadata, String preferredKeyAlias) throws StorageCryptException {
+        List<String> keyAliases = keyManager.getKeyAliases();
+        if (null!=keyAliases) {
+            byte[] encryptedMetadataBytes = crypto.decodeUrlSafeBase64(encryptedMetadata);
+            if (null!=preferredKeyAlias && keyAliases.contains(preferredKeyAlias)) {
+                if (decrypt(encryptedMetadataBytes, preferredKeyAlias)) {
+                    return;
+                }
+            }
+            for (String alias : keyAliases) {
+                if (!alias.equals(preferredKeyAlias)) {
+                    if (decrypt(encryptedMetadataBytes, alias)) {
+                        return;
+                    }
+                }
             }
         }
         throw new StorageCryptException("No key matches", StorageCryptException.Reason.KeyNotFound);
     }
 
+    /**
+     * Tries to decrypt the given {@code encryptedMetadata} with the key referenced by the given
+     * {@code alias}, and stores the decrypted metadata in this object if it succeeds.
+     *
+     * @param encryptedMetadata the encrypted metadata to decrypt
+     * @param alias             the alias of the key to decrypt the metadata with
+     * @return true if the metadata was successfully decrypted, false otherwise
+     */
+    private boolean decrypt(byte[] encryptedMetadata, String alias) {
+        try {
+            String[] documentNameData = decryptMetadataFromBytes(encryptedMetadata, keyManager.getKeys(alias));
+            this.keyAlias = alias;
+            this.mimeType = documentNameData[0];
+            this.displayName = documentNameData[1];
+            return true;
+        } catch (StorageCryptException e) {
+            LOG.info("Unable to decrypt file with {} key, trying the next one.", alias);
+        } catch (CryptoException e) {
+            LOG.info("Unable to get {} key", alias);
+        }
+        return false;
+    }
+
     /**
      * Encrypts the metadata as a byte array.
      *
@@ -250,17 +294,4 @@ public class EncryptedDocumentMetadata {
 
         return splitData;
     }
-
-    /**
-     * Decrypts the encrypted metadata and returns the result as a String array.
-     *
-     * @param encryptedMetadata the encrypted metadata
-     * @param secretKeys        the secret keys to decrypt the metadata with
-     * @return the resulting String array with the mime type as the first element, then the name
-     * @throws StorageCryptException if an error occurs when decrypting or parsing the metadata
-     */
-    private String[] decryptMetadata(String encryptedMetadata, SecretKeys secretKeys)
-            throws StorageCryptException {
-        return decryptMetadataFromBytes(crypto.decodeUrlSafeBase64(encryptedMetadata), secretKeys);
-    }
 }
@@ -36,11 +36,13 @@
 
 package fr.petrus.lib.core;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import fr.petrus.lib.core.cloud.Account;
 import fr.petrus.lib.core.cloud.Accounts;
@@ -105,14 +107,39 @@ public class EncryptedDocuments {
     }
 
     /**
-     * Sets the dependencies of the given {@code encryptedDocument}
+     * Executes the given {@code callable} in a single database transaction.
      *
-     * @param encryptedDocument the {@code EncryptedDocument} which dependencies will we set
+     * <p>This is used to persist many documents at once, which is much faster than persisting
+     * each one in its own transaction.
+     *
+     * @param <T>      the type of the result returned by the callable
+     * @param callable the callable to execute in the transaction
+     * @return the result returned by the callable
+     * @throws SQLException                      if the transaction failed
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public <T> T callInTransaction(Callable<T> callable)
+            throws SQLException, DatabaseConnectionClosedException {
+        return database.callInTransaction(callable);
+    }
+
+    /**
+     * Sets the account of the given {@code encryptedDocument}, resolving it from the
+     * {@link Accounts} cache.
+     *
+     * @param encryptedDocument the {@code EncryptedDocument} which account will we set
+     * @throws DatabaseConnectionClosedException if the database connection is closed
      */
-    private void setAccountDependenciesFor(EncryptedDocument encryptedDocument) {
+    private void setAccountDependenciesFor(EncryptedDocument encryptedDocument)
+            throws DatabaseConnectionClosedException {
         if (null!=encryptedDocument && null!=encryptedDocument.getBackStorageAccount()) {
-            encryptedDocument.getBackStorageAccount()
-                    .setDependencies(appContext, accounts, crypto, cloudAppKeys, textI18n, database);
+            Account account = accounts.accountWithId(encryptedDocument.getBackStorageAccount().getId());
+            if (null!=account) {
+                encryptedDocument.setBackStorageAccount(account);
+            } else {
+                encryptedDocument.getBackStorageAccount()
+                        .setDependencies(appContext, accounts, crypto, cloudAppKeys, textI18n, database);
+            }
         }
     }
 
@@ -229,6 +256,28 @@ public class EncryptedDocuments {
         return encryptedDocuments;
     }
 
+    /**
+     * Returns the encrypted documents whose display name or mime type contains words starting
+     * with each of the words of the given {@code query}.
+     *
+     * @param query        the words to search
+     * @param foldersFirst if true, the folders are listed before the files, otherwise they are mixed
+     * @param orderBy      the criterion used to sort the documents
+     * @param limit        the maximum number of documents to return
+     * @return the list of at most {@code limit} encrypted documents matching the given {@code query}
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public List<EncryptedDocument> search(String query, boolean foldersFirst, OrderBy orderBy, long limit)
+            throws DatabaseConnectionClosedException {
+        List<EncryptedDocument> encryptedDocuments =
+                database.searchEncryptedDocuments(query, foldersFirst, orderBy, limit);
+        for (EncryptedDocument encryptedDocument : encryptedDocuments) {
+            encryptedDocument.setDependencies(crypto, keyManager, fileSystem, textI18n, database);
+            setAccountDependenciesFor(encryptedDocument);
+        }
+        return encryptedDocuments;
+    }
+
     /**
      * Returns the root encrypted document with the given {@code storageType} and {@code account}.
      *
@@ -305,6 +305,9 @@ public abstract class AbstractRemoteDocument
         });
 
         documents.addAll(children);
+        for (D child : children) {
+            getStorage().cacheDocument(child);
+        }
         for (RemoteDocument<S, D> child : children) {
             if (child.isFolder()) {
                 child.getRecursiveChildren(documents, listener);
@@ -45,6 +45,7 @@ import fr.petrus.lib.core.cloud.appkeys.CloudAppKeys;
 import fr.petrus.lib.core.cloud.exceptions.NetworkException;
 import fr.petrus.lib.core.cloud.exceptions.OauthException;
 import fr.petrus.lib.core.cloud.exceptions.RemoteException;
+import fr.petrus.lib.core.cloud.exceptions.UserCanceledException;
 import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
 import fr.petrus.lib.core.rest.models.OauthErrorResponse;
@@ -54,7 +55,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import fr.petrus.lib.core.Constants;
 
@@ -73,6 +86,16 @@ public abstract class AbstractRemoteStorage
 
     private static Logger LOG = LoggerFactory.getLogger(AbstractRemoteStorage.class);
 
+    /**
+     * The numeric names used by the child folders of a remote folder, and the time they were listed,
+     * and the names reserved since then, with the time they were reserved.
+     */
+    private static class ChildFolderIds {
+        private Set<Long> listedIds = new HashSet<>();
+        private long listingTime = 0;
+        private final Map<Long, Long> reservedIds = new HashMap<>();
+    }
+
     /**
      * The Crypto instance, used to perform cryptographic tasks.
      */
@@ -91,6 +114,27 @@ public abstract class AbstractRemoteStorage
     /** The last generated CSRF token. */
     private String csrfToken;
 
+    /** The ids of the accounts which were already resolved, by account name. */
+    private ConcurrentMap<String, Long> accountIds = new ConcurrentHashMap<>();
+
+    /** The token refreshes in progress, by account name. */
+    private ConcurrentMap<String, FutureTask<Account>> tokenRefreshes = new ConcurrentHashMap<>();
+
+    /**
+     * The numeric names used by the child folders of the recently used remote folders, by account
+     * name and folder id. The least recently used folders are evicted.
+     */
+    private final Map<Map.Entry<String, String>, ChildFolderIds> childFolderIds =
+            new LinkedHashMap<Map.Entry<String, String>, ChildFolderIds>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Map.Entry<String, String>, ChildFolderIds> eldest) {
+                    return size() > Constants.STORAGE.CHILD_FOLDER_IDS_CACHE_MAX_SIZE;
+                }
+            };
+
+    /** The metadata of the recently listed or requested documents. */
+    private RemoteDocumentsCache<D> documentsCache;
+
     /**
      * Creates a new RemoteStorage, providing its dependencies.
      *
@@ -103,6 +147,8 @@ public abstract class AbstractRemoteStorage
         this.cloudAppKeys = cloudAppKeys;
         this.accounts = accounts;
         csrfToken = null;
+        documentsCache = new RemoteDocumentsCache<>(Constants.STORAGE.REMOTE_DOCUMENTS_CACHE_MAX_SIZE,
+                Constants.STORAGE.REMOTE_DOCUMENTS_CACHE_TTL_S * 1000L);
     }
 
     @Override
@@ -185,6 +231,7 @@ public abstract class AbstractRemoteStorage
 
     @Override
     public void removeAccount(String accountName) throws DatabaseConnectionClosedException {
+        accountIds.remove(accountName);
         Account account = account(accountName);
         if (null!=account) {
             account.delete();
@@ -197,6 +244,39 @@ public abstract class AbstractRemoteStorage
         return csrfToken;
     }
 
+    /**
+     * Returns the account with the given {@code accountName}.
+     *
+     * <p>Once an account has been found, it is resolved through the {@link Accounts} cache by its id,
+     * so that the database is not queried again for every request.
+     *
+     * @param accountName the account user name
+     * @return the account with the given {@code accountName}, or null if it does not exist
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private Account cachedAccount(String accountName) throws DatabaseConnectionClosedException {
+        Long accountId = accountIds.get(accountName);
+        if (null != accountId) {
+            Account account = accounts.accountWithId(accountId);
+            if (null != account) {
+                return account;
+            }
+            accountIds.remove(accountName, accountId);
+        }
+        Account account = account(accountName);
+        if (null != account) {
+            accountIds.put(accountName, account.getId());
+        }
+        return account;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The access token is renewed a few minutes before it expires. If several threads need to
+     * renew the token of the same account at the same time, only one request is sent, and its
+     * result is shared by all of them.
+     */
     @Override
     public Account refreshedAccount(String accountName)
             throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException {
@@ -204,24 +284,85 @@ public abstract class AbstractRemoteStorage
             throw new RemoteException("Failed to get refreshed token : account name is null",
                     RemoteException.Reason.AccountNameIsNull);
         }
-        Account account = account(accountName);
+        Account account = cachedAccount(accountName);
         if (null == account) {
             throw new RemoteException("Failed to get refreshed token : account not found",
                     RemoteException.Reason.AccountNotFound);
         }
-        if (!account.isAccessTokenExpired()) {
+        if (!account.isAccessTokenExpiringWithin(Constants.STORAGE.ACCESS_TOKEN_RENEWAL_MARGIN_S * 1000L)) {
             return account;
         }
+        boolean expired = account.isAccessTokenExpired();
         if (account.hasTooManyRequests()) {
+            if (!expired) {
+                return account;
+            }
             throw new RemoteException("Too many requests, retry delay not expired yet",
                     RemoteException.Reason.TooManyRequestsDelayNotExpired);
         }
         try {
-            account = refreshToken(accountName);
+            return refreshTokenOnce(accountName);
         } catch (RemoteException e) {
+            if (!expired) {
+                LOG.debug("Failed to renew the access token before it expires", e);
+                return account;
+            }
             throw new RemoteException("Failed to refresh token", e.getReason(), e);
+        } catch (NetworkException e) {
+            if (!expired) {
+                LOG.debug("Failed to renew the access token before it expires", e);
+                return account;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Refreshes the access token of the account with the given {@code accountName}, or waits for
+     * the refresh already in progress for this account, if any.
+     *
+     * @param accountName the account user name
+     * @return the refreshed account
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private Account refreshTokenOnce(final String accountName)
+            throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException {
+        FutureTask<Account> tokenRefresh = new FutureTask<>(new Callable<Account>() {
+            @Override
+            public Account call() throws Exception {
+                return refreshToken(accountName);
+            }
+        });
+        FutureTask<Account> runningTokenRefresh = tokenRefreshes.putIfAbsent(accountName, tokenRefresh);
+        if (null == runningTokenRefresh) {
+            runningTokenRefresh = tokenRefresh;
+            try {
+                tokenRefresh.run();
+            } finally {
+                tokenRefreshes.remove(accountName, tokenRefresh);
+            }
+        }
+        try {
+            return runningTokenRefresh.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NetworkException("Interrupted while refreshing token", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            } else if (cause instanceof NetworkException) {
+                throw (NetworkException) cause;
+            } else if (cause instanceof OauthException) {
+                throw (OauthException) cause;
+            } else if (cause instanceof DatabaseConnectionClosedException) {
+                throw (DatabaseConnectionClosedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new NetworkException("Failed to refresh token", cause);
         }
-        return account;
     }
 
     @Override
@@ -260,6 +401,110 @@ public abstract class AbstractRemoteStorage
         return appFolder;
     }
 
+    @Override
+    public D cachedFolder(String accountName, String id)
+            throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException {
+        D folder = documentsCache.get(accountName, id);
+        if (null == folder || !folder.isFolder()) {
+            folder = folder(accountName, id);
+            documentsCache.put(folder);
+        }
+        return folder;
+    }
+
+    @Override
+    public D cachedFile(String accountName, String id)
+            throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException {
+        D file = documentsCache.get(accountName, id);
+        if (null == file || file.isFolder()) {
+            file = file(accountName, id);
+            documentsCache.put(file);
+        }
+        return file;
+    }
+
+    @Override
+    public long reserveChildFolderId(D folder, long minId)
+            throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException {
+        Map.Entry<String, String> key = new AbstractMap.SimpleImmutableEntry<>(folder.getAccountName(), folder.getId());
+        ChildFolderIds folderIds;
+        synchronized (childFolderIds) {
+            folderIds = childFolderIds.get(key);
+            if (null == folderIds) {
+                folderIds = new ChildFolderIds();
+                childFolderIds.put(key, folderIds);
+            }
+        }
+        synchronized (folderIds) {
+            long now = System.currentTimeMillis();
+            if (folderIds.listingTime + Constants.STORAGE.REMOTE_DOCUMENTS_CACHE_TTL_S * 1000L < now) {
+                Set<Long> listedIds = new HashSet<>();
+                try {
+                    for (D child : folder.childDocuments(null)) {
+                        if (child.isFolder()) {
+                            try {
+                                listedIds.add(Long.parseLong(child.getName()));
+                            } catch (NumberFormatException e) {
+                                LOG.debug("Child folder {} does not have a numeric name", child.getName());
+                            }
+                        }
+                    }
+                } catch (UserCanceledException e) {
+                    LOG.error("Canceled operation : this should not happen", e);
+                }
+                folderIds.listedIds = listedIds;
+                folderIds.listingTime = now;
+                /* keep the reservations of the folders which are still being created */
+                Iterator<Map.Entry<Long, Long>> reservations = folderIds.reservedIds.entrySet().iterator();
+                while (reservations.hasNext()) {
+                    Map.Entry<Long, Long> reservation = reservations.next();
+                    if (listedIds.contains(reservation.getKey()) || reservation.getValue()
+                            + Constants.STORAGE.CHILD_FOLDER_ID_RESERVATION_TTL_S * 1000L < now) {
+                        reservations.remove();
+                    }
+                }
+            }
+            long id = minId;
+            while (folderIds.listedIds.contains(id) || folderIds.reservedIds.containsKey(id)) {
+                id++;
+            }
+            folderIds.reservedIds.put(id, now);
+            return id;
+        }
+    }
+
+    @Override
+    public boolean canMoveFolders() {
+        return true;
+    }
+
+    @Override
+    public boolean hasConsistentChanges() {
+        return true;
+    }
+
+    @Override
+    public void cacheDocument(D document) {
+        documentsCache.put(document);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void cacheChanges(String accountName, RemoteChanges changes) {
+        for (RemoteChange change : changes.getChanges()) {
+            if (change.isDeleted() || null == change.getDocument()) {
+                documentsCache.remove(accountName, change.getDocumentId());
+            } else {
+                documentsCache.put((D) change.getDocument());
+            }
+        }
+    }
+
+    @Override
+    public void uncacheDocument(String accountName, String id) {
+        documentsCache.remove(accountName, id);
+    }
+
     @Override
     public String oauthAuthorizeUrl(boolean mobileVersion) throws RemoteException {
         return oauthAuthorizeUrl(mobileVersion, null);
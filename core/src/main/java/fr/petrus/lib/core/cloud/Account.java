@@ -55,6 +55,7 @@ import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.db.Database;
 import fr.petrus.lib.core.db.DatabaseConstants;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.metrics.Metrics;
 import fr.petrus.lib.core.platform.AppContext;
 import fr.petrus.lib.core.i18n.TextI18n;
 
@@ -63,6 +64,11 @@ import fr.petrus.lib.core.i18n.TextI18n;
  *
  * <p>It also performs various tasks related to account management.
  *
+ * <p>The cached instances are shared between threads : the token fields are only accessed while
+ * holding the lock of the instance, so that a token is never seen with the expiration time or
+ * the refresh token of another one. Code updating several token fields at once should also
+ * hold this lock.
+ *
  * @author Pierre Sagne
  * @since 17.07.2015
  */
@@ -249,6 +255,41 @@ public class Account {
                 account.cloudAppKeys, account.textI18n, account.database);
     }
 
+    /**
+     * Returns the {@code Accounts} instance this account was loaded with.
+     *
+     * @return the {@code Accounts} instance this account was loaded with
+     */
+    public Accounts getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Copies the values persisted in the database from another instance of the same account.
+     *
+     * @param account the other instance of this account, freshly loaded from the database
+     */
+    synchronized void setValuesFrom(Account account) {
+        storageType = account.storageType;
+        accountName = account.accountName;
+        accessToken = account.accessToken;
+        accessTokenExpirationTime = account.accessTokenExpirationTime;
+        refreshToken = account.refreshToken;
+        lastTooManyRequestErrorTime = account.lastTooManyRequestErrorTime;
+        nextRetryDelay = account.nextRetryDelay;
+        rootFolderId = account.rootFolderId;
+        defaultKeyAlias = account.defaultKeyAlias;
+        lastRemoteChangeId = account.lastRemoteChangeId;
+        quotaAmount = account.quotaAmount;
+        quotaUsed = account.quotaUsed;
+        estimatedQuotaUsed = account.estimatedQuotaUsed;
+        changesSyncState = account.changesSyncState;
+        openStackAccessToken = account.openStackAccessToken;
+        openStackAccessTokenExpirationTime = account.openStackAccessTokenExpirationTime;
+        openStackEndPoint = account.openStackEndPoint;
+        openStackAccount = account.openStackAccount;
+    }
+
     /**
      * {@inheritDoc}
      * This implementation returns true if the other object is and an Account instance too,
@@ -345,7 +386,7 @@ public class Account {
      *
      * @param accessToken the access token
      */
-    public void setAccessToken(String accessToken) {
+    public synchronized void setAccessToken(String accessToken) {
         this.accessToken = accessToken;
     }
 
@@ -354,7 +395,7 @@ public class Account {
      *
      * @return the OAuth2 access token
      */
-    public String getAccessToken() {
+    public synchronized String getAccessToken() {
         return accessToken;
     }
 
@@ -363,7 +404,7 @@ public class Account {
      *
      * @return the HTTP auth header based on the access token
      */
-    public String getAuthHeader() {
+    public synchronized String getAuthHeader() {
         return "Bearer "+accessToken;
     }
 
@@ -372,7 +413,7 @@ public class Account {
      *
      * @param accessTokenExpirationTime the OAuth2 access token expiration time (in ms from the epoch)
      */
-    public void setAccessTokenExpirationTime(long accessTokenExpirationTime) {
+    public synchronized void setAccessTokenExpirationTime(long accessTokenExpirationTime) {
         this.accessTokenExpirationTime = accessTokenExpirationTime;
     }
 
@@ -381,7 +422,7 @@ public class Account {
      *
      * @param seconds the OAuth2 access token expiration time (in s from the current time)
      */
-    public void setExpiresInSeconds(int seconds) {
+    public synchronized void setExpiresInSeconds(int seconds) {
         accessTokenExpirationTime = System.currentTimeMillis() + seconds * 1000;
     }
 
@@ -390,7 +431,7 @@ public class Account {
      *
      * @param millis the OAuth2 access token expiration time (in ms from the current time)
      */
-    public void setExpiresInMillis(int millis) {
+    public synchronized void setExpiresInMillis(int millis) {
         accessTokenExpirationTime = System.currentTimeMillis() + millis;
     }
 
@@ -399,7 +440,7 @@ public class Account {
      *
      * @return the OAuth2 access token expiration time (in ms from the epoch)
      */
-    public long getAccessTokenExpirationTime() {
+    public synchronized long getAccessTokenExpirationTime() {
         return accessTokenExpirationTime;
     }
 
@@ -408,16 +449,26 @@ public class Account {
      *
      * @return true if the OAuth2 access token is expired, false otherwise
      */
-    public boolean isAccessTokenExpired() {
+    public synchronized boolean isAccessTokenExpired() {
         return System.currentTimeMillis() >= accessTokenExpirationTime;
     }
 
+    /**
+     * Returns whether the OAuth2 access token will be expired in the given {@code delay}.
+     *
+     * @param delay the delay (in ms from the current time)
+     * @return true if the OAuth2 access token will be expired in the given {@code delay}, false otherwise
+     */
+    public synchronized boolean isAccessTokenExpiringWithin(long delay) {
+        return System.currentTimeMillis() + delay >= accessTokenExpirationTime;
+    }
+
     /**
      * Sets the OAuth2 refresh token.
      *
      * @param refreshToken the OAuth2 refresh token
      */
-    public void setRefreshToken(String refreshToken) {
+    public synchronized void setRefreshToken(String refreshToken) {
         this.refreshToken = refreshToken;
     }
 
@@ -426,7 +477,7 @@ public class Account {
      *
      * @return the OAuth2 refresh token
      */
-    public String getRefreshToken() {
+    public synchronized String getRefreshToken() {
         return refreshToken;
     }
 
@@ -623,7 +674,7 @@ public class Account {
      *
      * @param openStackAccessToken the OpenStack access token of this account
      */
-    public void setOpenStackAccessToken(String openStackAccessToken) {
+    public synchronized void setOpenStackAccessToken(String openStackAccessToken) {
         this.openStackAccessToken = openStackAccessToken;
     }
 
@@ -632,7 +683,7 @@ public class Account {
      *
      * @return the OpenStack access token of this account
      */
-    public String getOpenStackAccessToken() {
+    public synchronized String getOpenStackAccessToken() {
         return openStackAccessToken;
     }
 
@@ -641,7 +692,7 @@ public class Account {
      *
      * @param openStackEndPoint the OpenStack endpoint of this account
      */
-    public void setOpenStackEndPoint(String openStackEndPoint) {
+    public synchronized void setOpenStackEndPoint(String openStackEndPoint) {
         this.openStackEndPoint = openStackEndPoint;
     }
 
@@ -650,7 +701,7 @@ public class Account {
      *
      * @return the OpenStack endpoint of this account
      */
-    public String getOpenStackEndPoint() {
+    public synchronized String getOpenStackEndPoint() {
         return openStackEndPoint;
     }
 
@@ -659,7 +710,7 @@ public class Account {
      *
      * @param openStackAccount the OpenStack user name of this account
      */
-    public void setOpenStackAccount(String openStackAccount) {
+    public synchronized void setOpenStackAccount(String openStackAccount) {
         this.openStackAccount = openStackAccount;
     }
 
@@ -668,7 +719,7 @@ public class Account {
      *
      * @return the OpenStack user name of this account
      */
-    public String getOpenStackAccount() {
+    public synchronized String getOpenStackAccount() {
         return openStackAccount;
     }
 
@@ -677,7 +728,7 @@ public class Account {
      *
      * @param openStackAccessTokenExpirationTime the OpenStack access token expiration time (in ms from the epoch) of this account
      */
-    public void setOpenStackAccessTokenExpirationTime(long openStackAccessTokenExpirationTime) {
+    public synchronized void setOpenStackAccessTokenExpirationTime(long openStackAccessTokenExpirationTime) {
         this.openStackAccessTokenExpirationTime = openStackAccessTokenExpirationTime;
     }
 
@@ -686,7 +737,7 @@ public class Account {
      *
      * @return the OpenStack access token expiration time (in ms from the epoch) of this account
      */
-    public long getOpenStackAccessTokenExpirationTime() {
+    public synchronized long getOpenStackAccessTokenExpirationTime() {
         return openStackAccessTokenExpirationTime;
     }
 
@@ -695,7 +746,7 @@ public class Account {
      *
      * @return true if the OpenStack access token is expired, false otherwise
      */
-    public boolean isOpenStackAccessTokenExpired() {
+    public synchronized boolean isOpenStackAccessTokenExpired() {
         return System.currentTimeMillis() >= openStackAccessTokenExpirationTime;
     }
 
@@ -738,6 +789,8 @@ public class Account {
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
     public void notifyTooManyRequests() throws DatabaseConnectionClosedException {
+        Metrics.counter("sync.too_many_requests").inc();
+
         /** set the current time as the last "Too Many Requests" error time */
         setLastTooManyRequestErrorTime(System.currentTimeMillis());
 
@@ -814,6 +867,9 @@ public class Account {
     public void updateChangesSyncState(State state) throws DatabaseConnectionClosedException {
         setChangesSyncState(state);
         database.updateAccountChangesSyncState(getId(), getChangesSyncState());
+        if (null!=accounts) {
+            accounts.onAccountUpdated(this);
+        }
     }
 
     /**
@@ -822,7 +878,12 @@ public class Account {
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
     public void update() throws DatabaseConnectionClosedException {
-        database.updateAccount(this);
+        synchronized (this) {
+            database.updateAccount(this);
+        }
+        if (null!=accounts) {
+            accounts.onAccountUpdated(this);
+        }
     }
 
     /**
@@ -830,7 +891,7 @@ public class Account {
      *
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
-    public void refresh() throws DatabaseConnectionClosedException {
+    public synchronized void refresh() throws DatabaseConnectionClosedException {
         database.refreshAccount(this);
     }
 
@@ -841,6 +902,9 @@ public class Account {
      */
     public void delete() throws DatabaseConnectionClosedException {
         database.deleteAccount(this);
+        if (null!=accounts) {
+            accounts.onAccountDeleted(this);
+        }
     }
 
     /**
@@ -39,6 +39,8 @@ package fr.petrus.lib.core.cloud;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -61,6 +63,11 @@ import fr.petrus.lib.core.i18n.TextI18n;
 /**
  * This class is used to retrieve accounts.
  *
+ * <p>The accounts returned by this class are identity-mapped : as long as an account is not deleted,
+ * all the accounts returned for a given database id are the same instance. This way, the accounts
+ * referenced by many {@link EncryptedDocument}s are only loaded once from the database, and changes
+ * made to an account (tokens, quota, sync state...) are immediately visible to all its users.
+ *
  * @author Pierre Sagne
  * @since 19.03.2016
  */
@@ -76,6 +83,9 @@ public class Accounts {
 
     private Lock syncLock = null;
 
+    /** The accounts already loaded from the database, mapped by their database id */
+    private ConcurrentMap<Long, Account> cachedAccounts = new ConcurrentHashMap<>();
+
     /**
      * Creates a new Accounts instance with default values.
      *
@@ -106,6 +116,80 @@ public class Accounts {
         this.cloudAppKeys = appContext.getCloudAppKeys();
         this.textI18n = appContext.getTextI18n();
         this.encryptedDocuments = appContext.getEncryptedDocuments();
+        clearCache();
+    }
+
+    /**
+     * Forgets all the accounts cached by this instance.
+     *
+     * <p>This method should be called when the underlying database is closed, locked or replaced.
+     */
+    public void clearCache() {
+        cachedAccounts.clear();
+    }
+
+    /**
+     * Returns the cached instance of the given freshly loaded {@code account}, caching it
+     * (after setting its dependencies) if no instance with the same id was cached yet.
+     *
+     * <p>If an instance was already cached, the values of the freshly loaded {@code account}
+     * are copied into it, so that it reflects the database.
+     *
+     * @param account the account freshly loaded from the database
+     * @return the cached instance of the account
+     */
+    private Account cached(Account account) {
+        Account cachedAccount = cachedAccounts.get(account.getId());
+        if (null!=cachedAccount) {
+            cachedAccount.setValuesFrom(account);
+            return cachedAccount;
+        }
+        account.setDependencies(appContext, this, crypto, cloudAppKeys, textI18n, database);
+        cachedAccount = cachedAccounts.putIfAbsent(account.getId(), account);
+        if (null!=cachedAccount) {
+            cachedAccount.setValuesFrom(account);
+            return cachedAccount;
+        }
+        return account;
+    }
+
+    /**
+     * Returns the cached instance of the given {@code accounts}.
+     *
+     * @param accounts the accounts freshly loaded from the database
+     * @return a list containing the cached instances of the accounts
+     */
+    private List<Account> cached(List<Account> accounts) {
+        List<Account> cachedAccounts = new ArrayList<>();
+        for (Account account : accounts) {
+            cachedAccounts.add(cached(account));
+        }
+        return cachedAccounts;
+    }
+
+    /**
+     * Notifies this instance that the given {@code account} has been persisted to the database.
+     *
+     * <p>If another instance with the same id is cached, it is refreshed so that it stays in sync
+     * with the database.
+     *
+     * @param account the account which was persisted to the database
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    void onAccountUpdated(Account account) throws DatabaseConnectionClosedException {
+        Account cachedAccount = cachedAccounts.get(account.getId());
+        if (null!=cachedAccount && cachedAccount!=account) {
+            cachedAccount.refresh();
+        }
+    }
+
+    /**
+     * Notifies this instance that the given {@code account} has been deleted from the database.
+     *
+     * @param account the account which was deleted from the database
+     */
+    void onAccountDeleted(Account account) {
+        cachedAccounts.remove(account.getId());
     }
 
     /**
@@ -153,6 +237,7 @@ public class Accounts {
             account.setDependencies(appContext, this, crypto, cloudAppKeys, textI18n, database);
             account.setDefaultKeyAlias(keyAlias);
             account.update();
+            account = cached(account);
         } catch (RemoteException e) {
             throw new RemoteException("Could not add account", e.getReason(), e);
         }
@@ -187,6 +272,7 @@ public class Accounts {
      */
     public void add(Account account) throws DatabaseConnectionClosedException {
         account.add();
+        cached(account);
     }
 
     /**
@@ -206,13 +292,8 @@ public class Accounts {
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
     public List<Account> allAccounts() throws DatabaseConnectionClosedException {
-        /* Get the accounts */
-        List<Account> accounts = database.getAllAccounts();
-        /* Set their dependencies before returning them */
-        for (Account account : accounts) {
-            account.setDependencies(appContext, this, crypto, cloudAppKeys, textI18n, database);
-        }
-        return accounts;
+        /* Get the accounts, and return their cached instances */
+        return cached(database.getAllAccounts());
     }
 
     /**
@@ -223,13 +304,8 @@ public class Accounts {
      * @throws DatabaseConnectionClosedException if the database connection closed exception
      */
     public List<Account> accountsWithChangesSyncState(State state) throws DatabaseConnectionClosedException {
-        /* Get the accounts */
-        List<Account> accounts = database.getAccountsByChangesSyncState(state);
-        /* Set their dependencies before returning them */
-        for (Account account : accounts) {
-            account.setDependencies(appContext, this, crypto, cloudAppKeys, textI18n, database);
-        }
-        return accounts;
+        /* Get the accounts, and return their cached instances */
+        return cached(database.getAccountsByChangesSyncState(state));
     }
 
     /**
@@ -254,9 +330,9 @@ public class Accounts {
     public Account accountWithTypeAndName(StorageType storageType, String accountName) throws DatabaseConnectionClosedException {
         /* Get the accounts */
         Account account = database.getAccountByTypeAndName(storageType, accountName);
-        /* Set its dependencies before returning it */
+        /* Return its cached instance */
         if (null!=account) {
-            account.setDependencies(appContext, this, crypto, cloudAppKeys, textI18n, database);
+            account = cached(account);
         }
         return account;
     }
@@ -269,11 +345,16 @@ public class Accounts {
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
     public Account accountWithId(long id) throws DatabaseConnectionClosedException {
+        /* Look for the account in the cache first */
+        Account account = cachedAccounts.get(id);
+        if (null!=account) {
+            return account;
+        }
         /* Get the account */
-        Account account = database.getAccountById(id);
-        /* Set its dependencies before returning it */
+        account = database.getAccountById(id);
+        /* Return its cached instance */
         if (null!=account) {
-            account.setDependencies(appContext, this, crypto, cloudAppKeys, textI18n, database);
+            account = cached(account);
         }
         return account;
     }
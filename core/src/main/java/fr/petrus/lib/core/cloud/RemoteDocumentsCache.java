@@ -0,0 +1,136 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.cloud;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of remote documents metadata, keyed by account name and remote id.
+ *
+ * <p>The entries expire after a given delay, and the least recently used entries are evicted when
+ * the cache is full. This class is thread safe.
+ *
+ * @param <D> the {@link RemoteDocument} implementation
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class RemoteDocumentsCache<D extends RemoteDocument<?, D>> {
+
+    private static class CachedDocument<D> {
+        private final D document;
+        private final long expirationTime;
+
+        private CachedDocument(D document, long expirationTime) {
+            this.document = document;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private final long timeToLive;
+    private final LinkedHashMap<Map.Entry<String, String>, CachedDocument<D>> cachedDocuments;
+
+    /**
+     * Creates a new empty {@code RemoteDocumentsCache}.
+     *
+     * @param maxSize    the maximum number of documents to keep
+     * @param timeToLive the delay (in ms) after which a cached document expires
+     */
+    public RemoteDocumentsCache(final int maxSize, long timeToLive) {
+        this.timeToLive = timeToLive;
+        cachedDocuments = new LinkedHashMap<Map.Entry<String, String>, CachedDocument<D>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Map.Entry<String, String>, CachedDocument<D>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static Map.Entry<String, String> key(String accountName, String id) {
+        return new AbstractMap.SimpleImmutableEntry<>(accountName, id);
+    }
+
+    /**
+     * Returns the cached document with the given {@code id}, if it has not expired yet.
+     *
+     * @param accountName the account user name
+     * @param id          the document remote id
+     * @return the cached document, or null if it is not cached or has expired
+     */
+    public synchronized D get(String accountName, String id) {
+        Map.Entry<String, String> key = key(accountName, id);
+        CachedDocument<D> cachedDocument = cachedDocuments.get(key);
+        if (null == cachedDocument) {
+            return null;
+        }
+        if (cachedDocument.expirationTime < System.currentTimeMillis()) {
+            cachedDocuments.remove(key);
+            return null;
+        }
+        return cachedDocument.document;
+    }
+
+    /**
+     * Adds the given {@code document} to this cache, replacing any previous version of it.
+     *
+     * @param document the document to cache
+     */
+    public synchronized void put(D document) {
+        if (null != document && null != document.getId()) {
+            cachedDocuments.put(key(document.getAccountName(), document.getId()),
+                    new CachedDocument<>(document, System.currentTimeMillis() + timeToLive));
+        }
+    }
+
+    /**
+     * Removes the document with the given {@code id} from this cache.
+     *
+     * @param accountName the account user name
+     * @param id          the document remote id
+     */
+    public synchronized void remove(String accountName, String id) {
+        cachedDocuments.remove(key(accountName, id));
+    }
+
+    /**
+     * Removes all the documents of this cache.
+     */
+    public synchronized void clear() {
+        cachedDocuments.clear();
+    }
+}
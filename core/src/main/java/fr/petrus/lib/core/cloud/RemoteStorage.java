@@ -273,6 +273,70 @@ public interface RemoteStorage<S extends RemoteStorage<S, D>, D extends RemoteDo
      */
     D file(String accountName, String id) throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException;
 
+    /**
+     * Returns the folder with the provided remote id, from the metadata cache if it was listed or
+     * requested recently, or requests it otherwise.
+     *
+     * @param accountName the account user name
+     * @param id          the folder remote id
+     * @return the folder
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    D cachedFolder(String accountName, String id) throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException;
+
+    /**
+     * Returns the file with the provided remote id, from the metadata cache if it was listed or
+     * requested recently, or requests it otherwise.
+     *
+     * @param accountName the account user name
+     * @param id          the file remote id
+     * @return the file
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    D cachedFile(String accountName, String id) throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException;
+
+    /**
+     * Reserves a numeric name for a new child folder of the given {@code folder}, which is not used
+     * yet by any of its children.
+     *
+     * <p>The children of the folder are listed once, then the used names are kept in memory and
+     * updated with each reservation, until the listing expires. The reserved names are kept when
+     * the folder is listed again, until they appear in the listing or their reservation expires.
+     *
+     * @param folder the folder where the child folder will be created
+     * @param minId  the minimum numeric name to return
+     * @return the smallest numeric name which is greater than or equal to {@code minId} and not used yet
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    long reserveChildFolderId(D folder, long minId) throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException;
+
+    /**
+     * Stores the given {@code document} into the metadata cache.
+     *
+     * @param document the document to cache
+     */
+    void cacheDocument(D document);
+
+    /**
+     * Updates the metadata cache with the given {@code changes} : modified documents are cached,
+     * deleted documents are removed from the cache.
+     *
+     * @param accountName the account user name
+     * @param changes     the changes returned by {@link #changes}
+     */
+    void cacheChanges(String accountName, RemoteChanges changes);
+
+    /**
+     * Removes the document with the provided remote id from the metadata cache.
+     *
+     * @param accountName the account user name
+     * @param id          the document remote id
+     */
+    void uncacheDocument(String accountName, String id);
+
     /**
      * Accesses the account matching the user name, and returns the folder with the provided remote id.
      *
@@ -327,4 +391,52 @@ public interface RemoteStorage<S extends RemoteStorage<S, D>, D extends RemoteDo
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
     void deleteFolder(String accountName, String id) throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException;
+
+    /**
+     * Sends a request to move a remote file into another folder of the same account, without
+     * transferring its contents.
+     *
+     * @param accountName the account user name
+     * @param id          the file remote id
+     * @param newParentId the remote id of the destination folder
+     * @return the moved file (its remote id may have changed)
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    D moveFile(String accountName, String id, String newParentId) throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException;
+
+    /**
+     * Sends a request to move a remote folder, with all its contents, into another folder of the
+     * same account, and rename it.
+     *
+     * <p>If the remote storage cannot move folders, a {@code RemoteException} is thrown, with the
+     * {@link RemoteException.Reason#NotSupported} reason.
+     *
+     * @param accountName the account user name
+     * @param id          the folder remote id
+     * @param newParentId the remote id of the destination folder
+     * @param newName     the new name of the folder
+     * @return the moved folder (its remote id may have changed)
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    D moveFolder(String accountName, String id, String newParentId, String newName) throws RemoteException, DatabaseConnectionClosedException, NetworkException, OauthException;
+
+    /**
+     * Returns whether this storage can move folders with {@link #moveFolder}.
+     *
+     * @return true if this storage can move folders
+     */
+    boolean canMoveFolders();
+
+    /**
+     * Returns whether the documents listed by a full {@link #changes} request always include the
+     * documents which were just created or modified.
+     *
+     * <p>If not, a document missing from such a listing may still exist, and should be confirmed
+     * missing with a metadata request before being considered as deleted.
+     *
+     * @return true if the full changes listing of this storage is immediately consistent
+     */
+    boolean hasConsistentChanges();
 }
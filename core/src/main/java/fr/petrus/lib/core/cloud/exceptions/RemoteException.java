@@ -75,6 +75,7 @@ public class RemoteException extends Exception {
         TooManyRequestsDelayNotExpired,
         NotAFolder,
         NotAFile,
+        NotSupported,
         //none of the others
         UnknownError
     }
@@ -76,6 +76,7 @@ import fr.petrus.lib.core.cloud.RemoteChanges;
 import fr.petrus.lib.core.StorageType;
 import fr.petrus.lib.core.rest.models.box.BoxItem;
 import fr.petrus.lib.core.rest.models.box.BoxUser;
+import fr.petrus.lib.core.rest.models.box.NewItemArg;
 import fr.petrus.lib.core.rest.models.OauthTokenResponse;
 import fr.petrus.lib.core.rest.services.box.BoxApiService;
 import fr.petrus.lib.core.rest.services.box.BoxRestClient;
@@ -296,16 +297,18 @@ public class BoxStorage extends AbstractRemoteStorage<BoxStorage, BoxDocument> {
             Response<OauthTokenResponse> response = apiService.getOauthToken(params).execute();
             if (response.isSuccessful()) {
                 OauthTokenResponse oauthTokenResponse = response.body();
-                if (null != oauthTokenResponse.access_token) {
-                    account.setAccessToken(oauthTokenResponse.access_token);
-                }
-                if (null != oauthTokenResponse.expires_in) {
-                    account.setExpiresInSeconds(oauthTokenResponse.expires_in);
-                }
-                if (null != oauthTokenResponse.refresh_token) {
-                    account.setRefreshToken(oauthTokenResponse.refresh_token);
+                synchronized (account) {
+                    if (null != oauthTokenResponse.access_token) {
+                        account.setAccessToken(oauthTokenResponse.access_token);
+                    }
+                    if (null != oauthTokenResponse.expires_in) {
+                        account.setExpiresInSeconds(oauthTokenResponse.expires_in);
+                    }
+                    if (null != oauthTokenResponse.refresh_token) {
+                        account.setRefreshToken(oauthTokenResponse.refresh_token);
+                    }
+                    account.update();
                 }
-                account.update();
 
                 return account;
             } else {
@@ -589,4 +592,49 @@ public class BoxStorage extends AbstractRemoteStorage<BoxStorage, BoxDocument> {
             throw new NetworkException("Failed to delete file", e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public BoxDocument moveFile(String accountName, String id, String newParentId)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = refreshedAccount(accountName);
+        try {
+            Response<BoxItem> response = apiService.moveFile(account.getAuthHeader(), id,
+                    new NewItemArg(null, newParentId)).execute();
+            if (response.isSuccessful()) {
+                return new BoxDocument(this, accountName, response.body());
+            } else {
+                throw remoteException(account, response, "Failed to move file");
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new NetworkException("Failed to move file", e);
+        }
+    }
+
+    @Override
+    public BoxDocument moveFolder(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = refreshedAccount(accountName);
+        try {
+            Response<BoxItem> response = apiService.moveFolder(account.getAuthHeader(), id,
+                    new NewItemArg(newName, newParentId)).execute();
+            if (response.isSuccessful()) {
+                return new BoxDocument(this, accountName, response.body());
+            } else {
+                throw remoteException(account, response, "Failed to move folder");
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new NetworkException("Failed to move folder", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Box changes are listed with a search request, and the Box search index is only eventually
+     * consistent : recently uploaded documents may be missing from the results.
+     */
+    @Override
+    public boolean hasConsistentChanges() {
+        return false;
+    }
+}
@@ -71,11 +71,13 @@ import fr.petrus.lib.core.cloud.RemoteChanges;
 import fr.petrus.lib.core.StorageType;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxFolderResult;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxMetadata;
+import fr.petrus.lib.core.rest.models.dropbox.DropboxRelocationResult;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxSpaceUsage;
 import fr.petrus.lib.core.rest.models.dropbox.GetMetadataArg;
 import fr.petrus.lib.core.rest.models.dropbox.ListFolderArg;
 import fr.petrus.lib.core.rest.models.dropbox.ListFolderContinueArg;
 import fr.petrus.lib.core.rest.models.dropbox.PathArg;
+import fr.petrus.lib.core.rest.models.dropbox.RelocationArg;
 import fr.petrus.lib.core.rest.models.dropbox.error.DropboxError;
 import fr.petrus.lib.core.rest.models.OauthTokenResponse;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxUser;
@@ -580,4 +582,55 @@ public class DropboxStorage extends AbstractRemoteStorage<DropboxStorage, Dropbo
             throw new NetworkException("Failed to delete document", e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public DropboxDocument moveFile(String accountName, String id, String newParentId)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, null);
+    }
+
+    @Override
+    public DropboxDocument moveFolder(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, newName);
+    }
+
+    /**
+     * Sends a request to move a remote document into another folder.
+     *
+     * @param accountName the account user name
+     * @param id          the id of the document to move
+     * @param newParentId the id of the destination folder
+     * @param newName     the new name of the document, or null to keep its current name
+     * @return the moved document
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public DropboxDocument moveDocument(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = refreshedAccount(accountName);
+        try {
+            Response<DropboxMetadata> response = apiService.getMetadata(account.getAuthHeader(), new GetMetadataArg(id)).execute();
+            if (!response.isSuccessful()) {
+                throw remoteException(account, response, "Failed to move document");
+            }
+            DropboxMetadata metadata = response.body();
+            Response<DropboxMetadata> parentResponse = apiService.getMetadata(account.getAuthHeader(),
+                    new GetMetadataArg(newParentId)).execute();
+            if (!parentResponse.isSuccessful()) {
+                throw remoteException(account, parentResponse, "Failed to move document");
+            }
+            String name = null == newName ? metadata.name : newName;
+            Response<DropboxRelocationResult> moveResponse = apiService.move(account.getAuthHeader(),
+                    new RelocationArg(metadata.path_lower, parentResponse.body().path_lower + "/" + name)).execute();
+            if (!moveResponse.isSuccessful()) {
+                throw remoteException(account, moveResponse, "Failed to move document");
+            }
+            DropboxDocument document = new DropboxDocument(this, accountName, moveResponse.body().metadata);
+            document.setParentId(newParentId);
+            return document;
+        } catch (IOException | RuntimeException e) {
+            throw new NetworkException("Failed to move document", e);
+        }
+    }
+}
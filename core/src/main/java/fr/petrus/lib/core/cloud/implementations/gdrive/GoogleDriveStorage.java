@@ -81,6 +81,7 @@ import fr.petrus.lib.core.rest.services.gdrive.GoogleDriveAccountsApiService;
 import fr.petrus.lib.core.rest.models.OauthTokenResponse;
 import fr.petrus.lib.core.rest.models.gdrive.GoogleDriveAbout;
 import fr.petrus.lib.core.rest.models.gdrive.GoogleDriveItem;
+import fr.petrus.lib.core.rest.models.gdrive.NewItemArg;
 import fr.petrus.lib.core.rest.services.gdrive.GoogleDriveApiService;
 import fr.petrus.lib.core.rest.services.gdrive.GoogleDriveRestClient;
 import fr.petrus.lib.core.result.ProcessProgressListener;
@@ -336,16 +337,18 @@ public class GoogleDriveStorage
             Response<OauthTokenResponse> response = apiService.getOauthToken(params).execute();
             if (response.isSuccessful()) {
                 OauthTokenResponse oauthTokenResponse = response.body();
-                if (null!=oauthTokenResponse.access_token) {
-                    account.setAccessToken(oauthTokenResponse.access_token);
-                }
-                if (null!=oauthTokenResponse.expires_in) {
-                    account.setExpiresInSeconds(oauthTokenResponse.expires_in);
-                }
-                if (null!=oauthTokenResponse.refresh_token) {
-                    account.setRefreshToken(oauthTokenResponse.refresh_token);
+                synchronized (account) {
+                    if (null!=oauthTokenResponse.access_token) {
+                        account.setAccessToken(oauthTokenResponse.access_token);
+                    }
+                    if (null!=oauthTokenResponse.expires_in) {
+                        account.setExpiresInSeconds(oauthTokenResponse.expires_in);
+                    }
+                    if (null!=oauthTokenResponse.refresh_token) {
+                        account.setRefreshToken(oauthTokenResponse.refresh_token);
+                    }
+                    account.update();
                 }
-                account.update();
 
                 return account;
             } else {
@@ -728,4 +731,55 @@ public class GoogleDriveStorage
             throw new NetworkException("Failed to delete document", e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public GoogleDriveDocument moveFile(String accountName, String id, String newParentId)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, null);
+    }
+
+    @Override
+    public GoogleDriveDocument moveFolder(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, newName);
+    }
+
+    /**
+     * Sends a request to move a remote document into another folder, replacing all its parents.
+     *
+     * @param accountName the account user name
+     * @param id          the id of the document to move
+     * @param newParentId the id of the destination folder
+     * @param newName     the new name of the document, or null to keep its current name
+     * @return the moved document
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public GoogleDriveDocument moveDocument(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        GoogleDriveDocument document = document(accountName, id);
+        StringBuilder removedParents = new StringBuilder();
+        for (String parentId : document.getParentIds()) {
+            if (!parentId.equals(newParentId)) {
+                if (removedParents.length() > 0) {
+                    removedParents.append(",");
+                }
+                removedParents.append(parentId);
+            }
+        }
+        NewItemArg body = new NewItemArg();
+        body.title = newName;
+        Account account = refreshedAccount(accountName);
+        try {
+            Response<GoogleDriveItem> response = apiService.moveItem(account.getAuthHeader(), id,
+                    newParentId, removedParents.toString(), body).execute();
+            if (response.isSuccessful()) {
+                return new GoogleDriveDocument(this, accountName, response.body());
+            } else {
+                throw remoteException(account, response, "Failed to move document");
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new NetworkException("Failed to move document", e);
+        }
+    }
+}
@@ -55,6 +55,7 @@ import fr.petrus.lib.core.cloud.exceptions.UserCanceledException;
 import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
 import fr.petrus.lib.core.rest.models.hubic.HubicAccountUsage;
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 
@@ -289,16 +290,18 @@ public class HubicStorage extends AbstractRemoteStorage<HubicStorage, HubicDocum
             Response<OauthTokenResponse> response = apiService.getOauthToken(params).execute();
             if (response.isSuccessful()) {
                 OauthTokenResponse oauthTokenResponse = response.body();
-                if (null!=oauthTokenResponse.access_token) {
-                    account.setAccessToken(oauthTokenResponse.access_token);
-                }
-                if (null!=oauthTokenResponse.expires_in) {
-                    account.setExpiresInMillis(oauthTokenResponse.expires_in);
-                }
-                if (null!=oauthTokenResponse.refresh_token) {
-                    account.setRefreshToken(oauthTokenResponse.refresh_token);
+                synchronized (account) {
+                    if (null!=oauthTokenResponse.access_token) {
+                        account.setAccessToken(oauthTokenResponse.access_token);
+                    }
+                    if (null!=oauthTokenResponse.expires_in) {
+                        account.setExpiresInMillis(oauthTokenResponse.expires_in);
+                    }
+                    if (null!=oauthTokenResponse.refresh_token) {
+                        account.setRefreshToken(oauthTokenResponse.refresh_token);
+                    }
+                    account.update();
                 }
-                account.update();
 
                 return account;
             } else {
@@ -334,29 +337,31 @@ public class HubicStorage extends AbstractRemoteStorage<HubicStorage, HubicDocum
             Response<HubicOpenStackCredentials> response = apiService.getOpenStackCredentials(account.getAuthHeader()).execute();
             if (response.isSuccessful()) {
                 HubicOpenStackCredentials hubicOpenStackCredentials = response.body();
-                if (null != hubicOpenStackCredentials.token) {
-                    account.setOpenStackAccessToken(hubicOpenStackCredentials.token);
-                }
-                if (null != hubicOpenStackCredentials.expires) {
-                    LOG.debug("OpenStack expires : {}", hubicOpenStackCredentials.expires);
-                    DateTime dateTime = new DateTime(hubicOpenStackCredentials.expires);
-                    Long expiresUtc = dateTime.toDate().getTime();
-                    account.setOpenStackAccessTokenExpirationTime(expiresUtc);
-                    LOG.debug("Openstack credentials expire in {} seconds.",
-                    (expiresUtc - System.currentTimeMillis())/1000);
-                }
-                if (null != hubicOpenStackCredentials.endpoint) {
-                    LOG.debug("OpenStack endpoint : {}", hubicOpenStackCredentials.endpoint);
-                    URL hubicOpenStackEndPointUrl = new URL(hubicOpenStackCredentials.endpoint);
-                    URL endPointUrl = new URL(hubicOpenStackEndPointUrl.getProtocol(),
-                            hubicOpenStackEndPointUrl.getHost(), hubicOpenStackEndPointUrl.getPort(), "/");
-                    account.setOpenStackEndPoint(endPointUrl.toString());
-                    File urlFile = new File(hubicOpenStackEndPointUrl.getFile());
-                    account.setOpenStackAccount(urlFile.getName());
-                    LOG.debug("OpenStack base endpoint : {}", account.getOpenStackEndPoint());
-                    LOG.debug("OpenStack account : {}", account.getOpenStackAccount());
+                synchronized (account) {
+                    if (null != hubicOpenStackCredentials.token) {
+                        account.setOpenStackAccessToken(hubicOpenStackCredentials.token);
+                    }
+                    if (null != hubicOpenStackCredentials.expires) {
+                        LOG.debug("OpenStack expires : {}", hubicOpenStackCredentials.expires);
+                        DateTime dateTime = new DateTime(hubicOpenStackCredentials.expires);
+                        Long expiresUtc = dateTime.toDate().getTime();
+                        account.setOpenStackAccessTokenExpirationTime(expiresUtc);
+                        LOG.debug("Openstack credentials expire in {} seconds.",
+                        (expiresUtc - System.currentTimeMillis())/1000);
+                    }
+                    if (null != hubicOpenStackCredentials.endpoint) {
+                        LOG.debug("OpenStack endpoint : {}", hubicOpenStackCredentials.endpoint);
+                        URL hubicOpenStackEndPointUrl = new URL(hubicOpenStackCredentials.endpoint);
+                        URL endPointUrl = new URL(hubicOpenStackEndPointUrl.getProtocol(),
+                                hubicOpenStackEndPointUrl.getHost(), hubicOpenStackEndPointUrl.getPort(), "/");
+                        account.setOpenStackEndPoint(endPointUrl.toString());
+                        File urlFile = new File(hubicOpenStackEndPointUrl.getFile());
+                        account.setOpenStackAccount(urlFile.getName());
+                        LOG.debug("OpenStack base endpoint : {}", account.getOpenStackEndPoint());
+                        LOG.debug("OpenStack account : {}", account.getOpenStackAccount());
+                    }
+                    account.update();
                 }
-                account.update();
 
                 return account;
             } else {
@@ -623,4 +628,77 @@ public class HubicStorage extends AbstractRemoteStorage<HubicStorage, HubicDocum
             throw new NetworkException("Failed to delete file", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>OpenStack has no move operation : the file is copied on the server side to its new path,
+     * then the old one is deleted. Once the copy has succeeded, the file is considered as moved,
+     * even if the old one cannot be deleted.
+     */
+    @Override
+    public HubicDocument moveFile(String accountName, String path, String newParentPath)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        String oldPath = StringUtils.trimSlashes(path);
+        String newPath = StringUtils.trimSlashes(newParentPath) + "/" + new File(oldPath).getName();
+        Account account = getRefreshedOpenStackAccount(accountName);
+        OpenStackApiService openStackApiService = getOpenStackApiService(account);
+        try {
+            Response<ResponseBody> response = openStackApiService.copyDocument(
+                    account.getOpenStackAccessToken(),
+                    account.getOpenStackAccount(),
+                    Constants.HUBIC.OPENSTACK_CONTAINER,
+                    newPath,
+                    Constants.HUBIC.OPENSTACK_CONTAINER + "/" + oldPath,
+                    RequestBody.create(null, new byte[0])).execute();
+            if (!response.isSuccessful()) {
+                throw remoteException(account, response, "Failed to move file");
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new NetworkException("Failed to move file", e);
+        }
+        deleteMovedFile(accountName, oldPath);
+        return file(accountName, newPath);
+    }
+
+    /**
+     * Deletes the old copy of a moved file, retrying a few times if it fails.
+     *
+     * <p>If it still cannot be deleted, the error is logged and the stale copy is left in place.
+     *
+     * @param accountName the account user name
+     * @param path        the path of the old copy of the moved file
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void deleteMovedFile(String accountName, String path) throws DatabaseConnectionClosedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                deleteFile(accountName, path);
+                return;
+            } catch (RemoteException | NetworkException | OauthException e) {
+                if (attempt >= Constants.HUBIC.MOVED_FILE_DELETE_ATTEMPTS) {
+                    LOG.error("Failed to delete the old copy \"{}\" of a moved file", path, e);
+                    return;
+                }
+                LOG.warn("Failed to delete the old copy \"{}\" of a moved file, retrying", path, e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>HubiC folders are only virtual path prefixes, so they cannot be moved in a single operation.
+     */
+    @Override
+    public HubicDocument moveFolder(String accountName, String path, String newParentPath, String newName)
+            throws RemoteException {
+        throw new RemoteException("Failed to move folder : HubiC folders cannot be moved",
+                RemoteException.Reason.NotSupported);
+    }
+
+    @Override
+    public boolean canMoveFolders() {
+        return false;
+    }
+}
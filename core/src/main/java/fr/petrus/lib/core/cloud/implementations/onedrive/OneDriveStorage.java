@@ -65,6 +65,7 @@ import fr.petrus.lib.core.cloud.RemoteChange;
 import fr.petrus.lib.core.cloud.RemoteChanges;
 import fr.petrus.lib.core.StorageType;
 import fr.petrus.lib.core.rest.models.OauthTokenResponse;
+import fr.petrus.lib.core.rest.models.onedrive.MoveItemArg;
 import fr.petrus.lib.core.rest.models.onedrive.OneDriveAbout;
 import fr.petrus.lib.core.rest.models.onedrive.OneDriveDelta;
 import fr.petrus.lib.core.rest.models.onedrive.OneDriveItem;
@@ -307,16 +308,18 @@ public class OneDriveStorage extends AbstractRemoteStorage<OneDriveStorage, OneD
             Response<OauthTokenResponse> response = oauthApiService.getOauthToken(params).execute();
             if (response.isSuccessful()) {
                 OauthTokenResponse oauthTokenResponse = response.body();
-                if (null!=oauthTokenResponse.access_token) {
-                    account.setAccessToken(oauthTokenResponse.access_token);
-                }
-                if (null!=oauthTokenResponse.expires_in) {
-                    account.setExpiresInSeconds(oauthTokenResponse.expires_in);
-                }
-                if (null!=oauthTokenResponse.refresh_token) {
-                    account.setRefreshToken(oauthTokenResponse.refresh_token);
+                synchronized (account) {
+                    if (null!=oauthTokenResponse.access_token) {
+                        account.setAccessToken(oauthTokenResponse.access_token);
+                    }
+                    if (null!=oauthTokenResponse.expires_in) {
+                        account.setExpiresInSeconds(oauthTokenResponse.expires_in);
+                    }
+                    if (null!=oauthTokenResponse.refresh_token) {
+                        account.setRefreshToken(oauthTokenResponse.refresh_token);
+                    }
+                    account.update();
                 }
-                account.update();
 
                 return account;
             } else {
@@ -563,4 +566,43 @@ public class OneDriveStorage extends AbstractRemoteStorage<OneDriveStorage, OneD
             throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
         deleteDocument(accountName, id);
     }
-}
\ No newline at end of file
+
+    @Override
+    public OneDriveDocument moveFile(String accountName, String id, String newParentId)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, null);
+    }
+
+    @Override
+    public OneDriveDocument moveFolder(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        return moveDocument(accountName, id, newParentId, newName);
+    }
+
+    /**
+     * Sends a request to move a remote document into another folder.
+     *
+     * @param accountName the account user name
+     * @param id          the id of the document to move
+     * @param newParentId the id of the destination folder
+     * @param newName     the new name of the document, or null to keep its current name
+     * @return the moved document
+     * @throws RemoteException                    if any error occurs when calling the underlying API
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public OneDriveDocument moveDocument(String accountName, String id, String newParentId, String newName)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Account account = refreshedAccount(accountName);
+        try {
+            Response<OneDriveItem> response = apiService.moveDocumentById(account.getAuthHeader(), id,
+                    new MoveItemArg(newName, newParentId)).execute();
+            if (response.isSuccessful()) {
+                return new OneDriveDocument(this, accountName, response.body());
+            } else {
+                throw remoteException(account, response, "Failed to move document");
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new NetworkException("Failed to move document", e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.crypto;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.petrus.lib.core.Constants;
+
+/**
+ * This class keeps the last decrypted chunks of the encrypted documents in memory, so that they
+ * can be read again without being verified and decrypted again.
+ *
+ * <p>The chunks are identified by the id of their document, the version of the document file and
+ * their index in this file. The least recently used chunks are dropped when the total size of the
+ * cached chunks exceeds the maximum size of the cache. Nothing is ever written to the storage.
+ *
+ * <p>The {@link KeyManager} owns the process wide instance of this cache : it enables it when the
+ * key store is unlocked, and disables and purges it when the key store is locked.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class DecryptedChunksCache {
+
+    /**
+     * The key of a cached chunk.
+     */
+    private static class ChunkKey {
+        private final long documentId;
+        private final long version;
+        private final int chunk;
+
+        private ChunkKey(long documentId, long version, int chunk) {
+            this.documentId = documentId;
+            this.version = version;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey chunkKey = (ChunkKey) o;
+            return documentId == chunkKey.documentId
+                    && version == chunkKey.version
+                    && chunk == chunkKey.chunk;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (documentId ^ (documentId >>> 32));
+            result = 31 * result + (int) (version ^ (version >>> 32));
+            result = 31 * result + chunk;
+            return result;
+        }
+    }
+
+    private LinkedHashMap<ChunkKey, byte[]> chunks = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxSize = Constants.CRYPTO.DECRYPTED_CHUNKS_CACHE_MAX_SIZE;
+    private long size = 0;
+    private boolean enabled = false;
+
+    /**
+     * Creates a new empty and disabled {@code DecryptedChunksCache}.
+     */
+    public DecryptedChunksCache() {}
+
+    /**
+     * Enables or disables this cache.
+     *
+     * <p>Disabling this cache purges it, and no chunk is kept until it is enabled again.
+     *
+     * @param enabled if true, this cache is enabled
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * Sets the maximum total size of the chunks kept by this cache, dropping the least recently
+     * used chunks if needed.
+     *
+     * @param maxSize the maximum total size of the cached chunks, in bytes (0 to cache nothing)
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        trim();
+    }
+
+    /**
+     * Returns the maximum total size of the chunks kept by this cache.
+     *
+     * @return the maximum total size of the cached chunks, in bytes
+     */
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total size of the chunks currently kept by this cache.
+     *
+     * @return the total size of the cached chunks, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the cached clear data of a chunk.
+     *
+     * <p>The returned array is shared, and must not be modified.
+     *
+     * @param documentId the id of the document the chunk belongs to
+     * @param version    the version of the document file
+     * @param chunk      the index of the chunk in the document file
+     * @return the clear data of the chunk, or null if it is not cached
+     */
+    public synchronized byte[] get(long documentId, long version, int chunk) {
+        return chunks.get(new ChunkKey(documentId, version, chunk));
+    }
+
+    /**
+     * Caches the verified clear data of a chunk, if this cache is enabled and the chunk fits in it.
+     *
+     * <p>The given array must not be modified after it has been cached.
+     *
+     * @param documentId the id of the document the chunk belongs to
+     * @param version    the version of the document file
+     * @param chunk      the index of the chunk in the document file
+     * @param clearData  the verified clear data of the chunk
+     */
+    public synchronized void put(long documentId, long version, int chunk, byte[] clearData) {
+        if (!enabled || clearData.length > maxSize) {
+            return;
+        }
+        byte[] previousData = chunks.put(new ChunkKey(documentId, version, chunk), clearData);
+        if (null != previousData) {
+            size -= previousData.length;
+        }
+        size += clearData.length;
+        trim();
+    }
+
+    /**
+     * Removes all the chunks from this cache.
+     */
+    public synchronized void clear() {
+        chunks.clear();
+        size = 0;
+    }
+
+    /**
+     * Drops the least recently used chunks until the cached chunks fit in the maximum size.
+     */
+    private void trim() {
+        Iterator<Map.Entry<ChunkKey, byte[]>> iterator = chunks.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+}
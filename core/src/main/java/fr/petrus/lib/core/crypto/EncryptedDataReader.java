@@ -0,0 +1,328 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.crypto;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.crypto.mac.Mac;
+import fr.petrus.lib.core.metrics.Metrics;
+
+/**
+ * This class gives random access to the clear data of a file written by an {@link EncryptedDataStream}.
+ *
+ * <p>When it is opened, the file is indexed : the header of each chunk is read, and only the last
+ * block of each chunk is decrypted, to find its clear length. The global signature is checked
+ * against the signatures of the chunks at the same time. Then each chunk is only read, verified
+ * and decrypted when some data it contains is requested, and the last decrypted chunks are kept
+ * in a small cache. When a shared {@link DecryptedChunksCache} is given, the decrypted chunks
+ * are also looked up in and added to it, so that other readers of the same document can reuse them.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class EncryptedDataReader implements Closeable {
+
+    /**
+     * The AES block size, in bytes
+     */
+    private static final int BLOCK_SIZE = 16;
+
+    private Crypto crypto;
+    private SecretKeys secretKeys;
+    private RandomAccessFile file;
+    private InputStream fileInputStream;
+    private long size = 0;
+
+    /* The offsets of the chunks in the encrypted file, and of their data in the clear data */
+    private long[] chunkOffsets = new long[16];
+    private long[] clearOffsets = new long[16];
+    private int[] clearLengths = new int[16];
+    private int numChunks = 0;
+
+    private LinkedHashMap<Integer, byte[]> decryptedChunks;
+    private DecryptedChunksCache sharedCache = null;
+    private long documentId = -1;
+    private long version = -1;
+
+    /**
+     * Opens the given encrypted {@code file} and indexes it.
+     *
+     * @param crypto          a {@code Crypto} instance
+     * @param secretKeys      the keys the file was encrypted and signed with
+     * @param file            the encrypted file
+     * @param maxCachedChunks the maximum number of decrypted chunks to keep in memory
+     * @throws IOException     if an error occurs when reading the file
+     * @throws CryptoException if the file is not a valid encrypted file, or if its signature
+     *                         does not match
+     */
+    public EncryptedDataReader(Crypto crypto, SecretKeys secretKeys, File file, final int maxCachedChunks)
+            throws IOException, CryptoException {
+        this(crypto, secretKeys, file, maxCachedChunks, null, -1);
+    }
+
+    /**
+     * Opens the given encrypted {@code file} and indexes it, sharing its decrypted chunks with
+     * the other readers through the given {@code sharedCache}.
+     *
+     * <p>The chunks are shared under the version of the file given by its global signature, so
+     * that the chunks of an older version of the document are never read from the shared cache.
+     *
+     * @param crypto          a {@code Crypto} instance
+     * @param secretKeys      the keys the file was encrypted and signed with
+     * @param file            the encrypted file
+     * @param maxCachedChunks the maximum number of decrypted chunks to keep in memory
+     * @param sharedCache     the cache shared with the other readers (may be null)
+     * @param documentId      the id of the document the file belongs to
+     * @throws IOException     if an error occurs when reading the file
+     * @throws CryptoException if the file is not a valid encrypted file, or if its signature
+     *                         does not match
+     */
+    public EncryptedDataReader(Crypto crypto, SecretKeys secretKeys, File file, final int maxCachedChunks,
+                               DecryptedChunksCache sharedCache, long documentId)
+            throws IOException, CryptoException {
+        this.sharedCache = sharedCache;
+        this.documentId = documentId;
+        this.crypto = crypto;
+        this.secretKeys = secretKeys;
+        this.decryptedChunks = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > maxCachedChunks;
+            }
+        };
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            this.fileInputStream = Channels.newInputStream(this.file.getChannel());
+            index();
+        } catch (IOException | CryptoException | RuntimeException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the clear data.
+     *
+     * @return the size of the clear data
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Reads the headers of the chunks and the global signature, to index the chunks and check the
+     * global signature.
+     */
+    private void index() throws IOException, CryptoException {
+        byte[] prefix = new byte[Constants.CRYPTO.STREAM_PREFIX.length];
+        file.readFully(prefix);
+        if (!Arrays.equals(Constants.CRYPTO.STREAM_PREFIX, prefix)) {
+            throw new CryptoException("The data stream prefix does not match");
+        }
+        file.skipBytes(EncryptedDataStream.VERSION_BYTES);
+
+        Mac globalMac;
+        try {
+            globalMac = crypto.initMac(secretKeys.getSignatureKey());
+        } catch (CryptoException e) {
+            throw new CryptoException("Failed to initialize global signature", e);
+        }
+
+        while (true) {
+            int sectionType = file.read();
+            if (EncryptedDataStream.SECTION_TYPE_SIGNATURE == sectionType) {
+                byte[] globalSignature = readBytes();
+                if (!Arrays.equals(globalMac.doFinal(), globalSignature)) {
+                    throw new CryptoException("Failed to verify global signature or data was tampered with");
+                }
+                if (globalSignature.length >= 8) {
+                    version = ByteBuffer.wrap(globalSignature).getLong();
+                }
+                return;
+            } else if (EncryptedDataStream.SECTION_TYPE_CHUNK == sectionType) {
+                long chunkOffset = file.getFilePointer();
+                file.skipBytes(Constants.CRYPTO.CHUNK_PREFIX.length + EncryptedDataStream.VERSION_BYTES);
+                globalMac.update(readBytes());
+                byte[] iv = readBytes();
+                int dataLength = file.readInt();
+                long dataOffset = file.getFilePointer();
+                if (dataLength < BLOCK_SIZE || 0 != dataLength % BLOCK_SIZE) {
+                    throw new CryptoException("Wrong encrypted data length");
+                }
+
+                /* In CBC mode, the last block can be decrypted alone, using the previous one as IV */
+                byte[] previousBlock;
+                if (dataLength == BLOCK_SIZE) {
+                    previousBlock = iv;
+                } else {
+                    previousBlock = new byte[BLOCK_SIZE];
+                    file.seek(dataOffset + dataLength - 2 * BLOCK_SIZE);
+                    file.readFully(previousBlock);
+                }
+                byte[] lastBlock = new byte[BLOCK_SIZE];
+                file.seek(dataOffset + dataLength - BLOCK_SIZE);
+                file.readFully(lastBlock);
+                EncryptedDataChunk lastBlockChunk = new EncryptedDataChunk(crypto);
+                lastBlockChunk.setIV(previousBlock);
+                lastBlockChunk.setData(lastBlock);
+                int clearLength = dataLength - BLOCK_SIZE
+                        + crypto.decrypt(secretKeys.getEncryptionKey(), lastBlockChunk).length;
+
+                addChunk(chunkOffset, clearLength);
+            } else {
+                throw new CryptoException("Wrong message section");
+            }
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        int length = file.readInt();
+        if (length < 0 || length > file.length() - file.getFilePointer()) {
+            throw new IOException("Wrong length");
+        }
+        byte[] bytes = new byte[length];
+        file.readFully(bytes);
+        return bytes;
+    }
+
+    private void addChunk(long chunkOffset, int clearLength) {
+        if (numChunks == chunkOffsets.length) {
+            chunkOffsets = Arrays.copyOf(chunkOffsets, 2 * numChunks);
+            clearOffsets = Arrays.copyOf(clearOffsets, 2 * numChunks);
+            clearLengths = Arrays.copyOf(clearLengths, 2 * numChunks);
+        }
+        chunkOffsets[numChunks] = chunkOffset;
+        clearOffsets[numChunks] = size;
+        clearLengths[numChunks] = clearLength;
+        numChunks++;
+        size += clearLength;
+    }
+
+    /**
+     * Reads up to {@code length} bytes of clear data, starting at the given {@code offset} of the
+     * clear data, into the given {@code buffer}.
+     *
+     * @param offset the offset in the clear data where to start reading
+     * @param buffer the buffer to write the clear data to
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes actually read, which is only smaller than {@code length} at the
+     *         end of the clear data
+     * @throws IOException     if an error occurs when reading the file
+     * @throws CryptoException if a chunk signature does not match, or if it cannot be decrypted
+     */
+    public synchronized int read(long offset, byte[] buffer, int length)
+            throws IOException, CryptoException {
+        int read = 0;
+        while (read < length && offset + read < size) {
+            int chunk = chunkIndex(offset + read);
+            byte[] clearData = decryptedChunk(chunk);
+            int chunkOffset = (int) (offset + read - clearOffsets[chunk]);
+            int count = Math.min(length - read, clearData.length - chunkOffset);
+            System.arraycopy(clearData, chunkOffset, buffer, read, count);
+            read += count;
+        }
+        return read;
+    }
+
+    /**
+     * Returns the index of the chunk containing the given {@code offset} of the clear data.
+     */
+    private int chunkIndex(long offset) {
+        int index = Arrays.binarySearch(clearOffsets, 0, numChunks, offset);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        /* Skip empty chunks which share their offset with the next one */
+        while (index < numChunks - 1 && 0 == clearLengths[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    private byte[] decryptedChunk(int chunk) throws IOException, CryptoException {
+        byte[] clearData = decryptedChunks.get(chunk);
+        if (null == clearData && null != sharedCache) {
+            clearData = sharedCache.get(documentId, version, chunk);
+            if (null != clearData) {
+                if (clearData.length == clearLengths[chunk]) {
+                    decryptedChunks.put(chunk, clearData);
+                } else {
+                    clearData = null;
+                }
+            }
+        }
+        if (null == clearData) {
+            file.seek(chunkOffsets[chunk]);
+            EncryptedDataChunk encryptedDataChunk = new EncryptedDataChunk(crypto);
+            if (!encryptedDataChunk.read(fileInputStream)) {
+                throw new CryptoException("Failed to read data");
+            }
+            long decryptionStart = System.nanoTime();
+            if (!encryptedDataChunk.verify(secretKeys.getSignatureKey())) {
+                throw new CryptoException("Failed to verify data chunk signature or data was tampered with");
+            }
+            clearData = crypto.decrypt(secretKeys.getEncryptionKey(), encryptedDataChunk);
+            Metrics.throughput("crypto.decrypt").updateSince(clearData.length, decryptionStart);
+            if (clearData.length != clearLengths[chunk]) {
+                throw new CryptoException("Wrong decrypted data length");
+            }
+            decryptedChunks.put(chunk, clearData);
+            if (null != sharedCache) {
+                sharedCache.put(documentId, version, chunk, clearData);
+            }
+        }
+        return clearData;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        decryptedChunks.clear();
+        file.close();
+    }
+}
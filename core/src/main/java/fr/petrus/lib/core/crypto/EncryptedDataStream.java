@@ -46,6 +46,7 @@ import java.util.Arrays;
 
 import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.crypto.mac.Mac;
+import fr.petrus.lib.core.metrics.Metrics;
 import fr.petrus.lib.core.result.ProcessProgressAdapter;
 import fr.petrus.lib.core.result.ProcessProgressListener;
 import fr.petrus.lib.core.utils.NumberConv;
@@ -64,13 +65,13 @@ public class EncryptedDataStream {
     /**
      * Section types : an EncryptedDataStream is made of several data chunks and a global signature
      */
-    private static final int SECTION_TYPE_SIGNATURE = 0;
-    private static final int SECTION_TYPE_CHUNK = 1;
+    static final int SECTION_TYPE_SIGNATURE = 0;
+    static final int SECTION_TYPE_CHUNK = 1;
 
     /**
      * The number of bytes used in the serialized array to represent the format version.
      */
-    private static final int VERSION_BYTES = 2;
+    static final int VERSION_BYTES = 2;
 
     /**
      * The number of bytes used in the serialized array to represent lengths.
@@ -108,6 +109,100 @@ public class EncryptedDataStream {
      */
     public void encrypt(InputStream inputStream, OutputStream outputStream, final ProcessProgressListener listener)
             throws CryptoException {
+        encrypt(inputStream, outputStream, listener, null);
+    }
+
+    /**
+     * Encrypts and signs data from the given {@code inputStream}, then writes the result to the
+     * given {@code outputStream}, followed with a global signature, and computes the fingerprint
+     * of the clear data in the same pass.
+     *
+     * <p>The fingerprint is an HMAC of the clear data under the signature key, so it does not
+     * reveal anything about the clear data to someone who does not own the keys.
+     *
+     * @param inputStream  the input stream to read the clear data from.
+     * @param outputStream the output stream to write the encrypted data to.
+     * @param listener     a listener used to report the progress and handle pause/cancelation
+     * @return the fingerprint of the clear data, or null if the encryption was canceled
+     * @throws CryptoException if any cryptographic error occurs
+     */
+    public byte[] encryptWithFingerprint(InputStream inputStream, OutputStream outputStream,
+                                         final ProcessProgressListener listener)
+            throws CryptoException {
+        Mac fingerprintMac = initFingerprintMac();
+        if (!encrypt(inputStream, outputStream, listener, fingerprintMac)) {
+            return null;
+        }
+        return fingerprintMac.doFinal();
+    }
+
+    /**
+     * Computes the fingerprint of the clear data read from the given {@code inputStream}, as
+     * computed by {@link EncryptedDataStream#encryptWithFingerprint}.
+     *
+     * @param inputStream the input stream to read the clear data from.
+     * @param listener    a listener used to handle pause/cancelation
+     * @return the fingerprint of the clear data, or null if the computation was canceled
+     * @throws CryptoException if any cryptographic error occurs
+     */
+    public byte[] fingerprint(InputStream inputStream, final ProcessProgressListener listener)
+            throws CryptoException {
+        Mac fingerprintMac = initFingerprintMac();
+        while (true) {
+            if (null!=listener) {
+                listener.pauseIfNeeded();
+                if (listener.isCanceled()) {
+                    return null;
+                }
+            }
+            byte[] chunkData;
+            try {
+                chunkData = StreamUtils.read(inputStream, Constants.FILE.BUFFER_SIZE,
+                        Constants.CRYPTO.MAX_CHUNK_SIZE, null);
+            } catch (IOException e) {
+                throw new CryptoException("Failed to read data", e);
+            }
+            if (null == chunkData) {
+                return fingerprintMac.doFinal();
+            }
+            fingerprintMac.update(chunkData);
+        }
+    }
+
+    /**
+     * Initializes the {@code Mac} used to compute the fingerprint of clear data.
+     *
+     * <p>The fingerprint prefix is fed first, so that a fingerprint can never be mistaken for a
+     * chunk signature computed with the same key.
+     *
+     * @return the initialized {@code Mac}
+     * @throws CryptoException if any cryptographic error occurs
+     */
+    private Mac initFingerprintMac() throws CryptoException {
+        Mac fingerprintMac;
+        try {
+            fingerprintMac = crypto.initMac(secretKeys.getSignatureKey());
+        } catch (CryptoException e) {
+            throw new CryptoException("Failed to initialize fingerprint", e);
+        }
+        fingerprintMac.update(Constants.CRYPTO.FINGERPRINT_PREFIX);
+        return fingerprintMac;
+    }
+
+    /**
+     * Encrypts and signs data from the given {@code inputStream}, then writes the result to the
+     * given {@code outputStream}, followed with a global signature.
+     *
+     * @param inputStream    the input stream to read the clear data from.
+     * @param outputStream   the output stream to write the encrypted data to.
+     * @param listener       a listener used to report the progress and handle pause/cancelation
+     * @param fingerprintMac if not null, the {@code Mac} updated with the clear data
+     * @return false if the encryption was canceled
+     * @throws CryptoException if any cryptographic error occurs
+     */
+    private boolean encrypt(InputStream inputStream, OutputStream outputStream,
+                            final ProcessProgressListener listener, Mac fingerprintMac)
+            throws CryptoException {
 
         try {
             /* Write the prefix */
@@ -132,7 +227,7 @@ public class EncryptedDataStream {
             if (null!=listener) {
                 listener.pauseIfNeeded();
                 if (listener.isCanceled()) {
-                    return;
+                    return false;
                 }
             }
             byte[] chunkData = null;
@@ -164,9 +259,14 @@ public class EncryptedDataStream {
                 } catch (IOException e) {
                     throw new CryptoException("Failed to write global signature", e);
                 }
-                return;
+                return true;
+            }
+
+            if (null != fingerprintMac) {
+                fingerprintMac.update(chunkData);
             }
 
+            long encryptionStart = System.nanoTime();
             EncryptedDataChunk cipherDataChunk;
             try {
                 cipherDataChunk = crypto.encrypt(secretKeys.getEncryptionKey(), chunkData);
@@ -179,6 +279,7 @@ public class EncryptedDataStream {
             } catch (CryptoException e) {
                 throw new CryptoException("Failed to compute data chunk signature", e);
             }
+            Metrics.throughput("crypto.encrypt").updateSince(chunkData.length, encryptionStart);
             globalMac.update(cipherDataChunk.getSignature());
 
             try {
@@ -281,6 +382,7 @@ public class EncryptedDataStream {
                     throw new CryptoException("Failed to read data", e);
                 }
 
+                long decryptionStart = System.nanoTime();
                 boolean signatureOk;
                 try {
                     signatureOk = encryptedDataChunk.verify(secretKeys.getSignatureKey());
@@ -298,6 +400,7 @@ public class EncryptedDataStream {
                 } catch (CryptoException e) {
                     throw new CryptoException("Failed to decrypt data", e);
                 }
+                Metrics.throughput("crypto.decrypt").updateSince(dataChunk.length, decryptionStart);
 
                 try {
                     StreamUtils.write(outputStream, dataChunk, Constants.FILE.BUFFER_SIZE, new ProcessProgressAdapter() {
@@ -63,6 +63,7 @@ public class KeyManager {
     private File keyStoreFolder;
     private String keyStorePassword;
     private KeyStore keyStore;
+    private DecryptedChunksCache decryptedChunksCache = new DecryptedChunksCache();
 
     /**
      * Creates a new {@code KeyManager}.
@@ -253,6 +254,16 @@ public class KeyManager {
     public void lockKeyStore() {
         keyStorePassword = null;
         keyStore = null;
+        decryptedChunksCache.setEnabled(false);
+    }
+
+    /**
+     * Returns the cache of the decrypted chunks, which is purged when the main key store is locked.
+     *
+     * @return the cache of the decrypted chunks
+     */
+    public DecryptedChunksCache getDecryptedChunksCache() {
+        return decryptedChunksCache;
     }
 
     /**
@@ -293,6 +304,7 @@ public class KeyManager {
 
             /* Save the KeyStore */
             keyStore.save(getMainKeyStoreFile(), keyStorePassword);
+            decryptedChunksCache.setEnabled(true);
             return true;
         } catch (CryptoException e) {
             LOG.error("Error while generating keys into KeyStore file {}", Constants.CRYPTO.KEY_STORE_UBER_FILE_NAME, e);
@@ -315,6 +327,7 @@ public class KeyManager {
                 keyStore = crypto.newKeyStore();
                 keyStore.load(keyStoreFile, keyStorePassword);
                 this.keyStorePassword = keyStorePassword;
+                decryptedChunksCache.setEnabled(true);
                 return true;
             } catch (CryptoException e) {
                 LOG.error("Error while loading keys from KeyStore file {}", Constants.CRYPTO.KEY_STORE_UBER_FILE_NAME, e);
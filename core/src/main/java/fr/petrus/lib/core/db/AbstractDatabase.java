@@ -37,8 +37,11 @@
 package fr.petrus.lib.core.db;
 
 import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.stmt.Where;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +49,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.EncryptedDocument;
@@ -90,6 +94,16 @@ public abstract class AbstractDatabase implements Database {
      */
     protected abstract Dao<EncryptedDocument, Long> getEncryptedDocumentDao() throws DatabaseConnectionClosedException;
 
+    /**
+     * Returns the DAO, used to access the {@code SearchWord}s.
+     *
+     * <p>Implementations must implement this method
+     *
+     * @return the DAO, used to access the {@code SearchWord}s
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    protected abstract Dao<SearchWord, Long> getSearchWordDao() throws DatabaseConnectionClosedException;
+
     /**
      * The TextI18n instance, used to get localized messages.
      */
@@ -155,6 +169,9 @@ public abstract class AbstractDatabase implements Database {
     public void addEncryptedDocument(EncryptedDocument encryptedDocument) throws DatabaseConnectionClosedException {
         try {
             getEncryptedDocumentDao().create(encryptedDocument);
+            /* the id was just generated, and the words of deleted documents are removed with them,
+               so there are no words to replace : only insert the new ones */
+            addSearchWords(encryptedDocument);
         } catch (SQLException e) {
             LOG.error("SQL error", e);
         }
@@ -164,6 +181,7 @@ public abstract class AbstractDatabase implements Database {
     public void updateEncryptedDocument(EncryptedDocument encryptedDocument) throws DatabaseConnectionClosedException {
         try {
             getEncryptedDocumentDao().update(encryptedDocument);
+            indexEncryptedDocument(encryptedDocument);
         } catch (SQLException e) {
             LOG.error("SQL error", e);
         }
@@ -306,6 +324,22 @@ public abstract class AbstractDatabase implements Database {
         }
     }
 
+    @Override
+    public void raiseEncryptedDocumentBackEntryFolderLastSubfolderId(long id, long folderLastSubfolderId)
+            throws DatabaseConnectionClosedException {
+        try {
+            UpdateBuilder<EncryptedDocument, Long> updateBuilder = getEncryptedDocumentDao().updateBuilder();
+            updateBuilder.updateColumnValue(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_BACK_ENTRY_FOLDER_LAST_SUBFOLDER_ID,
+                    folderLastSubfolderId);
+            updateBuilder.where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_ID, id)
+                    .and().lt(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_BACK_ENTRY_FOLDER_LAST_SUBFOLDER_ID,
+                            folderLastSubfolderId);
+            updateBuilder.update();
+        } catch (SQLException e) {
+            LOG.error("SQL error", e);
+        }
+    }
+
     @Override
     public void updateEncryptedDocumentBackEntryNumSyncFailures(long id, int numSyncFailures)
             throws DatabaseConnectionClosedException {
@@ -348,11 +382,30 @@ public abstract class AbstractDatabase implements Database {
         }
     }
 
+    @Override
+    public void updateEncryptedDocumentPlaintextFingerprint(long id, long size, long modificationTime,
+                                                            String fingerprint)
+            throws DatabaseConnectionClosedException {
+        try {
+            UpdateBuilder<EncryptedDocument, Long> updateBuilder = getEncryptedDocumentDao().updateBuilder();
+            updateBuilder.updateColumnValue(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_SIZE, size);
+            updateBuilder.updateColumnValue(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_MODIFICATION_TIME,
+                    modificationTime);
+            updateBuilder.updateColumnValue(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_FINGERPRINT,
+                    new SelectArg(fingerprint));
+            updateBuilder.where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_ID, id);
+            updateBuilder.update();
+        } catch (SQLException e) {
+            LOG.error("SQL error", e);
+        }
+    }
+
 
     @Override
     public void deleteEncryptedDocument(EncryptedDocument encryptedDocument) throws DatabaseConnectionClosedException {
         try {
             getEncryptedDocumentDao().deleteById(encryptedDocument.getId());
+            unindexEncryptedDocument(encryptedDocument.getId());
         } catch (SQLException e) {
             LOG.error("SQL error", e);
         }
@@ -404,31 +457,40 @@ public abstract class AbstractDatabase implements Database {
         return encryptedDocument;
     }
 
+    /**
+     * Sets the order of the rows returned by the given {@code queryBuilder}.
+     *
+     * <p>If {@code foldersFirst} is true, the folders are sorted before the files by a computed sort
+     * key, so that a single query returns them in the right order. The id is always used as the last
+     * criterion, to make the order stable between successive windowed queries.
+     *
+     * @param queryBuilder the query builder to set the order of
+     * @param foldersFirst if true, the folders are sorted before the files
+     * @param orderBy      the criterion used to sort the {@code EncryptedDocument}s, or null to only
+     *                     sort folders first
+     */
+    private void orderEncryptedDocuments(QueryBuilder<EncryptedDocument, Long> queryBuilder,
+                                         boolean foldersFirst, OrderBy orderBy) {
+        if (foldersFirst) {
+            queryBuilder.orderByRaw(String.format("CASE WHEN `%s` = '%s' THEN 0 ELSE 1 END",
+                    DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_MIME_TYPE,
+                    Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE));
+        }
+        if (null!=orderBy) {
+            queryBuilder.orderBy(getEncryptedDocumentOrderColumnName(orderBy),
+                    isEncryptedDocumentOrderAscending(orderBy));
+        }
+        queryBuilder.orderBy(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_ID, true);
+    }
+
     @Override
     public List<EncryptedDocument> getAllEncryptedDocuments(boolean foldersFirst, OrderBy orderBy)
             throws DatabaseConnectionClosedException {
         List<EncryptedDocument> encryptedDocuments = null;
         try {
-            if (foldersFirst) {
-                encryptedDocuments = getEncryptedDocumentDao().queryBuilder()
-                        .orderBy(getEncryptedDocumentOrderColumnName(orderBy),
-                                isEncryptedDocumentOrderAscending(orderBy))
-                        .where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_MIME_TYPE,
-                                Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE)
-                        .query();
-                encryptedDocuments.addAll(getEncryptedDocumentDao().queryBuilder()
-                        .orderBy(getEncryptedDocumentOrderColumnName(orderBy),
-                                isEncryptedDocumentOrderAscending(orderBy))
-                        .where()
-                        .ne(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_MIME_TYPE,
-                                Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE)
-                        .query());
-            } else {
-                encryptedDocuments = getEncryptedDocumentDao().queryBuilder()
-                        .orderBy(getEncryptedDocumentOrderColumnName(orderBy),
-                                isEncryptedDocumentOrderAscending(orderBy))
-                        .query();
-            }
+            QueryBuilder<EncryptedDocument, Long> queryBuilder = getEncryptedDocumentDao().queryBuilder();
+            orderEncryptedDocuments(queryBuilder, foldersFirst, orderBy);
+            encryptedDocuments = queryBuilder.query();
         } catch (SQLException e) {
             LOG.error("SQL error", e);
         }
@@ -438,28 +500,19 @@ public abstract class AbstractDatabase implements Database {
     @Override
     public List<EncryptedDocument> getEncryptedDocumentsByParentId(long parentId, boolean foldersFirst)
             throws DatabaseConnectionClosedException {
+        return getEncryptedDocumentsByParentId(parentId, foldersFirst, null);
+    }
+
+    @Override
+    public List<EncryptedDocument> getEncryptedDocumentsByParentId(long parentId, boolean foldersFirst,
+                                                                   OrderBy orderBy)
+            throws DatabaseConnectionClosedException {
         List<EncryptedDocument> encryptedDocuments = null;
         try {
-            if (foldersFirst) {
-                encryptedDocuments = getEncryptedDocumentDao().queryBuilder()
-                        .where()
-                        .eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId)
-                        .and()
-                        .eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_MIME_TYPE,
-                                Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE)
-                        .query();
-                encryptedDocuments.addAll(getEncryptedDocumentDao().queryBuilder()
-                        .where()
-                        .eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId)
-                        .and()
-                        .ne(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_MIME_TYPE,
-                                Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE)
-                        .query());
-            } else {
-                encryptedDocuments = getEncryptedDocumentDao().queryBuilder()
-                        .where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId)
-                        .query();
-            }
+            QueryBuilder<EncryptedDocument, Long> queryBuilder = getEncryptedDocumentDao().queryBuilder();
+            orderEncryptedDocuments(queryBuilder, foldersFirst, orderBy);
+            queryBuilder.where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId);
+            encryptedDocuments = queryBuilder.query();
         } catch (SQLException e) {
             LOG.error("SQL error", e);
         }
@@ -468,42 +521,111 @@ public abstract class AbstractDatabase implements Database {
 
     @Override
     public List<EncryptedDocument> getEncryptedDocumentsByParentId(long parentId, boolean foldersFirst,
-                                                                   OrderBy orderBy)
+                                                                   OrderBy orderBy, long offset, long limit)
             throws DatabaseConnectionClosedException {
         List<EncryptedDocument> encryptedDocuments = null;
         try {
-            if (foldersFirst) {
-                encryptedDocuments = getEncryptedDocumentDao().queryBuilder()
-                        .orderBy(getEncryptedDocumentOrderColumnName(orderBy),
-                                isEncryptedDocumentOrderAscending(orderBy))
-                        .where()
-                        .eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId)
-                        .and()
-                        .eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_MIME_TYPE,
-                                Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE)
-                        .query();
-                encryptedDocuments.addAll(getEncryptedDocumentDao().queryBuilder()
-                        .orderBy(getEncryptedDocumentOrderColumnName(orderBy),
-                                isEncryptedDocumentOrderAscending(orderBy))
-                        .where()
-                        .eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId)
-                        .and()
-                        .ne(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_MIME_TYPE,
-                                Constants.STORAGE.DEFAULT_FOLDER_MIME_TYPE)
-                        .query());
-            } else {
-                encryptedDocuments = getEncryptedDocumentDao().queryBuilder()
-                        .orderBy(getEncryptedDocumentOrderColumnName(orderBy),
-                                isEncryptedDocumentOrderAscending(orderBy))
-                        .where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId)
-                        .query();
+            QueryBuilder<EncryptedDocument, Long> queryBuilder = getEncryptedDocumentDao().queryBuilder();
+            orderEncryptedDocuments(queryBuilder, foldersFirst, orderBy);
+            queryBuilder.offset(offset).limit(limit)
+                    .where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId);
+            encryptedDocuments = queryBuilder.query();
+        } catch (SQLException e) {
+            LOG.error("SQL error", e);
+        }
+        return encryptedDocuments;
+    }
+
+    @Override
+    public long getNumEncryptedDocumentsByParentId(long parentId) throws DatabaseConnectionClosedException {
+        try {
+            return getEncryptedDocumentDao().queryBuilder()
+                    .where().eq(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PARENT_ID, parentId)
+                    .countOf();
+        } catch (SQLException e) {
+            LOG.error("SQL error", e);
+        }
+        return -1L;
+    }
+
+    @Override
+    public List<EncryptedDocument> searchEncryptedDocuments(String query, boolean foldersFirst,
+                                                            OrderBy orderBy, long limit)
+            throws DatabaseConnectionClosedException {
+        List<EncryptedDocument> encryptedDocuments = new ArrayList<>();
+        Set<String> words = SearchWord.extractWords(query);
+        if (words.isEmpty()) {
+            return encryptedDocuments;
+        }
+        try {
+            QueryBuilder<EncryptedDocument, Long> queryBuilder = getEncryptedDocumentDao().queryBuilder();
+            orderEncryptedDocuments(queryBuilder, foldersFirst, orderBy);
+            queryBuilder.limit(limit);
+            Where<EncryptedDocument, Long> where = queryBuilder.where();
+            for (String word : words) {
+                /* the words only contain letters and digits, so they need no escaping in a LIKE pattern */
+                QueryBuilder<SearchWord, Long> wordQueryBuilder = getSearchWordDao().queryBuilder();
+                wordQueryBuilder.selectColumns(DatabaseConstants.SEARCH_WORD_COLUMN_DOCUMENT_ID)
+                        .where().like(DatabaseConstants.SEARCH_WORD_COLUMN_WORD, new SelectArg(word + "%"));
+                where.in(DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_ID, wordQueryBuilder);
+            }
+            if (words.size() > 1) {
+                where.and(words.size());
             }
+            encryptedDocuments = queryBuilder.query();
         } catch (SQLException e) {
             LOG.error("SQL error", e);
         }
         return encryptedDocuments;
     }
 
+    @Override
+    public void rebuildSearchIndex() throws DatabaseConnectionClosedException {
+        try {
+            getSearchWordDao().deleteBuilder().delete();
+            for (EncryptedDocument encryptedDocument : getEncryptedDocumentDao()) {
+                addSearchWords(encryptedDocument);
+            }
+        } catch (SQLException e) {
+            LOG.error("SQL error", e);
+        }
+    }
+
+    /**
+     * Replaces the words of the given {@code encryptedDocument} in the search index.
+     *
+     * @param encryptedDocument the document to index
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     * @throws SQLException                      if an error occurs when updating the index
+     */
+    private void indexEncryptedDocument(EncryptedDocument encryptedDocument)
+            throws DatabaseConnectionClosedException, SQLException {
+        unindexEncryptedDocument(encryptedDocument.getId());
+        addSearchWords(encryptedDocument);
+    }
+
+    private void addSearchWords(EncryptedDocument encryptedDocument)
+            throws DatabaseConnectionClosedException, SQLException {
+        Dao<SearchWord, Long> searchWordDao = getSearchWordDao();
+        for (String word : SearchWord.extractWords(encryptedDocument.getDisplayName(),
+                encryptedDocument.getMimeType())) {
+            searchWordDao.create(new SearchWord(encryptedDocument.getId(), word));
+        }
+    }
+
+    /**
+     * Removes the words of the document with the given {@code id} from the search index.
+     *
+     * @param id the id of the document
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     * @throws SQLException                      if an error occurs when updating the index
+     */
+    private void unindexEncryptedDocument(long id) throws DatabaseConnectionClosedException, SQLException {
+        DeleteBuilder<SearchWord, Long> deleteBuilder = getSearchWordDao().deleteBuilder();
+        deleteBuilder.where().eq(DatabaseConstants.SEARCH_WORD_COLUMN_DOCUMENT_ID, id);
+        deleteBuilder.delete();
+    }
+
     @Override
     public List<EncryptedDocument> getEncryptedDocumentsByKeyAlias(String keyAlias)
             throws DatabaseConnectionClosedException {
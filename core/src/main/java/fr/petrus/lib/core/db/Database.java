@@ -245,6 +245,22 @@ public interface Database {
      */
     void updateEncryptedDocumentBackEntryFolderLastSubfolderId(long id, long folderLastSubfolderId) throws DatabaseConnectionClosedException;
 
+    /**
+     * Raises the back entry folder last subfolder id of the {@code EncryptedDocument} which has
+     * the given {@code id} into this database to the given {@code folderLastSubfolderId}.
+     *
+     * <p>The stored value is only updated if the given {@code folderLastSubfolderId} is greater,
+     * in a single statement, so that concurrent reservations of child folder ids never make it
+     * decrease.
+     *
+     * @param id                    the id of the {@code EncryptedDocument} which back entry folder last
+     *                              subfolder id will be raised
+     * @param folderLastSubfolderId the back entry folder last subfolder id to persist into this database,
+     *                              if it is greater than the stored one
+     * @throws DatabaseConnectionClosedException if this database connection is closed
+     */
+    void raiseEncryptedDocumentBackEntryFolderLastSubfolderId(long id, long folderLastSubfolderId) throws DatabaseConnectionClosedException;
+
     /**
      * Updates the number of synchronization failures of the {@code EncryptedDocument} which has
      * the given {@code id} into this database with the given {@code numSyncFailures}.
@@ -278,6 +294,20 @@ public interface Database {
      */
     void updateEncryptedDocumentBackEntryCreationIncomplete(long id, boolean creationIncomplete) throws DatabaseConnectionClosedException;
 
+    /**
+     * Updates the size, the last modification time and the keyed fingerprint of the clear file
+     * the {@code EncryptedDocument} which has the given {@code id} was encrypted from.
+     *
+     * @param id               the id of the {@code EncryptedDocument} which clear file fingerprint
+     *                         will be updated
+     * @param size             the size of the clear file
+     * @param modificationTime the last modification time of the clear file
+     * @param fingerprint      the keyed fingerprint of the clear file
+     * @throws DatabaseConnectionClosedException if this database connection is closed
+     */
+    void updateEncryptedDocumentPlaintextFingerprint(long id, long size, long modificationTime, String fingerprint)
+            throws DatabaseConnectionClosedException;
+
     /**
      * Deletes the given {@code encryptedDocument} from this database.
      *
@@ -359,6 +389,69 @@ public interface Database {
     List<EncryptedDocument> getEncryptedDocumentsByParentId(long parentId, boolean foldersFirst,
                                                             OrderBy orderBy) throws DatabaseConnectionClosedException;
 
+    /**
+     * Returns a window of the {@code EncryptedDocument}s which have the given {@code parentId} in
+     * this database.
+     *
+     * <p>The documents are sorted in the same order as the one returned by
+     * {@link Database#getEncryptedDocumentsByParentId(long, boolean, OrderBy)}, so that successive
+     * windows can be used to browse a large folder without loading all its children at once.
+     *
+     * @param parentId     the parent id of the {@code EncryptedDocument}s to return
+     * @param foldersFirst if true, the {@code EncryptedDocument}s representing folders will be before
+     *                     the ones representing files in the list, otherwise they will be mixed with
+     *                     the files.
+     * @param orderBy      the criterion used to sort the {@code EncryptedDocument}s
+     * @param offset       the position of the first {@code EncryptedDocument} to return
+     * @param limit        the maximum number of {@code EncryptedDocument}s to return
+     * @return a list containing at most {@code limit} {@code EncryptedDocument}s which have the given
+     *         {@code parentId} in this database, starting at the given {@code offset}
+     * @throws DatabaseConnectionClosedException if this database connection is closed
+     */
+    List<EncryptedDocument> getEncryptedDocumentsByParentId(long parentId, boolean foldersFirst,
+                                                            OrderBy orderBy, long offset, long limit)
+            throws DatabaseConnectionClosedException;
+
+    /**
+     * Returns the number of {@code EncryptedDocument}s which have the given {@code parentId} in
+     * this database.
+     *
+     * @param parentId the parent id of the {@code EncryptedDocument}s to count
+     * @return the number of {@code EncryptedDocument}s which have the given {@code parentId} in
+     *         this database
+     * @throws DatabaseConnectionClosedException if this database connection is closed
+     */
+    long getNumEncryptedDocumentsByParentId(long parentId) throws DatabaseConnectionClosedException;
+
+    /**
+     * Returns the {@code EncryptedDocument}s of this database whose display name or mime type
+     * contains words starting with each of the words of the given {@code query}.
+     *
+     * <p>The search is case insensitive and ignores accents. It uses the words index kept in the
+     * database, so it does not need to read all the documents.
+     *
+     * @param query        the words to search, separated by spaces or punctuation
+     * @param foldersFirst if true, the {@code EncryptedDocument}s representing folders will be before
+     *                     the ones representing files in the list, otherwise they will be mixed with
+     *                     the files.
+     * @param orderBy      the criterion used to sort the {@code EncryptedDocument}s
+     * @param limit        the maximum number of {@code EncryptedDocument}s to return
+     * @return a list containing at most {@code limit} {@code EncryptedDocument}s matching the given
+     *         {@code query}, which is empty if the query contains no word
+     * @throws DatabaseConnectionClosedException if this database connection is closed
+     */
+    List<EncryptedDocument> searchEncryptedDocuments(String query, boolean foldersFirst,
+                                                     OrderBy orderBy, long limit)
+            throws DatabaseConnectionClosedException;
+
+    /**
+     * Rebuilds the words index used by {@link Database#searchEncryptedDocuments}, from the display
+     * names and mime types of all the {@code EncryptedDocument}s of this database.
+     *
+     * @throws DatabaseConnectionClosedException if this database connection is closed
+     */
+    void rebuildSearchIndex() throws DatabaseConnectionClosedException;
+
     /**
      * Returns the {@code EncryptedDocument}s which have the given {@code keyAlias} in this database.
      *
@@ -93,4 +93,12 @@ public interface DatabaseConstants {
     String ENCRYPTED_DOCUMENT_COLUMN_BACK_ENTRY_NUM_SYNC_FAILURES = "back_entry_num_sync_failures";
     String ENCRYPTED_DOCUMENT_COLUMN_BACK_ENTRY_LAST_SYNC_FAILURE_TIME = "back_entry_last_sync_failure_time";
     String ENCRYPTED_DOCUMENT_COLUMN_BACK_ENTRY_CREATION_INCOMPLETE = "back_entry_creation_incomplete";
+    String ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_SIZE = "plaintext_size";
+    String ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_MODIFICATION_TIME = "plaintext_modification_time";
+    String ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_FINGERPRINT = "plaintext_fingerprint";
+
+    String SEARCH_WORDS_TABLE = "search_words";
+    String SEARCH_WORD_COLUMN_ID = "_id";
+    String SEARCH_WORD_COLUMN_DOCUMENT_ID = "document_id";
+    String SEARCH_WORD_COLUMN_WORD = "word";
 }
\ No newline at end of file
@@ -75,7 +75,7 @@ public class H2Database extends AbstractDatabase {
     private static final String DATABASE_NAME = "StorageCrypt";
 
     /** The database version. Increased every time the structure of the database changes */
-    private static final int DATABASE_VERSION = 12;
+    private static final int DATABASE_VERSION = 14;
 
     /** The driver class name for this type of database */
     private static final String DB_DRIVER = "org.h2.Driver";
@@ -101,6 +101,9 @@ public class H2Database extends AbstractDatabase {
     /** The DAO used to access the {@code EncryptedDocument} objects */
     private Dao<EncryptedDocument, Long> encryptedDocumentDao = null;
 
+    /** The DAO used to access the {@code SearchWord} objects */
+    private Dao<SearchWord, Long> searchWordDao = null;
+
     /**
      * Creates a new {@code H2Database} instance, providing its dependencies.
      *
@@ -212,6 +215,7 @@ public class H2Database extends AbstractDatabase {
             TableUtils.createTableIfNotExists(connectionSource, DatabaseInfo.class);
             TableUtils.createTableIfNotExists(connectionSource, Account.class);
             TableUtils.createTableIfNotExists(connectionSource, EncryptedDocument.class);
+            TableUtils.createTableIfNotExists(connectionSource, SearchWord.class);
             DatabaseInfo databaseInfo = new DatabaseInfo();
             databaseInfo.setVersion(DATABASE_VERSION);
             getDatabaseInfoDao().create(databaseInfo);
@@ -295,6 +299,9 @@ public class H2Database extends AbstractDatabase {
                                     "FALSE"),
                                     DatabaseConnection.DEFAULT_RESULT_FLAGS);
 
+                            addPlaintextFingerprintColumns(encryptedDocumentsConnection);
+                            createSearchIndex(connectionSource);
+
                             updateDatabaseVersion(oldVersion, newVersion);
                         } finally {
                             connectionSource.releaseConnection(accountsConnection);
@@ -314,18 +321,42 @@ public class H2Database extends AbstractDatabase {
                                     "FALSE"),
                                     DatabaseConnection.DEFAULT_RESULT_FLAGS);
 
+                            addPlaintextFingerprintColumns(connection);
+                            createSearchIndex(connectionSource);
+
+                            updateDatabaseVersion(oldVersion, newVersion);
+                        } finally {
+                            connectionSource.releaseConnection(connection);
+                        }
+                        break;
+                    }
+                    case 12: {
+                        LOG.warn("Upgrading database from version {} to {}", oldVersion, newVersion);
+                        DatabaseConnection connection =
+                                connectionSource.getReadWriteConnection(DatabaseConstants.ENCRYPTED_DOCUMENTS_TABLE);
+                        try {
+                            addPlaintextFingerprintColumns(connection);
+                            createSearchIndex(connectionSource);
+
                             updateDatabaseVersion(oldVersion, newVersion);
                         } finally {
                             connectionSource.releaseConnection(connection);
                         }
                         break;
                     }
+                    case 13: {
+                        LOG.warn("Upgrading database from version {} to {}", oldVersion, newVersion);
+                        createSearchIndex(connectionSource);
+                        updateDatabaseVersion(oldVersion, newVersion);
+                        break;
+                    }
                     default:
                         LOG.warn("Upgrading database from version {} to {}, which will destroy all old data", oldVersion, newVersion);
                         try {
                             TableUtils.dropTable(connectionSource, DatabaseInfo.class, true);
                             TableUtils.dropTable(connectionSource, Account.class, true);
                             TableUtils.dropTable(connectionSource, EncryptedDocument.class, true);
+                            TableUtils.dropTable(connectionSource, SearchWord.class, true);
                         } catch (SQLException e) {
                             LOG.error("exception during onUpgrade", e);
                         }
@@ -336,6 +367,44 @@ public class H2Database extends AbstractDatabase {
         });
     }
 
+    /**
+     * Adds the columns holding the fingerprint of the clear files to the encrypted documents table.
+     *
+     * @param connection the connection to the encrypted documents table
+     * @throws SQLException if an error occurs when making the change
+     */
+    private void addPlaintextFingerprintColumns(DatabaseConnection connection) throws SQLException {
+        connection.executeStatement(
+                String.format("alter table %s add column `%s` BIGINT default -1",
+                DatabaseConstants.ENCRYPTED_DOCUMENTS_TABLE,
+                DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_SIZE),
+                DatabaseConnection.DEFAULT_RESULT_FLAGS);
+        connection.executeStatement(
+                String.format("alter table %s add column `%s` BIGINT default -1",
+                DatabaseConstants.ENCRYPTED_DOCUMENTS_TABLE,
+                DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_MODIFICATION_TIME),
+                DatabaseConnection.DEFAULT_RESULT_FLAGS);
+        connection.executeStatement(
+                String.format("alter table %s add column `%s` VARCHAR",
+                DatabaseConstants.ENCRYPTED_DOCUMENTS_TABLE,
+                DatabaseConstants.ENCRYPTED_DOCUMENT_COLUMN_PLAINTEXT_FINGERPRINT),
+                DatabaseConnection.DEFAULT_RESULT_FLAGS);
+    }
+
+    /**
+     * Creates the table of the words used to search the documents, and fills it with the words
+     * of the existing documents.
+     *
+     * @param connectionSource the ORMLite connection source
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     * @throws SQLException                      if an error occurs when making the change
+     */
+    private void createSearchIndex(ConnectionSource connectionSource)
+            throws DatabaseConnectionClosedException, SQLException {
+        TableUtils.createTableIfNotExists(connectionSource, SearchWord.class);
+        rebuildSearchIndex();
+    }
+
     /**
      * Changes the version of the database.
      *
@@ -404,6 +473,22 @@ public class H2Database extends AbstractDatabase {
         return encryptedDocumentDao;
     }
 
+    @Override
+    protected Dao<SearchWord, Long> getSearchWordDao() throws DatabaseConnectionClosedException {
+        if (null == searchWordDao) {
+            try {
+                if (!isOpen()) {
+                    throw new DatabaseConnectionClosedException("Database is closed");
+                }
+                searchWordDao = DaoManager.createDao(connectionSource, SearchWord.class);
+            } catch (SQLException e) {
+                LOG.error("SQL error", e);
+                throw new DatabaseConnectionClosedException("Failed to open database", e);
+            }
+        }
+        return searchWordDao;
+    }
+
     @Override
     public void resetDatabase() throws DatabaseConnectionClosedException {
         if (!isOpen()) {
@@ -416,6 +501,7 @@ public class H2Database extends AbstractDatabase {
                     TableUtils.dropTable(connectionSource, DatabaseInfo.class, true);
                     TableUtils.dropTable(connectionSource, Account.class, true);
                     TableUtils.dropTable(connectionSource, EncryptedDocument.class, true);
+                    TableUtils.dropTable(connectionSource, SearchWord.class, true);
 
                     // then recreate them
                     onCreate(connectionSource);
@@ -0,0 +1,151 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.db;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * This class holds a word of the display name or of the mime type of an encrypted document.
+ *
+ * <p>The words are stored in an indexed table of the database, so that the documents can be found
+ * by the beginning of any of the words of their name, without reading all the documents.
+ *
+ * <p>The words are normalized : they are lower case, and the accents are removed.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+@DatabaseTable(tableName = DatabaseConstants.SEARCH_WORDS_TABLE)
+public class SearchWord {
+    /** The maximum length of the stored words */
+    private static final int MAX_WORD_LENGTH = 128;
+
+    private static final Pattern DIACRITICS_PATTERN = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS_PATTERN = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @DatabaseField(generatedId = true, columnName = DatabaseConstants.SEARCH_WORD_COLUMN_ID)
+    private long id;
+
+    @DatabaseField(columnName = DatabaseConstants.SEARCH_WORD_COLUMN_DOCUMENT_ID, index = true)
+    private long documentId;
+
+    @DatabaseField(columnName = DatabaseConstants.SEARCH_WORD_COLUMN_WORD, index = true,
+            width = MAX_WORD_LENGTH)
+    private String word;
+
+    /**
+     * Creates a new empty {@code SearchWord} instance.
+     */
+    public SearchWord() {
+        this(-1, null);
+    }
+
+    /**
+     * Creates a new {@code SearchWord} instance.
+     *
+     * @param documentId the id of the document this word belongs to
+     * @param word       the normalized word
+     */
+    public SearchWord(long documentId, String word) {
+        this.id = -1;
+        this.documentId = documentId;
+        this.word = word;
+    }
+
+    /**
+     * Returns the id of the document this word belongs to.
+     *
+     * @return the id of the document this word belongs to
+     */
+    public long getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * Returns the normalized word.
+     *
+     * @return the normalized word
+     */
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * Returns the given {@code text} in lower case, without accents.
+     *
+     * @param text the text to normalize
+     * @return the normalized text
+     */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS_PATTERN.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the normalized words of the given {@code texts}.
+     *
+     * <p>The words are separated by any character which is neither a letter nor a digit, so that
+     * "Holidays 2016.jpg" gives "holidays", "2016" and "jpg", and "image/jpeg" gives "image"
+     * and "jpeg".
+     *
+     * @param texts the texts to split into words (null texts are ignored)
+     * @return the set of distinct normalized words of the given {@code texts}
+     */
+    public static Set<String> extractWords(String... texts) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String text : texts) {
+            if (null != text) {
+                for (String word : SEPARATORS_PATTERN.split(normalize(text))) {
+                    if (!word.isEmpty()) {
+                        if (word.length() > MAX_WORD_LENGTH) {
+                            word = word.substring(0, MAX_WORD_LENGTH);
+                        }
+                        words.add(word);
+                    }
+                }
+            }
+        }
+        return words;
+    }
+}
@@ -165,21 +165,52 @@ public abstract class AbstractFileSystem implements FileSystem {
     }
 
     @Override
-    public List<String> getRecursiveDocumentsList(String document) {
-        List<String> documents = new ArrayList<>();
-        documents.add(document);
+    public List<LocalDocument> scanDocuments(String document) {
+        List<LocalDocument> documents = new ArrayList<>();
         File file = new File(document);
+        try {
+            file = file.getCanonicalFile();
+        } catch (IOException e) {
+            LOG.error("Failed to get canonical path", e);
+        }
+        scanDocuments(file, documents);
+        return documents;
+    }
+
+    private void scanDocuments(File file, List<LocalDocument> documents) {
         if (file.isDirectory()) {
+            documents.add(new LocalDocument(file.getPath(), true, 0L, file.lastModified()));
             File[] children = file.listFiles();
             if (null!=children) {
                 for (File child : children) {
-                    try {
-                        documents.addAll(getRecursiveDocumentsList(child.getCanonicalPath()));
-                    } catch (IOException e) {
-                        LOG.error("Failed to get recursive documents list", e);
-                    }
+                    scanDocuments(child, documents);
                 }
             }
+        } else {
+            documents.add(new LocalDocument(file.getPath(), false, file.length(), file.lastModified()));
+        }
+    }
+
+    @Override
+    public List<LocalDocument> getLocalDocuments(List<String> documents) {
+        List<LocalDocument> localDocuments = new ArrayList<>(documents.size());
+        for (String document : documents) {
+            File file = new File(document);
+            if (file.isDirectory()) {
+                localDocuments.add(new LocalDocument(document, true, 0L, file.lastModified()));
+            } else {
+                localDocuments.add(new LocalDocument(document, false, file.length(), file.lastModified()));
+            }
+        }
+        return localDocuments;
+    }
+
+    @Override
+    public List<String> getRecursiveDocumentsList(String document) {
+        List<LocalDocument> localDocuments = scanDocuments(document);
+        List<String> documents = new ArrayList<>(localDocuments.size());
+        for (LocalDocument localDocument : localDocuments) {
+            documents.add(localDocument.getPath());
         }
         return documents;
     }
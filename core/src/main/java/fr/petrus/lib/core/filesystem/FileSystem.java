@@ -191,6 +191,27 @@ public interface FileSystem {
      */
     File getOneDriveFilesDir(String accountName);
 
+    /**
+     * Recursively lists the given {@code document} and all its children, reading the attributes
+     * of each of them only once.
+     *
+     * <p>Folders are always listed before their children.
+     *
+     * @param document the root document (usually a folder)
+     * @return the list of all the children of the given {@code document}, including the given
+     *         {@code document} itself
+     */
+    List<LocalDocument> scanDocuments(String document);
+
+    /**
+     * Reads the attributes of each of the given {@code documents}, without listing the folders
+     * contents.
+     *
+     * @param documents the paths of the documents
+     * @return the list of the given {@code documents}, in the same order
+     */
+    List<LocalDocument> getLocalDocuments(List<String> documents);
+
     /**
      * Returns a list of file paths, built by recursively listing all the folder contents.
      *
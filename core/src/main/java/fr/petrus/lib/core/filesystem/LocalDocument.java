@@ -0,0 +1,106 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.filesystem;
+
+/**
+ * The attributes of a local document, as read once when scanning a local documents tree.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class LocalDocument {
+    private final String path;
+    private final boolean directory;
+    private final long size;
+    private final long modificationTime;
+
+    /**
+     * Creates a new {@code LocalDocument} instance.
+     *
+     * @param path             the path of the document
+     * @param directory        true if the document is a directory
+     * @param size             the size of the document, in bytes
+     * @param modificationTime the last modification time of the document (in ms from the epoch)
+     */
+    public LocalDocument(String path, boolean directory, long size, long modificationTime) {
+        this.path = path;
+        this.directory = directory;
+        this.size = size;
+        this.modificationTime = modificationTime;
+    }
+
+    /**
+     * Returns the path of this document.
+     *
+     * @return the path of this document
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns whether this document is a directory.
+     *
+     * @return true if this document is a directory
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the size of this document, in bytes.
+     *
+     * @return the size of this document, in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the last modification time of this document (in ms from the epoch).
+     *
+     * @return the last modification time of this document (in ms from the epoch)
+     */
+    public long getModificationTime() {
+        return modificationTime;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
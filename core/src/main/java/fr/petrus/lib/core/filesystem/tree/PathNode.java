@@ -62,11 +62,22 @@ public class PathNode {
      * @param filePath the path of the document represented by this {@code PathNode}
      */
     public PathNode(String filePath) {
+        this(filePath, new File(filePath).isDirectory());
+    }
+
+    /**
+     * Creates a new {@code PathNode} representing the document at the given {@code filePath},
+     * whose type is already known.
+     *
+     * @param filePath  the path of the document represented by this {@code PathNode}
+     * @param directory true if the document represented by this {@code PathNode} is a directory
+     */
+    public PathNode(String filePath, boolean directory) {
         this.filePath = filePath;
         File file = new File(filePath);
         parentPath = file.getParent();
         fileName = file.getName();
-        if (file.isDirectory()) {
+        if (directory) {
             children = new LinkedHashMap<>();
         } else {
             children = null;
@@ -167,7 +178,7 @@ public class PathNode {
      * @return the cloned {@code PathNode}
      */
     public PathNode clone() {
-        final PathNode clonedPathNode = new PathNode(filePath);
+        final PathNode clonedPathNode = new PathNode(filePath, isDirectory());
         if (isDirectory()) {
             for (PathNode child : children.values()) {
                 clonedPathNode.addChild(child.clone());
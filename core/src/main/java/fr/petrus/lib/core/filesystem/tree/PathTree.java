@@ -42,6 +42,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import fr.petrus.lib.core.filesystem.LocalDocument;
+
 /**
  * A structure representing a tree of filesystem path nodes.
  *
@@ -82,6 +84,29 @@ public class PathTree {
                 paths.put(document, new PathNode(document));
             }
         }
+        return buildTree(paths);
+    }
+
+    /**
+     * Creates a new tree from the given scanned {@code documents}, without reading their
+     * attributes again.
+     *
+     * <p>The upper level folders become the root nodes.
+     *
+     * @param documents a list containing the scanned documents used to build the tree
+     * @return the tree representing the structure of the given {@code documents}
+     */
+    public static PathTree buildLocalDocumentsTree(List<LocalDocument> documents) {
+        final Map<String, PathNode> paths = new LinkedHashMap<>();
+        for (LocalDocument document : documents) {
+            if (null!=document) {
+                paths.put(document.getPath(), new PathNode(document.getPath(), document.isDirectory()));
+            }
+        }
+        return buildTree(paths);
+    }
+
+    private static PathTree buildTree(Map<String, PathNode> paths) {
         final PathTree pathTree = new PathTree();
         for (PathNode pathNode : paths.values()) {
             if (!paths.containsKey(pathNode.getParentPath())) {
@@ -0,0 +1,105 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.metrics;
+
+/**
+ * This class gives access to the {@link MetricsRegistry} shared by the whole application.
+ *
+ * <p>Like the loggers, the metrics are reached statically, so that the REST clients, the database
+ * and the crypto streams can be instrumented without changing how they are created. The exporters
+ * read the same registry : {@link MetricsLogReporter} dumps it to the log, and the platforms may
+ * publish it by other means (JMX on desktop).
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public final class Metrics {
+    private static volatile MetricsRegistry registry = new MetricsRegistry();
+
+    private Metrics() {}
+
+    /**
+     * Returns the shared {@code MetricsRegistry}.
+     *
+     * @return the shared {@code MetricsRegistry}
+     */
+    public static MetricsRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Replaces the shared {@code MetricsRegistry}.
+     *
+     * <p>The metrics already obtained from the previous registry are not moved to the new one,
+     * so this should be called before any instrumented code runs.
+     *
+     * @param metricsRegistry the {@code MetricsRegistry} to use from now on
+     */
+    public static void setRegistry(MetricsRegistry metricsRegistry) {
+        registry = metricsRegistry;
+    }
+
+    /**
+     * Returns the {@code Counter} with the given {@code name} from the shared registry.
+     *
+     * @param name the name of the counter
+     * @return the {@code Counter} with the given {@code name}
+     */
+    public static Counter counter(String name) {
+        return registry.counter(name);
+    }
+
+    /**
+     * Returns the {@code Timer} with the given {@code name} from the shared registry.
+     *
+     * @param name the name of the timer
+     * @return the {@code Timer} with the given {@code name}
+     */
+    public static Timer timer(String name) {
+        return registry.timer(name);
+    }
+
+    /**
+     * Returns the {@code Throughput} with the given {@code name} from the shared registry.
+     *
+     * @param name the name of the throughput
+     * @return the {@code Throughput} with the given {@code name}
+     */
+    public static Throughput throughput(String name) {
+        return registry.throughput(name);
+    }
+}
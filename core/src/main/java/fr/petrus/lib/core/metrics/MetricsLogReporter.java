@@ -0,0 +1,134 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class dumps the metrics of a {@link MetricsRegistry} to the log, once on demand or
+ * periodically.
+ *
+ * <p>Each metric is logged on its own line, with all its values, at the INFO level.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class MetricsLogReporter {
+    private static Logger LOG = LoggerFactory.getLogger(MetricsLogReporter.class);
+
+    private final MetricsRegistry registry;
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * Creates a new {@code MetricsLogReporter} dumping the given {@code registry}.
+     *
+     * @param registry the {@code MetricsRegistry} to dump
+     */
+    public MetricsLogReporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Dumps the current values of all the metrics to the log.
+     */
+    public void report() {
+        Map<String, Metric> metrics = registry.getMetrics();
+        if (metrics.isEmpty()) {
+            return;
+        }
+        LOG.info("Metrics :");
+        for (Map.Entry<String, Metric> metricEntry : metrics.entrySet()) {
+            StringBuilder line = new StringBuilder(metricEntry.getKey());
+            for (Map.Entry<String, Number> valueEntry : metricEntry.getValue().getValues().entrySet()) {
+                line.append(' ').append(valueEntry.getKey()).append('=');
+                Number value = valueEntry.getValue();
+                if (value instanceof Double || value instanceof Float) {
+                    line.append(String.format("%.3f", value.doubleValue()));
+                } else {
+                    line.append(value);
+                }
+            }
+            LOG.info("  {}", line);
+        }
+    }
+
+    /**
+     * Starts dumping the metrics to the log every {@code periodSeconds}, in a background thread.
+     *
+     * <p>If this reporter was already started, it is restarted with the new period.
+     *
+     * @param periodSeconds the time between two dumps, in seconds
+     */
+    public synchronized void start(long periodSeconds) {
+        stop();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MetricsLogReporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    report();
+                } catch (RuntimeException e) {
+                    LOG.error("Failed to report metrics", e);
+                }
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic dumps, if they were started.
+     */
+    public synchronized void stop() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
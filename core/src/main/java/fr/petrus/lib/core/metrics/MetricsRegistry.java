@@ -0,0 +1,177 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class keeps the named {@link Metric}s of the application.
+ *
+ * <p>The metrics are created the first time they are requested, so that the instrumented code does
+ * not have to declare them. The names are dot separated, starting with the subsystem :
+ * {@code crypto.}, {@code rest.<service>.}, {@code db.}, {@code sync.}...
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class MetricsRegistry {
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the {@code Counter} with the given {@code name}, creating it if needed.
+     *
+     * @param name the name of the counter
+     * @return the {@code Counter} with the given {@code name}
+     * @throws IllegalArgumentException if a metric of another type is registered with this name
+     */
+    public Counter counter(String name) {
+        return getOrCreate(name, Counter.class);
+    }
+
+    /**
+     * Returns the {@code Timer} with the given {@code name}, creating it if needed.
+     *
+     * @param name the name of the timer
+     * @return the {@code Timer} with the given {@code name}
+     * @throws IllegalArgumentException if a metric of another type is registered with this name
+     */
+    public Timer timer(String name) {
+        return getOrCreate(name, Timer.class);
+    }
+
+    /**
+     * Returns the {@code Throughput} with the given {@code name}, creating it if needed.
+     *
+     * @param name the name of the throughput
+     * @return the {@code Throughput} with the given {@code name}
+     * @throws IllegalArgumentException if a metric of another type is registered with this name
+     */
+    public Throughput throughput(String name) {
+        return getOrCreate(name, Throughput.class);
+    }
+
+    /**
+     * Registers the given {@code metric} with the given {@code name}, replacing the metric
+     * previously registered with this name, if any.
+     *
+     * <p>This is mostly used to register {@link Gauge}s.
+     *
+     * @param name   the name of the metric
+     * @param metric the metric to register
+     */
+    public void register(String name, Metric metric) {
+        metrics.put(name, metric);
+    }
+
+    /**
+     * Removes the metric registered with the given {@code name}, if any.
+     *
+     * @param name the name of the metric to remove
+     */
+    public void remove(String name) {
+        metrics.remove(name);
+    }
+
+    /**
+     * Returns the metric registered with the given {@code name}.
+     *
+     * @param name the name of the metric
+     * @return the metric registered with the given {@code name}, or null if there is none
+     */
+    public Metric getMetric(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * Returns a snapshot of the registered metrics, sorted by name.
+     *
+     * @return a snapshot of the registered metrics, sorted by name
+     */
+    public SortedMap<String, Metric> getMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    /**
+     * Returns the current values of all the registered metrics, sorted by name.
+     *
+     * <p>The keys of the returned map are the metric names followed by the value names, like
+     * {@code rest.dropbox.latency.p99_ms}.
+     *
+     * @return the current values of all the registered metrics, sorted by name
+     */
+    public SortedMap<String, Number> getValues() {
+        SortedMap<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, Metric> metricEntry : metrics.entrySet()) {
+            for (Map.Entry<String, Number> valueEntry : metricEntry.getValue().getValues().entrySet()) {
+                values.put(metricEntry.getKey() + "." + valueEntry.getKey(), valueEntry.getValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Removes all the registered metrics.
+     */
+    public void clear() {
+        metrics.clear();
+    }
+
+    private <M extends Metric> M getOrCreate(String name, Class<M> metricClass) {
+        Metric metric = metrics.get(name);
+        if (null == metric) {
+            Metric newMetric;
+            try {
+                newMetric = metricClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException("Failed to create metric " + name, e);
+            }
+            metric = metrics.putIfAbsent(name, newMetric);
+            if (null == metric) {
+                metric = newMetric;
+            }
+        }
+        if (!metricClass.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a "
+                    + metricClass.getSimpleName());
+        }
+        return metricClass.cast(metric);
+    }
+}
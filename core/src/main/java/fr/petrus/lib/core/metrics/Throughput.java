@@ -0,0 +1,122 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Metric} recording the number of bytes processed by an operation, like encryption or
+ * decryption, and the time spent doing it.
+ *
+ * <p>The rate is computed from the time actually spent in the operation, not from the wall clock
+ * time, so when several threads run the operation at the same time it gives the rate of a single
+ * thread. Comparing it to the overall rate of a process tells whether this operation is the
+ * bottleneck.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class Throughput implements Metric {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * Records that the given number of {@code bytes} were processed in {@code durationNanos}.
+     *
+     * @param bytes         the number of bytes processed
+     * @param durationNanos the time spent processing them, in nanoseconds
+     */
+    public void update(long bytes, long durationNanos) {
+        count.incrementAndGet();
+        this.bytes.addAndGet(bytes);
+        totalNanos.addAndGet(Math.max(0, durationNanos));
+    }
+
+    /**
+     * Records that the given number of {@code bytes} were processed since {@code startNanos}.
+     *
+     * @param bytes      the number of bytes processed
+     * @param startNanos the start time, as returned by {@link System#nanoTime()}
+     */
+    public void updateSince(long bytes, long startNanos) {
+        update(bytes, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the total number of processed bytes.
+     *
+     * @return the total number of processed bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns the total time spent processing bytes, in nanoseconds.
+     *
+     * @return the total time spent processing bytes, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Returns the number of bytes processed per second of processing time.
+     *
+     * @return the number of bytes processed per second of processing time
+     */
+    public double getBytesPerSecond() {
+        long nanos = getTotalNanos();
+        if (0 == nanos) {
+            return 0.0;
+        }
+        return getBytes() * 1000000000.0 / nanos;
+    }
+
+    @Override
+    public Map<String, Number> getValues() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("count", count.get());
+        values.put("bytes", getBytes());
+        values.put("total_ms", getTotalNanos() / 1000000.0);
+        values.put("bytes_per_s", getBytesPerSecond());
+        return values;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * This class wraps an object behind one of its interfaces, timing every call to the methods of
+ * this interface.
+ *
+ * <p>The duration of each call is recorded in the {@link Timer} named after the given prefix and
+ * the method name, like {@code db.getEncryptedDocumentsByParentId}. Overloaded methods share the
+ * same timer.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class TimedProxy {
+
+    private TimedProxy() {}
+
+    /**
+     * Returns a proxy implementing the given {@code type}, which delegates all calls to the given
+     * {@code target} and records their durations in the given {@code registry}.
+     *
+     * @param type     the interface to proxy
+     * @param target   the object to delegate the calls to
+     * @param registry the {@code MetricsRegistry} where the durations are recorded
+     * @param prefix   the prefix of the timer names
+     * @param <T>      the type of the proxied interface
+     * @return the timed proxy
+     */
+    public static <T> T wrap(Class<T> type, final T target, final MetricsRegistry registry,
+                             final String prefix) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            registry.timer(prefix + "." + method.getName()).updateSince(start);
+                        }
+                    }
+                }));
+    }
+}
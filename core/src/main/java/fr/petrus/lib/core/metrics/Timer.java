@@ -0,0 +1,176 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link Metric} recording the durations of an operation, like a request or a query, in a
+ * latency histogram.
+ *
+ * <p>The histogram uses power of two buckets of microseconds, so recording a duration only costs a
+ * few atomic increments and the memory used does not depend on the number of recorded durations.
+ * The percentiles are estimated from these buckets, so they are accurate within a factor of 2,
+ * which is enough to tell a 5 ms query from a 500 ms request.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class Timer implements Metric {
+    private static final int NUM_BUCKETS = 64;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+    /**
+     * Records a duration.
+     *
+     * @param durationNanos the duration to record, in nanoseconds
+     */
+    public void update(long durationNanos) {
+        if (durationNanos < 0) {
+            durationNanos = 0;
+        }
+        count.incrementAndGet();
+        totalNanos.addAndGet(durationNanos);
+        long max = maxNanos.get();
+        while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)) {
+            max = maxNanos.get();
+        }
+        buckets.incrementAndGet(bucketIndex(durationNanos));
+    }
+
+    /**
+     * Records the duration elapsed since the given {@code startNanos}.
+     *
+     * @param startNanos the start time, as returned by {@link System#nanoTime()}
+     */
+    public void updateSince(long startNanos) {
+        update(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded durations, in nanoseconds.
+     *
+     * @return the sum of the recorded durations, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Returns the longest recorded duration, in nanoseconds.
+     *
+     * @return the longest recorded duration, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns an estimate of the given {@code quantile} of the recorded durations, in nanoseconds.
+     *
+     * <p>The returned value is the upper bound of the histogram bucket containing the quantile,
+     * bounded by the longest recorded duration.
+     *
+     * @param quantile the quantile to estimate, between 0 and 1 (0.99 for the 99th percentile)
+     * @return an estimate of the given {@code quantile} of the recorded durations, in nanoseconds
+     */
+    public long getQuantileNanos(double quantile) {
+        long total = 0;
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (0 == total) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long cumulated = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                return Math.min(bucketUpperBoundNanos(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    @Override
+    public Map<String, Number> getValues() {
+        long count = getCount();
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("count", count);
+        values.put("total_ms", toMillis(getTotalNanos()));
+        values.put("mean_ms", 0 == count ? 0.0 : toMillis(getTotalNanos() / count));
+        values.put("p50_ms", toMillis(getQuantileNanos(0.5)));
+        values.put("p95_ms", toMillis(getQuantileNanos(0.95)));
+        values.put("p99_ms", toMillis(getQuantileNanos(0.99)));
+        values.put("max_ms", toMillis(getMaxNanos()));
+        return values;
+    }
+
+    private static int bucketIndex(long durationNanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(durationNanos / 1000), NUM_BUCKETS - 1);
+    }
+
+    private static long bucketUpperBoundNanos(int index) {
+        if (index >= 53) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << index) * 1000;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+}
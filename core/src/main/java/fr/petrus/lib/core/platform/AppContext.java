@@ -55,9 +55,12 @@ import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.crypto.KeyManager;
 import fr.petrus.lib.core.db.Database;
 import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.metrics.Metrics;
+import fr.petrus.lib.core.metrics.TimedProxy;
 import fr.petrus.lib.core.network.Network;
 import fr.petrus.lib.core.i18n.TextI18n;
 import fr.petrus.lib.core.tasks.Task;
+import fr.petrus.lib.core.thumbnails.Thumbnails;
 
 /**
  * This class holds instances of various utility classes used by many other classes.
@@ -82,6 +85,7 @@ public class AppContext {
     private Database database = null;
     private Accounts accounts = null;
     private EncryptedDocuments encryptedDocuments = null;
+    private Thumbnails thumbnails = null;
     private HashMap<StorageType, RemoteStorage> cloudStorages = new HashMap<>();
     private HashMap<Class, Task> tasks = new HashMap<>();
 
@@ -109,7 +113,10 @@ public class AppContext {
 
         textI18n = platformFactory.textI18n();
 
-        database = platformFactory.database(fileSystem, textI18n);
+        /* Every database call is timed, as db.<method name> */
+        database = TimedProxy.wrap(Database.class, platformFactory.database(fileSystem, textI18n),
+                Metrics.registry(), "db");
+        thumbnails = new Thumbnails(crypto, keyManager, fileSystem, platformFactory.thumbnailGenerator());
 
         accounts = new Accounts();
         encryptedDocuments = new EncryptedDocuments();
@@ -201,6 +208,15 @@ public class AppContext {
         return encryptedDocuments;
     }
 
+    /**
+     * Returns the {@code Thumbnails} instance.
+     *
+     * @return the {@code Thumbnails} instance
+     */
+    public Thumbnails getThumbnails() {
+        return thumbnails;
+    }
+
     /**
      * Returns the {@code Accounts} instance.
      *
@@ -242,6 +258,20 @@ public class AppContext {
         return cloudStorage;
     }
 
+    /**
+     * Sets the {@code CloudStorage} instance which will be returned for the given {@code storageType},
+     * instead of the default implementation.
+     *
+     * <p>This is used to replace a storage with an emulated one, when testing or benchmarking the
+     * synchronization without accessing the real service.
+     *
+     * @param storageType  the {@code StorageType}
+     * @param cloudStorage the {@code CloudStorage} instance to use for the given {@code storageType}
+     */
+    public void setRemoteStorage(StorageType storageType, RemoteStorage cloudStorage) {
+        cloudStorages.put(storageType, cloudStorage);
+    }
+
     /**
      * Returns the {@code Task} instance for the given {@code taskClass}.
      *
@@ -44,6 +44,7 @@ import fr.petrus.lib.core.filesystem.FileSystem;
 import fr.petrus.lib.core.network.Network;
 import fr.petrus.lib.core.i18n.TextI18n;
 import fr.petrus.lib.core.tasks.Task;
+import fr.petrus.lib.core.thumbnails.ThumbnailGenerator;
 
 /**
  * Factory interface for creating instances of various platform dependant classes,
@@ -97,6 +98,13 @@ public interface PlatformFactory {
      */
     TextI18n textI18n();
 
+    /**
+     * Creates an instance of the platform dependant {@code ThumbnailGenerator} implementation.
+     *
+     * @return the interface of the newly created {@code ThumbnailGenerator} implementation
+     */
+    ThumbnailGenerator thumbnailGenerator();
+
     /**
      * Creates an instance of the {@code Database} implementation.
      *
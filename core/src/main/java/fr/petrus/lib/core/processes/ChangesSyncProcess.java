@@ -91,6 +91,14 @@ public class ChangesSyncProcess extends AbstractProcess<ChangesSyncProcess.Resul
      * The interface used by this process for communicating with its caller.
      */
     public interface SyncActionListener {
+        /**
+         * The method called when the given {@code encryptedDocument} was created, modified or
+         * deleted by the synchronization of the remote changes.
+         *
+         * @param encryptedDocument the encrypted document which changed
+         */
+        void onDocumentChanged(EncryptedDocument encryptedDocument);
+
         /**
          * The method called when the synchronization of the given {@code rootEncryptedDocument} is
          * finished.
@@ -228,6 +236,9 @@ public class ChangesSyncProcess extends AbstractProcess<ChangesSyncProcess.Resul
     private EncryptedDocuments encryptedDocuments;
     private List<EncryptedDocument> successfulSyncs = new ArrayList<>();
     private LinkedHashMap<String, FailedResult<String>> failedSyncs = new LinkedHashMap<>();
+
+    /** The alias of the last key which successfully decrypted metadata, for each account id */
+    private Map<Long, String> lastDecryptionKeyAliases = new HashMap<>();
     private ProgressListener progressListener;
     private SyncActionListener syncActionListener;
 
@@ -446,6 +457,7 @@ public class ChangesSyncProcess extends AbstractProcess<ChangesSyncProcess.Resul
                                 }
                             });
                     if (null != changes) {
+                        storage.cacheChanges(account.getAccountName(), changes);
                         if (!changes.isDeltaMode()) {
                             encryptedDocuments.completeChanges(account, changes);
                         }
@@ -478,6 +490,9 @@ public class ChangesSyncProcess extends AbstractProcess<ChangesSyncProcess.Resul
                                     switch (syncResult.result) {
                                         case Synced:
                                             successfulSyncs.add(syncResult.encryptedDocument);
+                                            if (null != syncActionListener) {
+                                                syncActionListener.onDocumentChanged(syncResult.encryptedDocument);
+                                            }
                                             break;
                                     }
                                 }
@@ -584,10 +599,16 @@ public class ChangesSyncProcess extends AbstractProcess<ChangesSyncProcess.Resul
                 encryptedMetadata = remoteDocument.getName();
             }
 
+            long accountId = rootEncryptedDocument.getBackStorageAccount().getId();
+            String preferredKeyAlias = lastDecryptionKeyAliases.get(accountId);
+            if (null==preferredKeyAlias) {
+                preferredKeyAlias = rootEncryptedDocument.getKeyAlias();
+            }
             EncryptedDocumentMetadata encryptedDocumentMetadata =
                     new EncryptedDocumentMetadata(crypto, keyManager);
             try {
-                encryptedDocumentMetadata.decrypt(encryptedMetadata);
+                encryptedDocumentMetadata.decrypt(encryptedMetadata, preferredKeyAlias);
+                lastDecryptionKeyAliases.put(accountId, encryptedDocumentMetadata.getKeyAlias());
 
                 LOG.debug("     - decrypted name = \"{}\"", encryptedDocumentMetadata.getDisplayName());
                 if (null!= progressListener) {
@@ -39,21 +39,37 @@ package fr.petrus.lib.core.processes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.StorageCryptException;
 import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.crypto.CryptoException;
 import fr.petrus.lib.core.crypto.EncryptedDataStream;
 import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.crypto.SecretKeys;
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
 import fr.petrus.lib.core.processes.results.BaseProcessResults;
@@ -151,6 +167,18 @@ public class DocumentsDecryptionProcess extends AbstractProcess<DocumentsDecrypt
         }
     }
 
+    /** The number of threads used to decrypt the files */
+    private static final int DECRYPTION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /** The maximum number of documents submitted but not reported yet, bounding how far the workers run ahead */
+    private static final int MAX_PENDING_DECRYPTIONS = 2 * DECRYPTION_THREADS;
+
+    /** The number of bytes represented by a progress step, so that the total size fits in an int */
+    private static final int PROGRESS_UNIT = 1024;
+
+    /** The delay (in ms) between two progress reports while waiting for a file decryption */
+    private static final long PROGRESS_REFRESH_DELAY = 200;
+
     private Crypto crypto = null;
     private KeyManager keyManager = null;
     private LinkedHashMap<Long, SourceDestinationResult<EncryptedDocument, File>> successfulDecryptions = new LinkedHashMap<>();
@@ -175,6 +203,9 @@ public class DocumentsDecryptionProcess extends AbstractProcess<DocumentsDecrypt
     /**
      * Sets the {@code ProgressListener} which this process will report its progress to.
      *
+     * <p>The listener is only called by the thread running this process, never by the decryption
+     * workers.
+     *
      * @param progressListener the {@code ProgressListener} which this process will report its progress to
      */
     public void setProgressListener(ProgressListener progressListener) {
@@ -199,6 +230,8 @@ public class DocumentsDecryptionProcess extends AbstractProcess<DocumentsDecrypt
 
             if (null != srcDocuments && srcDocuments.size() > 0) {
                 HashMap<Long, File> dstFolders = new HashMap<>();
+                /* the destination files claimed by the files of this run, which may not be written yet */
+                Set<File> claimedDstFiles = new HashSet<>();
 
                 if (null != progressListener) {
                     progressListener.onMessage(0, dstFolderPath);
@@ -208,140 +241,94 @@ public class DocumentsDecryptionProcess extends AbstractProcess<DocumentsDecrypt
                     progressListener.onProgress(1, 0);
                 }
 
-                for (int i = 0; i < srcDocuments.size(); i++) {
-                    EncryptedDocument srcDocument = srcDocuments.get(i);
-
-                    pauseIfNeeded();
-                    if (isCanceled()) {
-                        return;
+                long totalBytes = 0;
+                for (EncryptedDocument srcDocument : srcDocuments) {
+                    if (!srcDocument.isFolder()) {
+                        totalBytes += srcDocument.getSize();
                     }
+                }
+                final AtomicInteger processedDocuments = new AtomicInteger(0);
+                final AtomicLong processedBytes = new AtomicLong(0);
+                if (null != progressListener) {
+                    progressListener.onSetMax(1, (int) Math.min(Integer.MAX_VALUE, totalBytes / PROGRESS_UNIT));
+                }
 
-                    if (null != progressListener) {
-                        progressListener.onProgress(0, i);
-                        progressListener.onProgress(1, 0);
-                    }
-                    File dstFile;
-                    if (dstFolders.containsKey(srcDocument.getParentId())) {
-                        dstFile = new File(dstFolders.get(srcDocument.getParentId()), srcDocument.getDisplayName());
-                    } else {
-                        dstFile = new File(dstFolder, srcDocument.getDisplayName());
-                    }
-                    if (srcDocument.isFolder()) {
-                        if (null != progressListener) {
-                            progressListener.onMessage(1, srcDocument.getDisplayName());
-                            progressListener.onSetMax(1, 1);
+                ExecutorService executor = Executors.newFixedThreadPool(DECRYPTION_THREADS);
+                try {
+                    Deque<DocumentDecryption> pendingDecryptions = new ArrayDeque<>();
+                    for (EncryptedDocument srcDocument : srcDocuments) {
+                        pauseIfNeeded();
+                        if (isCanceled()) {
+                            return;
                         }
-                        dstFolders.put(srcDocument.getId(), dstFile);
-                        LOG.debug("Creating folder {}", dstFile.getAbsolutePath());
-                        if (dstFile.exists()) {
-                            LOG.debug("Folder {} exists", dstFile.getAbsolutePath());
-                            existingDocuments.put(srcDocument.getId(),
-                                    new SourceDestinationResult<>(srcDocument, dstFile));
+
+                        File dstFile;
+                        if (dstFolders.containsKey(srcDocument.getParentId())) {
+                            dstFile = new File(dstFolders.get(srcDocument.getParentId()), srcDocument.getDisplayName());
                         } else {
-                            dstFile.mkdirs();
-                            successfulDecryptions.put(srcDocument.getId(),
-                                    new SourceDestinationResult<>(srcDocument, dstFile));
-                        }
-                        if (null != progressListener) {
-                            progressListener.onProgress(1, 1);
-                        }
-                    } else {
-                        if (null != progressListener) {
-                            progressListener.onMessage(1, srcDocument.failSafeLogicalPath());
-                            progressListener.onSetMax(1, (int) srcDocument.getSize());
-                            progressListener.onProgress(1, 0);
+                            dstFile = new File(dstFolder, srcDocument.getDisplayName());
                         }
-                        LOG.debug("Decrypting file {}", dstFile.getAbsolutePath());
-                        if (dstFile.exists()) {
-                            LOG.debug("File {} exists", dstFile.getAbsolutePath());
-                            existingDocuments.put(srcDocument.getId(),
-                                    new SourceDestinationResult<>(srcDocument, dstFile));
+                        DocumentDecryption documentDecryption = new DocumentDecryption(srcDocument, dstFile);
+                        pendingDecryptions.add(documentDecryption);
+                        if (srcDocument.isFolder()) {
+                            if (null != progressListener) {
+                                progressListener.onMessage(1, srcDocument.getDisplayName());
+                            }
+                            dstFolders.put(srcDocument.getId(), dstFile);
+                            LOG.debug("Creating folder {}", dstFile.getAbsolutePath());
+                            if (claimedDstFiles.contains(dstFile)) {
+                                LOG.debug("File {} is already decrypted by this process", dstFile.getAbsolutePath());
+                                documentDecryption.exception = new StorageCryptException(
+                                        "Failed to create folder : a file with the same name is already decrypted",
+                                        StorageCryptException.Reason.DocumentExists);
+                            } else if (dstFile.exists()) {
+                                LOG.debug("Folder {} exists", dstFile.getAbsolutePath());
+                                documentDecryption.existing = true;
+                            } else {
+                                dstFile.mkdirs();
+                            }
                         } else {
-                            InputStream srcFileInputStream = null;
-                            OutputStream dstFileOutputStream = null;
-                            try {
-                                try {
-                                    File srcFile = srcDocument.file();
-                                    srcFileInputStream = new FileInputStream(srcFile);
-                                } catch (IOException e) {
-                                    LOG.error("Failed to open source file {}", srcDocument.getFileName(), e);
-                                    failedDecryptions.put(srcDocument.getId(), new FailedResult<>(srcDocument,
-                                            new StorageCryptException("Failed to open source file",
-                                                    StorageCryptException.Reason.SourceFileOpenError, e)));
-                                    continue;
-                                }
-
-                                try {
-                                    dstFile.createNewFile();
-                                    dstFileOutputStream = new FileOutputStream(dstFile);
-                                } catch (IOException e) {
-                                    LOG.error("Failed to open destination file {}", dstFile.getAbsolutePath(), e);
-                                    failedDecryptions.put(srcDocument.getId(), new FailedResult<>(srcDocument,
-                                            new StorageCryptException("Failed to open destination file",
-                                                    StorageCryptException.Reason.DestinationFileOpenError, e)));
-                                    continue;
-                                }
-
+                            if (null != progressListener) {
+                                progressListener.onMessage(1, srcDocument.failSafeLogicalPath());
+                            }
+                            LOG.debug("Decrypting file {}", dstFile.getAbsolutePath());
+                            if (claimedDstFiles.contains(dstFile)) {
+                                LOG.debug("File {} is already decrypted by this process", dstFile.getAbsolutePath());
+                                documentDecryption.exception = new StorageCryptException(
+                                        "Failed to decrypt file : a file with the same name is already decrypted",
+                                        StorageCryptException.Reason.DocumentExists);
+                            } else if (dstFile.exists()) {
+                                LOG.debug("File {} exists", dstFile.getAbsolutePath());
+                                documentDecryption.existing = true;
+                            } else {
+                                claimedDstFiles.add(dstFile);
                                 try {
-                                    EncryptedDataStream encryptedDataStream
-                                            = new EncryptedDataStream(crypto, keyManager.getKeys(srcDocument.getKeyAlias()));
-                                    encryptedDataStream.decrypt(srcFileInputStream, dstFileOutputStream, new ProcessProgressAdapter() {
-                                        @Override
-                                        public void onProgress(int i, int progress) {
-                                            if (null != progressListener) {
-                                                if (0 == i) {
-                                                    progressListener.onProgress(1, progress);
-                                                }
-                                            }
-                                        }
-
-                                        @Override
-                                        public void onSetMax(int i, int max) {
-                                            if (null != progressListener) {
-                                                if (0 == i) {
-                                                    progressListener.onSetMax(1, max);
-                                                }
-                                            }
-                                        }
-
-                                        @Override
-                                        public boolean isCanceled() {
-                                            return DocumentsDecryptionProcess.this.isCanceled();
-                                        }
-
-                                        @Override
-                                        public void pauseIfNeeded() {
-                                            DocumentsDecryptionProcess.this.pauseIfNeeded();
-                                        }
-                                    });
+                                    documentDecryption.future = executor.submit(new FileDecryptionTask(
+                                            documentDecryption, srcDocument.file(),
+                                            keyManager.getKeys(srcDocument.getKeyAlias()),
+                                            processedDocuments, processedBytes));
                                 } catch (CryptoException e) {
-                                    dstFile.delete();
                                     LOG.error("Failed to decrypt file {}", srcDocument.getDisplayName(), e);
-                                    failedDecryptions.put(srcDocument.getId(), new FailedResult<>(srcDocument,
-                                            new StorageCryptException("Failed to decrypt file",
-                                                    StorageCryptException.Reason.DecryptionError, e)));
-                                    continue;
-                                }
-                                successfulDecryptions.put(srcDocument.getId(),
-                                        new SourceDestinationResult<>(srcDocument, dstFile));
-                            } finally {
-                                if (null != srcFileInputStream) {
-                                    try {
-                                        srcFileInputStream.close();
-                                    } catch (IOException e) {
-                                        LOG.error("Error when closing source input stream", e);
-                                    }
-                                }
-                                if (null != dstFileOutputStream) {
-                                    try {
-                                        dstFileOutputStream.close();
-                                    } catch (IOException e) {
-                                        LOG.error("Error when closing destination output stream", e);
-                                    }
+                                    documentDecryption.exception = new StorageCryptException(
+                                            "Failed to decrypt file", StorageCryptException.Reason.DecryptionError, e);
                                 }
                             }
                         }
+
+                        while (pendingDecryptions.size() >= MAX_PENDING_DECRYPTIONS) {
+                            if (!completeDecryption(pendingDecryptions.poll(), processedDocuments, processedBytes)) {
+                                return;
+                            }
+                        }
                     }
+                    executor.shutdown();
+                    while (!pendingDecryptions.isEmpty()) {
+                        if (!completeDecryption(pendingDecryptions.poll(), processedDocuments, processedBytes)) {
+                            return;
+                        }
+                    }
+                } finally {
+                    executor.shutdownNow();
                 }
             }
         } finally {
@@ -351,4 +338,199 @@ public class DocumentsDecryptionProcess extends AbstractProcess<DocumentsDecrypt
                     failedDecryptions.values());
         }
     }
+
+    /**
+     * Reports the progress of the decryptions to the {@code ProgressListener}, from the thread
+     * running this process.
+     *
+     * @param processedDocuments the number of processed documents
+     * @param processedBytes     the number of processed bytes
+     */
+    private void reportProgress(AtomicInteger processedDocuments, AtomicLong processedBytes) {
+        if (null != progressListener) {
+            progressListener.onProgress(0, processedDocuments.get());
+            progressListener.onProgress(1, (int) Math.min(Integer.MAX_VALUE,
+                    processedBytes.get() / PROGRESS_UNIT));
+        }
+    }
+
+    /**
+     * Waits for the given {@code documentDecryption} to complete, reporting the progress meanwhile,
+     * then reports its result.
+     *
+     * @param documentDecryption the document decryption to complete
+     * @param processedDocuments the number of processed documents
+     * @param processedBytes     the number of processed bytes
+     * @return false if this process was canceled or interrupted while waiting
+     */
+    private boolean completeDecryption(DocumentDecryption documentDecryption, AtomicInteger processedDocuments,
+                                       AtomicLong processedBytes) {
+        EncryptedDocument srcDocument = documentDecryption.srcDocument;
+        StorageCryptException exception = documentDecryption.exception;
+        if (null != documentDecryption.future) {
+            try {
+                while (true) {
+                    try {
+                        documentDecryption.future.get(PROGRESS_REFRESH_DELAY, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        reportProgress(processedDocuments, processedBytes);
+                        if (isCanceled()) {
+                            return false;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOG.error("Interrupted while decrypting file {}", srcDocument.getDisplayName(), e);
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof StorageCryptException) {
+                    exception = (StorageCryptException) e.getCause();
+                } else {
+                    LOG.error("Failed to decrypt file {}", srcDocument.getDisplayName(), e.getCause());
+                    documentDecryption.dstFile.delete();
+                    exception = new StorageCryptException("Failed to decrypt file",
+                            StorageCryptException.Reason.DecryptionError, e.getCause());
+                }
+            }
+            if (isCanceled()) {
+                return false;
+            }
+            reportProgress(processedDocuments, processedBytes);
+        } else if (null != progressListener) {
+            progressListener.onProgress(0, processedDocuments.incrementAndGet());
+        }
+
+        if (documentDecryption.existing) {
+            existingDocuments.put(srcDocument.getId(),
+                    new SourceDestinationResult<>(srcDocument, documentDecryption.dstFile));
+        } else if (null != exception) {
+            failedDecryptions.put(srcDocument.getId(), new FailedResult<>(srcDocument, exception));
+        } else {
+            successfulDecryptions.put(srcDocument.getId(),
+                    new SourceDestinationResult<>(srcDocument, documentDecryption.dstFile));
+        }
+        return true;
+    }
+
+    /**
+     * The decryption of a single document, reported in the order of the source documents.
+     */
+    private static class DocumentDecryption {
+        private final EncryptedDocument srcDocument;
+        private final File dstFile;
+        private boolean existing = false;
+        private StorageCryptException exception = null;
+        private Future<Void> future = null;
+
+        private DocumentDecryption(EncryptedDocument srcDocument, File dstFile) {
+            this.srcDocument = srcDocument;
+            this.dstFile = dstFile;
+        }
+    }
+
+    /**
+     * The task run by a worker to decrypt a single file.
+     *
+     * <p>It only reads the encrypted file and writes the decrypted one : the database and the
+     * {@code ProgressListener} are only accessed by the thread running this process, and the
+     * worker only updates the progress counters.
+     */
+    private class FileDecryptionTask implements Callable<Void> {
+        private final DocumentDecryption documentDecryption;
+        private final File srcFile;
+        private final SecretKeys secretKeys;
+        private final AtomicInteger processedDocuments;
+        private final AtomicLong processedBytes;
+
+        private FileDecryptionTask(DocumentDecryption documentDecryption, File srcFile, SecretKeys secretKeys,
+                                   AtomicInteger processedDocuments, AtomicLong processedBytes) {
+            this.documentDecryption = documentDecryption;
+            this.srcFile = srcFile;
+            this.secretKeys = secretKeys;
+            this.processedDocuments = processedDocuments;
+            this.processedBytes = processedBytes;
+        }
+
+        @Override
+        public Void call() throws StorageCryptException {
+            EncryptedDocument srcDocument = documentDecryption.srcDocument;
+            File dstFile = documentDecryption.dstFile;
+            InputStream srcFileInputStream = null;
+            OutputStream dstFileOutputStream = null;
+            try {
+                try {
+                    srcFileInputStream = new BufferedInputStream(new FileInputStream(srcFile),
+                            Constants.FILE.BUFFER_SIZE);
+                } catch (IOException e) {
+                    LOG.error("Failed to open source file {}", srcDocument.getFileName(), e);
+                    throw new StorageCryptException("Failed to open source file",
+                            StorageCryptException.Reason.SourceFileOpenError, e);
+                }
+
+                try {
+                    dstFile.createNewFile();
+                    dstFileOutputStream = new FileOutputStream(dstFile);
+                } catch (IOException e) {
+                    LOG.error("Failed to open destination file {}", dstFile.getAbsolutePath(), e);
+                    throw new StorageCryptException("Failed to open destination file",
+                            StorageCryptException.Reason.DestinationFileOpenError, e);
+                }
+
+                try {
+                    EncryptedDataStream encryptedDataStream = new EncryptedDataStream(crypto, secretKeys);
+                    encryptedDataStream.decrypt(srcFileInputStream, dstFileOutputStream, new ProcessProgressAdapter() {
+                        private int fileProcessedBytes = 0;
+
+                        @Override
+                        public void onProgress(int i, int progress) {
+                            if (0 == i) {
+                                processedBytes.addAndGet(progress - fileProcessedBytes);
+                                fileProcessedBytes = progress;
+                            }
+                        }
+
+                        @Override
+                        public boolean isCanceled() {
+                            return DocumentsDecryptionProcess.this.isCanceled();
+                        }
+
+                        @Override
+                        public void pauseIfNeeded() {
+                            DocumentsDecryptionProcess.this.pauseIfNeeded();
+                        }
+                    });
+                } catch (CryptoException e) {
+                    closeDestination(dstFileOutputStream);
+                    dstFileOutputStream = null;
+                    dstFile.delete();
+                    LOG.error("Failed to decrypt file {}", srcDocument.getDisplayName(), e);
+                    throw new StorageCryptException("Failed to decrypt file",
+                            StorageCryptException.Reason.DecryptionError, e);
+                }
+            } finally {
+                if (null != srcFileInputStream) {
+                    try {
+                        srcFileInputStream.close();
+                    } catch (IOException e) {
+                        LOG.error("Error when closing source input stream", e);
+                    }
+                }
+                closeDestination(dstFileOutputStream);
+                processedDocuments.incrementAndGet();
+            }
+            return null;
+        }
+
+        private void closeDestination(OutputStream dstFileOutputStream) {
+            if (null != dstFileOutputStream) {
+                try {
+                    dstFileOutputStream.close();
+                } catch (IOException e) {
+                    LOG.error("Error when closing destination output stream", e);
+                }
+            }
+        }
+    }
 }
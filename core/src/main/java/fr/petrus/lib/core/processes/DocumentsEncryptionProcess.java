@@ -45,12 +45,25 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.EncryptedDocuments;
@@ -60,6 +73,7 @@ import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.crypto.CryptoException;
 import fr.petrus.lib.core.crypto.EncryptedDataStream;
 import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.crypto.SecretKeys;
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.State;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
@@ -70,6 +84,7 @@ import fr.petrus.lib.core.processes.results.SourceDestinationResult;
 import fr.petrus.lib.core.result.ProcessProgressAdapter;
 import fr.petrus.lib.core.result.ProgressListener;
 import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.filesystem.LocalDocument;
 import fr.petrus.lib.core.i18n.TextI18n;
 
 /**
@@ -93,7 +108,7 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
          * @param textI18n a {@code textI18n} instance
          */
         public Results(TextI18n textI18n) {
-            super (textI18n, true, false, true);
+            super (textI18n, true, true, true);
         }
 
         @Override
@@ -102,6 +117,8 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
                 switch (resultsType) {
                     case Success:
                         return 2;
+                    case Skipped:
+                        return 2;
                     case Errors:
                         return 2;
                 }
@@ -115,6 +132,8 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
                 switch (resultsType) {
                     case Success:
                         return new ColumnType[] { ColumnType.Source, ColumnType.Destination };
+                    case Skipped:
+                        return new ColumnType[] { ColumnType.Source, ColumnType.Destination };
                     case Errors:
                         return new ColumnType[] { ColumnType.Document, ColumnType.Error };
                 }
@@ -135,6 +154,12 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
                                 success.get(i).getDestination().failSafeLogicalPath()
                         };
                         break;
+                    case Skipped:
+                        result = new String[]{
+                                skipped.get(i).getSource().getAbsolutePath(),
+                                skipped.get(i).getDestination().failSafeLogicalPath()
+                        };
+                        break;
                     case Errors:
                         result = new String[] {
                                 errors.get(i).getElement(),
@@ -162,11 +187,27 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
         }
     }
 
+    /** The number of threads used to encrypt the files */
+    private static final int ENCRYPTION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /** The maximum number of files created but not reported yet, bounding how far the workers run ahead */
+    private static final int MAX_PENDING_ENCRYPTIONS = 2 * ENCRYPTION_THREADS;
+
+    /** The number of bytes represented by a progress step, so that the total size fits in an int */
+    private static final int PROGRESS_UNIT = 1024;
+
+    /** The delay (in ms) between two progress reports while waiting for a file encryption */
+    private static final long PROGRESS_REFRESH_DELAY = 200;
+
+    /** The suffix of the temporary files where the workers encrypt the files */
+    private static final String TEMP_FILE_SUFFIX = ".part";
+
     private Crypto crypto;
     private KeyManager keyManager;
     private FileSystem fileSystem;
     private EncryptedDocuments encryptedDocuments;
     private LinkedHashMap<String, SourceDestinationResult<File, EncryptedDocument>> successfulEncryptions = new LinkedHashMap<>();
+    private LinkedHashMap<String, SourceDestinationResult<File, EncryptedDocument>> unchangedDocuments = new LinkedHashMap<>();
     private LinkedHashMap<String, FailedResult<String>> failedEncryptions = new LinkedHashMap<>();
     private ProgressListener progressListener;
 
@@ -192,6 +233,9 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
     /**
      * Sets the {@code ProgressListener} which this process will report its progress to.
      *
+     * <p>The listener is only called by the thread running this process, never by the encryption
+     * workers.
+     *
      * @param progressListener the {@code ProgressListener} which this process will report its progress to
      */
     public void setProgressListener(ProgressListener progressListener) {
@@ -206,23 +250,36 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
      * for them, and all the files they contain are also encrypted and stored into the matching
      * {@code EncryptedDocument}
      *
-     * @param srcDocuments the paths of the documents to encrypt
+     * <p>Files which were already encrypted into an existing {@code EncryptedDocument} are skipped
+     * if their size, last modification time and keyed fingerprint did not change since then.
+     *
+     * <p>The {@code srcDocuments} are the ones returned by {@link FileSystem#scanDocuments}, so that
+     * the attributes read while scanning are not read again for each document.
+     *
+     * @param srcDocuments the documents to encrypt, including the contents of the folders
      * @param dstFolderId  the id of the {@code EncryptedDocument} representing the folder where the
      *                     documents will be encrypted
      * @param dstKeyAlias  the key used to encrypt the documents
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
-    public void encryptDocuments(List<String> srcDocuments, long dstFolderId, String dstKeyAlias)
+    public void encryptDocuments(List<LocalDocument> srcDocuments, long dstFolderId, String dstKeyAlias)
             throws DatabaseConnectionClosedException {
         try {
             start();
             EncryptedDocument dstFolder = encryptedDocuments.encryptedDocumentWithId(dstFolderId);
             if (null != dstFolder && null != srcDocuments && srcDocuments.size() > 0) {
-                final List<String> folders = fileSystem.getFoldersList(srcDocuments);
+                final List<String> folders = new ArrayList<>();
+                final List<LocalDocument> files = new ArrayList<>();
+                for (LocalDocument srcDocument : srcDocuments) {
+                    if (srcDocument.isDirectory()) {
+                        folders.add(srcDocument.getPath());
+                    } else {
+                        files.add(srcDocument);
+                    }
+                }
                 Collections.sort(folders);
                 final HashMap<String, EncryptedDocument> dstFolders = new HashMap<>();
                 final HashSet<String> failedFolders = new HashSet<>();
-                List<String> files = fileSystem.getFilesList(srcDocuments);
 
                 int currentDocumentIndex = 0;
                 if (null != progressListener) {
@@ -299,159 +356,508 @@ public class DocumentsEncryptionProcess extends AbstractProcess<DocumentsEncrypt
                     currentDocumentIndex++;
                 }
 
-                for (String srcPath : files) {
-                    pauseIfNeeded();
-                    if (isCanceled()) {
-                        return;
-                    }
-                    if (null != progressListener) {
-                        progressListener.onProgress(0, currentDocumentIndex);
+                encryptFiles(files, dstFolderId, dstKeyAlias, dstFolders, failedFolders, currentDocumentIndex);
+            }
+        } finally {
+            getResults().addResults(
+                    successfulEncryptions.values(),
+                    unchangedDocuments.values(),
+                    failedEncryptions.values());
+        }
+    }
+
+    /**
+     * Encrypts the given {@code files}, once their parent folders have been created.
+     *
+     * <p>The destination documents are created by the calling thread, then the files are encrypted
+     * concurrently by a bounded pool of workers. The results are reported in the order of the given
+     * {@code files}, whatever the order in which the workers complete.
+     *
+     * <p>Each worker encrypts into a temporary file, which replaces the destination file only once
+     * the encryption succeeded. If this process is canceled or interrupted, the encryptions which
+     * did not complete are abandoned : the documents created for them are deleted, and the existing
+     * documents keep their previous file.
+     *
+     * @param files                the files to encrypt
+     * @param dstFolderId          the id of the folder where the documents are encrypted
+     * @param dstKeyAlias          the key used to encrypt the documents
+     * @param dstFolders           the already created folders, mapped by their source path
+     * @param failedFolders        the source paths of the folders which creation failed
+     * @param currentDocumentIndex the number of documents already processed
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void encryptFiles(List<LocalDocument> files, long dstFolderId, String dstKeyAlias,
+                              Map<String, EncryptedDocument> dstFolders, Set<String> failedFolders,
+                              int currentDocumentIndex)
+            throws DatabaseConnectionClosedException {
+        long totalBytes = 0;
+        for (LocalDocument file : files) {
+            totalBytes += file.getSize();
+        }
+        final AtomicInteger processedDocuments = new AtomicInteger(currentDocumentIndex);
+        final AtomicLong processedBytes = new AtomicLong(0);
+        if (null != progressListener) {
+            progressListener.onSetMax(1, (int) Math.min(Integer.MAX_VALUE, totalBytes / PROGRESS_UNIT));
+            progressListener.onProgress(1, 0);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(ENCRYPTION_THREADS);
+        Deque<FileEncryption> pendingEncryptions = new ArrayDeque<>();
+        try {
+            for (LocalDocument file : files) {
+                pauseIfNeeded();
+                if (isCanceled()) {
+                    return;
+                }
+
+                String srcPath = file.getPath();
+                File srcFile = new File(srcPath);
+
+                if (null != progressListener) {
+                    progressListener.onMessage(1, srcPath);
+                }
+
+                long parentId;
+                if (dstFolders.containsKey(srcFile.getParent())) {
+                    parentId = dstFolders.get(srcFile.getParent()).getId();
+                } else if (failedFolders.contains(srcFile.getParent())) {
+                    LOG.error("Failed to create encrypted file {} because parent {} creation failed",
+                            srcPath, srcFile.getParent());
+                    pendingEncryptions.add(new FileEncryption(file, null, false,
+                            new StorageCryptException(
+                                    "Failed to create encrypted file because parent creation failed",
+                                    StorageCryptException.Reason.ParentNotFound)));
+                    continue;
+                } else {
+                    parentId = dstFolderId;
+                }
+
+                EncryptedDocument dstEncryptedDocument;
+                boolean created = false;
+                EncryptedDocument parent = encryptedDocuments.encryptedDocumentWithId(parentId);
+                if (null == parent) {
+                    pendingEncryptions.add(new FileEncryption(file, null, false,
+                            new StorageCryptException("Failed to find parent with id " + parentId,
+                                    StorageCryptException.Reason.ParentNotFound)));
+                    continue;
+                } else {
+                    dstEncryptedDocument = parent.child(srcFile.getName());
+                    if (null == dstEncryptedDocument) {
+                        try {
+                            dstEncryptedDocument = parent.createChild(srcFile.getName(),
+                                    fileSystem.getMimeType(srcFile), dstKeyAlias);
+                            created = true;
+                        } catch (StorageCryptException e) {
+                            LOG.error("Failed to create encrypted file {}", srcPath, e);
+                            pendingEncryptions.add(new FileEncryption(file, null, false, e));
+                            continue;
+                        }
+                    } else {
+                        if (dstEncryptedDocument.isFolder()) {
+                            pendingEncryptions.add(new FileEncryption(file, null, false,
+                                    new StorageCryptException("Document exists but is not a file",
+                                            StorageCryptException.Reason.FolderExistsFileExpected)));
+                            continue;
+                        }
                     }
+                }
 
-                    File srcFile = new File(srcPath);
+                SecretKeys secretKeys;
+                try {
+                    secretKeys = keyManager.getKeys(dstKeyAlias);
+                } catch (CryptoException e) {
+                    if (created) {
+                        dstEncryptedDocument.deleteLocal();
+                    }
+                    LOG.error("Failed to encrypt file {}", srcPath, e);
+                    pendingEncryptions.add(new FileEncryption(file, null, false,
+                            new StorageCryptException("Failed to encrypt file",
+                                    StorageCryptException.Reason.EncryptionError, e)));
+                    continue;
+                }
 
+                final FileEncryption fileEncryption =
+                        new FileEncryption(file, dstEncryptedDocument, created, null);
+                fileEncryption.dstFile = dstEncryptedDocument.file();
+                if (dstEncryptedDocument.mayHavePlaintext(file.getSize(), file.getModificationTime())) {
+                    fileEncryption.previousFingerprint = dstEncryptedDocument.getPlaintextFingerprint();
+                    /* the fingerprint pass reads the file once more */
+                    totalBytes += fileEncryption.plannedSize;
                     if (null != progressListener) {
-                        progressListener.onMessage(1, srcPath);
-                        progressListener.onSetMax(1, (int) srcFile.length());
-                        progressListener.onProgress(1, 0);
+                        progressListener.onSetMax(1, (int) Math.min(Integer.MAX_VALUE,
+                                totalBytes / PROGRESS_UNIT));
                     }
+                }
+                fileEncryption.future = executor.submit(
+                        new FileEncryptionTask(fileEncryption, secretKeys, processedDocuments, processedBytes));
+                pendingEncryptions.add(fileEncryption);
 
-                    long parentId;
-                    if (dstFolders.containsKey(srcFile.getParent())) {
-                        parentId = dstFolders.get(srcFile.getParent()).getId();
-                    } else if (failedFolders.contains(srcFile.getParent())) {
-                        LOG.error("Failed to create encrypted file {} because parent {} creation failed",
-                                srcPath, srcFile.getParent());
-                        failedEncryptions.put(srcPath, new FailedResult<>(srcPath,
-                                new StorageCryptException(
-                                        "Failed to create encrypted file because parent creation failed",
-                                        StorageCryptException.Reason.ParentNotFound)));
-                        continue;
-                    } else {
-                        parentId = dstFolderId;
+                while (pendingEncryptions.size() >= MAX_PENDING_ENCRYPTIONS) {
+                    if (!completeEncryption(pendingEncryptions.peek(), processedDocuments, processedBytes)) {
+                        return;
                     }
+                    pendingEncryptions.poll();
+                }
+            }
+            executor.shutdown();
+            while (!pendingEncryptions.isEmpty()) {
+                if (!completeEncryption(pendingEncryptions.peek(), processedDocuments, processedBytes)) {
+                    return;
+                }
+                pendingEncryptions.poll();
+            }
+        } finally {
+            executor.shutdownNow();
+            abandonEncryptions(pendingEncryptions);
+        }
+    }
 
-                    EncryptedDocument dstEncryptedDocument;
-                    EncryptedDocument parent = encryptedDocuments.encryptedDocumentWithId(parentId);
-                    if (null == parent) {
-                        failedEncryptions.put(srcPath, new FailedResult<>(srcPath,
-                                new StorageCryptException("Failed to find parent with id " + parentId,
-                                        StorageCryptException.Reason.ParentNotFound)));
-                        continue;
-                    } else {
-                        dstEncryptedDocument = parent.child(srcFile.getName());
-                        if (null == dstEncryptedDocument) {
-                            try {
-                                dstEncryptedDocument = parent.createChild(srcFile.getName(),
-                                        fileSystem.getMimeType(srcFile), dstKeyAlias);
-                            } catch (StorageCryptException e) {
-                                LOG.error("Failed to create encrypted file {}", srcPath, e);
-                                failedEncryptions.put(srcPath, new FailedResult<>(srcPath, e));
-                                continue;
-                            }
-                        } else {
-                            if (dstEncryptedDocument.isFolder()) {
-                                failedEncryptions.put(srcPath, new FailedResult<>(srcPath,
-                                        new StorageCryptException("Document exists but is not a file",
-                                                StorageCryptException.Reason.FolderExistsFileExpected)));
-                                continue;
-                            }
+    /**
+     * Reports the progress of the encryptions to the {@code ProgressListener}, from the thread
+     * running this process.
+     *
+     * @param processedDocuments the number of processed documents
+     * @param processedBytes     the number of processed bytes
+     */
+    private void reportProgress(AtomicInteger processedDocuments, AtomicLong processedBytes) {
+        if (null != progressListener) {
+            progressListener.onProgress(0, processedDocuments.get());
+            progressListener.onProgress(1, (int) Math.min(Integer.MAX_VALUE,
+                    processedBytes.get() / PROGRESS_UNIT));
+        }
+    }
+
+    /**
+     * Waits for the given {@code fileEncryption} to complete, then updates the destination document
+     * and reports the result.
+     *
+     * @param fileEncryption     the file encryption to complete
+     * @param processedDocuments the number of processed documents
+     * @param processedBytes     the number of processed bytes
+     * @return false if this process was canceled or interrupted while waiting
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private boolean completeEncryption(FileEncryption fileEncryption, AtomicInteger processedDocuments,
+                                       AtomicLong processedBytes)
+            throws DatabaseConnectionClosedException {
+        StorageCryptException exception = fileEncryption.exception;
+        if (null != fileEncryption.future) {
+            try {
+                while (true) {
+                    try {
+                        fileEncryption.future.get(PROGRESS_REFRESH_DELAY, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        reportProgress(processedDocuments, processedBytes);
+                        if (isCanceled()) {
+                            return false;
                         }
                     }
+                }
+            } catch (InterruptedException e) {
+                LOG.error("Interrupted while encrypting file {}", fileEncryption.srcPath, e);
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof StorageCryptException) {
+                    exception = (StorageCryptException) e.getCause();
+                } else {
+                    LOG.error("Failed to encrypt file {}", fileEncryption.srcPath, e.getCause());
+                    exception = new StorageCryptException("Failed to encrypt file",
+                            StorageCryptException.Reason.EncryptionError, e.getCause());
+                }
+            }
+            if (isCanceled()) {
+                return false;
+            }
+            reportProgress(processedDocuments, processedBytes);
+        } else {
+            /* failed before being submitted : its bytes will never be processed */
+            processedDocuments.incrementAndGet();
+            processedBytes.addAndGet(fileEncryption.plannedSize);
+            reportProgress(processedDocuments, processedBytes);
+        }
 
-                    InputStream srcFileInputStream = null;
-                    OutputStream dstFileOutputStream = null;
-                    File dstFile;
+        if (null == exception && fileEncryption.unchanged) {
+            unchangedDocuments.put(fileEncryption.srcPath,
+                    new SourceDestinationResult<>(fileEncryption.srcFile, fileEncryption.dstEncryptedDocument));
+        } else if (null != exception) {
+            if (fileEncryption.created) {
+                /* the destination file was not written : remove the empty document */
+                fileEncryption.dstEncryptedDocument.deleteLocal();
+            }
+            failedEncryptions.put(fileEncryption.srcPath,
+                    new FailedResult<>(fileEncryption.srcPath, exception));
+        } else {
+            recordEncryption(fileEncryption);
+        }
+        return true;
+    }
 
-                    try {
-                        try {
-                            srcFileInputStream = new FileInputStream(srcFile);
-                        } catch (IOException e) {
-                            LOG.error("Failed to open source file {}", srcPath, e);
-                            failedEncryptions.put(srcPath, new FailedResult<>(srcPath,
-                                    new StorageCryptException("Failed to open source file",
-                                            StorageCryptException.Reason.SourceFileOpenError, e)));
-                            continue;
-                        }
+    /**
+     * Updates the destination document of the given completed {@code fileEncryption}, and reports
+     * it as successful.
+     *
+     * @param fileEncryption the successfully completed file encryption
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void recordEncryption(FileEncryption fileEncryption) throws DatabaseConnectionClosedException {
+        EncryptedDocument dstEncryptedDocument = fileEncryption.dstEncryptedDocument;
+        dstEncryptedDocument.updateFileSize();
+        dstEncryptedDocument.updateLocalModificationTime(System.currentTimeMillis());
+        dstEncryptedDocument.updatePlaintextFingerprint(fileEncryption.srcSize,
+                fileEncryption.srcModificationTime, fileEncryption.fingerprint);
+        if (!dstEncryptedDocument.isUnsynchronized()) {
+            dstEncryptedDocument.updateSyncState(SyncAction.Upload, State.Planned);
+        }
+        successfulEncryptions.put(fileEncryption.srcPath,
+                new SourceDestinationResult<>(fileEncryption.srcFile, dstEncryptedDocument));
+    }
 
-                        try {
-                            dstFile = dstEncryptedDocument.file();
-                            dstFileOutputStream = new FileOutputStream(dstFile);
-                        } catch (IOException e) {
-                            LOG.error("Failed to open destination file {}", dstEncryptedDocument.getFileName(), e);
-                            failedEncryptions.put(srcPath, new FailedResult<>(srcPath,
-                                    new StorageCryptException("Failed to open destination file",
-                                            StorageCryptException.Reason.DestinationFileOpenError, e)));
-                            continue;
-                        }
+    /**
+     * Abandons the given {@code fileEncryptions}, which were not completed because this process was
+     * canceled or interrupted.
+     *
+     * <p>The encryptions which already replaced their destination file are recorded as successful.
+     * For the other ones, the documents created by this process are deleted, and the existing
+     * documents keep their previous file.
+     *
+     * @param fileEncryptions the file encryptions which were not completed
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void abandonEncryptions(Deque<FileEncryption> fileEncryptions)
+            throws DatabaseConnectionClosedException {
+        for (FileEncryption fileEncryption : fileEncryptions) {
+            if (null == fileEncryption.future) {
+                continue;
+            }
+            boolean committed;
+            synchronized (fileEncryption) {
+                fileEncryption.abandoned = true;
+                committed = fileEncryption.committed;
+            }
+            if (committed) {
+                recordEncryption(fileEncryption);
+            } else if (fileEncryption.created) {
+                LOG.debug("Deleting abandoned document {}", fileEncryption.srcPath);
+                fileEncryption.dstEncryptedDocument.deleteLocal();
+            }
+        }
+        fileEncryptions.clear();
+    }
 
-                        try {
-                            EncryptedDataStream encryptedDataStream =
-                                    new EncryptedDataStream(crypto, keyManager.getKeys(dstKeyAlias));
-                            encryptedDataStream.encrypt(srcFileInputStream, dstFileOutputStream, new ProcessProgressAdapter() {
-                                @Override
-                                public void onProgress(int i, int progress) {
-                                    if (null != progressListener) {
-                                        if (0 == i) {
-                                            progressListener.onProgress(1, progress);
-                                        }
-                                    }
-                                }
-
-                                @Override
-                                public void onSetMax(int i, int max) {
-                                    if (null != progressListener) {
-                                        if (0 == i) {
-                                            progressListener.onSetMax(1, max);
-                                        }
-                                    }
-                                }
-
-                                @Override
-                                public boolean isCanceled() {
-                                    return DocumentsEncryptionProcess.this.isCanceled();
-                                }
-
-                                @Override
-                                public void pauseIfNeeded() {
-                                    DocumentsEncryptionProcess.this.pauseIfNeeded();
-                                }
-                            });
-                            dstEncryptedDocument.updateFileSize();
-                            dstEncryptedDocument.updateLocalModificationTime(System.currentTimeMillis());
-                            if (!dstEncryptedDocument.isUnsynchronized()) {
-                                dstEncryptedDocument.updateSyncState(SyncAction.Upload, State.Planned);
-                            }
-                        } catch (CryptoException e) {
-                            dstEncryptedDocument.delete();
-                            LOG.error("Failed to encrypt file {}", srcPath, e);
-                            failedEncryptions.put(srcPath, new FailedResult<>(srcPath,
-                                    new StorageCryptException("Failed to encrypt file",
-                                            StorageCryptException.Reason.EncryptionError, e)));
-                            continue;
+    /**
+     * The encryption of a single file, either submitted to the workers pool or already failed.
+     */
+    private static class FileEncryption {
+        private final String srcPath;
+        private final File srcFile;
+        private final EncryptedDocument dstEncryptedDocument;
+        private final boolean created;
+        private final StorageCryptException exception;
+        private final long plannedSize;
+        private File dstFile = null;
+        private String previousFingerprint = null;
+        private Future<Void> future = null;
+
+        /* Set by the worker, and read once its future completed */
+        private long srcSize = -1;
+        private long srcModificationTime = -1;
+        private String fingerprint = null;
+        private boolean unchanged = false;
+
+        /* Guarded by this object : the worker only replaces the destination file if the
+           encryption was not abandoned, and the process only abandons it if it was not replaced */
+        private boolean committed = false;
+        private volatile boolean abandoned = false;
+
+        private FileEncryption(LocalDocument file, EncryptedDocument dstEncryptedDocument,
+                               boolean created, StorageCryptException exception) {
+            this.srcPath = file.getPath();
+            this.srcFile = new File(srcPath);
+            this.plannedSize = file.getSize();
+            this.dstEncryptedDocument = dstEncryptedDocument;
+            this.created = created;
+            this.exception = exception;
+        }
+    }
+
+    /**
+     * The task run by a worker to encrypt a single file into its destination document.
+     *
+     * <p>It only reads the source file and writes the destination file : the database and the
+     * {@code ProgressListener} are only accessed by the thread running this process.
+     */
+    private class FileEncryptionTask implements Callable<Void> {
+        private final FileEncryption fileEncryption;
+        private final SecretKeys secretKeys;
+        private final AtomicInteger processedDocuments;
+        private final AtomicLong processedBytes;
+
+        private FileEncryptionTask(FileEncryption fileEncryption, SecretKeys secretKeys,
+                                   AtomicInteger processedDocuments, AtomicLong processedBytes) {
+            this.fileEncryption = fileEncryption;
+            this.secretKeys = secretKeys;
+            this.processedDocuments = processedDocuments;
+            this.processedBytes = processedBytes;
+        }
+
+        @Override
+        public Void call() throws StorageCryptException {
+            String srcPath = fileEncryption.srcPath;
+            fileEncryption.srcSize = fileEncryption.srcFile.length();
+            fileEncryption.srcModificationTime = fileEncryption.srcFile.lastModified();
+            EncryptedDataStream encryptedDataStream = new EncryptedDataStream(crypto, secretKeys);
+            PassProgress encryptionPass = new PassProgress();
+            File tempFile = new File(fileEncryption.dstFile.getPath() + TEMP_FILE_SUFFIX);
+            InputStream srcFileInputStream = null;
+            OutputStream dstFileOutputStream = null;
+            try {
+                if (encryptionPass.isCanceled()) {
+                    return null;
+                }
+
+                if (null != fileEncryption.previousFingerprint) {
+                    PassProgress fingerprintPass = new PassProgress();
+                    try {
+                        srcFileInputStream = new FileInputStream(fileEncryption.srcFile);
+                        byte[] fingerprint = encryptedDataStream.fingerprint(srcFileInputStream,
+                                fingerprintPass);
+                        if (null != fingerprint && fileEncryption.previousFingerprint.equals(
+                                crypto.encodeBase64(fingerprint))) {
+                            LOG.debug("File {} did not change, skipping it", srcPath);
+                            fileEncryption.unchanged = true;
+                            return null;
                         }
+                    } catch (IOException | CryptoException e) {
+                        LOG.error("Failed to compute fingerprint of file {}", srcPath, e);
                     } finally {
-                        if (null != srcFileInputStream) {
-                            try {
-                                srcFileInputStream.close();
-                            } catch (IOException e) {
-                                LOG.error("Error when closing source input stream", e);
-                            }
-                        }
-                        if (null != dstFileOutputStream) {
-                            try {
-                                dstFileOutputStream.close();
-                            } catch (IOException e) {
-                                LOG.error("Error when closing destination output stream", e);
-                            }
+                        fingerprintPass.complete();
+                        closeSource(srcFileInputStream);
+                        srcFileInputStream = null;
+                    }
+                }
+
+                try {
+                    srcFileInputStream = new FileInputStream(fileEncryption.srcFile);
+                } catch (IOException e) {
+                    LOG.error("Failed to open source file {}", srcPath, e);
+                    throw new StorageCryptException("Failed to open source file",
+                            StorageCryptException.Reason.SourceFileOpenError, e);
+                }
+
+                try {
+                    dstFileOutputStream = new FileOutputStream(tempFile);
+                } catch (IOException e) {
+                    LOG.error("Failed to open destination file {}", tempFile, e);
+                    throw new StorageCryptException("Failed to open destination file",
+                            StorageCryptException.Reason.DestinationFileOpenError, e);
+                }
+
+                byte[] fingerprint;
+                try {
+                    fingerprint = encryptedDataStream.encryptWithFingerprint(
+                            srcFileInputStream, dstFileOutputStream, encryptionPass);
+                } catch (CryptoException e) {
+                    LOG.error("Failed to encrypt file {}", srcPath, e);
+                    throw new StorageCryptException("Failed to encrypt file",
+                            StorageCryptException.Reason.EncryptionError, e);
+                }
+                if (null == fingerprint) {
+                    /* canceled : the temporary file is deleted below */
+                    return null;
+                }
+                fileEncryption.fingerprint = crypto.encodeBase64(fingerprint);
+
+                try {
+                    dstFileOutputStream.close();
+                } catch (IOException e) {
+                    LOG.error("Failed to write destination file {}", tempFile, e);
+                    throw new StorageCryptException("Failed to write destination file",
+                            StorageCryptException.Reason.EncryptionError, e);
+                } finally {
+                    dstFileOutputStream = null;
+                }
+
+                synchronized (fileEncryption) {
+                    if (!fileEncryption.abandoned) {
+                        if (!replaceFile(tempFile, fileEncryption.dstFile)) {
+                            LOG.error("Failed to replace destination file {}", fileEncryption.dstFile);
+                            throw new StorageCryptException("Failed to replace destination file",
+                                    StorageCryptException.Reason.EncryptionError);
                         }
+                        fileEncryption.committed = true;
                     }
-                    successfulEncryptions.put(srcPath, new SourceDestinationResult<>(srcFile, dstEncryptedDocument));
-                    currentDocumentIndex++;
+                }
+            } finally {
+                closeSource(srcFileInputStream);
+                if (null != dstFileOutputStream) {
+                    try {
+                        dstFileOutputStream.close();
+                    } catch (IOException e) {
+                        LOG.error("Error when closing destination output stream", e);
+                    }
+                }
+                if (tempFile.exists() && !tempFile.delete()) {
+                    LOG.error("Failed to delete temporary file {}", tempFile);
+                }
+                encryptionPass.complete();
+                processedDocuments.incrementAndGet();
+            }
+            return null;
+        }
+
+        /**
+         * The progress of a single pass over the source file, added to the processed bytes.
+         *
+         * <p>Each pass counts its own bytes, and is completed up to the planned size of the file,
+         * so that the processed bytes never decrease, even if the pass is skipped or interrupted.
+         */
+        private class PassProgress extends ProcessProgressAdapter {
+            private long passProcessedBytes = 0;
+
+            @Override
+            public void onProgress(int i, int progress) {
+                if (0 == i && progress > passProcessedBytes) {
+                    processedBytes.addAndGet(progress - passProcessedBytes);
+                    passProcessedBytes = progress;
+                }
+            }
+
+            @Override
+            public boolean isCanceled() {
+                return fileEncryption.abandoned || DocumentsEncryptionProcess.this.isCanceled();
+            }
+
+            @Override
+            public void pauseIfNeeded() {
+                DocumentsEncryptionProcess.this.pauseIfNeeded();
+            }
+
+            private void complete() {
+                if (fileEncryption.plannedSize > passProcessedBytes) {
+                    processedBytes.addAndGet(fileEncryption.plannedSize - passProcessedBytes);
+                    passProcessedBytes = fileEncryption.plannedSize;
+                }
+            }
+        }
+
+        private boolean replaceFile(File srcFile, File dstFile) {
+            if (srcFile.renameTo(dstFile)) {
+                return true;
+            }
+            /* renaming over an existing file fails on some platforms */
+            return dstFile.delete() && srcFile.renameTo(dstFile);
+        }
+
+        private void closeSource(InputStream srcFileInputStream) {
+            if (null != srcFileInputStream) {
+                try {
+                    srcFileInputStream.close();
+                } catch (IOException e) {
+                    LOG.error("Error when closing source input stream", e);
                 }
             }
-        } finally {
-            getResults().addResults(successfulEncryptions.values(), failedEncryptions.values());
         }
     }
 }
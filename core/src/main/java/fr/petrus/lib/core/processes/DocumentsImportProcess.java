@@ -40,10 +40,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.EncryptedDocumentMetadata;
@@ -163,9 +171,30 @@ public class DocumentsImportProcess extends AbstractProcess<DocumentsImportProce
         }
     }
 
+    /** The number of threads used to decrypt the metadata of the remote documents */
+    private static final int DECRYPTION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /** The number of remote documents inserted in the database in a single transaction */
+    private static final int INSERTION_BATCH_SIZE = 500;
+
+    /**
+     * The result of the decryption of the metadata of a {@code RemoteDocument}.
+     */
+    private static class DecryptedRemoteDocument {
+        private RemoteDocument document;
+        private String encryptedMetadata = null;
+        private EncryptedDocumentMetadata metadata = null;
+        private Exception error = null;
+
+        private DecryptedRemoteDocument(RemoteDocument document) {
+            this.document = document;
+        }
+    }
+
     private Crypto crypto;
     private KeyManager keyManager;
     private TextI18n textI18n;
+    private EncryptedDocuments encryptedDocuments;
     private ConcurrentLinkedQueue<EncryptedDocument> importRoots = new ConcurrentLinkedQueue<>();
     private List<SourceDestinationResult<String, EncryptedDocument>> successfulImports = new ArrayList<>();
     private List<SourceDestinationResult<String, EncryptedDocument>> existingDocuments = new ArrayList<>();
@@ -190,6 +219,7 @@ public class DocumentsImportProcess extends AbstractProcess<DocumentsImportProce
         this.crypto = crypto;
         this.keyManager = keyManager;
         this.textI18n = textI18n;
+        this.encryptedDocuments = encryptedDocuments;
         progressListener = null;
         numRootsToProcess = 0;
         numProcessedDocuments = 0;
@@ -245,6 +275,10 @@ public class DocumentsImportProcess extends AbstractProcess<DocumentsImportProce
         try {
             start();
             while (!importRoots.isEmpty()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOG.debug("Import interrupted");
+                    return;
+                }
                 if (null != progressListener) {
                     progressListener.onSetMax(0, numRootsToProcess);
                     progressListener.onProgress(0, numRootsToProcess - importRoots.size());
@@ -323,7 +357,7 @@ public class DocumentsImportProcess extends AbstractProcess<DocumentsImportProce
         try {
             EncryptedDocumentMetadata encryptedDocumentMetadata =
                     new EncryptedDocumentMetadata(crypto, keyManager);
-            encryptedDocumentMetadata.decrypt(document.getName());
+            encryptedDocumentMetadata.decrypt(document.getName(), parent.getKeyAlias());
             if (null!= progressListener) {
                 progressListener.onMessage(1, encryptedDocumentMetadata.getDisplayName());
             }
@@ -353,10 +387,18 @@ public class DocumentsImportProcess extends AbstractProcess<DocumentsImportProce
     /**
      * Imports the contents of the given {@code folder} from its associated {@code RemoteStorage}.
      *
+     * <p>The import is done in three stages :
+     * <ul>
+     *     <li>the whole remote tree is listed</li>
+     *     <li>the metadata of the listed documents is decrypted by several threads</li>
+     *     <li>the decrypted documents are inserted in the database, by batches of
+     *     {@link #INSERTION_BATCH_SIZE} documents, each batch in its own transaction</li>
+     * </ul>
+     *
      * @param folder the folder which contents will be imported.
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
-    private void importRemoteDocuments(EncryptedDocument folder)
+    private void importRemoteDocuments(final EncryptedDocument folder)
             throws DatabaseConnectionClosedException {
         pauseIfNeeded();
         if (isCanceled()) {
@@ -371,134 +413,346 @@ public class DocumentsImportProcess extends AbstractProcess<DocumentsImportProce
             failedImports.put(documentPath, new FailedResult<>(documentPath, e));
         }
         if (null != document && document.isFolder()) {
-            try {
-                List<RemoteDocument> children = getRemoteChildren(document, new ProcessProgressAdapter() {
-                    @Override
-                    public boolean isCanceled() {
-                        return DocumentsImportProcess.this.isCanceled();
-                    }
+            List<RemoteDocument> documents = listRemoteDocuments(folder, document);
+            if (null == documents) {
+                return;
+            }
 
-                    @Override
-                    public void pauseIfNeeded() {
-                        DocumentsImportProcess.this.pauseIfNeeded();
-                    }
+            /* The folders metadata files are mapped by the remote id of the folder they describe */
+            final Map<String, RemoteDocument> foldersMetadata = new HashMap<>();
+            List<RemoteDocument> importedDocuments = new ArrayList<>();
+            for (RemoteDocument remoteDocument : documents) {
+                if (Constants.STORAGE.FOLDER_METADATA_FILE_NAME.equals(remoteDocument.getName())) {
+                    foldersMetadata.put(remoteDocument.getParentId(), remoteDocument);
+                } else {
+                    importedDocuments.add(remoteDocument);
+                }
+            }
+            LOG.debug("Found {} documents", importedDocuments.size());
+            numFoundDocuments += importedDocuments.size();
+            if (null != progressListener) {
+                progressListener.onSetMax(1, numFoundDocuments);
+            }
 
-                    @Override
-                    public void onProgress(int i, int progress) {
-                        if (null != progressListener) {
-                            if (0 == i) {
-                                progressListener.onSetMax(1, numFoundDocuments + progress);
-                            }
+            ExecutorService executor = Executors.newFixedThreadPool(DECRYPTION_THREADS);
+            try {
+                List<Future<DecryptedRemoteDocument>> decryptedDocuments = new ArrayList<>();
+                for (final RemoteDocument remoteDocument : importedDocuments) {
+                    decryptedDocuments.add(executor.submit(new Callable<DecryptedRemoteDocument>() {
+                        @Override
+                        public DecryptedRemoteDocument call() throws Exception {
+                            return decryptRemoteDocument(folder.getKeyAlias(), remoteDocument,
+                                    foldersMetadata.get(remoteDocument.getId()));
                         }
-                    }
-                });
-                LOG.debug("Found {} children", children.size());
-                numFoundDocuments += children.size();
-                if (null != progressListener) {
-                    progressListener.onSetMax(1, numFoundDocuments);
+                    }));
                 }
-                for (RemoteDocument child : children) {
-                    //ignore .metadata file
-                    if (!Constants.STORAGE.FOLDER_METADATA_FILE_NAME.equals(child.getName())) {
-                        importRemoteDocumentsTree(folder, child);
+                executor.shutdown();
+                insertRemoteDocuments(folder, document.getId(), importedDocuments, decryptedDocuments);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Lists all the remote documents contained in the given {@code remoteFolder}, recursively.
+     *
+     * @param folder       the {@code EncryptedDocument} matching the given {@code remoteFolder}
+     * @param remoteFolder the remote folder to list
+     * @return the list of all the documents contained in the given {@code remoteFolder}, each folder
+     *         being listed before its contents, or null if the listing failed
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private List<RemoteDocument> listRemoteDocuments(EncryptedDocument folder, RemoteDocument remoteFolder)
+            throws DatabaseConnectionClosedException {
+        List<RemoteDocument> documents = new ArrayList<>();
+        try {
+            getRecursiveRemoteChildren(remoteFolder, documents, new ProcessProgressAdapter() {
+                @Override
+                public boolean isCanceled() {
+                    return DocumentsImportProcess.this.isCanceled();
+                }
+
+                @Override
+                public void pauseIfNeeded() {
+                    DocumentsImportProcess.this.pauseIfNeeded();
+                }
+
+                @Override
+                public void onProgress(int i, int progress) {
+                    if (null != progressListener) {
+                        if (0 == i) {
+                            progressListener.onSetMax(1, numFoundDocuments + progress);
+                        }
                     }
                 }
-            } catch (UserCanceledException e) {
-                LOG.error("Failed to list remote folder children {}", folder.getDisplayName(), e);
-                String documentPath = folder.failSafeLogicalPath();
-                failedImports.put(documentPath, new FailedResult<>(
-                        folder.storageText() + " : " + document.getName(), e));
-            } catch (OauthException e) {
-                LOG.error("Failed to list remote folder children {}", folder.getDisplayName(), e);
-                String documentPath = folder.failSafeLogicalPath();
-                failedImports.put(documentPath, new FailedResult<>(
-                        folder.storageText() + " : " + document.getName(), e));
-            } catch (NetworkException | RemoteException e) {
-                LOG.error("Failed to list remote folder children {}", folder.getDisplayName(), e);
-                String documentPath = folder.failSafeLogicalPath();
-                failedImports.put(documentPath, new FailedResult<>(
-                        folder.storageText() + " : " + document.getName(),
-                        new StorageCryptException(
-                                "Failed to list remote folder children",
-                                StorageCryptException.Reason.GetRemoteFolderError, e)));
-            }
+            });
+            return documents;
+        } catch (UserCanceledException e) {
+            LOG.error("Failed to list remote folder children {}", folder.getDisplayName(), e);
+            String documentPath = folder.failSafeLogicalPath();
+            failedImports.put(documentPath, new FailedResult<>(
+                    folder.storageText() + " : " + remoteFolder.getName(), e));
+        } catch (OauthException e) {
+            LOG.error("Failed to list remote folder children {}", folder.getDisplayName(), e);
+            String documentPath = folder.failSafeLogicalPath();
+            failedImports.put(documentPath, new FailedResult<>(
+                    folder.storageText() + " : " + remoteFolder.getName(), e));
+        } catch (NetworkException | RemoteException e) {
+            LOG.error("Failed to list remote folder children {}", folder.getDisplayName(), e);
+            String documentPath = folder.failSafeLogicalPath();
+            failedImports.put(documentPath, new FailedResult<>(
+                    folder.storageText() + " : " + remoteFolder.getName(),
+                    new StorageCryptException(
+                            "Failed to list remote folder children",
+                            StorageCryptException.Reason.GetRemoteFolderError, e)));
         }
+        return null;
     }
 
     // This method is only here to suppress the "unchecked conversion" warning
     @SuppressWarnings("unchecked")
-    private List<RemoteDocument> getRemoteChildren(RemoteDocument remoteFolder,
-                                                   ProcessProgressListener listener)
+    private void getRecursiveRemoteChildren(RemoteDocument remoteFolder, List<RemoteDocument> documents,
+                                            ProcessProgressListener listener)
             throws DatabaseConnectionClosedException, RemoteException, NetworkException, UserCanceledException, OauthException {
-        return remoteFolder.childDocuments(listener);
+        remoteFolder.getRecursiveChildren(documents, listener);
     }
 
     /**
-     * Imports the given {@code document}, and its contents if it is a folder.
+     * Decrypts the metadata of the given {@code document}.
      *
-     * @param parent the parent {@code EncryptedDocument} of the given {@code document}
-     * @param document the {@code RemoteDocument} to import
+     * <p>This method is called by the decryption threads : it does not access the database, and
+     * does not modify the state of this process.
+     *
+     * @param keyAlias         the alias of the key to try first
+     * @param document         the {@code RemoteDocument} to decrypt the metadata of
+     * @param metadataDocument the metadata file of the given {@code document} if it is a folder
+     * @return the result of the decryption
      * @throws DatabaseConnectionClosedException if the database connection is closed
      */
-    private void importRemoteDocumentsTree(EncryptedDocument parent, RemoteDocument document)
+    private DecryptedRemoteDocument decryptRemoteDocument(String keyAlias, RemoteDocument document,
+                                                          RemoteDocument metadataDocument)
             throws DatabaseConnectionClosedException {
-        pauseIfNeeded();
+        DecryptedRemoteDocument decryptedDocument = new DecryptedRemoteDocument(document);
         if (isCanceled()) {
-            return;
+            return decryptedDocument;
         }
-        numProcessedDocuments++;
-        if (null!= progressListener) {
-            progressListener.onProgress(1, numProcessedDocuments);
-        }
-
-        String encryptedMetadata = null;
 
         if (document.isFolder()) {
+            if (null == metadataDocument) {
+                LOG.error("Failed to access remote folder metadata {}", document.getName());
+                decryptedDocument.error = new StorageCryptException(
+                        "Failed to access remote folder metadata",
+                        StorageCryptException.Reason.FailedToGetMetadata);
+                return decryptedDocument;
+            }
             try {
-                RemoteDocument metadataDocument = document.childDocument(Constants.STORAGE.FOLDER_METADATA_FILE_NAME);
                 byte[] data = metadataDocument.downloadData();
-                encryptedMetadata = crypto.encodeUrlSafeBase64(data);
+                decryptedDocument.encryptedMetadata = crypto.encodeUrlSafeBase64(data);
             } catch (NetworkException | RemoteException e) {
                 LOG.error("Failed to access remote folder metadata {}", document.getName(), e);
-                failedImports.put(document.getName(), new FailedResult<>(document.getName(),
-                        new StorageCryptException(
-                                "Failed to access remote folder metadata",
-                                StorageCryptException.Reason.FailedToGetMetadata, e)));
+                decryptedDocument.error = new StorageCryptException(
+                        "Failed to access remote folder metadata",
+                        StorageCryptException.Reason.FailedToGetMetadata, e);
+                return decryptedDocument;
             } catch (OauthException e) {
                 LOG.error("Failed to access remote folder metadata {}", document.getName(), e);
-                failedImports.put(document.getName(), new FailedResult<>(document.getName(), e));
+                decryptedDocument.error = e;
+                return decryptedDocument;
             }
         } else {
-            encryptedMetadata = document.getName();
+            decryptedDocument.encryptedMetadata = document.getName();
         }
 
         try {
             EncryptedDocumentMetadata encryptedDocumentMetadata =
                     new EncryptedDocumentMetadata(crypto, keyManager);
-            encryptedDocumentMetadata.decrypt(encryptedMetadata);
+            encryptedDocumentMetadata.decrypt(decryptedDocument.encryptedMetadata, keyAlias);
+            decryptedDocument.metadata = encryptedDocumentMetadata;
+        } catch (StorageCryptException e) {
+            LOG.error("Failed to find key matching document name {}", document.getName());
+            decryptedDocument.error = e;
+        }
+        return decryptedDocument;
+    }
 
-            if (null!= progressListener) {
-                progressListener.onMessage(1, encryptedDocumentMetadata.getDisplayName());
+    /**
+     * Inserts the decrypted documents in the database, as children of the given {@code folder}.
+     *
+     * <p>The given {@code decryptedDocuments} are consumed in order, while they are still being
+     * decrypted : as folders are listed before their contents, the parent of each document is
+     * always inserted before it.
+     *
+     * <p>The decryption results of each batch are all collected before its transaction is opened,
+     * so that no network access or pause happens while the transaction is held. If the transaction
+     * fails, the documents of the batch are reported as failed, and the folders it created are
+     * forgotten, so that their contents are skipped.
+     *
+     * @param folder             the folder which contents are imported
+     * @param remoteFolderId     the remote id of the given {@code folder}
+     * @param documents          the documents to insert, in the same order as the given
+     *                           {@code decryptedDocuments}
+     * @param decryptedDocuments the results of the decryption of the documents to insert
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void insertRemoteDocuments(EncryptedDocument folder, String remoteFolderId,
+                                       List<RemoteDocument> documents,
+                                       List<Future<DecryptedRemoteDocument>> decryptedDocuments)
+            throws DatabaseConnectionClosedException {
+        /* The imported folders, mapped by their remote id */
+        final Map<String, EncryptedDocument> folders = new HashMap<>();
+        folders.put(remoteFolderId, folder);
+        for (int i = 0; i < decryptedDocuments.size(); i += INSERTION_BATCH_SIZE) {
+            int batchEnd = Math.min(i + INSERTION_BATCH_SIZE, decryptedDocuments.size());
+            final List<DecryptedRemoteDocument> batch = new ArrayList<>(batchEnd - i);
+            for (int j = i; j < batchEnd; j++) {
+                pauseIfNeeded();
+                if (isCanceled()) {
+                    return;
+                }
+                DecryptedRemoteDocument decryptedDocument = getDecryptedDocument(
+                        documents.get(j), decryptedDocuments.get(j));
+                if (null == decryptedDocument) {
+                    /* interrupted : the pending decryptions are not needed anymore */
+                    for (int k = j; k < decryptedDocuments.size(); k++) {
+                        decryptedDocuments.get(k).cancel(true);
+                    }
+                    return;
+                }
+                numProcessedDocuments++;
+                if (null != progressListener) {
+                    progressListener.onProgress(1, numProcessedDocuments);
+                }
+                if (null != decryptedDocument.error) {
+                    String name = decryptedDocument.document.getName();
+                    failedImports.put(name, new FailedResult<>(name, decryptedDocument.error));
+                } else if (null != decryptedDocument.metadata) {
+                    batch.add(decryptedDocument);
+                }
             }
-            EncryptedDocument encryptedDocument = parent.child(encryptedDocumentMetadata.getDisplayName());
-            if (null == encryptedDocument) {
-                try {
-                    encryptedDocument = parent.createChild(encryptedDocumentMetadata, encryptedMetadata, document);
-                    successfulImports.add(new SourceDestinationResult<>(
-                            encryptedDocument.storageText() + " : " + document.getName(),
-                            encryptedDocument));
-                } catch (StorageCryptException e) {
-                    failedImports.put(document.getName(), new FailedResult<>(document.getName(), e));
+
+            final Map<String, EncryptedDocument> batchFolders = new HashMap<>();
+            final List<SourceDestinationResult<String, EncryptedDocument>> batchImports = new ArrayList<>();
+            final List<SourceDestinationResult<String, EncryptedDocument>> batchExisting = new ArrayList<>();
+            final Map<String, FailedResult<String>> batchFailures = new LinkedHashMap<>();
+            try {
+                encryptedDocuments.callInTransaction(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (DecryptedRemoteDocument decryptedDocument : batch) {
+                            insertRemoteDocument(folders, batchFolders, decryptedDocument,
+                                    batchImports, batchExisting, batchFailures);
+                        }
+                        return null;
+                    }
+                });
+                folders.putAll(batchFolders);
+                successfulImports.addAll(batchImports);
+                existingDocuments.addAll(batchExisting);
+                failedImports.putAll(batchFailures);
+            } catch (SQLException e) {
+                if (e.getCause() instanceof DatabaseConnectionClosedException) {
+                    throw (DatabaseConnectionClosedException) e.getCause();
                 }
-            } else {
-                existingDocuments.add(new SourceDestinationResult<>(
+                LOG.error("SQL error", e);
+                for (DecryptedRemoteDocument decryptedDocument : batch) {
+                    String name = decryptedDocument.document.getName();
+                    failedImports.put(name, new FailedResult<>(name,
+                            new StorageCryptException("Failed to insert imported document",
+                                    StorageCryptException.Reason.CreationError, e)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the decryption of the given {@code document} to complete, and returns its result.
+     *
+     * @param document          the document which is decrypted
+     * @param decryptedDocument the pending result of the decryption
+     * @return the result of the decryption, with its error set if the decryption task failed, or
+     *         null if the current thread was interrupted while waiting
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private DecryptedRemoteDocument getDecryptedDocument(RemoteDocument document,
+                                                         Future<DecryptedRemoteDocument> decryptedDocument)
+            throws DatabaseConnectionClosedException {
+        try {
+            return decryptedDocument.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DatabaseConnectionClosedException) {
+                throw (DatabaseConnectionClosedException) e.getCause();
+            }
+            LOG.error("Failed to decrypt remote document {}", document.getName(), e.getCause());
+            DecryptedRemoteDocument failedDocument = new DecryptedRemoteDocument(document);
+            failedDocument.error = new StorageCryptException("Failed to decrypt remote document",
+                    StorageCryptException.Reason.DecryptionError, e.getCause());
+            return failedDocument;
+        } catch (InterruptedException e) {
+            LOG.error("Interrupted while decrypting remote document {}", document.getName(), e);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Inserts the given {@code decryptedDocument} in the database, if it does not exist yet.
+     *
+     * <p>This method is called inside the transaction of a batch : it only records the results in
+     * the given batch collections, which are merged into the process state once the transaction
+     * is committed.
+     *
+     * @param folders           the folders imported by the previous batches, mapped by their remote id
+     * @param batchFolders      the folders imported by the current batch, mapped by their remote id
+     * @param decryptedDocument the result of the decryption of the document to insert
+     * @param batchImports      the list where the documents inserted in the current batch are added
+     * @param batchExisting     the list where the documents of the current batch which already
+     *                          exist are added
+     * @param batchFailures     the map where the documents of the current batch which could not be
+     *                          inserted are added
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void insertRemoteDocument(Map<String, EncryptedDocument> folders,
+                                      Map<String, EncryptedDocument> batchFolders,
+                                      DecryptedRemoteDocument decryptedDocument,
+                                      List<SourceDestinationResult<String, EncryptedDocument>> batchImports,
+                                      List<SourceDestinationResult<String, EncryptedDocument>> batchExisting,
+                                      Map<String, FailedResult<String>> batchFailures)
+            throws DatabaseConnectionClosedException {
+        RemoteDocument document = decryptedDocument.document;
+        EncryptedDocumentMetadata encryptedDocumentMetadata = decryptedDocument.metadata;
+        EncryptedDocument parent = batchFolders.get(document.getParentId());
+        if (null == parent) {
+            parent = folders.get(document.getParentId());
+        }
+        if (null == parent) {
+            /* the parent folder could not be imported : its contents are skipped */
+            LOG.debug("Skipping document {} : parent folder not imported", document.getName());
+            return;
+        }
+
+        if (null != progressListener) {
+            progressListener.onMessage(1, encryptedDocumentMetadata.getDisplayName());
+        }
+        EncryptedDocument encryptedDocument = parent.child(encryptedDocumentMetadata.getDisplayName());
+        if (null == encryptedDocument) {
+            try {
+                encryptedDocument = parent.createChild(encryptedDocumentMetadata,
+                        decryptedDocument.encryptedMetadata, document);
+                batchImports.add(new SourceDestinationResult<>(
                         encryptedDocument.storageText() + " : " + document.getName(),
                         encryptedDocument));
+            } catch (StorageCryptException e) {
+                batchFailures.put(document.getName(), new FailedResult<>(document.getName(), e));
+                return;
             }
-            importRemoteDocuments(encryptedDocument);
-        } catch (StorageCryptException e) {
-            LOG.error("Failed to find key matching document name {}", document.getName());
-            failedImports.put(document.getName(), new FailedResult<>(document.getName(), e));
+        } else {
+            batchExisting.add(new SourceDestinationResult<>(
+                    encryptedDocument.storageText() + " : " + document.getName(),
+                    encryptedDocument));
+        }
+        if (encryptedDocument.isFolder()) {
+            batchFolders.put(document.getId(), encryptedDocument);
         }
     }
 }
@@ -44,12 +44,17 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.EncryptedDocumentMetadata;
+import fr.petrus.lib.core.State;
 import fr.petrus.lib.core.StorageCryptException;
+import fr.petrus.lib.core.SyncAction;
+import fr.petrus.lib.core.cloud.exceptions.NetworkException;
+import fr.petrus.lib.core.cloud.exceptions.OauthException;
 import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.crypto.KeyManager;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
@@ -64,6 +69,10 @@ import fr.petrus.lib.core.result.ProgressListener;
 /**
  * The {@code Process} which handles documents move.
  *
+ * <p>When a document is moved into a folder of the same storage, it is moved in place : its local
+ * file is renamed and its remote counterpart is moved on the server side. Otherwise, or if the
+ * in place move fails, the document is copied into the destination folder, then the source is deleted.
+ *
  * @author Pierre Sagne
  * @since 10.05.2017
  */
@@ -156,6 +165,7 @@ public class DocumentsMoveProcess extends AbstractProcess<DocumentsMoveProcess.R
     private List<SourceDestinationResult<EncryptedDocument, EncryptedDocument>> undoneMoves =
             new ArrayList<>();
     private List<FailedResult<EncryptedDocument>> failedMoves = new ArrayList<>();
+    private int numMovedInPlaceDocuments = 0;
 
     private ProgressListener progressListener;
 
@@ -200,8 +210,10 @@ public class DocumentsMoveProcess extends AbstractProcess<DocumentsMoveProcess.R
 
             if (null != srcDocuments && srcDocuments.size() > 0) {
                 final List<EncryptedDocument> allDocuments = new ArrayList<>();
+                final List<EncryptedDocument> copiedDocuments = new ArrayList<>();
                 final Map<EncryptedDocument, List<EncryptedDocument>> foldersChildren = new HashMap<>();
                 final List<EncryptedDocument> createdDocuments = new ArrayList<>();
+                final Map<EncryptedDocument, EncryptedDocument> movedInPlaceDocuments = new LinkedHashMap<>();
 
                 for (EncryptedDocument document: srcDocuments) {
                     allDocuments.addAll(document.unfoldAsList(true));
@@ -218,29 +230,35 @@ public class DocumentsMoveProcess extends AbstractProcess<DocumentsMoveProcess.R
 
                 try {
                     for (EncryptedDocument srcDocument: srcDocuments) {
-                        recursivelyCopyDocument(srcDocument, dstFolder,
-                                foldersChildren, createdDocuments);
+                        if (isCanceled()) {
+                            break;
+                        }
+                        if (!moveDocumentInPlace(srcDocument, dstFolder, movedInPlaceDocuments)) {
+                            recursivelyCopyDocument(srcDocument, dstFolder,
+                                    foldersChildren, createdDocuments);
+                            copiedDocuments.addAll(srcDocument.unfoldAsList(true));
+                        }
                     }
                     if (isCanceled()) {
-                        undoMoves(createdDocuments);
+                        undoMoves(createdDocuments, movedInPlaceDocuments);
                     } else {
-                        // if everything is ok, remove source documents in reverse order
-                        for (int i = allDocuments.size() - 1; i >= 0; i--) {
-                            allDocuments.get(i).delete();
+                        // if everything is ok, remove copied source documents in reverse order
+                        for (int i = copiedDocuments.size() - 1; i >= 0; i--) {
+                            copiedDocuments.get(i).delete();
                         }
                     }
                 } catch (IOException e) {
                     LOG.debug("Error when moving documents to {}",
                             dstFolder.failSafeLogicalPath(), e);
-                    undoMoves(createdDocuments);
+                    undoMoves(createdDocuments, movedInPlaceDocuments);
                 } catch (StorageCryptException e) {
                     LOG.debug("Error when moving documents to {}",
                             dstFolder.failSafeLogicalPath(), e);
-                    undoMoves(createdDocuments);
+                    undoMoves(createdDocuments, movedInPlaceDocuments);
                 } catch (DatabaseConnectionClosedException e) {
                     LOG.debug("Error when moving documents to {}",
                             dstFolder.failSafeLogicalPath(), e);
-                    undoMoves(createdDocuments);
+                    undoMoves(createdDocuments, movedInPlaceDocuments);
                     throw e;
                 }
             }
@@ -262,6 +280,85 @@ public class DocumentsMoveProcess extends AbstractProcess<DocumentsMoveProcess.R
         }
     }
 
+    /**
+     * Returns whether the given {@code srcDocument} can be moved in place into the given {@code dstFolder},
+     * which is the case when they are stored in the same storage, which can move them, and no
+     * synchronization is running on the documents to move.
+     */
+    private boolean canMoveInPlace(EncryptedDocument srcDocument, EncryptedDocument dstFolder)
+            throws DatabaseConnectionClosedException {
+        if (srcDocument.getBackStorageType() != dstFolder.getBackStorageType()) {
+            return false;
+        }
+        if (!srcDocument.isUnsynchronized()) {
+            if (srcDocument.getBackStorageAccount().getId() != dstFolder.getBackStorageAccount().getId()) {
+                return false;
+            }
+            if (null != srcDocument.getBackEntryId() && null == dstFolder.getBackEntryId()) {
+                return false;
+            }
+            if (srcDocument.isFolder() && null != srcDocument.getBackEntryId()
+                    && !srcDocument.getBackStorageAccount().getRemoteStorage().canMoveFolders()) {
+                return false;
+            }
+        }
+        if (srcDocument.hasInTree(dstFolder)) {
+            return false;
+        }
+        for (EncryptedDocument document : srcDocument.unfoldAsList(true)) {
+            for (SyncAction syncAction : SyncAction.values()) {
+                if (State.Running == document.getSyncState(syncAction)) {
+                    return false;
+                }
+            }
+            if (State.Done != document.getSyncState(SyncAction.Deletion)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean moveDocumentInPlace(EncryptedDocument srcDocument, EncryptedDocument dstFolder,
+                                        Map<EncryptedDocument, EncryptedDocument> movedInPlaceDocuments)
+            throws DatabaseConnectionClosedException {
+        if (!canMoveInPlace(srcDocument, dstFolder)) {
+            return false;
+        }
+
+        pauseIfNeeded();
+        if (isCanceled()) {
+            return true;
+        }
+
+        LOG.debug("Moving document {} in place to {}", srcDocument.failSafeLogicalPath(),
+                dstFolder.failSafeLogicalPath());
+
+        if (null != progressListener) {
+            progressListener.onMessage(1, srcDocument.getDisplayName());
+            progressListener.onProgress(1, 0);
+            progressListener.onSetMax(1, 1);
+        }
+
+        EncryptedDocument srcFolder = srcDocument.parent();
+        int numDocuments = srcDocument.unfoldAsList(true).size();
+        try {
+            srcDocument.moveTo(dstFolder);
+        } catch (StorageCryptException | NetworkException | OauthException e) {
+            LOG.debug("Failed to move document {} in place, falling back to copy",
+                    srcDocument.failSafeLogicalPath(), e);
+            return false;
+        }
+        movedInPlaceDocuments.put(srcDocument, srcFolder);
+        successfulMoves.add(new SourceDestinationResult<>(srcDocument, dstFolder));
+        numMovedInPlaceDocuments += numDocuments;
+
+        if (null != progressListener) {
+            progressListener.onProgress(0, numMovedInPlaceDocuments);
+            progressListener.onProgress(1, 1);
+        }
+        return true;
+    }
+
     private void recursivelyCopyDocument(EncryptedDocument srcDocument, EncryptedDocument dstFolder,
                                          Map<EncryptedDocument, List<EncryptedDocument>> foldersChildren,
                                          List<EncryptedDocument> createdDocuments)
@@ -274,7 +371,7 @@ public class DocumentsMoveProcess extends AbstractProcess<DocumentsMoveProcess.R
         LOG.debug("Moving document {} to {}", srcDocument.failSafeLogicalPath(), dstFolder.failSafeLogicalPath());
 
         if (null != progressListener) {
-            progressListener.onProgress(0, createdDocuments.size());
+            progressListener.onProgress(0, numMovedInPlaceDocuments + createdDocuments.size());
             progressListener.onMessage(1, srcDocument.getDisplayName());
             progressListener.onProgress(1, 0);
             progressListener.onSetMax(1, 1);
@@ -369,7 +466,8 @@ public class DocumentsMoveProcess extends AbstractProcess<DocumentsMoveProcess.R
         }
     }
 
-    private void undoMoves(List<EncryptedDocument> createdDocuments) {
+    private void undoMoves(List<EncryptedDocument> createdDocuments,
+                           Map<EncryptedDocument, EncryptedDocument> movedInPlaceDocuments) {
         // if something went wrong or the process was canceled, remove destination documents in reverse order
         for (int i = createdDocuments.size() - 1; i >= 0; i--) {
             EncryptedDocument createdDocument = createdDocuments.get(i);
@@ -379,6 +477,15 @@ public class DocumentsMoveProcess extends AbstractProcess<DocumentsMoveProcess.R
                 LOG.error("Error when removing document {}", createdDocument.failSafeLogicalPath(), e);
             }
         }
+        // then move the documents which were moved in place back to their original folder
+        for (Map.Entry<EncryptedDocument, EncryptedDocument> entry : movedInPlaceDocuments.entrySet()) {
+            EncryptedDocument movedDocument = entry.getKey();
+            try {
+                movedDocument.moveTo(entry.getValue());
+            } catch (StorageCryptException | NetworkException | OauthException | DatabaseConnectionClosedException e) {
+                LOG.error("Error when moving back document {}", movedDocument.failSafeLogicalPath(), e);
+            }
+        }
         undoneMoves.clear();
         undoneMoves.addAll(successfulMoves);
         successfulMoves.clear();
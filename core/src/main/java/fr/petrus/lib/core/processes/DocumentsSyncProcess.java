@@ -41,6 +41,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 
@@ -60,7 +61,10 @@ import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.State;
 import fr.petrus.lib.core.cloud.exceptions.UserCanceledException;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.metrics.Gauge;
+import fr.petrus.lib.core.metrics.Metrics;
 import fr.petrus.lib.core.processes.results.BaseProcessResults;
+import fr.petrus.lib.core.processes.results.FailedResult;
 import fr.petrus.lib.core.result.ProcessProgressAdapter;
 import fr.petrus.lib.core.result.ProcessProgressListener;
 import fr.petrus.lib.core.result.ProgressListener;
@@ -100,16 +104,32 @@ public class DocumentsSyncProcess extends AbstractProcess<DocumentsSyncProcess.R
     /**
      * The {@code ProcessResults} implementation for this particular {@code Process} implementation.
      * <p/>
-     * <p>This process returns no results by this means so this implementation holds nothing
+     * <p>This implementation only holds the documents which failed to synchronize during this run.
+     * A document may be retried during the same run : only its last failure is kept, and it is
+     * removed if a later attempt succeeds.
      */
-    public static class Results extends BaseProcessResults<Void, Void> {
+    public static class Results extends BaseProcessResults<Void, EncryptedDocument> {
         /**
          * Creates a new {@code Results} instance, providing its dependencies.
          *
          * @param textI18n a {@code textI18n} instance
          */
         public Results(TextI18n textI18n) {
-            super(textI18n, false, false, false);
+            super(textI18n, false, false, true);
+        }
+
+        private synchronized void setFailed(EncryptedDocument encryptedDocument, Exception exception) {
+            setSucceeded(encryptedDocument);
+            errors.add(new FailedResult<>(encryptedDocument, exception));
+        }
+
+        private synchronized void setSucceeded(EncryptedDocument encryptedDocument) {
+            Iterator<FailedResult<EncryptedDocument>> iterator = errors.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getElement().getId() == encryptedDocument.getId()) {
+                    iterator.remove();
+                }
+            }
         }
     }
 
@@ -142,6 +162,12 @@ public class DocumentsSyncProcess extends AbstractProcess<DocumentsSyncProcess.R
         progressListener = null;
         syncActionListener = null;
         syncQueue = new DocumentHashQueue();
+        Metrics.registry().register("sync.queue.size", new Gauge() {
+            @Override
+            public long getValue() {
+                return syncQueue.size();
+            }
+        });
         syncAccountsHistory = new HashSet<>();
         oauthErrorAccounts = new HashSet<>();
 
@@ -208,7 +234,9 @@ public class DocumentsSyncProcess extends AbstractProcess<DocumentsSyncProcess.R
                 if (!encryptedDocument.hasTooManyFailures() && !encryptedDocument.hasTooManyRequests()
                         && !oauthErrorAccounts.contains(encryptedDocument.getBackStorageAccount().getId())) {
                     synchronized(this) {
-                        syncQueue.offer(encryptedDocument);
+                        if (syncQueue.offer(encryptedDocument)) {
+                            Metrics.counter("sync.retries").inc();
+                        }
                         numEnqueuedDocuments++;
                     }
                 }
@@ -376,6 +404,7 @@ public class DocumentsSyncProcess extends AbstractProcess<DocumentsSyncProcess.R
             }
             if (null!=currentSyncedDocument) {
                 syncAccountsHistory.add(currentSyncedDocument.getBackStorageAccount().getId());
+                long syncStart = System.nanoTime();
                 try {
                     syncDocument(currentSyncedDocument);
                 } catch (OauthException e) {
@@ -385,6 +414,7 @@ public class DocumentsSyncProcess extends AbstractProcess<DocumentsSyncProcess.R
                         oauthErrorAccounts.add(account.getId());
                     }
                 }
+                Metrics.timer("sync.document").updateSince(syncStart);
                 synchronized (this) {
                     numDocumentsSynced++;
                     if (null != progressListener) {
@@ -515,24 +545,63 @@ public class DocumentsSyncProcess extends AbstractProcess<DocumentsSyncProcess.R
             if (null!= syncActionListener) {
                 syncActionListener.onSyncActionStart(syncAction, encryptedDocument);
             }
-            switch (syncAction) {
-                case Deletion:
-                    return deleteDocument(encryptedDocument);
-                case Upload:
-                    if (encryptedDocument.getSyncState(SyncAction.Deletion) == State.Done) {
-                        return uploadDocument(encryptedDocument);
-                    }
-                    break;
-                case Download:
-                    if (encryptedDocument.getSyncState(SyncAction.Deletion) == State.Done) {
-                        return downloadDocument(encryptedDocument);
-                    }
-                    break;
+            boolean synced = false;
+            try {
+                switch (syncAction) {
+                    case Deletion:
+                        synced = deleteDocument(encryptedDocument);
+                        break;
+                    case Upload:
+                        if (encryptedDocument.getSyncState(SyncAction.Deletion) == State.Done) {
+                            synced = uploadDocument(encryptedDocument);
+                        }
+                        break;
+                    case Download:
+                        if (encryptedDocument.getSyncState(SyncAction.Deletion) == State.Done) {
+                            synced = downloadDocument(encryptedDocument);
+                        }
+                        break;
+                }
+            } catch (OauthException e) {
+                getResults().setFailed(encryptedDocument, e);
+                throw e;
             }
+            if (synced) {
+                getResults().setSucceeded(encryptedDocument);
+            } else if (encryptedDocument.getSyncState(syncAction) == State.Failed) {
+                getResults().setFailed(encryptedDocument, syncFailure(syncAction, encryptedDocument));
+            }
+            return synced;
         }
         return false;
     }
 
+    /**
+     * Returns an exception describing the failure of the given {@code syncAction} for the given
+     * {@code encryptedDocument}, to be reported in the results.
+     *
+     * @param syncAction        the {@code SyncAction} which failed
+     * @param encryptedDocument the {@code EncryptedDocument} which failed to synchronize
+     * @return the exception describing the failure
+     */
+    private static StorageCryptException syncFailure(SyncAction syncAction,
+                                                     EncryptedDocument encryptedDocument) {
+        StorageCryptException.Reason reason;
+        switch (syncAction) {
+            case Upload:
+                reason = StorageCryptException.Reason.UploadError;
+                break;
+            case Download:
+                reason = StorageCryptException.Reason.DownloadError;
+                break;
+            default:
+                reason = StorageCryptException.Reason.DeletionError;
+                break;
+        }
+        return new StorageCryptException(syncAction.name() + " failed "
+                + encryptedDocument.getBackEntryNumSyncFailures() + " times", reason);
+    }
+
     /**
      * Deletes the remote document referenced by the given {@code encryptedDocument}.
      *
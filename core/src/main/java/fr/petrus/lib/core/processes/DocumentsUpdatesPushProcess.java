@@ -39,36 +39,57 @@ package fr.petrus.lib.core.processes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import fr.petrus.lib.core.EncryptedDocuments;
 import fr.petrus.lib.core.StorageCryptException;
 import fr.petrus.lib.core.SyncAction;
+import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.cloud.RemoteChange;
+import fr.petrus.lib.core.cloud.RemoteChanges;
 import fr.petrus.lib.core.cloud.RemoteDocument;
+import fr.petrus.lib.core.cloud.RemoteStorage;
 import fr.petrus.lib.core.cloud.exceptions.NetworkException;
-import fr.petrus.lib.core.NotFoundException;
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.State;
 import fr.petrus.lib.core.cloud.exceptions.OauthException;
+import fr.petrus.lib.core.cloud.exceptions.RemoteException;
+import fr.petrus.lib.core.cloud.exceptions.UserCanceledException;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
 import fr.petrus.lib.core.network.Network;
 import fr.petrus.lib.core.processes.results.BaseProcessResults;
 import fr.petrus.lib.core.processes.results.ColumnType;
 import fr.petrus.lib.core.processes.results.FailedResult;
+import fr.petrus.lib.core.result.ProcessProgressAdapter;
 import fr.petrus.lib.core.result.ProgressListener;
 import fr.petrus.lib.core.i18n.TextI18n;
 
 /**
  * The {@code Process} which sends local documents modifications to the remote account.
  *
+ * <p>The remote documents of each pushed folder are looked up one by one when there are few of
+ * them, otherwise the remote documents of the whole account are listed at once. Then their versions
+ * are compared with the local ones, and the resulting sync states are saved in a single transaction.
+ *
  * @author Pierre Sagne
  * @since 29.12.2014
  */
 public class DocumentsUpdatesPushProcess extends AbstractProcess<DocumentsUpdatesPushProcess.Results> {
     private static Logger LOG = LoggerFactory.getLogger(DocumentsUpdatesPushProcess.class);
 
+    /**
+     * The maximum number of documents of a pushed folder which are looked up one by one : the
+     * remote documents of the whole account are listed at once for bigger folders
+     */
+    private static final int MAX_DOCUMENT_LOOKUPS = 50;
+
     /**
      * The {@code ProcessResults} implementation for this particular {@code Process} implementation.
      */
@@ -137,6 +158,7 @@ public class DocumentsUpdatesPushProcess extends AbstractProcess<DocumentsUpdate
     }
 
     private Network network;
+    private EncryptedDocuments encryptedDocuments;
     private ConcurrentLinkedQueue<EncryptedDocument> updatesPushRoots = new ConcurrentLinkedQueue<>();
     private List<EncryptedDocument> successfulPushedUpdates = new ArrayList<>();
     private LinkedHashMap<Long, FailedResult<EncryptedDocument>> failedUpdates = new LinkedHashMap<>();
@@ -146,12 +168,15 @@ public class DocumentsUpdatesPushProcess extends AbstractProcess<DocumentsUpdate
     /**
      * Creates a new {@code DocumentsPushUpdatesProcess}, providing its dependencies.
      *
-     * @param textI18n  a {@code TextI18n} instance
+     * @param textI18n           a {@code TextI18n} instance
      * @param network            a {@code Network} instance
+     * @param encryptedDocuments an {@code EncryptedDocuments} instance
      */
-    public DocumentsUpdatesPushProcess(TextI18n textI18n, Network network) {
+    public DocumentsUpdatesPushProcess(TextI18n textI18n, Network network,
+                                       EncryptedDocuments encryptedDocuments) {
         super(new Results(textI18n));
         this.network = network;
+        this.encryptedDocuments = encryptedDocuments;
         progressListener = null;
         numRootsToProcess = 0;
     }
@@ -195,6 +220,7 @@ public class DocumentsUpdatesPushProcess extends AbstractProcess<DocumentsUpdate
     public void run() throws DatabaseConnectionClosedException {
         try {
             start();
+            Map<Long, Map<String, RemoteDocument>> accountsRemoteDocuments = new HashMap<>();
             while (!updatesPushRoots.isEmpty()) {
                 if (null != progressListener) {
                     progressListener.onSetMax(0, numRootsToProcess);
@@ -206,54 +232,235 @@ public class DocumentsUpdatesPushProcess extends AbstractProcess<DocumentsUpdate
                 if (null != progressListener) {
                     progressListener.onMessage(1, updatesPushRoot.failSafeLogicalPath());
                     progressListener.onSetMax(1, encryptedDocuments.size());
+                    progressListener.onProgress(1, 0);
                 }
-                for (int i = 0; i < encryptedDocuments.size(); i++) {
-                    pauseIfNeeded();
-                    if (!network.isConnected() || isCanceled()) {
-                        return;
+
+                Map<String, RemoteDocument> remoteDocuments = null;
+                if (!updatesPushRoot.isUnsynchronized()) {
+                    Account account = updatesPushRoot.getBackStorageAccount();
+                    RemoteStorage storage = account.getRemoteStorage();
+                    if (null == storage) {
+                        LOG.error("RemoteStorage instance not found for storage type {}",
+                                account.getStorageType().name());
+                        failedUpdates.put(updatesPushRoot.getId(), new FailedResult<>(updatesPushRoot,
+                                new StorageCryptException("Remote storage not found",
+                                        StorageCryptException.Reason.GetRemoteDocumentError)));
+                        continue;
                     }
-                    EncryptedDocument encryptedDocument = encryptedDocuments.get(i);
-                    if (null != progressListener) {
-                        progressListener.onMessage(1, encryptedDocument.failSafeLogicalPath());
-                        progressListener.onProgress(1, i);
+                    remoteDocuments = accountsRemoteDocuments.get(account.getId());
+                    if (null == remoteDocuments || !storage.hasConsistentChanges()) {
+                        pauseIfNeeded();
+                        if (!network.isConnected() || isCanceled()) {
+                            return;
+                        }
+                        try {
+                            if (null == remoteDocuments && encryptedDocuments.size() <= MAX_DOCUMENT_LOOKUPS) {
+                                remoteDocuments = lookupRemoteDocuments(storage, account, encryptedDocuments);
+                            } else {
+                                if (null == remoteDocuments) {
+                                    remoteDocuments = listRemoteDocuments(storage, account);
+                                    accountsRemoteDocuments.put(account.getId(), remoteDocuments);
+                                }
+                                if (!storage.hasConsistentChanges()) {
+                                    confirmMissingRemoteDocuments(storage, account, encryptedDocuments,
+                                            remoteDocuments);
+                                }
+                            }
+                        } catch (UserCanceledException e) {
+                            LOG.debug("Canceled while listing remote documents of {}",
+                                    updatesPushRoot.failSafeLogicalPath(), e);
+                            return;
+                        } catch (NetworkException e) {
+                            LOG.error("Failed to list remote documents of {}", updatesPushRoot.failSafeLogicalPath(), e);
+                            failedUpdates.put(updatesPushRoot.getId(), new FailedResult<>(updatesPushRoot, e));
+                            return;
+                        } catch (RemoteException e) {
+                            LOG.error("Failed to list remote documents of {}", updatesPushRoot.failSafeLogicalPath(), e);
+                            failedUpdates.put(updatesPushRoot.getId(), new FailedResult<>(updatesPushRoot,
+                                    new StorageCryptException("Failed to list remote documents",
+                                            StorageCryptException.Reason.GetRemoteDocumentError, e)));
+                            return;
+                        } catch (OauthException e) {
+                            LOG.error("Failed to list remote documents of {}", updatesPushRoot.failSafeLogicalPath(), e);
+                            failedUpdates.put(updatesPushRoot.getId(), new FailedResult<>(updatesPushRoot, e));
+                            return;
+                        }
                     }
+                }
 
+                pauseIfNeeded();
+                if (isCanceled()) {
+                    return;
+                }
+
+                final List<EncryptedDocument> plannedUploads = new ArrayList<>();
+                final List<EncryptedDocument> plannedDownloads = new ArrayList<>();
+                for (EncryptedDocument encryptedDocument : encryptedDocuments) {
                     RemoteDocument document = null;
-                    try {
-                        document = encryptedDocument.remoteDocument();
-                    } catch (NetworkException e) {
-                        LOG.error("Failed to access remote document {}", encryptedDocument.getDisplayName(), e);
-                        failedUpdates.put(encryptedDocument.getId(),
-                                new FailedResult<>(encryptedDocument, e));
-                        return;
-                    } catch (NotFoundException e) {
-                        LOG.debug("Remote document {} not found, it will be uploaded as a new document",
-                                encryptedDocument.getDisplayName(), e);
-                    } catch (StorageCryptException e) {
-                        LOG.error("Failed to access remote document {}", encryptedDocument.getDisplayName(), e);
-                        failedUpdates.put(encryptedDocument.getId(),
-                                new FailedResult<>(encryptedDocument, e));
-                        return;
-                    } catch (OauthException e) {
-                        LOG.error("Failed to access remote document {}", encryptedDocument.getDisplayName(), e);
-                        failedUpdates.put(encryptedDocument.getId(),
-                                new FailedResult<>(encryptedDocument, e));
-                        return;
+                    if (null != remoteDocuments && null != encryptedDocument.getBackEntryId()) {
+                        document = remoteDocuments.get(encryptedDocument.getBackEntryId());
                     }
                     if (null == document) {
-                        encryptedDocument.updateSyncState(SyncAction.Upload, State.Planned);
-                    } else {
-                        if (document.getVersion() < encryptedDocument.getBackEntryVersion()) {
-                            encryptedDocument.updateSyncState(SyncAction.Upload, State.Planned);
-                        } else if (document.getVersion() > encryptedDocument.getBackEntryVersion()) {
-                            encryptedDocument.updateSyncState(SyncAction.Download, State.Planned);
+                        LOG.debug("Remote document {} not found, it will be uploaded as a new document",
+                                encryptedDocument.getDisplayName());
+                        plannedUploads.add(encryptedDocument);
+                    } else if (document.getVersion() < encryptedDocument.getBackEntryVersion()) {
+                        plannedUploads.add(encryptedDocument);
+                    } else if (document.getVersion() > encryptedDocument.getBackEntryVersion()) {
+                        plannedDownloads.add(encryptedDocument);
+                    }
+                }
+
+                try {
+                    this.encryptedDocuments.callInTransaction(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (EncryptedDocument encryptedDocument : plannedUploads) {
+                                encryptedDocument.updateSyncState(SyncAction.Upload, State.Planned);
+                            }
+                            for (EncryptedDocument encryptedDocument : plannedDownloads) {
+                                encryptedDocument.updateSyncState(SyncAction.Download, State.Planned);
+                            }
+                            return null;
                         }
+                    });
+                    successfulPushedUpdates.addAll(encryptedDocuments);
+                } catch (SQLException e) {
+                    if (e.getCause() instanceof DatabaseConnectionClosedException) {
+                        throw (DatabaseConnectionClosedException) e.getCause();
                     }
-                    successfulPushedUpdates.add(encryptedDocument);
+                    LOG.error("SQL error", e);
+                    failedUpdates.put(updatesPushRoot.getId(), new FailedResult<>(updatesPushRoot,
+                            new StorageCryptException("Failed to save sync states",
+                                    StorageCryptException.Reason.CreationError, e)));
+                }
+
+                if (null != progressListener) {
+                    progressListener.onProgress(1, encryptedDocuments.size());
                 }
             }
         } finally {
             getResults().addResults(successfulPushedUpdates, failedUpdates.values());
         }
     }
+
+    /**
+     * Looks up the remote documents matching the given {@code encryptedDocuments} one by one,
+     * through the metadata cache of the given {@code storage}, and returns them mapped by their
+     * remote ids.
+     *
+     * <p>The documents which are not found are not returned.
+     *
+     * @param storage            the {@code RemoteStorage} of the given {@code account}
+     * @param account            the account of the given {@code encryptedDocuments}
+     * @param encryptedDocuments the documents to look up
+     * @return the remote documents which were found, mapped by their remote ids
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private Map<String, RemoteDocument> lookupRemoteDocuments(RemoteStorage storage, Account account,
+                                                              List<EncryptedDocument> encryptedDocuments)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        Map<String, RemoteDocument> remoteDocuments = new HashMap<>();
+        for (EncryptedDocument encryptedDocument : encryptedDocuments) {
+            if (null == encryptedDocument.getBackEntryId()) {
+                continue;
+            }
+            RemoteDocument document = lookupRemoteDocument(storage, account, encryptedDocument);
+            if (null != document) {
+                remoteDocuments.put(document.getId(), document);
+            }
+        }
+        return remoteDocuments;
+    }
+
+    /**
+     * Looks up the remote documents matching the given {@code encryptedDocuments} which are missing
+     * from the given listed {@code remoteDocuments}, and adds the ones which are found.
+     *
+     * <p>This is used for storages which changes listing is only eventually consistent, so that
+     * the documents uploaded recently are not uploaded again as new documents.
+     *
+     * @param storage            the {@code RemoteStorage} of the given {@code account}
+     * @param account            the account of the given {@code encryptedDocuments}
+     * @param encryptedDocuments the documents which remote documents should be known
+     * @param remoteDocuments    the listed remote documents, mapped by their remote ids
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void confirmMissingRemoteDocuments(RemoteStorage storage, Account account,
+                                               List<EncryptedDocument> encryptedDocuments,
+                                               Map<String, RemoteDocument> remoteDocuments)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        for (EncryptedDocument encryptedDocument : encryptedDocuments) {
+            if (null == encryptedDocument.getBackEntryId()
+                    || remoteDocuments.containsKey(encryptedDocument.getBackEntryId())) {
+                continue;
+            }
+            RemoteDocument document = lookupRemoteDocument(storage, account, encryptedDocument);
+            if (null != document) {
+                LOG.debug("Remote document {} was not listed but exists",
+                        encryptedDocument.getDisplayName());
+                remoteDocuments.put(document.getId(), document);
+            }
+        }
+    }
+
+    /**
+     * Looks up the remote document matching the given {@code encryptedDocument}, through the
+     * metadata cache of the given {@code storage}.
+     *
+     * @param storage           the {@code RemoteStorage} of the given {@code account}
+     * @param account           the account of the given {@code encryptedDocument}
+     * @param encryptedDocument the document to look up
+     * @return the remote document, or null if it was not found
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private RemoteDocument lookupRemoteDocument(RemoteStorage storage, Account account,
+                                                EncryptedDocument encryptedDocument)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException, OauthException {
+        try {
+            if (encryptedDocument.isFolder()) {
+                return storage.cachedFolder(account.getAccountName(), encryptedDocument.getBackEntryId());
+            } else {
+                return storage.cachedFile(account.getAccountName(), encryptedDocument.getBackEntryId());
+            }
+        } catch (RemoteException e) {
+            if (!e.isNotFoundError()) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Lists all the remote documents of the given {@code account} with a single full changes request,
+     * and returns them mapped by their remote ids.
+     *
+     * @param storage the {@code RemoteStorage} of the given {@code account}
+     * @param account the account which documents to list
+     * @return the remote documents of the given account, mapped by their remote ids
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private Map<String, RemoteDocument> listRemoteDocuments(RemoteStorage storage, Account account)
+            throws DatabaseConnectionClosedException, RemoteException, NetworkException,
+            UserCanceledException, OauthException {
+        Map<String, RemoteDocument> remoteDocuments = new HashMap<>();
+        RemoteChanges changes = storage.changes(account.getAccountName(), null, new ProcessProgressAdapter() {
+            @Override
+            public boolean isCanceled() {
+                return DocumentsUpdatesPushProcess.this.isCanceled();
+            }
+
+            @Override
+            public void pauseIfNeeded() {
+                DocumentsUpdatesPushProcess.this.pauseIfNeeded();
+            }
+        });
+        storage.cacheChanges(account.getAccountName(), changes);
+        for (RemoteChange change : changes.getChanges()) {
+            if (!change.isDeleted() && null != change.getDocument()) {
+                remoteDocuments.put(change.getDocument().getId(), change.getDocument());
+            }
+        }
+        return remoteDocuments;
+    }
 }
@@ -40,21 +40,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 
+import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.StorageCryptException;
 import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.crypto.CryptoException;
-import fr.petrus.lib.core.crypto.EncryptedDataStream;
+import fr.petrus.lib.core.crypto.EncryptedDataReader;
 import fr.petrus.lib.core.crypto.KeyManager;
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
 import fr.petrus.lib.core.processes.results.BaseProcessResults;
-import fr.petrus.lib.core.result.ProcessProgressAdapter;
 import fr.petrus.lib.core.result.ProgressListener;
 import fr.petrus.lib.core.i18n.TextI18n;
 
@@ -68,6 +66,9 @@ public class FileDecryptionProcess extends AbstractProcess<FileDecryptionProcess
 
     private static Logger LOG = LoggerFactory.getLogger(FileDecryptionProcess.class);
 
+    /** The number of bytes represented by a progress step, so that the total size fits in an int */
+    private static final int PROGRESS_UNIT = 1024;
+
     /**
      * The {@code ProcessResults} implementation for this particular {@code Process} implementation.
      *
@@ -123,24 +124,26 @@ public class FileDecryptionProcess extends AbstractProcess<FileDecryptionProcess
             throws DatabaseConnectionClosedException, StorageCryptException {
         start();
         if (null!= srcEncryptedDocument && null!=dstFilePath) {
-            InputStream srcFileInputStream = null;
+            EncryptedDataReader encryptedDataReader = null;
             OutputStream dstFileOutputStream = null;
 
             try {
                 File dstFile = new File(dstFilePath);
-                int size = (int) srcEncryptedDocument.getSize();
                 if (null != progressListener) {
                     progressListener.onMessage(0, srcEncryptedDocument.failSafeLogicalPath());
-                    progressListener.onSetMax(0, size);
                 }
 
-                File srcFile;
+                File srcFile = srcEncryptedDocument.file();
                 try {
-                    srcFile = srcEncryptedDocument.file();
-                    srcFileInputStream = new FileInputStream(srcFile);
+                    encryptedDataReader = new EncryptedDataReader(crypto,
+                            keyManager.getKeys(srcEncryptedDocument.getKeyAlias()), srcFile, 1,
+                            keyManager.getDecryptedChunksCache(), srcEncryptedDocument.getId());
                 } catch (IOException e) {
                     throw new StorageCryptException("Error while opening source file : " + srcEncryptedDocument.getDisplayName(),
                             StorageCryptException.Reason.SourceFileOpenError, e);
+                } catch (CryptoException e) {
+                    throw new StorageCryptException("Error while decrypting",
+                            StorageCryptException.Reason.DecryptionError, e);
                 }
 
                 try {
@@ -150,49 +153,37 @@ public class FileDecryptionProcess extends AbstractProcess<FileDecryptionProcess
                             StorageCryptException.Reason.DestinationFileOpenError, e);
                 }
 
+                long size = encryptedDataReader.getSize();
+                if (null != progressListener) {
+                    progressListener.onSetMax(0, (int) Math.min(Integer.MAX_VALUE, size / PROGRESS_UNIT));
+                }
+                byte[] buffer = new byte[Constants.FILE.BUFFER_SIZE];
+                long offset = 0;
                 try {
-                    EncryptedDataStream encryptedDataStream = new EncryptedDataStream(crypto,
-                            keyManager.getKeys(srcEncryptedDocument.getKeyAlias()));
-                    encryptedDataStream.decrypt(srcFileInputStream, dstFileOutputStream, new ProcessProgressAdapter() {
-                        @Override
-                        public void onProgress(int i, int progress) {
-                            if (null != progressListener) {
-                                if (0 == i) {
-                                    progressListener.onProgress(0, progress);
-                                }
-                            }
-                        }
-
-                        @Override
-                        public void onSetMax(int i, int max) {
-                            if (null != progressListener) {
-                                if (0 == i) {
-                                    progressListener.onSetMax(0, max);
-                                }
-                            }
+                    while (offset < size && !isCanceled()) {
+                        pauseIfNeeded();
+                        int read = encryptedDataReader.read(offset, buffer, buffer.length);
+                        dstFileOutputStream.write(buffer, 0, read);
+                        offset += read;
+                        if (null != progressListener) {
+                            progressListener.onProgress(0, (int) Math.min(Integer.MAX_VALUE, offset / PROGRESS_UNIT));
                         }
-
-                        @Override
-                        public boolean isCanceled() {
-                            return FileDecryptionProcess.this.isCanceled();
-                        }
-
-                        @Override
-                        public void pauseIfNeeded() {
-                            FileDecryptionProcess.this.pauseIfNeeded();
-                        }
-                    });
+                    }
+                } catch (IOException e) {
+                    dstFile.delete();
+                    throw new StorageCryptException("Error while decrypting",
+                            StorageCryptException.Reason.DecryptionError, e);
                 } catch (CryptoException e) {
                     dstFile.delete();
                     throw new StorageCryptException("Error while decrypting",
                             StorageCryptException.Reason.DecryptionError, e);
                 }
             } finally {
-                if (null != srcFileInputStream) {
+                if (null != encryptedDataReader) {
                     try {
-                        srcFileInputStream.close();
+                        encryptedDataReader.close();
                     } catch (IOException e) {
-                        LOG.error("Error when closing source input stream", e);
+                        LOG.error("Error when closing source file", e);
                     }
                 }
                 if (null != dstFileOutputStream) {
@@ -0,0 +1,107 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.rest;
+
+import java.io.IOException;
+
+import fr.petrus.lib.core.metrics.Metrics;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * This OkHttp {@link Interceptor} records the requests made to a service in the shared
+ * {@link fr.petrus.lib.core.metrics.MetricsRegistry}.
+ *
+ * <p>For a service named {@code dropbox}, it records :
+ * <ul>
+ *     <li>{@code rest.dropbox.latency} : the time until the response headers are received, so
+ *         the time spent downloading the response body is not included</li>
+ *     <li>{@code rest.dropbox.status.<code>} : the number of responses with each HTTP status code</li>
+ *     <li>{@code rest.dropbox.errors} : the number of requests which failed without a response</li>
+ *     <li>{@code rest.dropbox.bytes_sent} and {@code rest.dropbox.bytes_received} : the sizes of the
+ *         request and response bodies, when they are known in advance</li>
+ * </ul>
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class MetricsInterceptor implements Interceptor {
+    private final String prefix;
+
+    /**
+     * Creates a new {@code MetricsInterceptor} for the service with the given {@code name}.
+     *
+     * @param name the name of the service, used in the metric names
+     */
+    public MetricsInterceptor(String name) {
+        prefix = "rest." + name + ".";
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody requestBody = request.body();
+        if (null != requestBody) {
+            long contentLength = requestBody.contentLength();
+            if (contentLength > 0) {
+                Metrics.counter(prefix + "bytes_sent").inc(contentLength);
+            }
+        }
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            Metrics.counter(prefix + "errors").inc();
+            throw e;
+        } finally {
+            Metrics.timer(prefix + "latency").updateSince(start);
+        }
+        Metrics.counter(prefix + "status." + response.code()).inc();
+        ResponseBody responseBody = response.body();
+        if (null != responseBody) {
+            long contentLength = responseBody.contentLength();
+            if (contentLength > 0) {
+                Metrics.counter(prefix + "bytes_received").inc(contentLength);
+            }
+        }
+        return response;
+    }
+}
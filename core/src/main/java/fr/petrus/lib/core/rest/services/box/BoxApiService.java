@@ -100,6 +100,14 @@ public interface BoxApiService {
     Call<BoxItem> updateFolderDescription(@Header("Authorization") String authHeader, @Path("id") String id,
                                           @Body UpdateDescriptionArg body);
 
+    @PUT("2.0/files/{id}?fields=version_number")
+    Call<BoxItem> moveFile(@Header("Authorization") String authHeader, @Path("id") String id,
+                           @Body NewItemArg body);
+
+    @PUT("2.0/folders/{id}")
+    Call<BoxItem> moveFolder(@Header("Authorization") String authHeader, @Path("id") String id,
+                             @Body NewItemArg body);
+
     @DELETE("2.0/folders/{id}?recursive=true")
     Call<ResponseBody> deleteFolder(@Header("Authorization") String authHeader, @Path("id") String id);
 
@@ -53,10 +53,12 @@ import fr.petrus.lib.core.rest.models.dropbox.DropboxFolderMetadata;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxFolderResult;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxLatestCursorResult;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxMetadata;
+import fr.petrus.lib.core.rest.models.dropbox.DropboxRelocationResult;
 import fr.petrus.lib.core.rest.models.dropbox.DropboxUser;
 import fr.petrus.lib.core.rest.models.dropbox.GetMetadataArg;
 import fr.petrus.lib.core.rest.models.dropbox.ListFolderArg;
 import fr.petrus.lib.core.rest.models.dropbox.ListFolderContinueArg;
+import fr.petrus.lib.core.rest.models.dropbox.RelocationArg;
 
 /**
  * This interface is used to call the Dropbox API.
@@ -95,6 +97,9 @@ public interface DropboxApiService {
     @POST("2/files/create_folder")
     Call<DropboxFolderMetadata> createFolder(@Header("Authorization") String authHeader, @Body PathArg arg);
 
+    @POST("2/files/move_v2")
+    Call<DropboxRelocationResult> move(@Header("Authorization") String authHeader, @Body RelocationArg arg);
+
     @POST("2/files/delete")
     Call<DropboxMetadata> delete(@Header("Authorization") String authHeader, @Body PathArg arg);
 
@@ -37,6 +37,7 @@
 package fr.petrus.lib.core.rest.services.dropbox;
 
 import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.rest.MetricsInterceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
@@ -56,6 +57,7 @@ public class DropboxRestClient {
         HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
         interceptor.setLevel(Constants.RETROFIT.LOG_LEVEL);
         OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor("dropbox"))
                 .addInterceptor(interceptor)
                 .build();
 
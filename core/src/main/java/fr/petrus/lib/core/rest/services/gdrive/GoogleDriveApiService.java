@@ -47,9 +47,11 @@ import retrofit2.http.FieldMap;
 import retrofit2.http.FormUrlEncoded;
 import retrofit2.http.GET;
 import retrofit2.http.Header;
+import retrofit2.http.PATCH;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
 import retrofit2.http.QueryMap;
 import retrofit2.http.Streaming;
 
@@ -98,6 +100,12 @@ public interface GoogleDriveApiService {
     @POST("upload/drive/v2/files?uploadType=multipart")
     Call<GoogleDriveItem> uploadNewFile(@Header("Authorization") String authHeader, @Body RequestBody body);
 
+    @PATCH("drive/v2/files/{id}")
+    Call<GoogleDriveItem> moveItem(@Header("Authorization") String authHeader, @Path("id") String id,
+                                   @Query("addParents") String addParents,
+                                   @Query("removeParents") String removeParents,
+                                   @Body NewItemArg body);
+
     @DELETE("drive/v2/files/{id}")
     Call<ResponseBody> deleteItem(@Header("Authorization") String authHeader, @Path("id") String id);
 
@@ -38,6 +38,7 @@ package fr.petrus.lib.core.rest.services.gdrive;
 
 
 import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.rest.MetricsInterceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
@@ -57,6 +58,7 @@ public class GoogleDriveRestClient {
         HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
         interceptor.setLevel(Constants.RETROFIT.LOG_LEVEL);
         OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor("gdrive"))
                 .addInterceptor(interceptor)
                 .build();
 
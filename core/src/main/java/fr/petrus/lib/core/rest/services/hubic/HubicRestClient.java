@@ -37,6 +37,7 @@
 package fr.petrus.lib.core.rest.services.hubic;
 
 import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.rest.MetricsInterceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
@@ -58,6 +59,7 @@ public class HubicRestClient {
         HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
         interceptor.setLevel(Constants.RETROFIT.LOG_LEVEL);
         OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor("hubic"))
                 .addInterceptor(interceptor)
                 .build();
 
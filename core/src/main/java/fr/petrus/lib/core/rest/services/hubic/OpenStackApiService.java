@@ -106,6 +106,12 @@ public interface OpenStackApiService {
                                       @Path("container") String container,
                                       @Path(value="path", encoded=true) String path, @Body RequestBody file);
 
+    @PUT("v1/{account}/{container}/{path}")
+    Call<ResponseBody> copyDocument(@Header("X-Auth-Token") String authHeader, @Path("account") String account,
+                                    @Path("container") String container,
+                                    @Path(value="path", encoded=true) String path,
+                                    @Header("X-Copy-From") String copyFrom, @Body RequestBody emptyBody);
+
 
     @Streaming
     @GET("v1/{account}/{container}/{path}")
@@ -39,6 +39,7 @@ package fr.petrus.lib.core.rest.services.hubic;
 import java.util.concurrent.TimeUnit;
 
 import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.rest.MetricsInterceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
@@ -65,6 +66,7 @@ public class OpenStackRestClient {
         HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
         interceptor.setLevel(Constants.RETROFIT.LOG_LEVEL);
         OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor("openstack"))
                 .addInterceptor(interceptor)
                 .connectTimeout(Constants.HUBIC.CONNECT_TIMEOUT_S, TimeUnit.SECONDS)
                 .readTimeout(Constants.HUBIC.READ_TIMEOUT_S, TimeUnit.SECONDS)
@@ -45,6 +45,7 @@ import retrofit2.http.Body;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
 import retrofit2.http.Header;
+import retrofit2.http.PATCH;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
@@ -54,6 +55,7 @@ import fr.petrus.lib.core.rest.models.onedrive.OneDriveDelta;
 import fr.petrus.lib.core.rest.models.onedrive.OneDriveItem;
 import fr.petrus.lib.core.rest.models.onedrive.OneDriveItems;
 import fr.petrus.lib.core.rest.models.onedrive.NewFolderArg;
+import fr.petrus.lib.core.rest.models.onedrive.MoveItemArg;
 import fr.petrus.lib.core.rest.models.onedrive.OneDriveRoot;
 import retrofit2.http.Streaming;
 
@@ -133,6 +135,11 @@ public interface OneDriveApiService {
                                          @Path(value="name", encoded=true) String name,
                                          @Body RequestBody body);
 
+    @PATCH("v1.0/drive/items/{id}")
+    Call<OneDriveItem> moveDocumentById(@Header("Authorization") String authHeader,
+                                        @Path(value="id", encoded=true) String id,
+                                        @Body MoveItemArg body);
+
     @DELETE("v1.0/drive/root:{path}")
     Call<ResponseBody> deleteDocumentByPath(@Header("Authorization") String authHeader,
                                             @Path(value="path", encoded=true) String path);
@@ -42,6 +42,7 @@ import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.rest.MetricsInterceptor;
 
 /**
  * This class is used to create and return the API interfaces to call the OneDrive API.
@@ -58,10 +59,12 @@ public class OneDriveRestClient {
         HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
         interceptor.setLevel(Constants.RETROFIT.LOG_LEVEL);
         OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor("onedrive"))
                 .addInterceptor(interceptor)
                 .build();
 
         OkHttpClient noRedirectclient = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor("onedrive"))
                 .addInterceptor(interceptor)
                 .followRedirects(false)
                 .build();
@@ -0,0 +1,84 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.thumbnails;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface is implemented by the platform dependant classes which generate the thumbnails
+ * of the images.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public interface ThumbnailGenerator {
+
+    /**
+     * The source of an encoded image, which may be read several times.
+     */
+    interface ImageSource {
+
+        /**
+         * Opens a new stream, which reads the encoded image from its beginning.
+         *
+         * @return a new stream reading the encoded image
+         * @throws IOException if the image cannot be read
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Returns the size of the largest encoded image this generator generates a thumbnail for.
+     *
+     * @return the maximum size of the encoded images, in bytes
+     */
+    long getMaxSourceSize();
+
+    /**
+     * Generates a downscaled copy of the given {@code image}, encoded as a JPEG image.
+     *
+     * <p>The image is read from the streams opened by the given {@code image} source, so that it
+     * never has to be held in memory as a whole.
+     *
+     * @param image   the source of the encoded image
+     * @param maxSize the maximum width and height of the thumbnail, in pixels
+     * @return the JPEG encoded thumbnail, or null if the image format is not supported, or if the
+     *         image could not be read
+     */
+    byte[] generateThumbnail(ImageSource image, int maxSize);
+}
@@ -0,0 +1,352 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.thumbnails;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.crypto.CryptoException;
+import fr.petrus.lib.core.crypto.EncryptedDataReader;
+import fr.petrus.lib.core.crypto.EncryptedDataStream;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.crypto.SecretKeys;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.result.ProcessControlListener;
+
+/**
+ * This class generates the thumbnails of the encrypted images, and keeps them in a cache folder.
+ *
+ * <p>The thumbnail of a document is generated the first time it is requested, by decrypting the
+ * document while the platform {@link ThumbnailGenerator} reads it, and downscaling it. It is then stored in
+ * its own small file, encrypted with the key of the document, so that the next requests only
+ * decrypt this file. A thumbnail is generated again when the document file is more recent than
+ * its thumbnail.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class Thumbnails {
+    private static Logger LOG = LoggerFactory.getLogger(Thumbnails.class);
+
+    private Crypto crypto;
+    private KeyManager keyManager;
+    private FileSystem fileSystem;
+    private ThumbnailGenerator thumbnailGenerator;
+
+    /**
+     * Creates a new {@code Thumbnails} instance, providing its dependencies.
+     *
+     * @param crypto             a {@code Crypto} instance
+     * @param keyManager         a {@code KeyManager} instance
+     * @param fileSystem         a {@code FileSystem} instance
+     * @param thumbnailGenerator the platform dependant {@code ThumbnailGenerator} (may be null if
+     *                           the platform cannot generate thumbnails)
+     */
+    public Thumbnails(Crypto crypto, KeyManager keyManager, FileSystem fileSystem,
+                      ThumbnailGenerator thumbnailGenerator) {
+        this.crypto = crypto;
+        this.keyManager = keyManager;
+        this.fileSystem = fileSystem;
+        this.thumbnailGenerator = thumbnailGenerator;
+    }
+
+    /**
+     * Returns the folder where the encrypted thumbnails are stored.
+     *
+     * @return the folder where the encrypted thumbnails are stored
+     */
+    public File getThumbnailsDir() {
+        return thumbnailsDir(fileSystem);
+    }
+
+    private static File thumbnailsDir(FileSystem fileSystem) {
+        return new File(fileSystem.getAppDir(), Constants.FILE.THUMBNAILS_DIR_NAME);
+    }
+
+    /**
+     * Returns whether a thumbnail may be generated for the given {@code encryptedDocument}.
+     *
+     * @param encryptedDocument the encrypted document
+     * @return true if the given {@code encryptedDocument} is an image and the platform can
+     *         generate thumbnails
+     */
+    public boolean canHaveThumbnail(EncryptedDocument encryptedDocument) {
+        return null != thumbnailGenerator
+                && !encryptedDocument.isRoot()
+                && !encryptedDocument.isFolder()
+                && null != encryptedDocument.getMimeType()
+                && encryptedDocument.getMimeType().startsWith("image/");
+    }
+
+    /**
+     * Returns the thumbnail of the given {@code encryptedDocument}, generating it if it is not in
+     * the cache yet.
+     *
+     * <p>This method may have to decrypt the whole document, so it should not be called from a
+     * user interface thread.
+     *
+     * @param encryptedDocument the encrypted document
+     * @return the JPEG encoded thumbnail, or null if no thumbnail can be generated
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public byte[] getThumbnail(EncryptedDocument encryptedDocument)
+            throws DatabaseConnectionClosedException {
+        return getThumbnail(encryptedDocument, null);
+    }
+
+    /**
+     * Returns the thumbnail of the given {@code encryptedDocument}, generating it if it is not in
+     * the cache yet, unless the given {@code controlListener} cancels the generation.
+     *
+     * <p>This method may have to decrypt the whole document, so it should not be called from a
+     * user interface thread.
+     *
+     * @param encryptedDocument the encrypted document
+     * @param controlListener   the listener which may cancel the generation of the thumbnail
+     *                          (may be null)
+     * @return the JPEG encoded thumbnail, or null if no thumbnail can be generated, or if the
+     *         generation was canceled
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public byte[] getThumbnail(EncryptedDocument encryptedDocument, ProcessControlListener controlListener)
+            throws DatabaseConnectionClosedException {
+        if (!canHaveThumbnail(encryptedDocument)) {
+            return null;
+        }
+        File file = encryptedDocument.file();
+        if (!file.exists()) {
+            return null;
+        }
+
+        SecretKeys secretKeys;
+        try {
+            secretKeys = keyManager.getKeys(encryptedDocument.getKeyAlias());
+        } catch (CryptoException e) {
+            LOG.error("Failed to get key {}", encryptedDocument.getKeyAlias(), e);
+            return null;
+        }
+        if (null == secretKeys) {
+            return null;
+        }
+
+        File thumbnailFile = thumbnailFile(encryptedDocument);
+        if (thumbnailFile.exists() && thumbnailFile.lastModified() >= file.lastModified()) {
+            try {
+                byte[] thumbnail = readThumbnail(thumbnailFile, secretKeys);
+                /* An empty thumbnail means that no thumbnail could be generated for this version */
+                return thumbnail.length > 0 ? thumbnail : null;
+            } catch (IOException | CryptoException e) {
+                LOG.debug("Failed to read thumbnail of {}", encryptedDocument.failSafeLogicalPath(), e);
+            }
+        }
+
+        byte[] thumbnail = generateThumbnail(encryptedDocument, file, secretKeys, controlListener);
+        if (null != thumbnail) {
+            try {
+                writeThumbnail(thumbnailFile, secretKeys, thumbnail);
+            } catch (IOException | CryptoException e) {
+                LOG.error("Failed to save thumbnail of {}", encryptedDocument.failSafeLogicalPath(), e);
+            }
+        }
+        return null != thumbnail && thumbnail.length > 0 ? thumbnail : null;
+    }
+
+    /**
+     * Deletes the cached thumbnail of the given {@code encryptedDocument}, if any.
+     *
+     * <p>This method is called when the document is deleted, so that its thumbnail is not left in
+     * the cache folder, nor reused by a new document getting the same id.
+     *
+     * @param fileSystem        a {@code FileSystem} instance
+     * @param encryptedDocument the encrypted document
+     */
+    public static void deleteThumbnail(FileSystem fileSystem, EncryptedDocument encryptedDocument) {
+        File thumbnailFile = thumbnailFile(fileSystem, encryptedDocument);
+        if (thumbnailFile.exists() && !thumbnailFile.delete()) {
+            LOG.debug("Failed to delete thumbnail {}", thumbnailFile.getAbsolutePath());
+        }
+    }
+
+    private File thumbnailFile(EncryptedDocument encryptedDocument) {
+        return thumbnailFile(fileSystem, encryptedDocument);
+    }
+
+    private static File thumbnailFile(FileSystem fileSystem, EncryptedDocument encryptedDocument) {
+        return new File(thumbnailsDir(fileSystem),
+                encryptedDocument.getId() + Constants.THUMBNAILS.FILE_EXTENSION);
+    }
+
+    /**
+     * Downscales the given {@code file}, which is decrypted while it is read.
+     *
+     * @return the JPEG encoded thumbnail, an empty array if the image could not be decoded, or
+     *         null if the document could not be read or if the generation was canceled
+     */
+    private byte[] generateThumbnail(EncryptedDocument encryptedDocument, File file, SecretKeys secretKeys,
+                                     ProcessControlListener controlListener) {
+        try (EncryptedDataReader encryptedDataReader = new EncryptedDataReader(crypto, secretKeys, file, 1,
+                keyManager.getDecryptedChunksCache(), encryptedDocument.getId())) {
+            if (encryptedDataReader.getSize() > thumbnailGenerator.getMaxSourceSize()) {
+                return new byte[0];
+            }
+            DecryptedImageSource imageSource = new DecryptedImageSource(encryptedDataReader, controlListener);
+            byte[] thumbnail = thumbnailGenerator.generateThumbnail(imageSource, Constants.THUMBNAILS.SIZE);
+            /* The generator ignores the read errors : only cache images which were read completely */
+            if (null != imageSource.failure) {
+                throw imageSource.failure;
+            }
+            return null != thumbnail ? thumbnail : new byte[0];
+        } catch (InterruptedIOException e) {
+            LOG.debug("Canceled thumbnail generation of {}", encryptedDocument.failSafeLogicalPath());
+            return null;
+        } catch (IOException | CryptoException e) {
+            LOG.error("Failed to decrypt {}", encryptedDocument.failSafeLogicalPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * The source of a decrypted image, whose streams decrypt the chunks of the encrypted file as
+     * they are read, and stop when the generation is canceled.
+     */
+    private static class DecryptedImageSource implements ThumbnailGenerator.ImageSource {
+        private final EncryptedDataReader encryptedDataReader;
+        private final ProcessControlListener controlListener;
+        private IOException failure = null;
+
+        private DecryptedImageSource(EncryptedDataReader encryptedDataReader,
+                                     ProcessControlListener controlListener) {
+            this.encryptedDataReader = encryptedDataReader;
+            this.controlListener = controlListener;
+        }
+
+        @Override
+        public InputStream open() {
+            return new InputStream() {
+                private long position = 0;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] buffer = new byte[1];
+                    return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    if (null != controlListener && controlListener.isCanceled()) {
+                        failure = new InterruptedIOException("Canceled");
+                        throw failure;
+                    }
+                    if (position >= encryptedDataReader.getSize()) {
+                        return -1;
+                    }
+                    if (0 == length) {
+                        return 0;
+                    }
+                    byte[] clearData = 0 == offset ? buffer : new byte[length];
+                    int read;
+                    try {
+                        read = encryptedDataReader.read(position, clearData, length);
+                    } catch (CryptoException e) {
+                        failure = new IOException("Failed to decrypt image", e);
+                        throw failure;
+                    } catch (IOException e) {
+                        failure = e;
+                        throw e;
+                    }
+                    if (clearData != buffer) {
+                        System.arraycopy(clearData, 0, buffer, offset, read);
+                    }
+                    position += read;
+                    return read;
+                }
+            };
+        }
+    }
+
+    private byte[] readThumbnail(File thumbnailFile, SecretKeys secretKeys)
+            throws IOException, CryptoException {
+        try (InputStream inputStream = new FileInputStream(thumbnailFile)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            new EncryptedDataStream(crypto, secretKeys).decrypt(inputStream, outputStream, null);
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * Encrypts the given {@code thumbnail} to a temporary file, and then replaces the
+     * {@code thumbnailFile} with it, so that a partially written thumbnail is never read.
+     */
+    private void writeThumbnail(File thumbnailFile, SecretKeys secretKeys, byte[] thumbnail)
+            throws IOException, CryptoException {
+        File thumbnailsDir = thumbnailFile.getParentFile();
+        if (!thumbnailsDir.exists() && !thumbnailsDir.mkdirs()) {
+            throw new IOException("Failed to create folder " + thumbnailsDir.getAbsolutePath());
+        }
+        File tempFile = File.createTempFile(thumbnailFile.getName(), null, thumbnailsDir);
+        try {
+            try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+                new EncryptedDataStream(crypto, secretKeys).encrypt(
+                        new ByteArrayInputStream(thumbnail), outputStream, null);
+            }
+            if (!tempFile.renameTo(thumbnailFile)) {
+                thumbnailFile.delete();
+                if (!tempFile.renameTo(thumbnailFile)) {
+                    throw new IOException("Failed to rename " + tempFile.getAbsolutePath());
+                }
+            }
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.petrus.lib.core.crypto.DecryptedChunksCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the DecryptedChunksCache size limits
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class DecryptedChunksCacheTest {
+
+    private DecryptedChunksCache cache;
+
+    @Before
+    public void init() {
+        cache = new DecryptedChunksCache();
+        cache.setEnabled(true);
+        cache.setMaxSize(300);
+    }
+
+    @Test
+    public void chunksAreKeyedByDocumentVersionAndIndex() {
+        cache.put(1, 1, 0, new byte[100]);
+        assertNotNull(cache.get(1, 1, 0));
+        assertNull(cache.get(1, 2, 0));
+        assertNull(cache.get(1, 1, 1));
+        assertNull(cache.get(2, 1, 0));
+    }
+
+    @Test
+    public void leastRecentlyUsedChunksAreTrimmed() {
+        cache.put(1, 1, 0, new byte[100]);
+        cache.put(1, 1, 1, new byte[100]);
+        cache.put(1, 1, 2, new byte[100]);
+        cache.get(1, 1, 0);
+        cache.put(1, 1, 3, new byte[100]);
+
+        assertEquals(300, cache.getSize());
+        assertNotNull(cache.get(1, 1, 0));
+        assertNull(cache.get(1, 1, 1));
+        assertNotNull(cache.get(1, 1, 3));
+    }
+
+    @Test
+    public void replacedChunksAreCountedOnce() {
+        cache.put(1, 1, 0, new byte[100]);
+        cache.put(1, 1, 0, new byte[50]);
+        assertEquals(50, cache.getSize());
+    }
+
+    @Test
+    public void chunksLargerThanTheCacheAreIgnored() {
+        cache.put(1, 1, 0, new byte[301]);
+        assertNull(cache.get(1, 1, 0));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void shrinkingOrDisablingEmptiesTheCache() {
+        cache.put(1, 1, 0, new byte[100]);
+        cache.put(1, 1, 1, new byte[100]);
+        cache.setMaxSize(150);
+        assertEquals(100, cache.getSize());
+        assertNotNull(cache.get(1, 1, 1));
+
+        cache.setEnabled(false);
+        assertEquals(0, cache.getSize());
+        cache.put(1, 1, 0, new byte[100]);
+        assertNull(cache.get(1, 1, 0));
+    }
+}
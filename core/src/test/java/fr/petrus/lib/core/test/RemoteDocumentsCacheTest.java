@@ -0,0 +1,106 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.test;
+
+import org.junit.Test;
+
+import fr.petrus.lib.core.cloud.RemoteDocumentsCache;
+import fr.petrus.lib.core.cloud.implementations.dropbox.DropboxDocument;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the RemoteDocumentsCache expiration and eviction
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class RemoteDocumentsCacheTest {
+
+    private static DropboxDocument document(String accountName, String id) {
+        DropboxDocument document = new DropboxDocument(null);
+        document.setAccountName(accountName);
+        document.setId(id);
+        return document;
+    }
+
+    @Test
+    public void documentsAreKeyedByAccountAndId() {
+        RemoteDocumentsCache<DropboxDocument> cache = new RemoteDocumentsCache<>(10, 60000);
+        DropboxDocument document = document("user1", "id1");
+        cache.put(document);
+        assertSame(document, cache.get("user1", "id1"));
+        assertNull(cache.get("user2", "id1"));
+        assertNull(cache.get("user1", "id2"));
+
+        cache.remove("user1", "id1");
+        assertNull(cache.get("user1", "id1"));
+    }
+
+    @Test
+    public void documentsWithoutIdAreNotCached() {
+        RemoteDocumentsCache<DropboxDocument> cache = new RemoteDocumentsCache<>(10, 60000);
+        cache.put(document("user1", null));
+        cache.put(null);
+        assertNull(cache.get("user1", null));
+    }
+
+    @Test
+    public void documentsExpire() throws InterruptedException {
+        RemoteDocumentsCache<DropboxDocument> cache = new RemoteDocumentsCache<>(10, 50);
+        cache.put(document("user1", "id1"));
+        Thread.sleep(100);
+        assertNull(cache.get("user1", "id1"));
+    }
+
+    @Test
+    public void leastRecentlyUsedDocumentsAreEvicted() {
+        RemoteDocumentsCache<DropboxDocument> cache = new RemoteDocumentsCache<>(2, 60000);
+        DropboxDocument document1 = document("user1", "id1");
+        cache.put(document1);
+        cache.put(document("user1", "id2"));
+        cache.get("user1", "id1");
+        cache.put(document("user1", "id3"));
+
+        assertSame(document1, cache.get("user1", "id1"));
+        assertNull(cache.get("user1", "id2"));
+
+        cache.clear();
+        assertNull(cache.get("user1", "id1"));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.EncryptedDocumentMetadata;
+import fr.petrus.lib.core.EncryptedDocuments;
+import fr.petrus.lib.core.OrderBy;
+import fr.petrus.lib.core.StorageCryptException;
+import fr.petrus.lib.core.StorageType;
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.db.H2Database;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionException;
+import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.i18n.TextI18n;
+import fr.petrus.lib.core.platform.AppContext;
+import fr.petrus.lib.core.platform.PlatformFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests that the search index is kept in sync with the documents when they are added, renamed and
+ * deleted
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class SearchIndexTest {
+
+    @Rule
+    public TemporaryFolder databaseFolder = new TemporaryFolder();
+
+    private AppContext appContext;
+    private EncryptedDocument root;
+
+    @Before
+    public void init() throws DatabaseConnectionException, DatabaseConnectionClosedException {
+        PlatformFactory platformFactory = mock(PlatformFactory.class);
+        when(platformFactory.crypto()).thenReturn(mock(Crypto.class));
+        when(platformFactory.keyManager(nullable(Crypto.class))).thenReturn(mock(KeyManager.class));
+        when(platformFactory.textI18n()).thenReturn(mock(TextI18n.class));
+        when(platformFactory.database(nullable(FileSystem.class), nullable(TextI18n.class)))
+                .thenReturn(new H2Database(databaseFolder.getRoot().getAbsolutePath(), null));
+        appContext = new AppContext(platformFactory);
+        appContext.getDatabase().open("test password");
+        EncryptedDocuments encryptedDocuments = appContext.getEncryptedDocuments();
+        encryptedDocuments.updateRoots();
+        root = encryptedDocuments.root(StorageType.Unsynchronized, null);
+    }
+
+    @After
+    public void close() {
+        appContext.getDatabase().close();
+    }
+
+    /* The documents are only added to the database : their files are never read */
+    private EncryptedDocument addDocument(String displayName, String mimeType)
+            throws StorageCryptException, DatabaseConnectionClosedException {
+        EncryptedDocumentMetadata metadata =
+                new EncryptedDocumentMetadata(appContext.getCrypto(), appContext.getKeyManager());
+        metadata.setMetadata(mimeType, displayName, null);
+        return root.createChild(metadata, new File(displayName));
+    }
+
+    private List<String> search(String query) throws DatabaseConnectionClosedException {
+        List<String> names = new ArrayList<>();
+        for (EncryptedDocument encryptedDocument :
+                appContext.getEncryptedDocuments().search(query, false, OrderBy.NameAsc, 100)) {
+            names.add(encryptedDocument.getDisplayName());
+        }
+        return names;
+    }
+
+    @Test
+    public void addedDocumentsAreFound() throws StorageCryptException, DatabaseConnectionClosedException {
+        addDocument("Holiday photos.jpg", "image/jpeg");
+        addDocument("Invoice 2016.pdf", "application/pdf");
+
+        assertEquals(1, search("holiday").size());
+        assertEquals(1, search("HOLI").size());
+        assertEquals(1, search("invoice pdf").size());
+        assertEquals(1, search("image").size());
+        assertTrue(search("holiday invoice").isEmpty());
+    }
+
+    @Test
+    public void renamedDocumentsAreReindexed() throws StorageCryptException, DatabaseConnectionClosedException {
+        EncryptedDocument encryptedDocument = addDocument("Report.txt", "text/plain");
+        encryptedDocument.setDisplayName("Budget.txt");
+        encryptedDocument.update();
+
+        assertTrue(search("report").isEmpty());
+        assertEquals(1, search("budget").size());
+    }
+
+    @Test
+    public void deletedDocumentsAreRemovedFromTheIndex()
+            throws StorageCryptException, DatabaseConnectionClosedException {
+        EncryptedDocument deletedDocument = addDocument("Contract.pdf", "application/pdf");
+        appContext.getDatabase().deleteEncryptedDocument(deletedDocument);
+        EncryptedDocument addedDocument = addDocument("Letter.pdf", "application/pdf");
+
+        assertTrue(search("contract").isEmpty());
+        List<String> names = search("pdf");
+        assertEquals(1, names.size());
+        assertEquals(addedDocument.getDisplayName(), names.get(0));
+    }
+}
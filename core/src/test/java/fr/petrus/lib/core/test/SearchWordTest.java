@@ -0,0 +1,84 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.lib.core.test;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import fr.petrus.lib.core.db.SearchWord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the SearchWord words extraction methods
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class SearchWordTest {
+
+    @Test
+    public void normalizeRemovesAccentsAndCase() {
+        assertEquals("ete a noel", SearchWord.normalize("Été à Noël"));
+        assertEquals("facade", SearchWord.normalize("FAÇADE"));
+    }
+
+    @Test
+    public void extractWordsSplitsOnSeparators() {
+        assertEquals(Arrays.asList("holidays", "2016", "jpg", "image", "jpeg"),
+                Arrays.asList(SearchWord.extractWords("Holidays 2016.jpg", "image/jpeg").toArray()));
+    }
+
+    @Test
+    public void extractWordsIgnoresDuplicatesAndNullTexts() {
+        Set<String> words = SearchWord.extractWords("Résumé - resume_v2", null, "  ");
+        assertEquals(Arrays.asList("resume", "v2"), Arrays.asList(words.toArray()));
+        assertTrue(SearchWord.extractWords((String) null).isEmpty());
+    }
+
+    @Test
+    public void extractWordsTruncatesLongWords() {
+        char[] letters = new char[200];
+        Arrays.fill(letters, 'a');
+        Set<String> words = SearchWord.extractWords(new String(letters));
+        assertEquals(1, words.size());
+        assertEquals(128, words.iterator().next().length());
+    }
+}
@@ -96,10 +96,24 @@ public class AndroidConstants {
     public interface CONTENT_PROVIDER {
         String AUTHORITY = "fr.petrus.tools.storagecrypt.documents";
         String BASE_DOCUMENT_URI = "content://"+AUTHORITY+"/document/";
+        int DECRYPTED_CHUNKS_CACHE_SIZE = 4;
+        long CHANGE_NOTIFICATION_DELAY_MS = 500;
+        int MAX_SEARCH_RESULTS = 200;
     }
 
     public interface SERVICE {
         int FOREGROUND_SERVICE_NOTIFICATION_ID = 888;
         String NOTIFICATION_ACTION  = "fr.petrus.tools.storagecrypt.action.notification";
     }
+
+    public interface EXECUTOR {
+        String THREAD_NAME = "StorageCryptExecutor";
+        int MAX_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        int MAX_BACKGROUND_THREADS = MAX_THREADS / 2;
+        long KEEP_ALIVE_MS = 30000;
+    }
+
+    public interface THUMBNAILS {
+        long MAX_SOURCE_SIZE = 16 * 1024 * 1024; // 16MB
+    }
 }
@@ -64,6 +64,7 @@ import fr.petrus.tools.storagecrypt.android.fragments.dialog.AlertDialogFragment
 import fr.petrus.tools.storagecrypt.android.fragments.dialog.ConfirmationDialogFragment;
 import fr.petrus.tools.storagecrypt.android.platform.AndroidPlatformFactory;
 import fr.petrus.tools.storagecrypt.android.tasks.DocumentsSyncTask;
+import fr.petrus.tools.storagecrypt.android.utils.PriorityExecutor;
 
 /**
  * The Android {@link android.app.Application}, which manages the application state.
@@ -86,6 +87,8 @@ public class Application extends android.app.Application implements DocumentsSel
     }
 
     private AppContext appContext = null;
+    private PriorityExecutor executor = null;
+    private DocumentsChangeNotifier documentsChangeNotifier = null;
 
     private List<Uri> encryptQueue = new ArrayList<>();
 
@@ -123,6 +126,34 @@ public class Application extends android.app.Application implements DocumentsSel
         return appContext;
     }
 
+    /**
+     * Returns the executor which runs the work of the services.
+     *
+     * @return the executor which runs the work of the services
+     */
+    public synchronized PriorityExecutor getExecutor() {
+        if (null==executor) {
+            executor = new PriorityExecutor(AndroidConstants.EXECUTOR.THREAD_NAME,
+                    AndroidConstants.EXECUTOR.MAX_THREADS,
+                    AndroidConstants.EXECUTOR.MAX_BACKGROUND_THREADS,
+                    AndroidConstants.EXECUTOR.KEEP_ALIVE_MS);
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the {@code DocumentsChangeNotifier} which notifies the content provider clients of
+     * the documents changes.
+     *
+     * @return the {@code DocumentsChangeNotifier}
+     */
+    public synchronized DocumentsChangeNotifier getDocumentsChangeNotifier() {
+        if (null==documentsChangeNotifier) {
+            documentsChangeNotifier = new DocumentsChangeNotifier(getContentResolver());
+        }
+        return documentsChangeNotifier;
+    }
+
     /**
      * Returns the list of {@code Uri}s this application was asked to open.
      *
@@ -0,0 +1,223 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.android;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.OrderBy;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+
+/**
+ * A {@code Cursor} over the children of a folder, which reads them from the database one page
+ * at a time, when the rows of the page are accessed.
+ *
+ * <p>The number of children is read when the cursor is created. The clients are notified through
+ * the notification URI of the cursor when the children change, and should query them again.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+class ChildDocumentsCursor extends AbstractCursor {
+    private static final String TAG = "ChildDocumentsCursor";
+
+    /** The number of documents fetched from the database at once */
+    private static final int PAGE_SIZE = 100;
+
+    /** The maximum number of pages of rows kept in memory */
+    private static final int MAX_CACHED_PAGES = 5;
+
+    /**
+     * The interface used to build the row of a document.
+     */
+    interface RowBuilder {
+        /**
+         * Builds the row of the given {@code encryptedDocument}.
+         *
+         * @param encryptedDocument the document
+         * @param columns           the names of the columns of the row
+         * @return the values of the columns of the row
+         */
+        Object[] buildRow(EncryptedDocument encryptedDocument, String[] columns);
+    }
+
+    private EncryptedDocument parent;
+    private String[] columns;
+    private RowBuilder rowBuilder;
+    private int count;
+
+    private Map<Integer, Object[][]> cachedPages =
+            new LinkedHashMap<Integer, Object[][]>(MAX_CACHED_PAGES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                    return size() > MAX_CACHED_PAGES;
+                }
+            };
+
+    /**
+     * Creates a new {@code ChildDocumentsCursor} over the children of the given {@code parent}.
+     *
+     * @param parent     the folder which children this cursor returns
+     * @param columns    the names of the columns of this cursor
+     * @param rowBuilder the {@code RowBuilder} used to build the rows of the children
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    ChildDocumentsCursor(EncryptedDocument parent, String[] columns, RowBuilder rowBuilder)
+            throws DatabaseConnectionClosedException {
+        this.parent = parent;
+        this.columns = columns;
+        this.rowBuilder = rowBuilder;
+        /* numChildren() returns -1 if the children could not be counted : show an empty cursor */
+        this.count = (int) Math.max(0, Math.min(Integer.MAX_VALUE, parent.numChildren()));
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columns;
+    }
+
+    private Object getValue(int column) {
+        if (column < 0 || column >= columns.length) {
+            throw new IllegalArgumentException("Wrong column index : " + column);
+        }
+        int position = getPosition();
+        if (position < 0 || position >= count) {
+            throw new IllegalStateException("Wrong cursor position : " + position);
+        }
+        Object[][] rows = getPage(position / PAGE_SIZE);
+        int pageIndex = position % PAGE_SIZE;
+        if (pageIndex >= rows.length) {
+            /* The children changed since the cursor was created */
+            return null;
+        }
+        return rows[pageIndex][column];
+    }
+
+    private synchronized Object[][] getPage(int page) {
+        Object[][] rows = cachedPages.get(page);
+        if (null == rows) {
+            try {
+                List<EncryptedDocument> children =
+                        parent.children(true, OrderBy.NameAsc, (long) page * PAGE_SIZE, PAGE_SIZE);
+                rows = new Object[children.size()][];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = rowBuilder.buildRow(children.get(i), columns);
+                }
+            } catch (DatabaseConnectionClosedException e) {
+                Log.e(TAG, "Database is closed", e);
+                rows = new Object[0][];
+            }
+            cachedPages.put(page, rows);
+        }
+        return rows;
+    }
+
+    @Override
+    public String getString(int column) {
+        Object value = getValue(column);
+        return null == value ? null : value.toString();
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        Object value = getValue(column);
+        if (null == value) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else {
+            return Long.parseLong(value.toString());
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        Object value = getValue(column);
+        if (null == value) {
+            return 0.0;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else {
+            return Double.parseDouble(value.toString());
+        }
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return null == getValue(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        Object value = getValue(column);
+        if (null == value) {
+            return Cursor.FIELD_TYPE_NULL;
+        } else if (value instanceof Float || value instanceof Double) {
+            return Cursor.FIELD_TYPE_FLOAT;
+        } else if (value instanceof Number) {
+            return Cursor.FIELD_TYPE_INTEGER;
+        } else {
+            return Cursor.FIELD_TYPE_STRING;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.android;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import fr.petrus.lib.core.EncryptedDocument;
+
+/**
+ * This class notifies the clients of the {@link StorageCryptProvider} when some documents change.
+ *
+ * <p>Only the URIs of the changed documents and of the children of their parents are notified, so
+ * that the clients only query again the folders they display which really changed. The changes are
+ * grouped and notified at most every {@link AndroidConstants.CONTENT_PROVIDER#CHANGE_NOTIFICATION_DELAY_MS},
+ * so that a synchronization changing many documents does not flood the clients.
+ *
+ * <p>This class is thread safe.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class DocumentsChangeNotifier {
+
+    private ContentResolver contentResolver;
+    private Handler handler = new Handler(Looper.getMainLooper());
+    private Set<Uri> changedUris = new LinkedHashSet<>();
+    private boolean notificationPlanned = false;
+
+    private final Runnable notifyChanges = new Runnable() {
+        @Override
+        public void run() {
+            Uri[] uris;
+            synchronized (DocumentsChangeNotifier.this) {
+                uris = changedUris.toArray(new Uri[changedUris.size()]);
+                changedUris.clear();
+                notificationPlanned = false;
+            }
+            for (Uri uri : uris) {
+                contentResolver.notifyChange(uri, null, false);
+            }
+        }
+    };
+
+    /**
+     * Creates a new {@code DocumentsChangeNotifier} instance.
+     *
+     * @param contentResolver the {@code ContentResolver} used to notify the changes
+     */
+    public DocumentsChangeNotifier(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Notifies that the given {@code encryptedDocument} was created, modified or deleted.
+     *
+     * @param encryptedDocument the document which changed
+     */
+    public void notifyDocumentChanged(EncryptedDocument encryptedDocument) {
+        if (null != encryptedDocument) {
+            notifyDocumentChanged(encryptedDocument.getId(), encryptedDocument.getParentId());
+        }
+    }
+
+    /**
+     * Notifies that the document with the given {@code documentId} was created, modified or deleted.
+     *
+     * @param documentId the id of the document which changed
+     * @param parentId   the id of the parent of the document which changed
+     */
+    public synchronized void notifyDocumentChanged(long documentId, long parentId) {
+        changedUris.add(DocumentsContract.buildDocumentUri(
+                AndroidConstants.CONTENT_PROVIDER.AUTHORITY, String.valueOf(documentId)));
+        changedUris.add(DocumentsContract.buildChildDocumentsUri(
+                AndroidConstants.CONTENT_PROVIDER.AUTHORITY, String.valueOf(parentId)));
+        if (!notificationPlanned) {
+            notificationPlanned = true;
+            handler.postDelayed(notifyChanges, AndroidConstants.CONTENT_PROVIDER.CHANGE_NOTIFICATION_DELAY_MS);
+        }
+    }
+}
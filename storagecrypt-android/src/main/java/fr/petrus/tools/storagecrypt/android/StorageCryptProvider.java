@@ -36,16 +36,25 @@
 
 package fr.petrus.tools.storagecrypt.android;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.MatrixCursor;
+import android.graphics.Point;
 import android.os.Build;
 import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.ParcelFileDescriptor;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
 import android.preference.PreferenceManager;
 import android.provider.DocumentsContract;
 import android.provider.DocumentsProvider;
+import android.system.ErrnoException;
+import android.system.OsConstants;
 import android.util.Log;
 
 import java.io.File;
@@ -58,6 +67,10 @@ import java.io.OutputStream;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.EncryptedDocuments;
@@ -65,6 +78,7 @@ import fr.petrus.lib.core.OrderBy;
 import fr.petrus.lib.core.SyncAction;
 import fr.petrus.lib.core.crypto.Crypto;
 import fr.petrus.lib.core.crypto.CryptoException;
+import fr.petrus.lib.core.crypto.EncryptedDataReader;
 import fr.petrus.lib.core.crypto.EncryptedDataStream;
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.State;
@@ -72,6 +86,7 @@ import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
 import fr.petrus.lib.core.platform.AppContext;
 import fr.petrus.lib.core.platform.TaskCreationException;
 import fr.petrus.lib.core.result.OnCompletedAnonListener;
+import fr.petrus.lib.core.result.ProcessProgressAdapter;
 import fr.petrus.lib.core.crypto.KeyManager;
 import fr.petrus.lib.core.filesystem.FileSystem;
 import fr.petrus.tools.storagecrypt.R;
@@ -117,6 +132,8 @@ public class StorageCryptProvider extends DocumentsProvider {
     private KeyManager keyManager = null;
     private FileSystem fileSystem = null;
     private EncryptedDocuments encryptedDocuments = null;
+    private HandlerThread proxyFileDescriptorsThread = null;
+    private ExecutorService pipeExecutor = null;
 
     @Override
     public boolean onCreate() {
@@ -170,7 +187,8 @@ public class StorageCryptProvider extends DocumentsProvider {
             row.add(DocumentsContract.Root.COLUMN_SUMMARY,
                     context.getString(R.string.provider_root_summary));
             row.add(DocumentsContract.Root.COLUMN_ICON, R.mipmap.ic_launcher_48dp);
-            int flags = DocumentsContract.Root.FLAG_SUPPORTS_CREATE;
+            int flags = DocumentsContract.Root.FLAG_SUPPORTS_CREATE
+                    | DocumentsContract.Root.FLAG_SUPPORTS_SEARCH;
             if (Build.VERSION.SDK_INT >= 21) {
                 flags |= DocumentsContract.Root.FLAG_SUPPORTS_IS_CHILD;
             }
@@ -225,6 +243,8 @@ public class StorageCryptProvider extends DocumentsProvider {
             } catch (DatabaseConnectionClosedException e) {
                 Log.e(TAG, "Database is closed", e);
             }
+            result.setNotificationUri(context.getContentResolver(),
+                    DocumentsContract.buildDocumentUri(AndroidConstants.CONTENT_PROVIDER.AUTHORITY, documentId));
         }
         return result;
     }
@@ -234,13 +254,47 @@ public class StorageCryptProvider extends DocumentsProvider {
                                       String sortOrder) throws FileNotFoundException {
         Log.d(TAG, "queryChildDocuments(parentDocumentId="+parentDocumentId+")");
 
+        if (!isUserLoggedIn()) {
+            throw new FileNotFoundException("Keystore is locked");
+        }
+
+        Cursor result = null;
+        try {
+            result = queryChildDocuments(parentDocumentId, resolveDocumentProjection(projection));
+        } catch (DatabaseConnectionClosedException e) {
+            Log.e(TAG, "Database is closed", e);
+        } catch (NumberFormatException e) {
+            Log.d(TAG, "Number format error", e);
+        }
+        if (null == result) {
+            result = new MatrixCursor(resolveDocumentProjection(projection));
+        }
+        Context context = getContext();
+        if (null!=context) {
+            result.setNotificationUri(context.getContentResolver(),
+                    DocumentsContract.buildChildDocumentsUri(AndroidConstants.CONTENT_PROVIDER.AUTHORITY,
+                            parentDocumentId));
+        }
+        return result;
+    }
+
+    @Override
+    public Cursor querySearchDocuments(String rootId, String query, String[] projection)
+            throws FileNotFoundException {
+        Log.d(TAG, "querySearchDocuments(rootId="+rootId+", query="+query+")");
+
         final MatrixCursor result = new MatrixCursor(resolveDocumentProjection(projection));
         if (!isUserLoggedIn()) {
             throw new FileNotFoundException("Keystore is locked");
         }
 
         try {
-            includeChildDocuments(result, parentDocumentId);
+            for (EncryptedDocument encryptedDocument : encryptedDocuments.search(query, true,
+                    OrderBy.NameAsc, AndroidConstants.CONTENT_PROVIDER.MAX_SEARCH_RESULTS)) {
+                if (!encryptedDocument.isRoot()) {
+                    includeDocument(result, encryptedDocument);
+                }
+            }
         } catch (DatabaseConnectionClosedException e) {
             Log.e(TAG, "Database is closed", e);
         }
@@ -267,6 +321,7 @@ public class StorageCryptProvider extends DocumentsProvider {
                         Log.e(TAG, "Failed to get task " + e.getTaskClass().getCanonicalName(), e);
                     }
                 }
+                Application.getInstance().getDocumentsChangeNotifier().notifyDocumentChanged(newFile);
                 return String.valueOf(newFile.getId());
             }
         } catch (DatabaseConnectionClosedException e) {
@@ -310,6 +365,7 @@ public class StorageCryptProvider extends DocumentsProvider {
                             Log.e(TAG, "Failed to get task " + e.getTaskClass().getCanonicalName(), e);
                         }
                         DocumentListChangeEvent.postSticky();
+                        Application.getInstance().getDocumentsChangeNotifier().notifyDocumentChanged(result);
                     }
                 });
             } else {
@@ -327,6 +383,45 @@ public class StorageCryptProvider extends DocumentsProvider {
         }
     }
 
+    @Override
+    public AssetFileDescriptor openDocumentThumbnail(String documentId, Point sizeHint,
+                                                     final CancellationSignal signal)
+            throws FileNotFoundException {
+
+        Log.d(TAG, "openDocumentThumbnail(documentId="+documentId+")");
+        if (!isUserLoggedIn()) {
+            throw new FileNotFoundException("Keystore is locked");
+        }
+
+        try {
+            EncryptedDocument encryptedDocument =
+                    encryptedDocuments.encryptedDocumentWithId(Long.parseLong(documentId));
+            if (null == encryptedDocument) {
+                throw new FileNotFoundException("Document not found : " + documentId);
+            }
+            byte[] thumbnail = appContext.getThumbnails().getThumbnail(encryptedDocument,
+                    new ProcessProgressAdapter() {
+                        @Override
+                        public boolean isCanceled() {
+                            return null != signal && signal.isCanceled();
+                        }
+                    });
+            if (null != signal) {
+                signal.throwIfCanceled();
+            }
+            if (null == thumbnail) {
+                throw new FileNotFoundException("No thumbnail for document " + documentId);
+            }
+            return new AssetFileDescriptor(startWrite(thumbnail), 0, thumbnail.length);
+        } catch (DatabaseConnectionClosedException e) {
+            Log.e(TAG, "Database is closed", e);
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            Log.e(TAG, "Error while opening document thumbnail", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
     private boolean isUserLoggedIn() {
         if (null==keyManager) {
             if (!init()) {
@@ -338,30 +433,59 @@ public class StorageCryptProvider extends DocumentsProvider {
 
     private void includeDocument(MatrixCursor result, EncryptedDocument encryptedDocument) {
         if (null!= encryptedDocument) {
-            final MatrixCursor.RowBuilder row = result.newRow();
-
-            int flags = DocumentsContract.Document.FLAG_SUPPORTS_WRITE
-                    | DocumentsContract.Document.FLAG_SUPPORTS_DELETE;
-            if (Build.VERSION.SDK_INT >= 21) {
-                flags |= DocumentsContract.Document.FLAG_SUPPORTS_RENAME;
-            }
-            if (encryptedDocument.isRoot() || encryptedDocument.isFolder()) {
-                flags |= DocumentsContract.Document.FLAG_DIR_SUPPORTS_CREATE;
-            }
+            result.addRow(buildDocumentRow(encryptedDocument, result.getColumnNames()));
+        }
+    }
 
-            String displayName;
-            if (encryptedDocument.isRoot()) {
-                displayName = encryptedDocument.storageText();
-            } else {
-                displayName =  encryptedDocument.getDisplayName();
+    /**
+     * Builds the row describing the given {@code encryptedDocument}, with the values of the given
+     * {@code columns}.
+     *
+     * @param encryptedDocument the document
+     * @param columns           the names of the columns of the row
+     * @return the values of the columns of the row
+     */
+    private Object[] buildDocumentRow(EncryptedDocument encryptedDocument, String[] columns) {
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case DocumentsContract.Document.COLUMN_DOCUMENT_ID:
+                    row[i] = encryptedDocument.getId();
+                    break;
+                case DocumentsContract.Document.COLUMN_DISPLAY_NAME:
+                    if (encryptedDocument.isRoot()) {
+                        row[i] = encryptedDocument.storageText();
+                    } else {
+                        row[i] = encryptedDocument.getDisplayName();
+                    }
+                    break;
+                case DocumentsContract.Document.COLUMN_MIME_TYPE:
+                    row[i] = getProviderMimeType(encryptedDocument.getMimeType());
+                    break;
+                case DocumentsContract.Document.COLUMN_SIZE:
+                    row[i] = encryptedDocument.getSize();
+                    break;
+                case DocumentsContract.Document.COLUMN_FLAGS:
+                    row[i] = getDocumentFlags(encryptedDocument);
+                    break;
             }
+        }
+        return row;
+    }
 
-            row.add(DocumentsContract.Document.COLUMN_DOCUMENT_ID, encryptedDocument.getId());
-            row.add(DocumentsContract.Document.COLUMN_DISPLAY_NAME, displayName);
-            row.add(DocumentsContract.Document.COLUMN_MIME_TYPE, getProviderMimeType(encryptedDocument.getMimeType()));
-            row.add(DocumentsContract.Document.COLUMN_SIZE, encryptedDocument.getSize());
-            row.add(DocumentsContract.Document.COLUMN_FLAGS, flags);
+    private int getDocumentFlags(EncryptedDocument encryptedDocument) {
+        int flags = DocumentsContract.Document.FLAG_SUPPORTS_WRITE
+                | DocumentsContract.Document.FLAG_SUPPORTS_DELETE;
+        if (Build.VERSION.SDK_INT >= 21) {
+            flags |= DocumentsContract.Document.FLAG_SUPPORTS_RENAME;
+        }
+        if (encryptedDocument.isRoot() || encryptedDocument.isFolder()) {
+            flags |= DocumentsContract.Document.FLAG_DIR_SUPPORTS_CREATE;
+        }
+        if (appContext.getThumbnails().canHaveThumbnail(encryptedDocument)) {
+            flags |= DocumentsContract.Document.FLAG_SUPPORTS_THUMBNAIL;
         }
+        return flags;
     }
 
     private void includeDocument(MatrixCursor result, String documentId)
@@ -380,26 +504,41 @@ public class StorageCryptProvider extends DocumentsProvider {
         }
     }
 
-    private void includeChildDocuments(MatrixCursor result, String parentDocumentId)
+    /**
+     * Returns a cursor over the children of the document with the given {@code parentDocumentId}.
+     *
+     * <p>The roots are few, so they are returned in a {@code MatrixCursor}. The children of the
+     * other documents are returned in a {@link ChildDocumentsCursor}, which fetches them from the
+     * database page by page, as the client moves through the cursor.
+     *
+     * @param parentDocumentId the id of the parent document
+     * @param columns          the names of the columns of the cursor
+     * @return the cursor over the children, or null if the parent document was not found
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private Cursor queryChildDocuments(String parentDocumentId, String[] columns)
             throws DatabaseConnectionClosedException {
         if (parentDocumentId.equals(String.valueOf(Constants.STORAGE.ROOT_PARENT_ID))) {
+            MatrixCursor result = new MatrixCursor(columns);
             encryptedDocuments.updateRoots();
             List<EncryptedDocument> rootEncryptedDocuments = encryptedDocuments.roots();
             for (EncryptedDocument encryptedDocument : rootEncryptedDocuments) {
                 Log.d(TAG, "found root : (documentId="+encryptedDocument.getId()+")");
                 includeDocument(result, encryptedDocument);
             }
+            return result;
         } else {
             EncryptedDocument parent = encryptedDocuments.encryptedDocumentWithId(Long.parseLong(parentDocumentId));
             if (null != parent) {
-                List<EncryptedDocument> documentsList = parent.children(true, OrderBy.NameAsc);
-                Log.d(TAG, "includeChildDocuments(parentDocumentId=" + parentDocumentId + ")");
-                for (EncryptedDocument encryptedDocument : documentsList) {
-                    Log.d(TAG, "  documentId=" + encryptedDocument.getId() + ", displayName=" + encryptedDocument.getDisplayName());
-                    includeDocument(result, encryptedDocument);
-                }
+                return new ChildDocumentsCursor(parent, columns, new ChildDocumentsCursor.RowBuilder() {
+                    @Override
+                    public Object[] buildRow(EncryptedDocument encryptedDocument, String[] columns) {
+                        return buildDocumentRow(encryptedDocument, columns);
+                    }
+                });
             }
         }
+        return null;
     }
 
     private String getProviderMimeType(String mimeType) {
@@ -420,6 +559,12 @@ public class StorageCryptProvider extends DocumentsProvider {
             throws DatabaseConnectionClosedException, IOException, CryptoException {
         File file = encryptedDocument.file();
         Context context = getContext();
+        if (null!=context && Build.VERSION.SDK_INT >= 26) {
+            ParcelFileDescriptor parcelFileDescriptor = startSeekableRead(context, encryptedDocument, file);
+            if (null!=parcelFileDescriptor) {
+                return parcelFileDescriptor;
+            }
+        }
         if (null!=context) {
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
             String prefsCacheOpenedFiles = prefs.getString(
@@ -483,7 +628,7 @@ public class StorageCryptProvider extends DocumentsProvider {
         try {
             final EncryptedDataStream encryptedDataStream =
                     new EncryptedDataStream(crypto, keyManager.getKeys(encryptedDocument.getKeyAlias()));
-            new Thread() {
+            getPipeExecutor().execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
@@ -505,13 +650,103 @@ public class StorageCryptProvider extends DocumentsProvider {
                         }
                     }
                 }
-            }.start();
+            });
         } catch (CryptoException e) {
             Log.e(TAG, "Failed to get key "+ encryptedDocument.getKeyAlias());
         }
         return readEnd;
     }
 
+    /**
+     * Opens a seekable file descriptor on the clear data of the given {@code encryptedDocument}.
+     *
+     * <p>Only the chunks needed by each read are decrypted, so readers can seek without the
+     * whole document being decrypted first, and no clear data is written to the storage.
+     *
+     * @return the file descriptor, or null if the document could not be opened this way
+     */
+    @TargetApi(26)
+    private ParcelFileDescriptor startSeekableRead(Context context,
+                                                   final EncryptedDocument encryptedDocument,
+                                                   File file)
+            throws IOException {
+        final EncryptedDataReader encryptedDataReader;
+        try {
+            encryptedDataReader = new EncryptedDataReader(crypto,
+                    keyManager.getKeys(encryptedDocument.getKeyAlias()), file,
+                    AndroidConstants.CONTENT_PROVIDER.DECRYPTED_CHUNKS_CACHE_SIZE,
+                    keyManager.getDecryptedChunksCache(), encryptedDocument.getId());
+        } catch (CryptoException e) {
+            Log.e(TAG, "Failed to index encrypted document " + encryptedDocument.getFileName(), e);
+            return null;
+        }
+
+        StorageManager storageManager = (StorageManager) context.getSystemService(Context.STORAGE_SERVICE);
+        try {
+            return storageManager.openProxyFileDescriptor(ParcelFileDescriptor.MODE_READ_ONLY,
+                    new ProxyFileDescriptorCallback() {
+                        @Override
+                        public long onGetSize() throws ErrnoException {
+                            return encryptedDataReader.getSize();
+                        }
+
+                        @Override
+                        public int onRead(long offset, int size, byte[] data) throws ErrnoException {
+                            try {
+                                return encryptedDataReader.read(offset, data, size);
+                            } catch (IOException | CryptoException e) {
+                                Log.e(TAG, "Error while decrypting", e);
+                                throw new ErrnoException("onRead", OsConstants.EIO);
+                            }
+                        }
+
+                        @Override
+                        public void onRelease() {
+                            try {
+                                encryptedDataReader.close();
+                            } catch (IOException e) {
+                                Log.e(TAG, "Error while closing encrypted document", e);
+                            }
+                        }
+                    }, getProxyFileDescriptorsHandler());
+        } catch (IOException e) {
+            encryptedDataReader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a {@code Handler} for the thread which serves the reads of the seekable file descriptors.
+     */
+    private synchronized Handler getProxyFileDescriptorsHandler() {
+        if (null == proxyFileDescriptorsThread) {
+            proxyFileDescriptorsThread = new HandlerThread(TAG);
+            proxyFileDescriptorsThread.start();
+        }
+        return new Handler(proxyFileDescriptorsThread.getLooper());
+    }
+
+    /**
+     * Returns the executor which runs the transfers of the pipes returned to the clients.
+     *
+     * <p>A transfer holds its thread until the client closes its end of the pipe, so these transfers
+     * get a thread each, reused once idle, instead of waiting for a thread of the bounded executor
+     * shared with the services, which clients copying a document to another one would exhaust.
+     */
+    private synchronized ExecutorService getPipeExecutor() {
+        if (null == pipeExecutor) {
+            pipeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger numThreadsCreated = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, TAG + "-pipe-" + numThreadsCreated.incrementAndGet());
+                }
+            });
+        }
+        return pipeExecutor;
+    }
+
     private ParcelFileDescriptor decryptAndStartRead(final EncryptedDocument encryptedDocument,
                                                      final InputStream inputStream)
             throws DatabaseConnectionClosedException, IOException {
@@ -561,7 +796,33 @@ public class StorageCryptProvider extends DocumentsProvider {
     }
 
     /**
-     * Kick off a thread to handle a write request for the given document.
+     * Submits a task to the pipe executor to write the given {@code data} to a pipe, and returns
+     * the read end of the pipe.
+     */
+    private ParcelFileDescriptor startWrite(final byte[] data) throws IOException {
+        ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createReliablePipe();
+        final OutputStream outputStream = new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]);
+        getPipeExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    outputStream.write(data);
+                } catch (IOException e) {
+                    Log.d(TAG, "Error while writing data", e);
+                } finally {
+                    try {
+                        outputStream.close();
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error while closing output stream", e);
+                    }
+                }
+            }
+        });
+        return pipe[0];
+    }
+
+    /**
+     * Submits a task to the pipe executor to handle a write request for the given document.
      * Internally creates a pipe and returns the write end for returning to a
      * remote process.
      */
@@ -580,7 +841,7 @@ public class StorageCryptProvider extends DocumentsProvider {
         try {
             final EncryptedDataStream encryptedDataStream =
                     new EncryptedDataStream(crypto, keyManager.getKeys(encryptedDocument.getKeyAlias()));
-            new Thread() {
+            getPipeExecutor().execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
@@ -609,7 +870,7 @@ public class StorageCryptProvider extends DocumentsProvider {
                         }
                     }
                 }
-            }.start();
+            });
         } catch (CryptoException e) {
             Log.e(TAG, "Failed to get key "+ encryptedDocument.getKeyAlias());
         }
@@ -427,6 +427,7 @@ public class MainActivity
         StorageCryptService.stopService(this);
         keyManager.lockKeyStore();
         database.close();
+        accounts.clearCache();
         DocumentListChangeEvent.postSticky();
         finish();
     }
@@ -1570,6 +1571,7 @@ public class MainActivity
     @Override
     public void onKeyStoreLock() {
         keyManager.lockKeyStore();
+        accounts.clearCache();
         getContentResolver().notifyChange(
                 DocumentsContract.buildRootsUri(AndroidConstants.CONTENT_PROVIDER.AUTHORITY), null);
         KeyStoreStateChangeEvent.postSticky();
@@ -1799,6 +1801,7 @@ public class MainActivity
                     keyManager.decryptWithDatabaseSecurityKey(encryptedDatabaseEncryptionPassword);
             if (!database.isOpen()) {
                 database.open(databaseEncryptionPassword);
+                accounts.clearCache();
             }
             return true;
         } catch (DatabaseConnectionException e) {
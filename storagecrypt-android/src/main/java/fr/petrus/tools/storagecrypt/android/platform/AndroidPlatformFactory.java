@@ -52,6 +52,7 @@ import fr.petrus.lib.core.network.Network;
 import fr.petrus.lib.core.i18n.TextI18n;
 import fr.petrus.lib.core.platform.TaskCreationException;
 import fr.petrus.lib.core.tasks.Task;
+import fr.petrus.lib.core.thumbnails.ThumbnailGenerator;
 import fr.petrus.tools.storagecrypt.android.platform.crypto.AndroidBCLightWeightApiCrypto;
 import fr.petrus.tools.storagecrypt.android.platform.crypto.AndroidJcaCrypto;
 
@@ -120,6 +121,11 @@ public class AndroidPlatformFactory implements PlatformFactory {
         return new AndroidTextI18n(context);
     }
 
+    @Override
+    public ThumbnailGenerator thumbnailGenerator() {
+        return new AndroidThumbnailGenerator();
+    }
+
     @Override
     public Database database(FileSystem fileSystem, TextI18n textI18n) {
         return new H2Database(AndroidFileSystem.getInternalStoragePath(context), textI18n);
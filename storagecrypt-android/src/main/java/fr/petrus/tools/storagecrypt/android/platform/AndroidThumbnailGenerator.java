@@ -0,0 +1,123 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.android.platform;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.thumbnails.ThumbnailGenerator;
+import fr.petrus.tools.storagecrypt.android.AndroidConstants;
+
+/**
+ * The {@link ThumbnailGenerator} implementation for the Android platform, based on {@code BitmapFactory}.
+ *
+ * <p>The images are decoded from their stream, subsampled, so that only the downscaled bitmap is
+ * held in memory.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class AndroidThumbnailGenerator implements ThumbnailGenerator {
+    private static final String TAG = "AndroidThumbnailGenerator";
+
+    /**
+     * Creates a new {@code AndroidThumbnailGenerator} instance.
+     */
+    AndroidThumbnailGenerator() {}
+
+    @Override
+    public long getMaxSourceSize() {
+        return AndroidConstants.THUMBNAILS.MAX_SOURCE_SIZE;
+    }
+
+    @Override
+    public byte[] generateThumbnail(ImageSource image, int maxSize) {
+        /* First read the image dimensions only, to decode it subsampled */
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(image, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (2 * sampleSize) >= maxSize) {
+            sampleSize *= 2;
+        }
+
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = decode(image, options);
+        if (null == bitmap) {
+            return null;
+        }
+        try {
+            float scale = Math.min(1.0f, (float) maxSize / Math.max(bitmap.getWidth(), bitmap.getHeight()));
+            if (scale < 1.0f) {
+                Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap,
+                        Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                        Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+                if (scaledBitmap != bitmap) {
+                    bitmap.recycle();
+                    bitmap = scaledBitmap;
+                }
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, Constants.THUMBNAILS.JPEG_QUALITY, outputStream)) {
+                return null;
+            }
+            return outputStream.toByteArray();
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static Bitmap decode(ImageSource image, BitmapFactory.Options options) {
+        try (InputStream inputStream = new BufferedInputStream(image.open(), Constants.FILE.BUFFER_SIZE)) {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } catch (IOException e) {
+            Log.d(TAG, "Failed to decode image", e);
+            return null;
+        }
+    }
+}
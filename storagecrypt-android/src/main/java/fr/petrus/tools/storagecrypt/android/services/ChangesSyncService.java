@@ -52,12 +52,14 @@ import fr.petrus.lib.core.result.ProgressAdapter;
 import fr.petrus.lib.core.network.Network;
 import fr.petrus.lib.core.i18n.TextI18n;
 import fr.petrus.tools.storagecrypt.android.AndroidConstants;
+import fr.petrus.tools.storagecrypt.android.Application;
 import fr.petrus.tools.storagecrypt.android.events.ChangesSyncDoneEvent;
 import fr.petrus.tools.storagecrypt.android.events.ChangesSyncServiceEvent;
 import fr.petrus.tools.storagecrypt.android.events.DismissProgressDialogEvent;
 import fr.petrus.tools.storagecrypt.android.events.DocumentListChangeEvent;
 import fr.petrus.tools.storagecrypt.android.events.TaskProgressEvent;
 import fr.petrus.tools.storagecrypt.android.tasks.ChangesSyncTask;
+import fr.petrus.tools.storagecrypt.android.utils.PriorityExecutor;
 
 /**
  * The {@code ThreadService} which handles remote changes synchronization.
@@ -102,7 +104,8 @@ public class ChangesSyncService extends ThreadService<ChangesSyncService> {
      * Creates a new {@code ChangesSyncService} instance.
      */
     public ChangesSyncService() {
-        super(TAG, AndroidConstants.MAIN_ACTIVITY.CHANGES_SYNC_PROGRESS_DIALOG);
+        super(TAG, AndroidConstants.MAIN_ACTIVITY.CHANGES_SYNC_PROGRESS_DIALOG,
+                PriorityExecutor.Priority.Background);
     }
 
     @Override
@@ -140,6 +143,11 @@ public class ChangesSyncService extends ThreadService<ChangesSyncService> {
             }
         });
         changesSyncProcess.setSyncActionListener(new ChangesSyncProcess.SyncActionListener() {
+            @Override
+            public void onDocumentChanged(EncryptedDocument encryptedDocument) {
+                Application.getInstance().getDocumentsChangeNotifier().notifyDocumentChanged(encryptedDocument);
+            }
+
             @Override
             public void onChangesSyncDone(EncryptedDocument rootEncryptedDocument) {
                 DocumentListChangeEvent.postSticky();
@@ -193,7 +201,7 @@ public class ChangesSyncService extends ThreadService<ChangesSyncService> {
         if (null != parameters) {
             showResults = parameters.getBoolean(SHOW_RESULT, true);
         }
-        if (isRunning()) {
+        if (hasProcess()) {
             if (showResults) {
                 changesSyncProcess.showResults();
             }
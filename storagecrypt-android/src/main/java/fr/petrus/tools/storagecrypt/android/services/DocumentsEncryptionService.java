@@ -133,7 +133,9 @@ public class DocumentsEncryptionService extends ThreadService<DocumentsEncryptio
                         .setCancelButton(true).setPauseButton(true)
                         .setProgresses(new Progress(false), new Progress(false))).postSticky();
                 try {
-                    documentsEncryptionProcess.encryptDocuments(Arrays.asList(srcDocuments), dstFolderId, dstKeyAlias);
+                    documentsEncryptionProcess.encryptDocuments(
+                            appContext.getFileSystem().getLocalDocuments(Arrays.asList(srcDocuments)),
+                            dstFolderId, dstKeyAlias);
                 } catch (DatabaseConnectionClosedException e) {
                     Log.e(TAG, "Database is closed", e);
                 }
@@ -61,6 +61,7 @@ import fr.petrus.tools.storagecrypt.android.events.DocumentsSyncServiceEvent;
 import fr.petrus.tools.storagecrypt.android.events.ReauthAccountEvent;
 import fr.petrus.tools.storagecrypt.android.events.TaskProgressEvent;
 import fr.petrus.tools.storagecrypt.android.tasks.DocumentsSyncTask;
+import fr.petrus.tools.storagecrypt.android.utils.PriorityExecutor;
 
 /**
  * The {@code ThreadService} which synchronizes the local documents on remote storages.
@@ -105,14 +106,15 @@ public class DocumentsSyncService extends ThreadService<DocumentsSyncService> {
     private Accounts accounts = null;
     private EncryptedDocuments encryptedDocuments = null;
     private DocumentsSyncProcess documentsSyncProcess = null;
-    private Thread updateSyncQueueThread = null;
+    private Runnable updateSyncQueueTask = null;
     private boolean updateRequested = false;
 
     /**
      * Creates a new {@code DocumentsSyncService} instance.
      */
     public DocumentsSyncService() {
-        super(TAG, AndroidConstants.MAIN_ACTIVITY.DOCUMENTS_SYNC_PROGRESS_DIALOG);
+        super(TAG, AndroidConstants.MAIN_ACTIVITY.DOCUMENTS_SYNC_PROGRESS_DIALOG,
+                PriorityExecutor.Priority.Background);
     }
 
     @Override
@@ -194,6 +196,7 @@ public class DocumentsSyncService extends ThreadService<DocumentsSyncService> {
             @Override
             public void onDocumentChanged(EncryptedDocument encryptedDocument) {
                 DocumentListChangeEvent.postSticky();
+                Application.getInstance().getDocumentsChangeNotifier().notifyDocumentChanged(encryptedDocument);
             }
         });
     }
@@ -217,12 +220,12 @@ public class DocumentsSyncService extends ThreadService<DocumentsSyncService> {
 
     @Override
     protected void refreshIntent(int command, Bundle parameters) {
-        if (isRunning()) {
+        if (hasProcess()) {
             switch (command) {
                 case COMMAND_START:
                     updateRequested = true;
-                    if (null==updateSyncQueueThread) {
-                        updateSyncQueueThread = new Thread() {
+                    if (null==updateSyncQueueTask) {
+                        updateSyncQueueTask = new Runnable() {
                             @Override
                             public void run() {
                                 while (updateRequested) {
@@ -233,10 +236,11 @@ public class DocumentsSyncService extends ThreadService<DocumentsSyncService> {
                                         Log.e(TAG, "Database is closed", e);
                                     }
                                 }
-                                updateSyncQueueThread = null;
+                                updateSyncQueueTask = null;
                             }
                         };
-                        updateSyncQueueThread.start();
+                        Application.getInstance().getExecutor().execute(
+                                PriorityExecutor.Priority.Background, updateSyncQueueTask);
                     }
                     break;
                 case COMMAND_ENQUEUE_DOCUMENT:
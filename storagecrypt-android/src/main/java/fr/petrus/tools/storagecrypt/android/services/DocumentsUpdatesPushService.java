@@ -105,7 +105,7 @@ public class DocumentsUpdatesPushService extends ThreadService<DocumentsUpdatesP
         super.onCreate();
         final TaskProgressEvent progressEvent = new TaskProgressEvent(
                 AndroidConstants.MAIN_ACTIVITY.DOCUMENTS_UPDATES_PUSH_PROGRESS_DIALOG, 2);
-        documentsUpdatesPushProcess = new DocumentsUpdatesPushProcess(textI18n, network);
+        documentsUpdatesPushProcess = new DocumentsUpdatesPushProcess(textI18n, network, encryptedDocuments);
         documentsUpdatesPushProcess.setProgressListener(new ProgressListener() {
             @Override
             public void onMessage(int i, String message) {
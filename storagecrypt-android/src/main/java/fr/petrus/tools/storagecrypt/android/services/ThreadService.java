@@ -43,15 +43,24 @@ import android.os.Bundle;
 import android.os.IBinder;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import fr.petrus.lib.core.platform.AppContext;
 import fr.petrus.lib.core.processes.Process;
 import fr.petrus.lib.core.tasks.Task;
 import fr.petrus.tools.storagecrypt.android.Application;
 import fr.petrus.tools.storagecrypt.android.tasks.ServiceTask;
+import fr.petrus.tools.storagecrypt.android.utils.PriorityExecutor;
 
 /**
  * An Android {@code Service} which runs a {@code Process} in a background thread.
  *
+ * <p>The runs are submitted to the {@link PriorityExecutor} of the application. While a run waits
+ * for a thread, it is "queued" : the commands received in the meantime are passed to
+ * {@link #refreshIntent(int, Bundle)} as soon as the run registers its process, and canceling the
+ * service drops the queued run.
+ *
  * @param <S> the type of the real implementation of the service
  *
  * @author Pierre Sagne
@@ -113,18 +122,46 @@ public abstract class ThreadService<S extends ThreadService<S>>
      */
     protected ServiceTask<S> boundTask = null;
 
+    /**
+     * A command received while a run of this service is queued.
+     */
+    private static class PendingCommand {
+        private int command;
+        private Bundle parameters;
+
+        private PendingCommand(int command, Bundle parameters) {
+            this.command = command;
+            this.parameters = parameters;
+        }
+    }
+
     private int dialogId;
-    private Process process = null;
+    private PriorityExecutor.Priority priority;
+    private volatile Process process = null;
+    private Runnable queuedRun = null;
+    private List<PendingCommand> pendingCommands = new ArrayList<>();
 
     /**
-     * Creates a new {@code ThreadService} instance.
+     * Creates a new {@code ThreadService} instance, which runs as a user initiated task.
      *
      * @param serviceName the name of the real service implementation
      * @param dialogId    the ID of the dialog this service reports its progress to
      */
     public ThreadService(String serviceName, int dialogId) {
+        this(serviceName, dialogId, PriorityExecutor.Priority.UserInitiated);
+    }
+
+    /**
+     * Creates a new {@code ThreadService} instance.
+     *
+     * @param serviceName the name of the real service implementation
+     * @param dialogId    the ID of the dialog this service reports its progress to
+     * @param priority    the priority of the runs of this service
+     */
+    public ThreadService(String serviceName, int dialogId, PriorityExecutor.Priority priority) {
         this.serviceName = serviceName;
         this.dialogId = dialogId;
+        this.priority = priority;
     }
 
     @Override
@@ -165,6 +202,9 @@ public abstract class ThreadService<S extends ThreadService<S>>
     /**
      * Sets the process which will do the real work.
      *
+     * <p>When a process is set, the commands received while the run was queued are passed to
+     * {@link #refreshIntent(int, Bundle)}.
+     *
      * @param process the process which will do the real work
      */
     protected void setProcess(Process process) {
@@ -173,6 +213,17 @@ public abstract class ThreadService<S extends ThreadService<S>>
             if (null!=boundTask) {
                 boundTask.unBind();
             }
+        } else {
+            List<PendingCommand> commands;
+            synchronized (this) {
+                /* The run is no longer queued : the next commands go straight to refreshIntent() */
+                queuedRun = null;
+                commands = pendingCommands;
+                pendingCommands = new ArrayList<>();
+            }
+            for (PendingCommand pendingCommand : commands) {
+                refreshIntent(pendingCommand.command, pendingCommand.parameters);
+            }
         }
     }
 
@@ -188,6 +239,9 @@ public abstract class ThreadService<S extends ThreadService<S>>
      * If the service is already started, sends the given {@code command} and {@code parameters}
      * to the running instance.
      *
+     * <p>This method may be called before the registered process is started, when the command
+     * was received while the run was queued.
+     *
      * @param command    the command to pass to the service
      * @param parameters the parameters to pass to the service
      */
@@ -216,6 +270,15 @@ public abstract class ThreadService<S extends ThreadService<S>>
         return process;
     }
 
+    /**
+     * Returns whether a run of this service is waiting for a thread.
+     *
+     * @return true if a run of this service is waiting for a thread
+     */
+    protected synchronized boolean isQueued() {
+        return null != queuedRun;
+    }
+
     /**
      * Returns whether there is a registered running process.
      *
@@ -255,6 +318,11 @@ public abstract class ThreadService<S extends ThreadService<S>>
 
     @Override
     public void cancel() {
+        synchronized (this) {
+            /* The queued run, if any, will find that it was dropped and will not run */
+            queuedRun = null;
+            pendingCommands.clear();
+        }
         if (null!=process) {
             process.cancel();
         }
@@ -281,20 +349,52 @@ public abstract class ThreadService<S extends ThreadService<S>>
                 }
                 break;
             default:
-                if (null==process) {
-                    final int runCommand = command;
-                    final Bundle runParameters = parameters;
-                    new Thread() {
-                        @Override
-                        public void run() {
-                            runIntent(runCommand, runParameters);
-                            stopSelf();
-                        }
-                    }.start();
-                } else {
-                    refreshIntent(command, parameters);
+                synchronized (this) {
+                    if (null != queuedRun) {
+                        pendingCommands.add(new PendingCommand(command, parameters));
+                        break;
+                    }
+                    if (null == process) {
+                        queuedRun = newRun(command, parameters);
+                        Application.getInstance().getExecutor().execute(priority, queuedRun);
+                        break;
+                    }
                 }
+                refreshIntent(command, parameters);
         }
         return START_NOT_STICKY;
     }
+
+    private Runnable newRun(final int command, final Bundle parameters) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ThreadService.this) {
+                    if (queuedRun != this) {
+                        /* This run was canceled while it was queued */
+                        Log.d(serviceName, "Queued run canceled");
+                        stopIfIdle();
+                        return;
+                    }
+                }
+                try {
+                    runIntent(command, parameters);
+                } finally {
+                    synchronized (ThreadService.this) {
+                        if (queuedRun == this) {
+                            queuedRun = null;
+                        }
+                    }
+                }
+                stopIfIdle();
+            }
+        };
+    }
+
+    /* Stops the service, unless another run was queued in the meantime */
+    private synchronized void stopIfIdle() {
+        if (null == queuedRun && null == process) {
+            stopSelf();
+        }
+    }
 }
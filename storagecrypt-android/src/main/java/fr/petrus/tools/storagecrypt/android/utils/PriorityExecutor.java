@@ -0,0 +1,196 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.android.utils;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+
+/**
+ * A bounded executor, shared by the services, which runs the tasks requested by the user ahead of
+ * the background ones.
+ *
+ * <p>At most {@code maxThreads} tasks run at the same time, and at most {@code maxBackgroundThreads}
+ * of them are background tasks, so that the long running synchronizations cannot delay the work
+ * requested by the user. Submitting a task never blocks, so that tasks can be submitted from the
+ * main thread.
+ *
+ * <p>The tasks hold their thread until they complete, so this executor must not run tasks which
+ * wait for a client, like the transfers of the content provider pipes : they could wait forever
+ * for a thread.
+ *
+ * <p>The threads are started on demand, and stop after having been idle for {@code keepAliveMs}.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class PriorityExecutor {
+    private static final String TAG = "PriorityExecutor";
+
+    /**
+     * The priority of a task.
+     */
+    public enum Priority {
+        /**
+         * A task explicitly requested by the user, which may last long (encryption, decryption, ...).
+         */
+        UserInitiated,
+
+        /**
+         * A long running background task (synchronization, ...).
+         */
+        Background
+    }
+
+    private final String name;
+    private final int maxThreads;
+    private final int maxBackgroundThreads;
+    private final long keepAliveMs;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Runnable> userInitiatedTasks = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> backgroundTasks = new ArrayDeque<>();
+    private int numThreads = 0;
+    private int numIdleThreads = 0;
+    private int numRunningBackgroundTasks = 0;
+    private int numThreadsCreated = 0;
+
+    /**
+     * Creates a new {@code PriorityExecutor}.
+     *
+     * @param name                 the name of the threads of this executor
+     * @param maxThreads           the maximum number of tasks running at the same time
+     * @param maxBackgroundThreads the maximum number of background tasks running at the same time
+     * @param keepAliveMs          the time an idle thread waits for a task before stopping, in ms
+     */
+    public PriorityExecutor(String name, int maxThreads, int maxBackgroundThreads, long keepAliveMs) {
+        this.name = name;
+        this.maxThreads = Math.max(1, maxThreads);
+        this.maxBackgroundThreads = Math.max(1, Math.min(maxBackgroundThreads, this.maxThreads));
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    /**
+     * Submits the given {@code task}, to be run when a thread is available for its {@code priority}.
+     *
+     * @param priority the priority of the task
+     * @param task     the task to run
+     */
+    public void execute(Priority priority, Runnable task) {
+        synchronized (lock) {
+            if (Priority.Background == priority) {
+                backgroundTasks.add(task);
+            } else {
+                userInitiatedTasks.add(task);
+            }
+            if (numIdleThreads > 0) {
+                lock.notifyAll();
+            }
+            if (numThreads < maxThreads
+                    && userInitiatedTasks.size() + backgroundTasks.size() > numIdleThreads) {
+                startThread();
+            }
+        }
+    }
+
+    private void startThread() {
+        numThreads++;
+        numThreadsCreated++;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runTasks();
+            }
+        }, name + "-" + numThreadsCreated);
+        thread.start();
+    }
+
+    private void runTasks() {
+        while (true) {
+            Runnable task;
+            Priority priority;
+            synchronized (lock) {
+                long idleSince = System.currentTimeMillis();
+                while (true) {
+                    if (!userInitiatedTasks.isEmpty()) {
+                        task = userInitiatedTasks.poll();
+                        priority = Priority.UserInitiated;
+                        break;
+                    }
+                    if (!backgroundTasks.isEmpty() && numRunningBackgroundTasks < maxBackgroundThreads) {
+                        task = backgroundTasks.poll();
+                        priority = Priority.Background;
+                        numRunningBackgroundTasks++;
+                        break;
+                    }
+                    long remainingMs = keepAliveMs - (System.currentTimeMillis() - idleSince);
+                    if (remainingMs <= 0) {
+                        numThreads--;
+                        return;
+                    }
+                    numIdleThreads++;
+                    try {
+                        lock.wait(remainingMs);
+                    } catch (InterruptedException e) {
+                        Log.d(TAG, "Interrupted while waiting for a task", e);
+                    } finally {
+                        numIdleThreads--;
+                    }
+                }
+            }
+
+            android.os.Process.setThreadPriority(Priority.Background == priority ?
+                    android.os.Process.THREAD_PRIORITY_BACKGROUND :
+                    android.os.Process.THREAD_PRIORITY_DEFAULT);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error while running task", e);
+            } finally {
+                Thread.interrupted();
+                if (Priority.Background == priority) {
+                    synchronized (lock) {
+                        numRunningBackgroundTasks--;
+                        if (!backgroundTasks.isEmpty()) {
+                            lock.notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop;
+
+import java.security.NoSuchAlgorithmException;
+
+import fr.petrus.lib.core.StorageCryptException;
+import fr.petrus.lib.core.crypto.CryptoException;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.db.Database;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionException;
+import fr.petrus.lib.core.platform.AppContext;
+
+/**
+ * This class opens the encrypted database, with the password stored in the {@link Settings},
+ * encrypted with the database security key of the key store.
+ *
+ * <p>It is used both by the application window and by the headless mode.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class DatabaseUnlocker {
+
+    private DatabaseUnlocker() {}
+
+    /**
+     * Tries to unlock the database.
+     *
+     * <p>The key store must be unlocked first. If no database password was generated yet, a random
+     * one is generated, encrypted and saved in the {@code settings}.
+     *
+     * @param appContext the {@code AppContext} providing the key store and the database
+     * @param settings   the {@code Settings} where the encrypted database password is stored
+     * @return true if the database was successfully unlocked
+     * @throws StorageCryptException if an error occurs when trying to unlock the database
+     */
+    public static boolean unlock(AppContext appContext, Settings settings) throws StorageCryptException {
+        KeyManager keyManager = appContext.getKeyManager();
+        Database database = appContext.getDatabase();
+
+        if (!keyManager.isKeyStoreUnlocked()) {
+            return false;
+        }
+
+        String encryptedDatabaseEncryptionPassword = settings.getDatabaseEncryptionPassword();
+        if (null == encryptedDatabaseEncryptionPassword) {
+            try {
+                String databaseEncryptionPassword = appContext.getCrypto().generateRandomPassword(32);
+                encryptedDatabaseEncryptionPassword =
+                        keyManager.encryptWithDatabaseSecurityKey(databaseEncryptionPassword);
+                settings.setDatabaseEncryptionPassword(encryptedDatabaseEncryptionPassword);
+                settings.save();
+            } catch (NoSuchAlgorithmException e) {
+                throw new StorageCryptException(
+                        "Failed to generate a new database encryption password",
+                        StorageCryptException.Reason.DatabaseUnlockError, e);
+            } catch (CryptoException e) {
+                throw new StorageCryptException(
+                        "Failed to generate a new database encryption password",
+                        StorageCryptException.Reason.DatabaseUnlockError, e);
+            }
+        }
+
+        if (null == encryptedDatabaseEncryptionPassword) {
+            return false;
+        }
+
+        try {
+            String databaseEncryptionPassword =
+                    keyManager.decryptWithDatabaseSecurityKey(encryptedDatabaseEncryptionPassword);
+            if (!database.isOpen()) {
+                database.open(databaseEncryptionPassword);
+                appContext.getAccounts().clearCache();
+            }
+            return true;
+        } catch (DatabaseConnectionException e) {
+            throw new StorageCryptException("Failed to unlock the database",
+                    StorageCryptException.Reason.DatabaseUnlockError, e);
+        } catch (CryptoException e) {
+            throw new StorageCryptException("Failed to unlock the database",
+                    StorageCryptException.Reason.DatabaseUnlockError, e);
+        }
+    }
+}
@@ -49,6 +49,30 @@ public class DesktopConstants {
         String PROPERTY_PROXY_CONFIGURATION = "proxy.configuration";
         String PROPERTY_PROXY_ADDRESS = "proxy.address";
         String PROPERTY_PROXY_PORT = "proxy.port";
+        String PROPERTY_DECRYPTED_CHUNKS_CACHE_SIZE = "decrypted.chunks.cache.size";
+        String PROPERTY_METRICS_JMX_ENABLED = "metrics.jmx.enabled";
+        String PROPERTY_METRICS_LOG_PERIOD = "metrics.log.period";
+    }
+
+    public interface WATCH {
+        long DEBOUNCE_DELAY_MS = 2000;
+        long MAX_DEBOUNCE_DELAY_MS = 30000;
+        long POLLING_INTERVAL_MS = 10000;
+    }
+
+    public interface HEADLESS {
+        String PASSWORD_ENV_VARIABLE = "STORAGECRYPT_PASSWORD";
+        long DEFAULT_DAEMON_INTERVAL_S = 300;
+        int EXIT_OK = 0;
+        int EXIT_DOCUMENTS_FAILED = 1;
+        int EXIT_USAGE = 2;
+        int EXIT_LOCKED = 3;
+        int EXIT_INTERNAL_ERROR = 4;
+    }
+
+    public interface SEARCH {
+        int MAX_RESULTS = 1000;
+        int INPUT_DELAY_MS = 300;
     }
 
     public interface RESOURCES {
@@ -36,6 +36,7 @@
 
 package fr.petrus.tools.storagecrypt.desktop;
 
+import fr.petrus.tools.storagecrypt.desktop.headless.CommandLine;
 import fr.petrus.tools.storagecrypt.desktop.windows.AppWindow;
 
 /**
@@ -46,9 +47,16 @@ public class Main {
     /**
      * The entry point of application.
      *
+     * <p>Without arguments, the application window is opened. Otherwise the arguments describe a
+     * command which is run without any window (see {@link CommandLine}).
+     *
      * @param args the arguments of the application
      */
     public static void main(String[] args) {
-        new AppWindow().run();
+        if (args.length > 0) {
+            System.exit(CommandLine.run(args));
+        } else {
+            new AppWindow().run();
+        }
     }
 }
\ No newline at end of file
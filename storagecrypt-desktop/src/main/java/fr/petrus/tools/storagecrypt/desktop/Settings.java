@@ -47,6 +47,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Properties;
 
+import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.filesystem.FileSystem;
 
 /**
@@ -84,6 +85,9 @@ public class Settings {
     private ProxyConfiguration proxyConfiguration = ProxyConfiguration.UseSystemProxies;
     private String proxyAddress = null;
     private int proxyPort = -1;
+    private long decryptedChunksCacheSize = Constants.CRYPTO.DECRYPTED_CHUNKS_CACHE_MAX_SIZE;
+    private boolean metricsJmxEnabled = true;
+    private long metricsLogPeriod = 0;
 
     /**
      * Creates a new {@code Settings} instance.
@@ -132,6 +136,13 @@ public class Settings {
                             ProxyConfiguration.NoProxy.name()));
             proxyAddress = props.getProperty(DesktopConstants.OPTIONS.PROPERTY_PROXY_ADDRESS, null);
             proxyPort = getIntValue(props.getProperty(DesktopConstants.OPTIONS.PROPERTY_PROXY_PORT, null), -1);
+            decryptedChunksCacheSize = getLongValue(
+                    props.getProperty(DesktopConstants.OPTIONS.PROPERTY_DECRYPTED_CHUNKS_CACHE_SIZE, null),
+                    Constants.CRYPTO.DECRYPTED_CHUNKS_CACHE_MAX_SIZE);
+            metricsJmxEnabled = getBooleanValue(
+                    props.getProperty(DesktopConstants.OPTIONS.PROPERTY_METRICS_JMX_ENABLED, null), true);
+            metricsLogPeriod = getLongValue(
+                    props.getProperty(DesktopConstants.OPTIONS.PROPERTY_METRICS_LOG_PERIOD, null), 0);
         } finally {
             if (null!=is) {
                 try {
@@ -172,6 +183,20 @@ public class Settings {
             } else {
                 props.remove(DesktopConstants.OPTIONS.PROPERTY_PROXY_PORT);
             }
+            if (decryptedChunksCacheSize>=0) {
+                props.setProperty(DesktopConstants.OPTIONS.PROPERTY_DECRYPTED_CHUNKS_CACHE_SIZE,
+                        String.valueOf(decryptedChunksCacheSize));
+            } else {
+                props.remove(DesktopConstants.OPTIONS.PROPERTY_DECRYPTED_CHUNKS_CACHE_SIZE);
+            }
+            props.setProperty(DesktopConstants.OPTIONS.PROPERTY_METRICS_JMX_ENABLED,
+                    String.valueOf(metricsJmxEnabled));
+            if (metricsLogPeriod>0) {
+                props.setProperty(DesktopConstants.OPTIONS.PROPERTY_METRICS_LOG_PERIOD,
+                        String.valueOf(metricsLogPeriod));
+            } else {
+                props.remove(DesktopConstants.OPTIONS.PROPERTY_METRICS_LOG_PERIOD);
+            }
             File f = new File(fileSystem.getAppDir(), DesktopConstants.OPTIONS.SETTINGS_FILE);
             out = new FileOutputStream( f );
             props.store(out, "StorageCrypt settings");
@@ -225,6 +250,34 @@ public class Settings {
         this.proxyPort = proxyPort;
     }
 
+    /**
+     * Sets the maximum size of the memory cache of the decrypted chunks.
+     *
+     * @param decryptedChunksCacheSize the maximum size of the cache of the decrypted chunks, in bytes
+     */
+    public void setDecryptedChunksCacheSize(long decryptedChunksCacheSize) {
+        this.decryptedChunksCacheSize = decryptedChunksCacheSize;
+    }
+
+    /**
+     * Sets whether the metrics are published through JMX.
+     *
+     * @param metricsJmxEnabled if true, the metrics are published through JMX
+     */
+    public void setMetricsJmxEnabled(boolean metricsJmxEnabled) {
+        this.metricsJmxEnabled = metricsJmxEnabled;
+    }
+
+    /**
+     * Sets the time between two dumps of the metrics to the log.
+     *
+     * @param metricsLogPeriod the time between two dumps of the metrics to the log, in seconds,
+     *                         or 0 to never dump them
+     */
+    public void setMetricsLogPeriod(long metricsLogPeriod) {
+        this.metricsLogPeriod = metricsLogPeriod;
+    }
+
     /**
      * Returns the encrypted database encryption password.
      *
@@ -261,6 +314,34 @@ public class Settings {
         return proxyPort;
     }
 
+    /**
+     * Returns the maximum size of the memory cache of the decrypted chunks.
+     *
+     * @return the maximum size of the cache of the decrypted chunks, in bytes
+     */
+    public long getDecryptedChunksCacheSize() {
+        return decryptedChunksCacheSize;
+    }
+
+    /**
+     * Returns whether the metrics are published through JMX.
+     *
+     * @return true if the metrics are published through JMX
+     */
+    public boolean isMetricsJmxEnabled() {
+        return metricsJmxEnabled;
+    }
+
+    /**
+     * Returns the time between two dumps of the metrics to the log.
+     *
+     * @return the time between two dumps of the metrics to the log, in seconds, or 0 if they are
+     *         never dumped
+     */
+    public long getMetricsLogPeriod() {
+        return metricsLogPeriod;
+    }
+
     /**
      * Converts the given {@code stringValue} as an integer.
      *
@@ -279,6 +360,24 @@ public class Settings {
         return defaultValue;
     }
 
+    /**
+     * Converts the given {@code stringValue} as a long.
+     *
+     * @param stringValue  the string value to convert
+     * @param defaultValue the default value to return if the conversion fails
+     * @return the long value
+     */
+    public static long getLongValue(String stringValue, long defaultValue) {
+        if (null!=stringValue) {
+            try {
+                return Long.parseLong(stringValue);
+            } catch (NumberFormatException e) {
+                LOG.error("Failed to convert '{}' to long", stringValue, e);
+            }
+        }
+        return defaultValue;
+    }
+
     /**
      * Converts the given {@code stringValue} as a boolean.
      *
@@ -0,0 +1,329 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Console;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.tools.storagecrypt.desktop.DesktopConstants;
+
+/**
+ * This class parses the command line of the headless mode, and runs the requested command with a
+ * {@link HeadlessApp}.
+ *
+ * <p>The progress, results and metrics are written to the standard output as JSON lines (see
+ * {@link JsonOutput}), while anything else written to {@code System.out}, like the logs of the
+ * console appender, is sent to the standard error output. The command returns one of the {@link DesktopConstants.HEADLESS} exit
+ * codes. When the JVM is asked to stop (SIGTERM, Ctrl+C), the running process is canceled and
+ * the database is closed before exiting.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class CommandLine {
+    private static Logger LOG = LoggerFactory.getLogger(CommandLine.class);
+
+    private static final long SHUTDOWN_TIMEOUT_S = 30;
+
+    private static final String USAGE =
+            "Usage : StorageCrypt [<command> [<options>] [<arguments>]]\n" +
+            "Without command, the application window is opened.\n" +
+            "\n" +
+            "Commands :\n" +
+            "  encrypt [--key <alias>] <destination> <file>...\n" +
+            "      encrypts local files and folders into an encrypted folder\n" +
+            "  sync\n" +
+            "      synchronizes the remote changes, then the documents of all accounts\n" +
+            "  restore <source>... <folder>\n" +
+            "      decrypts encrypted documents into a local folder, downloading them first if needed\n" +
+            "  daemon [--interval <seconds>]\n" +
+            "      synchronizes periodically, until the process is stopped\n" +
+            "  help\n" +
+            "      prints this message\n" +
+            "\n" +
+            "Encrypted documents are designated by their storage, account and path :\n" +
+            "  local/photos, Dropbox:name@example.com/photos\n" +
+            "\n" +
+            "Options :\n" +
+            "  --password-file <file>\n" +
+            "      reads the key store password from this file, instead of the "
+                    + DesktopConstants.HEADLESS.PASSWORD_ENV_VARIABLE + "\n" +
+            "      environment variable or the console\n" +
+            "\n" +
+            "Exit codes :\n" +
+            "  " + DesktopConstants.HEADLESS.EXIT_OK + " : success\n" +
+            "  " + DesktopConstants.HEADLESS.EXIT_DOCUMENTS_FAILED + " : some documents failed\n" +
+            "  " + DesktopConstants.HEADLESS.EXIT_USAGE + " : wrong command line or document not found\n" +
+            "  " + DesktopConstants.HEADLESS.EXIT_LOCKED + " : the key store or the database could not be unlocked\n" +
+            "  " + DesktopConstants.HEADLESS.EXIT_INTERNAL_ERROR + " : unexpected error\n";
+
+    private String command = null;
+    private String keyAlias = null;
+    private String passwordFile = null;
+    private long interval = DesktopConstants.HEADLESS.DEFAULT_DAEMON_INTERVAL_S;
+    private List<String> arguments = new ArrayList<>();
+
+    private CommandLine() {}
+
+    /**
+     * Runs the command described by the given {@code args}.
+     *
+     * @param args the command line arguments, starting with the command name
+     * @return the exit code
+     */
+    public static int run(String[] args) {
+        CommandLine commandLine = new CommandLine();
+        String error = commandLine.parse(args);
+        if (null != error) {
+            printUsage(System.err, error);
+            return DesktopConstants.HEADLESS.EXIT_USAGE;
+        }
+        if ("help".equals(commandLine.command)) {
+            printUsage(System.out, null);
+            return DesktopConstants.HEADLESS.EXIT_OK;
+        }
+        /* keep the standard output for the JSON lines : the logback console appender, and anything
+           else writing to System.out, writes to the standard error output instead */
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        try {
+            return commandLine.execute(new JsonOutput(stdout));
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * Parses the given {@code args}.
+     *
+     * @param args the command line arguments
+     * @return an error message, or null if the arguments are valid
+     */
+    private String parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    return "Missing value for option " + arg;
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--key":
+                        keyAlias = value;
+                        break;
+                    case "--password-file":
+                        passwordFile = value;
+                        break;
+                    case "--interval":
+                        try {
+                            interval = Long.parseLong(value);
+                        } catch (NumberFormatException e) {
+                            return "Invalid interval : " + value;
+                        }
+                        if (interval <= 0) {
+                            return "Invalid interval : " + value;
+                        }
+                        break;
+                    default:
+                        return "Unknown option " + arg;
+                }
+            } else if (null == command) {
+                command = arg;
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if (null == command) {
+            return "Missing command";
+        }
+        switch (command) {
+            case "encrypt":
+                if (arguments.size() < 2) {
+                    return "The encrypt command needs a destination and at least one file";
+                }
+                break;
+            case "restore":
+                if (arguments.size() < 2) {
+                    return "The restore command needs at least one source and a destination folder";
+                }
+                break;
+            case "sync":
+            case "daemon":
+            case "help":
+                if (!arguments.isEmpty()) {
+                    return "The " + command + " command takes no argument";
+                }
+                break;
+            default:
+                return "Unknown command " + command;
+        }
+        return null;
+    }
+
+    /**
+     * Unlocks the key store and the database, then executes the command.
+     *
+     * @param output the {@code JsonOutput} where the events are written
+     * @return the exit code
+     */
+    private int execute(JsonOutput output) {
+        String password = readPassword();
+        if (null == password) {
+            output.status("locked", "No key store password : set the "
+                    + DesktopConstants.HEADLESS.PASSWORD_ENV_VARIABLE
+                    + " environment variable or use the --password-file option");
+            return exit(output, DesktopConstants.HEADLESS.EXIT_LOCKED);
+        }
+
+        final HeadlessApp app = new HeadlessApp(output);
+        final CountDownLatch closed = new CountDownLatch(1);
+        Thread shutdownHook = new Thread("HeadlessShutdown") {
+            @Override
+            public void run() {
+                app.stop();
+                try {
+                    closed.await(SHUTDOWN_TIMEOUT_S, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    LOG.warn("Interruption when waiting for the command to stop", e);
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        int exitCode;
+        try {
+            exitCode = app.open(password);
+            if (DesktopConstants.HEADLESS.EXIT_OK == exitCode) {
+                output.status("started", command);
+                switch (command) {
+                    case "encrypt":
+                        exitCode = app.encrypt(arguments.get(0), keyAlias,
+                                arguments.subList(1, arguments.size()));
+                        break;
+                    case "sync":
+                        exitCode = app.sync();
+                        break;
+                    case "restore":
+                        exitCode = app.restore(arguments.subList(0, arguments.size() - 1),
+                                arguments.get(arguments.size() - 1));
+                        break;
+                    case "daemon":
+                        exitCode = app.daemon(interval);
+                        break;
+                }
+            }
+        } catch (DatabaseConnectionClosedException e) {
+            LOG.error("Database is closed", e);
+            output.status("error", "Database is closed");
+            exitCode = DesktopConstants.HEADLESS.EXIT_INTERNAL_ERROR;
+        } catch (RuntimeException e) {
+            LOG.error("Unexpected error", e);
+            output.status("error", String.valueOf(e.getMessage()));
+            exitCode = DesktopConstants.HEADLESS.EXIT_INTERNAL_ERROR;
+        } finally {
+            app.close();
+            closed.countDown();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            /* the JVM is already shutting down */
+        }
+        return exit(output, exitCode);
+    }
+
+    /**
+     * Returns the key store password, read from the password file if one was given, otherwise
+     * from the environment, otherwise from the console.
+     *
+     * @return the key store password, or null if none was found
+     */
+    private String readPassword() {
+        if (null != passwordFile) {
+            try {
+                String password = new String(Files.readAllBytes(new File(passwordFile).toPath()),
+                        StandardCharsets.UTF_8);
+                /* remove the line feed ending the file, if any */
+                return password.replaceAll("[\\r\\n]+$", "");
+            } catch (IOException e) {
+                LOG.error("Failed to read the password file {}", passwordFile, e);
+                return null;
+            }
+        }
+        String password = System.getenv(DesktopConstants.HEADLESS.PASSWORD_ENV_VARIABLE);
+        if (null != password) {
+            return password;
+        }
+        Console console = System.console();
+        if (null != console) {
+            char[] passwordChars = console.readPassword("Key store password : ");
+            if (null != passwordChars) {
+                return new String(passwordChars);
+            }
+        }
+        return null;
+    }
+
+    private static int exit(JsonOutput output, int exitCode) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("code", exitCode);
+        output.event("exit", fields);
+        return exitCode;
+    }
+
+    private static void printUsage(PrintStream out, String error) {
+        if (null != error) {
+            out.println(error);
+            out.println();
+        }
+        out.print(USAGE);
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.StorageCryptException;
+import fr.petrus.lib.core.StorageType;
+import fr.petrus.lib.core.SyncAction;
+import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.cloud.exceptions.OauthException;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.filesystem.LocalDocument;
+import fr.petrus.lib.core.metrics.Metrics;
+import fr.petrus.lib.core.platform.AppContext;
+import fr.petrus.lib.core.processes.ChangesSyncProcess;
+import fr.petrus.lib.core.processes.DocumentsDecryptionProcess;
+import fr.petrus.lib.core.processes.DocumentsEncryptionProcess;
+import fr.petrus.lib.core.processes.DocumentsSyncProcess;
+import fr.petrus.lib.core.processes.Process;
+import fr.petrus.tools.storagecrypt.desktop.DatabaseUnlocker;
+import fr.petrus.tools.storagecrypt.desktop.DesktopConstants;
+import fr.petrus.tools.storagecrypt.desktop.Settings;
+import fr.petrus.tools.storagecrypt.desktop.TextBundle;
+import fr.petrus.tools.storagecrypt.desktop.platform.DesktopNetwork;
+import fr.petrus.tools.storagecrypt.desktop.platform.DesktopPlatformFactory;
+import fr.petrus.tools.storagecrypt.desktop.platform.JmxMetricsExporter;
+
+/**
+ * This class runs the processes of the application without its window, for the commands of the
+ * headless mode.
+ *
+ * <p>It uses the same application folder, key store, database and settings as the application
+ * window, so both must not run at the same time. The processes are run directly in the calling
+ * thread, and their progress and results are written to a {@link JsonOutput}.
+ *
+ * <p>Each command returns one of the {@link DesktopConstants.HEADLESS} exit codes.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class HeadlessApp {
+    private static Logger LOG = LoggerFactory.getLogger(HeadlessApp.class);
+
+    private final JsonOutput output;
+    private AppContext appContext = null;
+    private Settings settings = null;
+    private volatile Process<?> currentProcess = null;
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates a new {@code HeadlessApp} writing its events to the given {@code output}.
+     *
+     * @param output the {@code JsonOutput} where the progress and results are written
+     */
+    public HeadlessApp(JsonOutput output) {
+        this.output = output;
+    }
+
+    /**
+     * Unlocks the key store with the given {@code password}, then opens the database.
+     *
+     * @param password the key store password
+     * @return {@code EXIT_OK} if the key store and the database were unlocked, {@code EXIT_LOCKED}
+     *         otherwise
+     */
+    public int open(String password) {
+        appContext = new AppContext(new DesktopPlatformFactory(new TextBundle("res.text.strings")));
+        appContext.getFileSystem().createAppDir();
+        settings = new Settings(appContext.getFileSystem());
+        DesktopNetwork.setupProxy(settings);
+
+        KeyManager keyManager = appContext.getKeyManager();
+        keyManager.getDecryptedChunksCache().setMaxSize(settings.getDecryptedChunksCacheSize());
+        if (!keyManager.isKeyStoreExisting()) {
+            output.status("locked", "No key store in " + appContext.getFileSystem().getAppDirPath()
+                    + " : create it with the application window first");
+            return DesktopConstants.HEADLESS.EXIT_LOCKED;
+        }
+        if (!keyManager.unlockKeyStore(password)) {
+            output.status("locked", "Failed to unlock the key store : check the password");
+            return DesktopConstants.HEADLESS.EXIT_LOCKED;
+        }
+        try {
+            if (!DatabaseUnlocker.unlock(appContext, settings)) {
+                output.status("locked", "Failed to unlock the database");
+                return DesktopConstants.HEADLESS.EXIT_LOCKED;
+            }
+            appContext.getEncryptedDocuments().updateRoots();
+        } catch (StorageCryptException | DatabaseConnectionClosedException e) {
+            LOG.error("Failed to unlock the database", e);
+            output.status("locked", "Failed to unlock the database : " + e.getMessage());
+            return DesktopConstants.HEADLESS.EXIT_LOCKED;
+        }
+        output.status("unlocked", appContext.getFileSystem().getAppDirPath());
+        return DesktopConstants.HEADLESS.EXIT_OK;
+    }
+
+    /**
+     * Encrypts the given local files and folders into the encrypted folder designated by
+     * {@code destination}.
+     *
+     * <p>The documents encrypted into a cloud account folder are planned for upload, which is done
+     * by the {@link #sync()} command.
+     *
+     * @param destination the path of the destination folder, like {@code Dropbox:name@example.com/photos}
+     * @param keyAlias    the alias of the key to encrypt the documents with, or null to use the key
+     *                    of the destination folder
+     * @param paths       the paths of the local files and folders to encrypt
+     * @return the exit code
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public int encrypt(String destination, String keyAlias, List<String> paths)
+            throws DatabaseConnectionClosedException {
+        EncryptedDocument dstFolder = resolve(destination);
+        if (null == dstFolder || !dstFolder.isFolder()) {
+            output.status("error", "Destination folder not found : " + destination);
+            return DesktopConstants.HEADLESS.EXIT_USAGE;
+        }
+        if (null == keyAlias) {
+            keyAlias = dstFolder.isRoot()
+                    ? appContext.getKeyManager().getDefaultKeyAlias()
+                    : dstFolder.getKeyAlias();
+        }
+        if (null == keyAlias || !appContext.getKeyManager().getKeyAliases().contains(keyAlias)) {
+            output.status("error", "Key not found : " + keyAlias);
+            return DesktopConstants.HEADLESS.EXIT_USAGE;
+        }
+        List<LocalDocument> srcDocuments = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            if (!file.exists()) {
+                output.status("error", "File not found : " + path);
+                return DesktopConstants.HEADLESS.EXIT_USAGE;
+            }
+            srcDocuments.addAll(appContext.getFileSystem().scanDocuments(file.getAbsolutePath()));
+        }
+
+        DocumentsEncryptionProcess process = new DocumentsEncryptionProcess(
+                appContext.getCrypto(),
+                appContext.getKeyManager(),
+                appContext.getTextI18n(),
+                appContext.getFileSystem(),
+                appContext.getEncryptedDocuments());
+        process.setProgressListener(output.progressListener("encryption"));
+        currentProcess = process;
+        try {
+            process.encryptDocuments(srcDocuments, dstFolder.getId(), keyAlias);
+        } finally {
+            currentProcess = null;
+        }
+        return exitCode(output.results("encryption", process.getResults()));
+    }
+
+    /**
+     * Synchronizes the remote changes of all the accounts, then uploads, downloads and deletes
+     * the documents waiting to be synchronized.
+     *
+     * @return the exit code
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public int sync() throws DatabaseConnectionClosedException {
+        int numErrors = syncChanges();
+        if (!stopped) {
+            numErrors += syncDocuments();
+        }
+        return exitCode(numErrors);
+    }
+
+    /**
+     * Decrypts the encrypted documents designated by the given {@code sources} into the local
+     * {@code dstFolderPath} folder.
+     *
+     * <p>If some of these documents are not downloaded yet, a synchronization is run first. When
+     * a source is a root, its contents are decrypted into the destination folder.
+     *
+     * @param sources       the paths of the encrypted documents, like {@code local/photos}
+     * @param dstFolderPath the path of the local folder where the documents are decrypted
+     * @return the exit code
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public int restore(List<String> sources, String dstFolderPath) throws DatabaseConnectionClosedException {
+        List<EncryptedDocument> srcDocuments = new ArrayList<>();
+        for (String source : sources) {
+            EncryptedDocument srcDocument = resolve(source);
+            if (null == srcDocument) {
+                output.status("error", "Document not found : " + source);
+                return DesktopConstants.HEADLESS.EXIT_USAGE;
+            }
+            if (srcDocument.isRoot()) {
+                srcDocuments.addAll(srcDocument.children(true));
+            } else {
+                srcDocuments.add(srcDocument);
+            }
+        }
+        File dstFolder = new File(dstFolderPath);
+        if (!dstFolder.isDirectory() && !dstFolder.mkdirs()) {
+            output.status("error", "Failed to create the destination folder : " + dstFolderPath);
+            return DesktopConstants.HEADLESS.EXIT_USAGE;
+        }
+
+        int numErrors = 0;
+        if (!EncryptedDocument.areDocumentTreesDownloaded(srcDocuments)) {
+            numErrors += syncChanges();
+            if (!stopped) {
+                numErrors += syncDocuments();
+            }
+        }
+        if (stopped) {
+            return exitCode(numErrors);
+        }
+
+        DocumentsDecryptionProcess process = new DocumentsDecryptionProcess(
+                appContext.getCrypto(),
+                appContext.getKeyManager(),
+                appContext.getTextI18n());
+        process.setProgressListener(output.progressListener("decryption"));
+        currentProcess = process;
+        try {
+            process.decryptDocuments(EncryptedDocument.unfoldAsList(srcDocuments, true),
+                    dstFolder.getAbsolutePath());
+        } finally {
+            currentProcess = null;
+        }
+        numErrors += output.results("decryption", process.getResults());
+        return exitCode(numErrors);
+    }
+
+    /**
+     * Runs a synchronization every {@code intervalSeconds}, until {@link #stop()} is called.
+     *
+     * <p>The metrics are written after each synchronization, and published through JMX if it is
+     * enabled in the settings.
+     *
+     * @param intervalSeconds the time between the end of a synchronization and the start of the
+     *                        next one, in seconds
+     * @return the exit code
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    public int daemon(long intervalSeconds) throws DatabaseConnectionClosedException {
+        JmxMetricsExporter jmxMetricsExporter = null;
+        if (settings.isMetricsJmxEnabled()) {
+            jmxMetricsExporter = new JmxMetricsExporter(Metrics.registry());
+            jmxMetricsExporter.register();
+        }
+        output.status("daemon", "Synchronizing every " + intervalSeconds + " s");
+        try {
+            while (!stopped) {
+                sync();
+                output.metrics(Metrics.registry());
+                synchronized (this) {
+                    if (!stopped) {
+                        try {
+                            wait(intervalSeconds * 1000);
+                        } catch (InterruptedException e) {
+                            LOG.warn("Interruption when waiting for the next synchronization", e);
+                            stopped = true;
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (null != jmxMetricsExporter) {
+                jmxMetricsExporter.unregister();
+            }
+        }
+        return DesktopConstants.HEADLESS.EXIT_OK;
+    }
+
+    /**
+     * Stops the running command, canceling the current process.
+     *
+     * <p>This method can be called from another thread, typically a shutdown hook.
+     */
+    public void stop() {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+        Process<?> process = currentProcess;
+        if (null != process) {
+            process.cancel();
+        }
+    }
+
+    /**
+     * Writes the metrics, then closes the database and removes the cache files.
+     */
+    public void close() {
+        output.metrics(Metrics.registry());
+        if (null != appContext) {
+            appContext.getFileSystem().removeCacheFiles();
+            appContext.getDatabase().close();
+            appContext.getAccounts().clearCache();
+        }
+    }
+
+    /**
+     * Runs a {@code ChangesSyncProcess} for all the accounts.
+     *
+     * @return the number of errors
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private int syncChanges() throws DatabaseConnectionClosedException {
+        ChangesSyncProcess.syncAll(appContext.getAccounts());
+        ChangesSyncProcess process = new ChangesSyncProcess(
+                appContext.getCrypto(),
+                appContext.getKeyManager(),
+                appContext.getTextI18n(),
+                appContext.getNetwork(),
+                appContext.getAccounts(),
+                appContext.getEncryptedDocuments());
+        process.setProgressListener(output.progressListener("changes"));
+        currentProcess = process;
+        try {
+            process.run();
+        } finally {
+            currentProcess = null;
+        }
+        return output.results("changes", process.getResults());
+    }
+
+    /**
+     * Runs a {@code DocumentsSyncProcess}, then counts the documents which failed to synchronize
+     * during this run.
+     *
+     * @return the number of errors
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private int syncDocuments() throws DatabaseConnectionClosedException {
+        DocumentsSyncProcess process = new DocumentsSyncProcess(
+                appContext.getTextI18n(),
+                appContext.getNetwork(),
+                appContext.getAccounts(),
+                appContext.getEncryptedDocuments());
+        process.setProgressListener(output.progressListener("sync"));
+        process.setSyncActionListener(new DocumentsSyncProcess.SyncActionListener() {
+            @Override
+            public void onSyncActionStart(SyncAction syncAction, EncryptedDocument encryptedDocument) {
+                Map<String, Object> fields = new LinkedHashMap<>();
+                fields.put("action", syncAction.name());
+                fields.put("document", encryptedDocument.failSafeLogicalPath());
+                output.event("sync", fields);
+            }
+
+            @Override
+            public void onDocumentChanged(EncryptedDocument encryptedDocument) {}
+        });
+        int numErrors = 0;
+        currentProcess = process;
+        try {
+            process.run();
+        } catch (OauthException e) {
+            LOG.error("OAuth error", e);
+            output.error("sync", e.getAccount(), e.getMessage());
+            numErrors++;
+        } finally {
+            currentProcess = null;
+        }
+        return numErrors + output.results("sync", process.getResults());
+    }
+
+    /**
+     * Returns the encrypted document designated by the given {@code path}.
+     *
+     * <p>The path starts with the storage, followed for a cloud storage by the account name, then
+     * by the names of the folders and documents : {@code local/photos} for the local storage,
+     * {@code Dropbox:name@example.com/photos} for a Dropbox account.
+     *
+     * @param path the path of the encrypted document
+     * @return the encrypted document, or null if it was not found
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private EncryptedDocument resolve(String path) throws DatabaseConnectionClosedException {
+        int slash = path.indexOf('/');
+        String rootPath = slash < 0 ? path : path.substring(0, slash);
+        String documentPath = slash < 0 ? "" : path.substring(slash + 1);
+
+        String storageName = rootPath;
+        String accountName = null;
+        int colon = rootPath.indexOf(':');
+        if (colon >= 0) {
+            storageName = rootPath.substring(0, colon);
+            accountName = rootPath.substring(colon + 1);
+        }
+
+        StorageType storageType = null;
+        if ("local".equalsIgnoreCase(storageName)) {
+            storageType = StorageType.Unsynchronized;
+        } else {
+            for (StorageType type : StorageType.values()) {
+                if (type.name().equalsIgnoreCase(storageName)) {
+                    storageType = type;
+                }
+            }
+        }
+        if (null == storageType) {
+            return null;
+        }
+
+        Account account = null;
+        if (StorageType.Unsynchronized != storageType) {
+            if (null == accountName) {
+                return null;
+            }
+            account = appContext.getAccounts().accountWithTypeAndName(storageType, accountName);
+            if (null == account) {
+                return null;
+            }
+        }
+
+        EncryptedDocument encryptedDocument = appContext.getEncryptedDocuments().root(storageType, account);
+        for (String name : documentPath.split("/")) {
+            if (null == encryptedDocument) {
+                return null;
+            }
+            if (!name.isEmpty()) {
+                encryptedDocument = encryptedDocument.child(name);
+            }
+        }
+        return encryptedDocument;
+    }
+
+    private int exitCode(int numErrors) {
+        if (numErrors > 0) {
+            return DesktopConstants.HEADLESS.EXIT_DOCUMENTS_FAILED;
+        }
+        return DesktopConstants.HEADLESS.EXIT_OK;
+    }
+}
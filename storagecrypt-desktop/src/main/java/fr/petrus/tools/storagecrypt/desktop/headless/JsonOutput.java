@@ -0,0 +1,236 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.headless;
+
+import com.google.gson.Gson;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.cloud.Account;
+import fr.petrus.lib.core.metrics.MetricsRegistry;
+import fr.petrus.lib.core.processes.results.FailedResult;
+import fr.petrus.lib.core.processes.results.ProcessResults;
+import fr.petrus.lib.core.result.ProgressListener;
+
+/**
+ * This class writes the events of the headless mode as JSON objects, one per line, so that they
+ * can be parsed by scripts.
+ *
+ * <p>Each object has an {@code event} field : {@code progress}, {@code message}, {@code result},
+ * {@code error}, {@code metrics} or {@code status}. The logs are not written to this output.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class JsonOutput {
+    private static final long PROGRESS_MIN_INTERVAL_MS = 500;
+
+    private final PrintStream out;
+    private final Gson gson = new Gson();
+
+    /**
+     * Creates a new {@code JsonOutput} writing to the given {@code out} stream.
+     *
+     * @param out the stream to write the events to
+     */
+    public JsonOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes an event of the given {@code type}, with the given {@code fields}.
+     *
+     * @param type   the type of the event
+     * @param fields the other fields of the event, in the order they will be written
+     */
+    public void event(String type, Map<String, Object> fields) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("event", type);
+        event.put("time", System.currentTimeMillis());
+        event.putAll(fields);
+        String line = gson.toJson(event);
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes a {@code status} event, reporting a step of the headless mode itself.
+     *
+     * @param status  the status, like {@code started} or {@code locked}
+     * @param message a human readable message, or null
+     */
+    public void status(String status, String message) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("status", status);
+        if (null != message) {
+            fields.put("message", message);
+        }
+        event("status", fields);
+    }
+
+    /**
+     * Writes a {@code metrics} event, with the current values of all the metrics of the given
+     * {@code registry}.
+     *
+     * @param registry the {@code MetricsRegistry} to dump
+     */
+    public void metrics(MetricsRegistry registry) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("values", registry.getValues());
+        event("metrics", fields);
+    }
+
+    /**
+     * Writes a {@code result} event with the counts of the given {@code results}, followed by an
+     * {@code error} event for each failed element.
+     *
+     * @param process the name of the process which returned the results
+     * @param results the results of the process, or null if the process had nothing to do
+     * @return the number of failed elements
+     */
+    public int results(String process, ProcessResults<?, ?> results) {
+        if (null == results) {
+            return 0;
+        }
+        List<? extends FailedResult<?>> errors = results.getErrorResultsList();
+        int numErrors = size(errors);
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("process", process);
+        fields.put("success", size(results.getSuccessResultsList()));
+        fields.put("skipped", size(results.getSkippedResultsList()));
+        fields.put("errors", numErrors);
+        event("result", fields);
+        if (null != errors) {
+            for (FailedResult<?> failedResult : errors) {
+                Exception exception = failedResult.getException();
+                error(process, failedResult.getElement(),
+                        null == exception ? null : exception.getMessage());
+            }
+        }
+        return numErrors;
+    }
+
+    /* the results lists which are not used by a process are null */
+    private static int size(List<?> list) {
+        return null == list ? 0 : list.size();
+    }
+
+    /**
+     * Writes an {@code error} event for the given {@code element}.
+     *
+     * @param process   the name of the process which failed to process the element
+     * @param element   the element which could not be processed (a path, an {@code EncryptedDocument}
+     *                  or an {@code Account}), or null
+     * @param message   the error message, or null
+     */
+    public void error(String process, Object element, String message) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("process", process);
+        if (element instanceof EncryptedDocument) {
+            fields.put("document", ((EncryptedDocument) element).failSafeLogicalPath());
+        } else if (element instanceof Account) {
+            Account account = (Account) element;
+            fields.put("account", account.getStorageType().name() + ":" + account.getAccountName());
+        } else if (null != element) {
+            fields.put("document", String.valueOf(element));
+        }
+        if (null != message) {
+            fields.put("message", message);
+        }
+        event("error", fields);
+    }
+
+    /**
+     * Returns a {@code ProgressListener} which writes the progress of the given {@code process}
+     * as {@code progress} and {@code message} events.
+     *
+     * <p>The progress of each level is written at most twice per second, and when it reaches its
+     * maximum.
+     *
+     * @param process the name of the process
+     * @return a {@code ProgressListener} writing the progress of the process
+     */
+    public ProgressListener progressListener(final String process) {
+        return new ProgressListener() {
+            private final Map<Integer, Integer> maxByLevel = new LinkedHashMap<>();
+            private final Map<Integer, Long> lastEventTimeByLevel = new LinkedHashMap<>();
+
+            @Override
+            public synchronized void onMessage(int i, String message) {
+                if (null == message) {
+                    return;
+                }
+                Map<String, Object> fields = new LinkedHashMap<>();
+                fields.put("process", process);
+                fields.put("level", i);
+                fields.put("message", message);
+                event("message", fields);
+            }
+
+            @Override
+            public synchronized void onProgress(int i, int progress) {
+                Integer max = maxByLevel.get(i);
+                long now = System.currentTimeMillis();
+                Long lastEventTime = lastEventTimeByLevel.get(i);
+                if (null != lastEventTime && now - lastEventTime < PROGRESS_MIN_INTERVAL_MS
+                        && (null == max || progress < max)) {
+                    return;
+                }
+                lastEventTimeByLevel.put(i, now);
+                Map<String, Object> fields = new LinkedHashMap<>();
+                fields.put("process", process);
+                fields.put("level", i);
+                fields.put("progress", progress);
+                if (null != max) {
+                    fields.put("max", max);
+                }
+                event("progress", fields);
+            }
+
+            @Override
+            public synchronized void onSetMax(int i, int max) {
+                maxByLevel.put(i, max);
+            }
+        };
+    }
+}
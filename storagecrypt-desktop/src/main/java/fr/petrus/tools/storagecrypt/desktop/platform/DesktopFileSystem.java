@@ -36,11 +36,21 @@
 
 package fr.petrus.tools.storagecrypt.desktop.platform;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.File;
 import java.io.IOException;
 import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.activation.FileDataSource;
 
@@ -48,6 +58,7 @@ import eu.medsea.mimeutil.MimeUtil;
 import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.filesystem.AbstractFileSystem;
 import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.filesystem.LocalDocument;
 
 /**
  * The {@link FileSystem} implementation for the "Desktop" platform.
@@ -56,6 +67,64 @@ import fr.petrus.lib.core.filesystem.FileSystem;
  * @since 24.08.2015
  */
 public class DesktopFileSystem extends AbstractFileSystem {
+    private static Logger LOG = LoggerFactory.getLogger(DesktopFileSystem.class);
+
+    /** The number of threads listing the directories when scanning a documents tree */
+    private static final int SCAN_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The pool dedicated to the directory listings, which block on I/O and must not hold the
+     * threads of the common pool
+     */
+    private static final ForkJoinPool SCAN_POOL = new ForkJoinPool(SCAN_THREADS);
+
+    /**
+     * The task which lists a directory, reading the attributes of each child only once, and
+     * forks a new task for each child directory.
+     */
+    private static class DirectoryScanTask extends RecursiveTask<List<LocalDocument>> {
+        private final Path directory;
+
+        private DirectoryScanTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<LocalDocument> compute() {
+            List<LocalDocument> documents = new ArrayList<>();
+            List<DirectoryScanTask> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        LOG.error("Failed to read attributes of {}", child, e);
+                        continue;
+                    }
+                    documents.add(localDocument(child, attributes));
+                    if (attributes.isDirectory()) {
+                        DirectoryScanTask subTask = new DirectoryScanTask(child);
+                        subTask.fork();
+                        subTasks.add(subTask);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Failed to list directory {}", directory, e);
+            }
+            for (DirectoryScanTask subTask : subTasks) {
+                documents.addAll(subTask.join());
+            }
+            return documents;
+        }
+    }
+
+    private static LocalDocument localDocument(Path path, BasicFileAttributes attributes) {
+        return new LocalDocument(path.toString(), attributes.isDirectory(),
+                attributes.isDirectory() ? 0L : attributes.size(),
+                attributes.lastModifiedTime().toMillis());
+    }
+
 
     /**
      * Returns the user home dir.
@@ -80,6 +149,28 @@ public class DesktopFileSystem extends AbstractFileSystem {
      */
     DesktopFileSystem() {}
 
+    /**
+     * {@inheritDoc}
+     * <p>This implementation lists the folders in parallel on a dedicated pool, reading the
+     * attributes of each document with a single NIO call
+     */
+    @Override
+    public List<LocalDocument> scanDocuments(String document) {
+        List<LocalDocument> documents = new ArrayList<>();
+        Path root = new File(document).toPath();
+        try {
+            root = root.toRealPath();
+            BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+            documents.add(localDocument(root, attributes));
+            if (attributes.isDirectory()) {
+                documents.addAll(SCAN_POOL.invoke(new DirectoryScanTask(root)));
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to read attributes of {}", root, e);
+        }
+        return documents;
+    }
+
     @Override
     public File getAppDir() {
         File userHomeDir = new File(getUserHomeDir(), Constants.FILE.APP_DIR_NAME);
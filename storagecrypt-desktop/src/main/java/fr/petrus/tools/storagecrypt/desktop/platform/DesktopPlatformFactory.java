@@ -53,6 +53,8 @@ import fr.petrus.lib.core.network.Network;
 import fr.petrus.lib.core.i18n.TextI18n;
 import fr.petrus.lib.core.platform.TaskCreationException;
 import fr.petrus.lib.core.tasks.Task;
+import fr.petrus.lib.core.thumbnails.ThumbnailGenerator;
+import fr.petrus.tools.storagecrypt.desktop.TextBundle;
 import fr.petrus.tools.storagecrypt.desktop.platform.crypto.DesktopBCLightWeightApiCrypto;
 import fr.petrus.tools.storagecrypt.desktop.platform.crypto.DesktopJcaCrypto;
 import fr.petrus.tools.storagecrypt.desktop.windows.AppWindow;
@@ -67,6 +69,7 @@ public class DesktopPlatformFactory implements PlatformFactory {
     private static Logger LOG = LoggerFactory.getLogger(DesktopPlatformFactory.class);
 
     private AppWindow appWindow;
+    private TextBundle textBundle;
     private boolean useJca;
 
     /**
@@ -87,9 +90,25 @@ public class DesktopPlatformFactory implements PlatformFactory {
      */
     public DesktopPlatformFactory(AppWindow appWindow, boolean useJca) {
         this.appWindow = appWindow;
+        this.textBundle = appWindow.getTextBundle();
         this.useJca = useJca;
     }
 
+    /**
+     * Creates a new {@code DesktopPlatformFactory} instance without application window, for the
+     * headless mode.
+     *
+     * <p>The tasks cannot be created by this factory, because they report their progress in the
+     * application window : the headless mode runs the processes directly.
+     *
+     * @param textBundle the {@code TextBundle} used to translate the texts
+     */
+    public DesktopPlatformFactory(TextBundle textBundle) {
+        this.appWindow = null;
+        this.textBundle = textBundle;
+        this.useJca = false;
+    }
+
     @Override
     public Crypto crypto() {
         if (useJca) {
@@ -121,7 +140,12 @@ public class DesktopPlatformFactory implements PlatformFactory {
 
     @Override
     public TextI18n textI18n() {
-        return new DesktopTextI18n(appWindow.getTextBundle());
+        return new DesktopTextI18n(textBundle);
+    }
+
+    @Override
+    public ThumbnailGenerator thumbnailGenerator() {
+        return new DesktopThumbnailGenerator();
     }
 
     @Override
@@ -132,6 +156,10 @@ public class DesktopPlatformFactory implements PlatformFactory {
     @Override
     public <T extends Task> T task(AppContext appContext, Class<T> taskClass)
             throws TaskCreationException {
+        if (null == appWindow) {
+            throw new TaskCreationException("Tasks cannot be created without application window",
+                    taskClass);
+        }
         try {
             return taskClass.getConstructor(AppWindow.class).newInstance(appWindow);
         } catch (InstantiationException e) {
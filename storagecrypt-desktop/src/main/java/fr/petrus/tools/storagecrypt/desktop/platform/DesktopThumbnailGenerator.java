@@ -0,0 +1,132 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.platform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.thumbnails.ThumbnailGenerator;
+
+/**
+ * The {@link ThumbnailGenerator} implementation for the "Desktop" platform, based on {@code ImageIO}.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class DesktopThumbnailGenerator implements ThumbnailGenerator {
+    private static Logger LOG = LoggerFactory.getLogger(DesktopThumbnailGenerator.class);
+
+    /**
+     * Creates a new {@code DesktopThumbnailGenerator} instance.
+     */
+    DesktopThumbnailGenerator() {}
+
+    @Override
+    public long getMaxSourceSize() {
+        return Constants.THUMBNAILS.MAX_SOURCE_SIZE;
+    }
+
+    @Override
+    public byte[] generateThumbnail(ImageSource image, int maxSize) {
+        try {
+            BufferedImage sourceImage;
+            try (InputStream inputStream = new BufferedInputStream(image.open(), Constants.FILE.BUFFER_SIZE)) {
+                sourceImage = ImageIO.read(inputStream);
+            }
+            if (null == sourceImage) {
+                return null;
+            }
+            double scale = Math.min(1.0, (double) maxSize
+                    / Math.max(sourceImage.getWidth(), sourceImage.getHeight()));
+            int width = Math.max(1, (int) Math.round(sourceImage.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(sourceImage.getHeight() * scale));
+
+            BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = thumbnail.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(sourceImage, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            return encodeJpeg(thumbnail);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Failed to generate thumbnail", e);
+            return null;
+        }
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            return null;
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Constants.THUMBNAILS.JPEG_QUALITY / 100f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.platform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import fr.petrus.lib.core.metrics.MetricsLogReporter;
+import fr.petrus.lib.core.metrics.MetricsRegistry;
+
+/**
+ * This class publishes the values of a {@link MetricsRegistry} as the read only attributes of a
+ * JMX MBean, so that they can be watched with JConsole or VisualVM while the application runs.
+ *
+ * <p>The attributes are named like the values returned by {@link MetricsRegistry#getValues()},
+ * for instance {@code rest.dropbox.latency.p99_ms}. They are read from the registry each time they
+ * are requested. Metrics created after a JMX client is connected appear when it reconnects.
+ *
+ * <p>The MBean also has a {@code report} operation, which dumps all the metrics to the log.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class JmxMetricsExporter implements DynamicMBean {
+    private static Logger LOG = LoggerFactory.getLogger(JmxMetricsExporter.class);
+
+    /** The name of the MBean registered by this exporter */
+    public static final String OBJECT_NAME = "fr.petrus.tools.storagecrypt:type=Metrics";
+
+    private static final String OPERATION_REPORT = "report";
+
+    private final MetricsRegistry registry;
+    private ObjectName objectName = null;
+
+    /**
+     * Creates a new {@code JmxMetricsExporter} publishing the given {@code registry}.
+     *
+     * @param registry the {@code MetricsRegistry} to publish
+     */
+    public JmxMetricsExporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Registers this exporter in the platform MBean server.
+     *
+     * <p>If the registration fails, the error is logged and the metrics are simply not published.
+     */
+    public synchronized void register() {
+        if (null != objectName) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOG.error("Failed to register the metrics MBean", e);
+        }
+    }
+
+    /**
+     * Unregisters this exporter from the platform MBean server, if it was registered.
+     */
+    public synchronized void unregister() {
+        if (null == objectName) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.error("Failed to unregister the metrics MBean", e);
+        }
+        objectName = null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = registry.getValues().get(attribute);
+        if (null == value) {
+            throw new AttributeNotFoundException("No metric value named " + attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metric value " + attribute.getName() + " is read only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Number> values = registry.getValues();
+        AttributeList attributeList = new AttributeList();
+        for (String attribute : attributes) {
+            Number value = values.get(attribute);
+            if (null != value) {
+                attributeList.add(new Attribute(attribute, value));
+            }
+        }
+        return attributeList;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature)
+            throws ReflectionException {
+        if (OPERATION_REPORT.equals(actionName)) {
+            new MetricsLogReporter(registry).report();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributeInfos = new ArrayList<>();
+        for (Map.Entry<String, Number> valueEntry : registry.getValues().entrySet()) {
+            attributeInfos.add(new MBeanAttributeInfo(valueEntry.getKey(),
+                    valueEntry.getValue().getClass().getName(), valueEntry.getKey(),
+                    true, false, false));
+        }
+        MBeanOperationInfo reportInfo = new MBeanOperationInfo(OPERATION_REPORT,
+                "Dumps all the metrics to the log", new MBeanParameterInfo[0],
+                "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "StorageCrypt metrics",
+                attributeInfos.toArray(new MBeanAttributeInfo[attributeInfos.size()]),
+                null, new MBeanOperationInfo[] { reportInfo }, null);
+    }
+}
@@ -40,6 +40,7 @@ import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.BufferedBlockCipher;
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
 import org.bouncycastle.crypto.engines.AESFastEngine;
 import org.bouncycastle.crypto.modes.CBCBlockCipher;
 import org.bouncycastle.crypto.paddings.BlockCipherPadding;
@@ -67,6 +68,10 @@ import fr.petrus.lib.core.crypto.mac.Mac;
  * @since 08.10.2016
  */
 public class DesktopBCLightWeightApiCrypto extends DesktopAbstractCrypto {
+    /**
+     * Only used to get the AES block size : a new engine is created for each operation, so that
+     * this instance can be used by several threads at the same time
+     */
     private final BlockCipher blockCipher = new AESFastEngine();
 
     @Override
@@ -102,7 +107,7 @@ public class DesktopBCLightWeightApiCrypto extends DesktopAbstractCrypto {
         // setup AES cipher in CBC mode with PKCS7 padding
         BlockCipherPadding padding = new PKCS7Padding();
         BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(
-                new CBCBlockCipher(blockCipher), padding);
+                new CBCBlockCipher(new AESEngine()), padding);
         cipher.reset();
         cipher.init(true, params);
 
@@ -128,7 +133,7 @@ public class DesktopBCLightWeightApiCrypto extends DesktopAbstractCrypto {
         // setup AES cipher in CBC mode with PKCS7 padding
         BlockCipherPadding padding = new PKCS7Padding();
         BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(
-                new CBCBlockCipher(blockCipher), padding);
+                new CBCBlockCipher(new AESEngine()), padding);
         cipher.reset();
         cipher.init(false, params);
 
@@ -160,6 +160,11 @@ public class ChangesSyncTask extends ProcessTask {
             });
 
             changesSyncProcess.setSyncActionListener(new ChangesSyncProcess.SyncActionListener() {
+                @Override
+                public void onDocumentChanged(EncryptedDocument encryptedDocument) {
+                    // the documents list is updated once the root is synchronized
+                }
+
                 @Override
                 public void onChangesSyncDone(EncryptedDocument rootEncryptedDocument) {
                     appWindow.update(true);
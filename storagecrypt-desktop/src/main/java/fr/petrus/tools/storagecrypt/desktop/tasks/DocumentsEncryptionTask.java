@@ -44,6 +44,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.filesystem.LocalDocument;
 import fr.petrus.lib.core.processes.DocumentsEncryptionProcess;
 import fr.petrus.lib.core.result.ProgressListener;
 import fr.petrus.tools.storagecrypt.desktop.ProgressWindowCreationException;
@@ -63,14 +64,14 @@ public class DocumentsEncryptionTask extends ProcessTask {
     private static Logger LOG = LoggerFactory.getLogger(DocumentsEncryptionTask.class);
 
     /**
-     * An encryption batch, holding a list of paths of documents to encrypt, the alias of the key
+     * An encryption batch, holding a list of documents to encrypt, the alias of the key
      * to encrypt the documents with and the {@code EncryptedDocument} folder to store the
      * encrypted files.
      */
     public static class EncryptionBatch {
         private EncryptedDocument parent;
         private String keyAlias;
-        private List<String> documents;
+        private List<LocalDocument> documents;
 
         /**
          * Creates a new {@code EncryptionBatch} for the given {@code documents}, to be encrypted
@@ -78,9 +79,9 @@ public class DocumentsEncryptionTask extends ProcessTask {
          *
          * @param parent    the destination folder where to store the encrypted documents
          * @param keyAlias  the alias of the key to encrypt the documents with
-         * @param documents the paths of the documents to encrypt
+         * @param documents the documents to encrypt, including the contents of the folders
          */
-        public EncryptionBatch(EncryptedDocument parent, String keyAlias, List<String> documents) {
+        public EncryptionBatch(EncryptedDocument parent, String keyAlias, List<LocalDocument> documents) {
             this.parent = parent;
             this.keyAlias = keyAlias;
             this.documents = documents;
@@ -105,15 +106,16 @@ public class DocumentsEncryptionTask extends ProcessTask {
         }
 
         /**
-         * Returns the paths of the documents to encrypt.
+         * Returns the documents to encrypt.
          *
-         * @return the paths of the documents to encrypt
+         * @return the documents to encrypt
          */
-        public List<String> getDocuments() {
+        public List<LocalDocument> getDocuments() {
             return documents;
         }
     }
 
+    private final Object encryptionLock = new Object();
     private volatile int numBatchesToProcess = 0;
     private ConcurrentLinkedQueue<EncryptionBatch> encryptionBatches = new ConcurrentLinkedQueue<>();
     private DocumentsEncryptionProgressWindow.ProgressEvent taskProgressEvent =
@@ -128,19 +130,30 @@ public class DocumentsEncryptionTask extends ProcessTask {
         super(appWindow);
     }
 
+    /**
+     * Returns the lock held while a batch is encrypted, so that the other tasks which encrypt
+     * documents never encrypt them at the same time as this task.
+     *
+     * @return the lock held while a batch is encrypted
+     */
+    public Object getEncryptionLock() {
+        return encryptionLock;
+    }
+
     /**
      * Starts the encryption task in the background for the given {@code documents}.
      *
      * <p>If an encryption process is already running, adds a batch containing the
      * {@code documents} to the running process, to be processed when its work is done.
      *
-     * <p>If some of the {@code documents} are folders, all their contents will be encrypted too
+     * <p>The {@code documents} are the ones returned by scanning the selected documents, so they
+     * include the contents of the folders
      *
      * @param parent    the destination folder where to store the encrypted documents
      * @param keyAlias  the alias of the key to encrypt the documents with
-     * @param documents the paths of the documents to encrypt
+     * @param documents the documents to encrypt
      */
-    public void encrypt(EncryptedDocument parent, String keyAlias, List<String> documents) {
+    public void encrypt(EncryptedDocument parent, String keyAlias, List<LocalDocument> documents) {
         synchronized (this) {
             encryptionBatches.offer(new EncryptionBatch(parent, keyAlias, documents));
             numBatchesToProcess++;
@@ -204,10 +217,12 @@ public class DocumentsEncryptionTask extends ProcessTask {
                                 }
                                 if (null != encryptionBatch.getDocuments() &&
                                         !encryptionBatch.getDocuments().isEmpty()) {
-                                    documentsEncryptionProcess.encryptDocuments(
-                                            encryptionBatch.getDocuments(),
-                                            encryptionBatch.getParent().getId(),
-                                            encryptionBatch.getKeyAlias());
+                                    synchronized (encryptionLock) {
+                                        documentsEncryptionProcess.encryptDocuments(
+                                                encryptionBatch.getDocuments(),
+                                                encryptionBatch.getParent().getId(),
+                                                encryptionBatch.getKeyAlias());
+                                    }
                                 }
                             }
                         } catch (DatabaseConnectionClosedException e) {
@@ -94,7 +94,7 @@ public class DocumentsUpdatesPushTask extends ProcessTask {
                             = new DocumentsUpdatesPushProgressWindow.ProgressEvent();
                     final DocumentsUpdatesPushProcess documentsUpdatesPushProcess =
                             new DocumentsUpdatesPushProcess(appContext.getTextI18n(),
-                                    appContext.getNetwork());
+                                    appContext.getNetwork(), appContext.getEncryptedDocuments());
                     setProcess(documentsUpdatesPushProcess);
                     documentsUpdatesPushProcess.setProgressListener(new ProgressListener() {
                         @Override
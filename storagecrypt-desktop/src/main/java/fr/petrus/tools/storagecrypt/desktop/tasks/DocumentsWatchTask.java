@@ -0,0 +1,375 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.tasks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.filesystem.LocalDocument;
+import fr.petrus.lib.core.platform.TaskCreationException;
+import fr.petrus.lib.core.processes.DocumentsEncryptionProcess;
+import fr.petrus.tools.storagecrypt.desktop.DesktopConstants;
+import fr.petrus.tools.storagecrypt.desktop.windows.AppWindow;
+
+/**
+ * The {@code Task} which watches local folders after their encryption, and encrypts again the
+ * documents which are created or modified in them.
+ *
+ * <p>Changes are debounced : they are processed once no change was reported for
+ * {@link DesktopConstants.WATCH#DEBOUNCE_DELAY_MS}, or at most
+ * {@link DesktopConstants.WATCH#MAX_DEBOUNCE_DELAY_MS} after the first one. Only the changed
+ * documents are encrypted, and the resulting documents are queued for synchronization. The
+ * changes are encrypted while holding the lock of the {@link DocumentsEncryptionTask}, so that
+ * they are never encrypted at the same time as the documents it encrypts.
+ *
+ * @see DocumentsEncryptionProcess
+ * @see FolderWatcher
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class DocumentsWatchTask extends ProcessTask {
+
+    private static Logger LOG = LoggerFactory.getLogger(DocumentsWatchTask.class);
+
+    /**
+     * A watched folder, with the destination folder and the key used to encrypt it.
+     */
+    private static class WatchedFolder {
+        private final File folder;
+        private final long parentId;
+        private final String keyAlias;
+        private FolderWatcher folderWatcher = null;
+
+        private WatchedFolder(File folder, long parentId, String keyAlias) {
+            this.folder = folder;
+            this.parentId = parentId;
+            this.keyAlias = keyAlias;
+        }
+    }
+
+    private final Map<String, WatchedFolder> watchedFolders = new HashMap<>();
+    private final Map<String, WatchedFolder> pendingChanges = new HashMap<>();
+    private long firstChangeTime = -1;
+    private long lastChangeTime = -1;
+    private boolean stopped = false;
+    private Thread thread = null;
+
+    /**
+     * Creates a new {@code DocumentsWatchTask} instance.
+     *
+     * @param appWindow the application window
+     */
+    public DocumentsWatchTask(AppWindow appWindow) {
+        super(appWindow);
+    }
+
+    /**
+     * Starts watching the folders of the given {@code documents}, which are encrypted with the
+     * given {@code keyAlias} into the given {@code parent} folder.
+     *
+     * <p>Only the top level folders of the given {@code documents} are watched, with all their
+     * contents.
+     *
+     * @param parent    the destination folder where the documents are encrypted
+     * @param keyAlias  the alias of the key the documents are encrypted with
+     * @param documents the paths of the encrypted documents
+     */
+    public void watch(EncryptedDocument parent, String keyAlias, List<LocalDocument> documents) {
+        Set<String> paths = new HashSet<>();
+        for (LocalDocument document : documents) {
+            paths.add(document.getPath());
+        }
+        for (LocalDocument document : documents) {
+            File file = new File(document.getPath());
+            if (document.isDirectory() && !paths.contains(file.getParent())) {
+                watchFolder(new WatchedFolder(file, parent.getId(), keyAlias));
+            }
+        }
+    }
+
+    private synchronized void watchFolder(final WatchedFolder watchedFolder) {
+        stopped = false;
+        String path = watchedFolder.folder.getPath();
+        WatchedFolder previousWatchedFolder = watchedFolders.remove(path);
+        if (null != previousWatchedFolder) {
+            previousWatchedFolder.folderWatcher.stop();
+        }
+        watchedFolder.folderWatcher = new FolderWatcher(path, appContext.getFileSystem(),
+                new FolderWatcher.OnChangeListener() {
+                    @Override
+                    public void onChange(String path) {
+                        addChange(path, watchedFolder);
+                    }
+                });
+        watchedFolders.put(path, watchedFolder);
+        watchedFolder.folderWatcher.start();
+        LOG.debug("Watching folder {}", path);
+
+        if (null == thread) {
+            thread = new Thread() {
+                @Override
+                public void run() {
+                    processChanges();
+                    LOG.debug("Exiting watch thread");
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private synchronized void addChange(String path, WatchedFolder watchedFolder) {
+        if (stopped) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (pendingChanges.isEmpty()) {
+            firstChangeTime = now;
+        }
+        lastChangeTime = now;
+        pendingChanges.put(path, watchedFolder);
+        notifyAll();
+    }
+
+    /**
+     * Waits for the pending changes to be stable, and processes them, until this task is canceled.
+     */
+    private void processChanges() {
+        while (true) {
+            Map<String, WatchedFolder> changes;
+            synchronized (this) {
+                try {
+                    while (!stopped) {
+                        if (pendingChanges.isEmpty()) {
+                            wait();
+                            continue;
+                        }
+                        long delay = Math.min(lastChangeTime + DesktopConstants.WATCH.DEBOUNCE_DELAY_MS,
+                                firstChangeTime + DesktopConstants.WATCH.MAX_DEBOUNCE_DELAY_MS)
+                                - System.currentTimeMillis();
+                        if (delay > 0) {
+                            wait(delay);
+                        } else if (isEncryptionRunning()) {
+                            /* Keep collecting changes until the running encryption is done */
+                            wait(DesktopConstants.WATCH.DEBOUNCE_DELAY_MS);
+                        } else {
+                            break;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    LOG.error("Watch thread interrupted", e);
+                    stopped = true;
+                }
+                if (stopped) {
+                    pendingChanges.clear();
+                    thread = null;
+                    return;
+                }
+                changes = new TreeMap<>(pendingChanges);
+                pendingChanges.clear();
+            }
+            try {
+                synchronized (getEncryptionLock()) {
+                    encryptChanges(changes);
+                }
+            } catch (DatabaseConnectionClosedException e) {
+                LOG.error("Database is closed", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the lock of the {@link DocumentsEncryptionTask}, held while it encrypts documents.
+     */
+    private Object getEncryptionLock() {
+        try {
+            return appContext.getTask(DocumentsEncryptionTask.class).getEncryptionLock();
+        } catch (TaskCreationException e) {
+            LOG.error("Failed to get task {}", e.getTaskClass().getCanonicalName(), e);
+            /* without encryption task, there is no other encryption to wait for */
+            return new Object();
+        }
+    }
+
+    private boolean isEncryptionRunning() {
+        try {
+            return appContext.getTask(DocumentsEncryptionTask.class).isRunning();
+        } catch (TaskCreationException e) {
+            LOG.error("Failed to get task {}", e.getTaskClass().getCanonicalName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Encrypts the documents with the given paths, and queues them for synchronization.
+     *
+     * @param changes the paths of the changed documents, mapped to the watched folder they belong to
+     * @throws DatabaseConnectionClosedException if the database connection is closed
+     */
+    private void encryptChanges(Map<String, WatchedFolder> changes) throws DatabaseConnectionClosedException {
+        /* The documents to encrypt, grouped by destination folder id and key alias */
+        Map<SimpleImmutableEntry<Long, String>, List<LocalDocument>> batches = new LinkedHashMap<>();
+        Set<String> targets = new HashSet<>();
+        for (Map.Entry<String, WatchedFolder> change : changes.entrySet()) {
+            File file = new File(change.getKey());
+            if (!file.exists()) {
+                continue;
+            }
+            WatchedFolder watchedFolder = change.getValue();
+            EncryptedDocument dstFolder =
+                    appContext.getEncryptedDocuments().encryptedDocumentWithId(watchedFolder.parentId);
+            if (null == dstFolder) {
+                LOG.error("Destination folder of watched folder {} not found", watchedFolder.folder);
+                continue;
+            }
+
+            /* Find the deepest existing encrypted folder matching an ancestor of the changed file :
+             * if an ancestor was never encrypted, this ancestor will be encrypted with its contents */
+            LinkedList<String> names = new LinkedList<>();
+            for (File ancestor = file.getParentFile();
+                 null != ancestor && !ancestor.equals(watchedFolder.folder.getParentFile());
+                 ancestor = ancestor.getParentFile()) {
+                names.addFirst(ancestor.getName());
+            }
+            File target = file;
+            File current = watchedFolder.folder.getParentFile();
+            for (String name : names) {
+                current = new File(current, name);
+                EncryptedDocument child = dstFolder.child(name);
+                if (null == child || !child.isFolder()) {
+                    target = current;
+                    break;
+                }
+                dstFolder = child;
+            }
+
+            if (isAlreadyTargeted(target, targets)) {
+                continue;
+            }
+            targets.add(target.getPath());
+
+            SimpleImmutableEntry<Long, String> batchKey =
+                    new SimpleImmutableEntry<>(dstFolder.getId(), watchedFolder.keyAlias);
+            List<LocalDocument> batch = batches.get(batchKey);
+            if (null == batch) {
+                batch = new ArrayList<>();
+                batches.put(batchKey, batch);
+            }
+            batch.addAll(appContext.getFileSystem().scanDocuments(target.getPath()));
+        }
+
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        DocumentsEncryptionProcess documentsEncryptionProcess = new DocumentsEncryptionProcess(
+                appContext.getCrypto(),
+                appContext.getKeyManager(),
+                appContext.getTextI18n(),
+                appContext.getFileSystem(),
+                appContext.getEncryptedDocuments());
+        setProcess(documentsEncryptionProcess);
+        try {
+            for (Map.Entry<SimpleImmutableEntry<Long, String>, List<LocalDocument>> batch : batches.entrySet()) {
+                if (documentsEncryptionProcess.isCanceled()) {
+                    return;
+                }
+                LOG.debug("Encrypting {} changed documents", batch.getValue().size());
+                documentsEncryptionProcess.encryptDocuments(batch.getValue(),
+                        batch.getKey().getKey(), batch.getKey().getValue());
+            }
+        } finally {
+            setProcess(null);
+        }
+
+        DocumentsEncryptionProcess.Results results = documentsEncryptionProcess.getResults();
+        List<EncryptedDocument> encryptedDocuments = results.getSuccessfulyEncryptedDocuments();
+        if (!encryptedDocuments.isEmpty()) {
+            try {
+                appContext.getTask(DocumentsSyncTask.class).syncDocuments(encryptedDocuments);
+            } catch (TaskCreationException e) {
+                LOG.error("Failed to get task {}", e.getTaskClass().getCanonicalName(), e);
+            }
+            appWindow.update(true);
+        }
+    }
+
+    /**
+     * Returns whether the given {@code target} or one of its ancestors is in the given {@code targets}.
+     */
+    private static boolean isAlreadyTargeted(File target, Set<String> targets) {
+        for (File file = target; null != file; file = file.getParentFile()) {
+            if (targets.contains(file.getPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops watching all the folders.
+     */
+    public synchronized void unwatchAll() {
+        for (WatchedFolder watchedFolder : watchedFolders.values()) {
+            watchedFolder.folderWatcher.stop();
+        }
+        watchedFolders.clear();
+        stopped = true;
+        notifyAll();
+    }
+
+    @Override
+    public void cancel() {
+        unwatchAll();
+        super.cancel();
+    }
+}
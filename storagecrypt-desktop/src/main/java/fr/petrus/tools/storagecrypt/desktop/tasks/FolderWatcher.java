@@ -0,0 +1,271 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.tasks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.filesystem.LocalDocument;
+import fr.petrus.tools.storagecrypt.desktop.DesktopConstants;
+
+/**
+ * This class watches a local folder tree and reports the paths of the documents created or
+ * modified in it.
+ *
+ * <p>It relies on a {@code WatchService} when the platform provides one, and falls back to
+ * polling the folder tree, comparing the size and modification time of each document.
+ *
+ * <p>Deleted documents are not reported, and folders are only reported when they are created.
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+class FolderWatcher {
+
+    private static Logger LOG = LoggerFactory.getLogger(FolderWatcher.class);
+
+    /**
+     * The interface used to report changes.
+     */
+    interface OnChangeListener {
+
+        /**
+         * The method called when the document with the given {@code path} was created or modified.
+         *
+         * <p>If changes were lost, this method is called with the path of the watched folder itself.
+         *
+         * @param path the path of the created or modified document
+         */
+        void onChange(String path);
+    }
+
+    private final Path root;
+    private final FileSystem fileSystem;
+    private final OnChangeListener listener;
+    private WatchService watchService = null;
+    private Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private volatile boolean stopped = false;
+    private Thread thread = null;
+
+    /**
+     * Creates a new {@code FolderWatcher} for the folder with the given {@code path}.
+     *
+     * @param path       the path of the folder to watch
+     * @param fileSystem a {@code FileSystem} instance, used to poll the folder tree
+     * @param listener   the listener to report changes to
+     */
+    FolderWatcher(String path, FileSystem fileSystem, OnChangeListener listener) {
+        this.root = FileSystems.getDefault().getPath(path);
+        this.fileSystem = fileSystem;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the path of the watched folder.
+     *
+     * @return the path of the watched folder
+     */
+    String getPath() {
+        return root.toString();
+    }
+
+    /**
+     * Starts watching the folder in a background thread.
+     */
+    synchronized void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerTree(root);
+            thread = new Thread() {
+                @Override
+                public void run() {
+                    watch();
+                }
+            };
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("Failed to watch folder {}, falling back to polling", root, e);
+            closeWatchService();
+            thread = new Thread() {
+                @Override
+                public void run() {
+                    poll();
+                }
+            };
+        }
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the folder.
+     */
+    synchronized void stop() {
+        stopped = true;
+        closeWatchService();
+        if (null != thread) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void closeWatchService() {
+        if (null != watchService) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close watch service", e);
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Registers the given {@code directory} and all its sub-directories with the watch service,
+     * as the {@code WatchService} does not watch sub-directories by itself.
+     *
+     * @param directory the directory to register
+     * @throws IOException if an error occurs when registering a directory
+     */
+    private void registerTree(Path directory) throws IOException {
+        final WatchService service = watchService;
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                synchronized (watchedDirectories) {
+                    watchedDirectories.put(key, dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        while (!stopped && null != service) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            Path directory;
+            synchronized (watchedDirectories) {
+                directory = watchedDirectories.get(key);
+            }
+            if (null != directory) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (StandardWatchEventKinds.OVERFLOW == event.kind()) {
+                        listener.onChange(root.toString());
+                        continue;
+                    }
+                    Path path = directory.resolve((Path) event.context());
+                    if (Files.isDirectory(path)) {
+                        if (StandardWatchEventKinds.ENTRY_CREATE != event.kind()) {
+                            /* The changes of the contents of a folder are reported for each child */
+                            continue;
+                        }
+                        try {
+                            registerTree(path);
+                        } catch (IOException e) {
+                            LOG.error("Failed to watch folder {}", path, e);
+                        } catch (ClosedWatchServiceException e) {
+                            break;
+                        }
+                    }
+                    listener.onChange(path.toString());
+                }
+            }
+            if (!key.reset()) {
+                synchronized (watchedDirectories) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        }
+        LOG.debug("Stopped watching folder {}", root);
+    }
+
+    private void poll() {
+        Map<String, LocalDocument> snapshot = snapshot(fileSystem.scanDocuments(root.toString()));
+        while (!stopped) {
+            try {
+                Thread.sleep(DesktopConstants.WATCH.POLLING_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            Map<String, LocalDocument> newSnapshot = snapshot(fileSystem.scanDocuments(root.toString()));
+            for (LocalDocument document : newSnapshot.values()) {
+                LocalDocument previousDocument = snapshot.get(document.getPath());
+                if (null == previousDocument
+                        || !document.isDirectory() && previousDocument.getSize() != document.getSize()
+                        || !document.isDirectory()
+                                && previousDocument.getModificationTime() != document.getModificationTime()) {
+                    listener.onChange(document.getPath());
+                }
+            }
+            snapshot = newSnapshot;
+        }
+        LOG.debug("Stopped polling folder {}", root);
+    }
+
+    private static Map<String, LocalDocument> snapshot(List<LocalDocument> documents) {
+        Map<String, LocalDocument> snapshot = new HashMap<>();
+        for (LocalDocument document : documents) {
+            snapshot.put(document.getPath(), document);
+        }
+        return snapshot;
+    }
+}
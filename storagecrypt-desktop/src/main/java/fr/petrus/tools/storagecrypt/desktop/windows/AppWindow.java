@@ -43,6 +43,8 @@ import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.action.ToolBarManager;
 import org.eclipse.jface.window.ApplicationWindow;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.program.Program;
@@ -52,6 +54,7 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
 import org.markdownj.MarkdownProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,12 +62,13 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import fr.petrus.lib.core.Constants;
 import fr.petrus.lib.core.EncryptedDocuments;
@@ -84,9 +88,10 @@ import fr.petrus.lib.core.cloud.Account;
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.db.Database;
 import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
-import fr.petrus.lib.core.db.exceptions.DatabaseConnectionException;
 import fr.petrus.lib.core.filesystem.tree.IndentedPathNode;
 import fr.petrus.lib.core.filesystem.tree.PathTree;
+import fr.petrus.lib.core.metrics.Metrics;
+import fr.petrus.lib.core.metrics.MetricsLogReporter;
 import fr.petrus.lib.core.platform.AppContext;
 import fr.petrus.lib.core.processes.DocumentsMoveProcess;
 import fr.petrus.tools.storagecrypt.desktop.DesktopConstants;
@@ -99,10 +104,12 @@ import fr.petrus.lib.core.processes.DocumentsImportProcess;
 import fr.petrus.lib.core.processes.DocumentsUpdatesPushProcess;
 import fr.petrus.lib.core.result.OnCompletedListener;
 import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.filesystem.LocalDocument;
 import fr.petrus.lib.core.i18n.TextI18n;
 import fr.petrus.lib.core.StorageCryptException;
 import fr.petrus.tools.storagecrypt.desktop.CachedResources;
 import fr.petrus.tools.storagecrypt.desktop.Settings;
+import fr.petrus.tools.storagecrypt.desktop.DatabaseUnlocker;
 import fr.petrus.tools.storagecrypt.desktop.platform.DesktopPlatformFactory;
 import fr.petrus.tools.storagecrypt.desktop.tasks.ChangesSyncTask;
 import fr.petrus.tools.storagecrypt.desktop.tasks.DocumentsDecryptionTask;
@@ -112,7 +119,9 @@ import fr.petrus.tools.storagecrypt.desktop.tasks.DocumentsMoveTask;
 import fr.petrus.tools.storagecrypt.desktop.tasks.DocumentsUpdatesPushTask;
 import fr.petrus.tools.storagecrypt.desktop.tasks.FileDecryptionTask;
 import fr.petrus.tools.storagecrypt.desktop.tasks.DocumentsSyncTask;
+import fr.petrus.tools.storagecrypt.desktop.tasks.DocumentsWatchTask;
 import fr.petrus.tools.storagecrypt.desktop.platform.DesktopNetwork;
+import fr.petrus.tools.storagecrypt.desktop.platform.JmxMetricsExporter;
 import fr.petrus.tools.storagecrypt.desktop.Resources;
 import fr.petrus.tools.storagecrypt.desktop.TextBundle;
 import fr.petrus.tools.storagecrypt.desktop.DocumentAction;
@@ -191,6 +200,8 @@ public class AppWindow extends ApplicationWindow implements
     private Accounts accounts = null;
     private EncryptedDocuments encryptedDocuments = null;
     private Settings settings = null;
+    private JmxMetricsExporter jmxMetricsExporter = null;
+    private MetricsLogReporter metricsLogReporter = null;
 
     private boolean confirmExit = true;
 
@@ -198,6 +209,11 @@ public class AppWindow extends ApplicationWindow implements
 
     private FolderPathNavigationComposite folderPathNavigationComposite = null;
 
+    private Text searchText = null;
+    private String searchQuery = null;
+    private OrderBy searchResultsOrder = null;
+    private List<EncryptedDocument> searchResults = null;
+
     private Composite syncProcessGroup = null;
     private Button documentsSyncButton = null;
     private Button changesSyncButton = null;
@@ -241,6 +257,8 @@ public class AppWindow extends ApplicationWindow implements
         settings = new Settings(fileSystem);
 
         DesktopNetwork.setupProxy(settings);
+        keyManager.getDecryptedChunksCache().setMaxSize(settings.getDecryptedChunksCacheSize());
+        startMetricsExport();
 
         addMenuBar();
         addToolBar(SWT.BORDER);
@@ -255,7 +273,7 @@ public class AppWindow extends ApplicationWindow implements
     @Override
     protected Control createContents(Composite parent) {
         windowContent = new Composite(parent, SWT.NONE);
-        applyGridLayout(windowContent).numColumns(2).horizontalSpacing(4);
+        applyGridLayout(windowContent).numColumns(3).horizontalSpacing(4);
 
         currentFolderContextMenuManager = new MenuManager();
         currentFolderContextMenuManager.setRemoveAllWhenShown(true);
@@ -308,6 +326,26 @@ public class AppWindow extends ApplicationWindow implements
         applyGridData(folderPathNavigationComposite).withHorizontalFill();
         folderPathNavigationComposite.updateLocked();
 
+        searchText = new Text(windowContent, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+        applyGridData(searchText).widthHint(200).verticalAlignment(SWT.CENTER);
+        searchText.setMessage(textBundle.getString("search_message_text"));
+        final Runnable searchTask = new Runnable() {
+            @Override
+            public void run() {
+                if (!searchText.isDisposed()) {
+                    setSearchQuery(searchText.getText());
+                }
+            }
+        };
+        searchText.addModifyListener(new ModifyListener() {
+            @Override
+            public void modifyText(ModifyEvent modifyEvent) {
+                /* wait for the user to stop typing before searching */
+                getDisplay().timerExec(-1, searchTask);
+                getDisplay().timerExec(DesktopConstants.SEARCH.INPUT_DELAY_MS, searchTask);
+            }
+        });
+
         syncProcessGroup = new Composite(windowContent, SWT.NONE);
         applyGridLayout(syncProcessGroup).numColumns(2).horizontalSpacing(4);
         applyGridData(syncProcessGroup).horizontalAlignment(SWT.END);
@@ -381,7 +419,7 @@ public class AppWindow extends ApplicationWindow implements
         }
 
         documentsTable = new DocumentsTable(windowContent, textBundle, resources, this);
-        applyGridData(documentsTable.getTable()).horizontalSpan(2).withFill();
+        applyGridData(documentsTable.getTable()).horizontalSpan(3).withFill();
 
         windowContent.layout();
 
@@ -529,7 +567,9 @@ public class AppWindow extends ApplicationWindow implements
             fileSystem.removeCacheFiles();
             appContext.cancelAllTasks(4000);
             fileSystem.removeCacheFiles();
+            stopMetricsExport();
             database.close();
+            accounts.clearCache();
             return super.close();
         } else {
             update();
@@ -537,6 +577,37 @@ public class AppWindow extends ApplicationWindow implements
         }
     }
 
+    /**
+     * Publishes the metrics through JMX and starts dumping them to the log, as configured in the
+     * settings.
+     */
+    private void startMetricsExport() {
+        if (settings.isMetricsJmxEnabled()) {
+            jmxMetricsExporter = new JmxMetricsExporter(Metrics.registry());
+            jmxMetricsExporter.register();
+        }
+        if (settings.getMetricsLogPeriod() > 0) {
+            metricsLogReporter = new MetricsLogReporter(Metrics.registry());
+            metricsLogReporter.start(settings.getMetricsLogPeriod());
+        }
+    }
+
+    /**
+     * Stops publishing the metrics, dumping them a last time to the log if periodic dumps were
+     * enabled.
+     */
+    private void stopMetricsExport() {
+        if (null != metricsLogReporter) {
+            metricsLogReporter.stop();
+            metricsLogReporter.report();
+            metricsLogReporter = null;
+        }
+        if (null != jmxMetricsExporter) {
+            jmxMetricsExporter.unregister();
+            jmxMetricsExporter = null;
+        }
+    }
+
     /**
      * Returns the {@code AppContext} which provides dependencies for many classes.
      *
@@ -651,47 +722,7 @@ public class AppWindow extends ApplicationWindow implements
      * @throws StorageCryptException if an error occurs when trying to unlock the database
      */
     public boolean unlockDatabase() throws StorageCryptException {
-        if (!keyManager.isKeyStoreUnlocked()) {
-            return false;
-        }
-
-        String encryptedDatabaseEncryptionPassword = settings.getDatabaseEncryptionPassword();
-        if (null == encryptedDatabaseEncryptionPassword) {
-            try {
-                String databaseEncryptionPassword = crypto.generateRandomPassword(32);
-                encryptedDatabaseEncryptionPassword =
-                        keyManager.encryptWithDatabaseSecurityKey(databaseEncryptionPassword);
-                settings.setDatabaseEncryptionPassword(encryptedDatabaseEncryptionPassword);
-                settings.save();
-            } catch (NoSuchAlgorithmException e) {
-                throw new StorageCryptException(
-                        "Failed to generate a new database encryption password",
-                        StorageCryptException.Reason.DatabaseUnlockError, e);
-            } catch (CryptoException e) {
-                throw new StorageCryptException(
-                        "Failed to generate a new database encryption password",
-                        StorageCryptException.Reason.DatabaseUnlockError, e);
-            }
-        }
-
-        if (null == encryptedDatabaseEncryptionPassword) {
-            return false;
-        }
-
-        try {
-            String databaseEncryptionPassword =
-                    keyManager.decryptWithDatabaseSecurityKey(encryptedDatabaseEncryptionPassword);
-            if (!database.isOpen()) {
-                database.open(databaseEncryptionPassword);
-            }
-            return true;
-        } catch (DatabaseConnectionException e) {
-            throw new StorageCryptException("Failed to unlock the database",
-                    StorageCryptException.Reason.DatabaseUnlockError, e);
-        } catch (CryptoException e) {
-            throw new StorageCryptException("Failed to unlock the database",
-                    StorageCryptException.Reason.DatabaseUnlockError, e);
-        }
+        return DatabaseUnlocker.unlock(appContext, settings);
     }
 
     /**
@@ -702,9 +733,56 @@ public class AppWindow extends ApplicationWindow implements
     public void setCurrentFolderId(long id) {
         this.currentFolderId = id;
         folderChanged = true;
+        if (null != searchQuery) {
+            /* leave the search results to show the folder contents */
+            searchQuery = null;
+            searchResults = null;
+            searchText.setText("");
+        }
         update();
     }
 
+    /**
+     * Sets the words to search, and shows the matching documents instead of the current folder
+     * children.
+     *
+     * @param query the words to search, or an empty string to show the current folder children again
+     */
+    private void setSearchQuery(String query) {
+        query = query.trim();
+        if (query.isEmpty()) {
+            query = null;
+        }
+        if (null == query ? null != searchQuery : !query.equals(searchQuery)) {
+            searchQuery = query;
+            searchResults = null;
+            folderChanged = true;
+            update();
+        }
+    }
+
+    /**
+     * Returns the documents matching the current search query, sorted with the given {@code orderBy}.
+     *
+     * <p>The results are kept until the query, the sort order or the documents change.
+     *
+     * @param orderBy the criterion used to sort the results
+     * @return the documents matching the current search query
+     */
+    private List<EncryptedDocument> getSearchResults(OrderBy orderBy) {
+        if (null == searchResults || orderBy != searchResultsOrder) {
+            try {
+                searchResults = encryptedDocuments.search(searchQuery, true, orderBy,
+                        DesktopConstants.SEARCH.MAX_RESULTS);
+                searchResultsOrder = orderBy;
+            } catch (DatabaseConnectionClosedException e) {
+                LOG.error("Database is locked", e);
+                searchResults = new ArrayList<>();
+            }
+        }
+        return searchResults;
+    }
+
     /**
      * Updates the {@code ChangesSyncProgressWindow} with the given {@code progressEvent}.
      *
@@ -875,6 +953,7 @@ public class AppWindow extends ApplicationWindow implements
             toolBarCreateFolderAction.setEnabled(false);
             toolBarEncryptAction.setEnabled(false);
             folderPathNavigationComposite.updateLocked();
+            searchResults = null;
             documentsTable.updateLocked();
             windowContent.layout();
         } else {
@@ -892,6 +971,7 @@ public class AppWindow extends ApplicationWindow implements
                     currentFolder = encryptedDocuments.encryptedDocumentWithId(currentFolderId);
                 }
                 folderPathNavigationComposite.update(currentFolder);
+                searchResults = null;
                 documentsTable.update(folderChanged);
                 folderChanged = false;
                 windowContent.layout();
@@ -925,12 +1005,39 @@ public class AppWindow extends ApplicationWindow implements
     }
 
     @Override
-    public List<EncryptedDocument> getCurrentFolderChildren(OrderBy orderBy) {
+    public long getCurrentFolderNumChildren() {
+        if (null != searchQuery) {
+            return getSearchResults(null == searchResultsOrder ?
+                    OrderBy.NameAsc : searchResultsOrder).size();
+        }
         try {
             if (isCurrentFolderRoot()) {
-                return encryptedDocuments.roots();
-            } else {
-                return currentFolder.children(true, orderBy);
+                return encryptedDocuments.roots().size();
+            } else if (null != currentFolder) {
+                return currentFolder.numChildren();
+            }
+        } catch (DatabaseConnectionClosedException e) {
+            LOG.error("Database is locked", e);
+        }
+        return 0;
+    }
+
+    @Override
+    public List<EncryptedDocument> getCurrentFolderChildren(OrderBy orderBy, long offset, long limit) {
+        if (null != searchQuery) {
+            List<EncryptedDocument> results = getSearchResults(orderBy);
+            int fromIndex = (int) Math.min(offset, results.size());
+            int toIndex = (int) Math.min(offset + limit, results.size());
+            return new ArrayList<>(results.subList(fromIndex, toIndex));
+        }
+        try {
+            if (isCurrentFolderRoot()) {
+                List<EncryptedDocument> roots = encryptedDocuments.roots();
+                int fromIndex = (int) Math.min(offset, roots.size());
+                int toIndex = (int) Math.min(offset + limit, roots.size());
+                return new ArrayList<>(roots.subList(fromIndex, toIndex));
+            } else if (null != currentFolder) {
+                return currentFolder.children(true, orderBy, offset, limit);
             }
         } catch (DatabaseConnectionClosedException e) {
             LOG.error("Database is locked", e);
@@ -938,6 +1045,21 @@ public class AppWindow extends ApplicationWindow implements
         return new ArrayList<>();
     }
 
+    @Override
+    public boolean canHaveThumbnail(EncryptedDocument encryptedDocument) {
+        return appContext.getThumbnails().canHaveThumbnail(encryptedDocument);
+    }
+
+    @Override
+    public byte[] getThumbnail(EncryptedDocument encryptedDocument) {
+        try {
+            return appContext.getThumbnails().getThumbnail(encryptedDocument);
+        } catch (DatabaseConnectionClosedException e) {
+            LOG.error("Database is closed", e);
+        }
+        return null;
+    }
+
     @Override
     public boolean isCurrentFolderRoot() {
         return Constants.STORAGE.ROOT_PARENT_ID == currentFolderId;
@@ -1587,21 +1709,22 @@ public class AppWindow extends ApplicationWindow implements
     @Override
     public void encryptDocuments(EncryptedDocument destinationFolder, String[] documentsToEncrypt) {
         if (null!=destinationFolder) {
-            final List<String> documents = new ArrayList<>();
+            final List<LocalDocument> localDocuments = new ArrayList<>();
             for (String document : documentsToEncrypt) {
-                documents.addAll(fileSystem.getRecursiveDocumentsList(document));
+                localDocuments.addAll(fileSystem.scanDocuments(document));
             }
-            if (!documents.isEmpty()) {
+            if (!localDocuments.isEmpty()) {
                 try {
-                    final List<String> existingDocuments = getExistingDocuments(getCurrentFolder(), documents);
+                    final PathTree documentsTree = PathTree.buildLocalDocumentsTree(localDocuments);
+                    final List<String> existingDocuments =
+                            getCurrentFolder().buildExistingDocumentsList(documentsTree);
                     if (existingDocuments.isEmpty()) {
-                        showEncryptDocumentsSelectKeyDialog(destinationFolder, documents);
+                        showEncryptDocumentsSelectKeyDialog(destinationFolder, localDocuments);
                     } else {
                         DocumentsExistDialog documentsExistDialog =
                                 new DocumentsExistDialog(this, this.resources, existingDocuments);
                         documentsExistDialog.open();
                         if (documentsExistDialog.isResultPositive()) {
-                            final PathTree documentsTree = PathTree.buildTree(documents);
                             logTree("documentsTree", documentsTree);
                             final PathTree existingDocumentsTree = PathTree.buildTree(existingDocuments);
                             logTree("existingDocumentsTree", existingDocumentsTree);
@@ -1611,7 +1734,14 @@ public class AppWindow extends ApplicationWindow implements
                             logTree("selectedDocumentsTree", selectedDocumentsTree);
                             final PathTree documentsToEncryptTree = nonExistingDocumentsTree.merge(selectedDocumentsTree);
                             logTree("documentsToEncryptTree", documentsToEncryptTree);
-                            showEncryptDocumentsSelectKeyDialog(destinationFolder, documentsToEncryptTree.toStringList());
+                            final Set<String> pathsToEncrypt = new HashSet<>(documentsToEncryptTree.toStringList());
+                            final List<LocalDocument> selectedLocalDocuments = new ArrayList<>();
+                            for (LocalDocument localDocument : localDocuments) {
+                                if (pathsToEncrypt.contains(localDocument.getPath())) {
+                                    selectedLocalDocuments.add(localDocument);
+                                }
+                            }
+                            showEncryptDocumentsSelectKeyDialog(destinationFolder, selectedLocalDocuments);
                         }
                     }
                 } catch (DatabaseConnectionClosedException e) {
@@ -1629,13 +1759,8 @@ public class AppWindow extends ApplicationWindow implements
         }
     }
 
-    private List<String> getExistingDocuments(EncryptedDocument currentFolder, List<String> documents)
-            throws DatabaseConnectionClosedException {
-        return currentFolder.buildExistingDocumentsList(PathTree.buildTree(documents));
-    }
-
     public void showEncryptDocumentsSelectKeyDialog(EncryptedDocument destinationFolder,
-                                                    List<String> documentsToEncrypt) {
+                                                    List<LocalDocument> documentsToEncrypt) {
         if (null!=destinationFolder) {
             if (!documentsToEncrypt.isEmpty()) {
                 EncryptDocumentsDialog encryptDocumentsDialog =
@@ -1647,6 +1772,10 @@ public class AppWindow extends ApplicationWindow implements
                         try {
                             appContext.getTask(DocumentsEncryptionTask.class)
                                     .encrypt(destinationFolder, keyAlias, documentsToEncrypt);
+                            if (encryptDocumentsDialog.isWatchFolders()) {
+                                appContext.getTask(DocumentsWatchTask.class)
+                                        .watch(destinationFolder, keyAlias, documentsToEncrypt);
+                            }
                         } catch (TaskCreationException e) {
                             LOG.error("Failed to get task {}",
                                     e.getTaskClass().getCanonicalName(), e);
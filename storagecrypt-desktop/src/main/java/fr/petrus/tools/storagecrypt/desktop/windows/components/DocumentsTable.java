@@ -39,14 +39,15 @@ package fr.petrus.tools.storagecrypt.desktop.windows.components;
 import org.eclipse.jface.action.IMenuListener;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.MenuManager;
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnLabelProvider;
 import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
+import org.eclipse.jface.viewers.ILazyContentProvider;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.OwnerDrawLabelProvider;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.DropTarget;
@@ -59,10 +60,13 @@ import org.eclipse.swt.events.KeyEvent;
 import org.eclipse.swt.events.TraverseEvent;
 import org.eclipse.swt.events.TraverseListener;
 import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.SWTException;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Table;
@@ -71,9 +75,19 @@ import org.eclipse.swt.widgets.TableItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import fr.petrus.lib.core.EncryptedDocument;
 import fr.petrus.lib.core.OrderBy;
@@ -98,6 +112,15 @@ public class DocumentsTable {
 
     private static final int NUM_SURROUNDING_SPACES = 2;
 
+    /** The number of documents fetched from the database at once when the table needs a row */
+    private static final int PAGE_SIZE = 200;
+
+    /** The maximum number of pages of documents kept in memory */
+    private static final int MAX_CACHED_PAGES = 10;
+
+    /** The maximum number of thumbnail images kept in memory */
+    private static final int MAX_CACHED_THUMBNAILS = 500;
+
     /**
      * The interface by which the {@code DocumentsTable} interacts with its owner.
      */
@@ -119,13 +142,23 @@ public class DocumentsTable {
         EncryptedDocument getCurrentFolder();
 
         /**
-         * Returns the current folder children, sorted using the given {@code orderBy} criterion.
+         * Returns the number of children of the current folder.
+         *
+         * @return the number of children of the current folder
+         */
+        long getCurrentFolderNumChildren();
+
+        /**
+         * Returns a window of the current folder children, sorted using the given {@code orderBy}
+         * criterion.
          *
          * @param orderBy the criterion used to sort the current folder children list
-         * @return a list containing the current folder children, sorted using the given {@code orderBy}
-         *         criterion
+         * @param offset  the position of the first child to return
+         * @param limit   the maximum number of children to return
+         * @return a list containing at most {@code limit} current folder children, starting at the
+         *         given {@code offset}, sorted using the given {@code orderBy} criterion
          */
-        List<EncryptedDocument> getCurrentFolderChildren(OrderBy orderBy);
+        List<EncryptedDocument> getCurrentFolderChildren(OrderBy orderBy, long offset, long limit);
 
         /**
          * Requests an update of the current folder.
@@ -165,6 +198,25 @@ public class DocumentsTable {
          * @param documentsToEncrypt the documents to encrypt
          */
         void encryptDocuments(EncryptedDocument destinationFolder, String[] documentsToEncrypt);
+
+        /**
+         * Returns whether a thumbnail may be shown for the given {@code encryptedDocument}.
+         *
+         * @param encryptedDocument the encrypted document
+         * @return true if a thumbnail may be shown for the given {@code encryptedDocument}
+         */
+        boolean canHaveThumbnail(EncryptedDocument encryptedDocument);
+
+        /**
+         * Returns the thumbnail of the given {@code encryptedDocument}.
+         *
+         * <p>This method may have to decrypt the document, so it is only called from a background
+         * thread.
+         *
+         * @param encryptedDocument the encrypted document
+         * @return the encoded thumbnail image, or null if the document has no thumbnail
+         */
+        byte[] getThumbnail(EncryptedDocument encryptedDocument);
     }
 
     private DocumentsTableListener listener = null;
@@ -172,6 +224,37 @@ public class DocumentsTable {
 
     private OrderBy orderBy = OrderBy.NameAsc;
 
+    private Map<Long, List<EncryptedDocument>> cachedPages =
+            new LinkedHashMap<Long, List<EncryptedDocument>>(MAX_CACHED_PAGES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, List<EncryptedDocument>> eldest) {
+                    return size() > MAX_CACHED_PAGES;
+                }
+            };
+
+    /* The thumbnails images, by document id. A null image means that the document has no thumbnail */
+    private Map<Long, Image> thumbnails =
+            new LinkedHashMap<Long, Image>(MAX_CACHED_THUMBNAILS + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+                    if (size() > MAX_CACHED_THUMBNAILS) {
+                        if (null != eldest.getValue()) {
+                            eldest.getValue().dispose();
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    /* The ids of the documents which thumbnails are being loaded */
+    private Set<Long> pendingThumbnails = new HashSet<>();
+
+    /* Incremented when the pending thumbnails requests become obsolete */
+    private AtomicInteger thumbnailsGeneration = new AtomicInteger(0);
+
+    private ExecutorService thumbnailsExecutor = null;
+
     private TextShortener textShortener = null;
 
     private TableViewer tableViewer = null;
@@ -197,6 +280,21 @@ public class DocumentsTable {
         this.resources = resources;
         textShortener = new TextShortener(parent.getDisplay(), TextShortener.Mode.ELLIPSIZE);
         tableViewer = createTableViewer(parent, listener);
+        thumbnailsExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DocumentsTableThumbnails");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        tableViewer.getTable().addListener(SWT.Dispose, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+                thumbnailsExecutor.shutdownNow();
+                clearThumbnails();
+            }
+        });
         registerContextMenu(tableViewer, listener, textBundle);
         setupColumns(tableViewer, textBundle);
         setupDragDrop(tableViewer, listener);
@@ -218,6 +316,9 @@ public class DocumentsTable {
      * displaying nothing.
      */
     public void updateLocked() {
+        cachedPages.clear();
+        clearThumbnails();
+        tableViewer.setItemCount(0);
         tableViewer.getTable().removeAll();
     }
 
@@ -241,7 +342,19 @@ public class DocumentsTable {
             deletionColumn.getColumn().setImage(
                     resources.loadImage(DesktopConstants.RESOURCES.IC_DELETE_BLACK));
         }
-        tableViewer.setInput(listener.getCurrentFolderChildren(orderBy));
+        cachedPages.clear();
+        if (folderChanged) {
+            clearThumbnails();
+        } else {
+            /* Documents without a thumbnail may have been downloaded or modified since */
+            thumbnails.values().removeAll(Collections.singleton((Image) null));
+        }
+        if (null == tableViewer.getInput()) {
+            tableViewer.setInput(listener);
+        }
+        int itemCount = (int) Math.min(Integer.MAX_VALUE, listener.getCurrentFolderNumChildren());
+        tableViewer.setItemCount(itemCount);
+        tableViewer.getTable().clearAll();
         if (folderChanged) {
             tableViewer.getTable().setTopIndex(0);
         }
@@ -257,21 +370,141 @@ public class DocumentsTable {
         try {
             listener.openDocument(encryptedDocument.parent());
             update(true);
-            for (int i = 0; i< tableViewer.getTable().getItemCount(); i++) {
-                if (tableViewer.getElementAt(i).equals(encryptedDocument)) {
-                    tableViewer.getTable().deselectAll();
-                    tableViewer.getTable().select(i);
-                    tableViewer.getTable().setTopIndex(i);
-                }
+            int index = indexOf(encryptedDocument);
+            if (index >= 0) {
+                tableViewer.getTable().deselectAll();
+                tableViewer.getTable().select(index);
+                tableViewer.getTable().setTopIndex(index);
             }
         } catch (DatabaseConnectionClosedException e) {
             LOG.error("Database connection closed", e);
         }
     }
 
+    /**
+     * Returns the position of the given {@code encryptedDocument} in the current folder, reading
+     * the pages of documents one after the other until it is found.
+     *
+     * @param encryptedDocument the {@code EncryptedDocument} to search for
+     * @return the position of the given {@code encryptedDocument} in the current folder, or -1 if it
+     *         was not found
+     */
+    private int indexOf(EncryptedDocument encryptedDocument) {
+        int itemCount = tableViewer.getTable().getItemCount();
+        for (long page = 0; page * PAGE_SIZE < itemCount; page++) {
+            List<EncryptedDocument> documents = getPage(page);
+            int pageIndex = documents.indexOf(encryptedDocument);
+            if (pageIndex >= 0) {
+                return (int) (page * PAGE_SIZE + pageIndex);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the documents of the given {@code page} of the current folder, from the cache if it
+     * was already loaded, or from the database otherwise.
+     *
+     * @param page the index of the page to return
+     * @return the documents of the given {@code page} of the current folder
+     */
+    private List<EncryptedDocument> getPage(long page) {
+        List<EncryptedDocument> documents = cachedPages.get(page);
+        if (null == documents) {
+            documents = listener.getCurrentFolderChildren(orderBy, page * PAGE_SIZE, PAGE_SIZE);
+            cachedPages.put(page, documents);
+        }
+        return documents;
+    }
+
+    /**
+     * Disposes the thumbnail images, and drops the pending thumbnails requests.
+     */
+    private void clearThumbnails() {
+        thumbnailsGeneration.incrementAndGet();
+        pendingThumbnails.clear();
+        for (Image image : thumbnails.values()) {
+            if (null != image) {
+                image.dispose();
+            }
+        }
+        thumbnails.clear();
+    }
+
+    /**
+     * Returns the thumbnail image of the given {@code document} if it is loaded, or starts loading
+     * it in the background and returns null.
+     *
+     * <p>This method must be called from the UI thread.
+     *
+     * @param document the document which thumbnail to return
+     * @param width    the maximum width of the thumbnail image
+     * @param height   the maximum height of the thumbnail image
+     * @return the thumbnail image of the given {@code document}, or null if it is not available
+     */
+    private Image getThumbnail(final EncryptedDocument document, final int width, final int height) {
+        if (document.isRoot() || document.isFolder() || !listener.canHaveThumbnail(document)) {
+            return null;
+        }
+        final long documentId = document.getId();
+        if (thumbnails.containsKey(documentId)) {
+            return thumbnails.get(documentId);
+        }
+        if (pendingThumbnails.add(documentId)) {
+            final int generation = thumbnailsGeneration.get();
+            final Display display = tableViewer.getTable().getDisplay();
+            thumbnailsExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation != thumbnailsGeneration.get()) {
+                        return;
+                    }
+                    ImageData imageData = null;
+                    byte[] thumbnail = listener.getThumbnail(document);
+                    if (null != thumbnail) {
+                        try {
+                            imageData = scaleToFit(new ImageData(new ByteArrayInputStream(thumbnail)),
+                                    width, height);
+                        } catch (SWTException e) {
+                            LOG.debug("Failed to decode thumbnail of {}", document.failSafeLogicalPath(), e);
+                        }
+                    }
+                    final ImageData thumbnailData = imageData;
+                    display.asyncExec(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation != thumbnailsGeneration.get()
+                                    || tableViewer.getTable().isDisposed()) {
+                                return;
+                            }
+                            pendingThumbnails.remove(documentId);
+                            if (null == thumbnailData) {
+                                thumbnails.put(documentId, null);
+                            } else {
+                                thumbnails.put(documentId, new Image(display, thumbnailData));
+                                tableViewer.getTable().redraw();
+                            }
+                        }
+                    });
+                }
+            });
+        }
+        return null;
+    }
+
+    private static ImageData scaleToFit(ImageData imageData, int width, int height) {
+        double scale = Math.min((double) width / imageData.width, (double) height / imageData.height);
+        if (scale >= 1.0) {
+            return imageData;
+        }
+        return imageData.scaledTo(Math.max(1, (int) (imageData.width * scale)),
+                Math.max(1, (int) (imageData.height * scale)));
+    }
+
     private TableViewer createTableViewer(Composite parent, final DocumentsTableListener listener) {
         TableViewer tableViewer =
-                new TableViewer(parent, SWT.FULL_SELECTION | SWT.BORDER | SWT.MULTI);
+                new TableViewer(parent, SWT.FULL_SELECTION | SWT.BORDER | SWT.MULTI | SWT.VIRTUAL);
+        tableViewer.setUseHashlookup(true);
         Table table = tableViewer.getTable();
         table.setHeaderVisible(true);
         table.setLinesVisible(true);
@@ -571,7 +804,26 @@ public class DocumentsTable {
                                       final TableViewerColumn uploadColumn,
                                       final TableViewerColumn deletionColumn) {
 
-        tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+        tableViewer.setContentProvider(new ILazyContentProvider() {
+            @Override
+            public void updateElement(int index) {
+                List<EncryptedDocument> documents = getPage(index / PAGE_SIZE);
+                int pageIndex = index % PAGE_SIZE;
+                if (pageIndex < documents.size()) {
+                    tableViewer.replace(documents.get(pageIndex), index);
+                }
+            }
+
+            @Override
+            public void dispose() {
+                cachedPages.clear();
+            }
+
+            @Override
+            public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+                cachedPages.clear();
+            }
+        });
         nameColumn.setLabelProvider(new OwnerDrawLabelProvider() {
             @Override
             protected void measure(Event event, Object element) {
@@ -621,8 +873,18 @@ public class DocumentsTable {
                     text = StringUtils.surroundWithSpaces(document.getDisplayName(), NUM_SURROUNDING_SPACES);
                 }
                 Rectangle bounds = event.getBounds();
-                event.gc.drawImage(image, bounds.x + 4,
-                        bounds.y + ( bounds.height - image.getBounds().height ) / 2);
+                Rectangle imageBounds = image.getBounds();
+                Image thumbnail = getThumbnail(document, imageBounds.width, imageBounds.height);
+                if (null != thumbnail) {
+                    /* Center the thumbnail in the place of the icon */
+                    Rectangle thumbnailBounds = thumbnail.getBounds();
+                    event.gc.drawImage(thumbnail,
+                            bounds.x + 4 + ( imageBounds.width - thumbnailBounds.width ) / 2,
+                            bounds.y + ( bounds.height - thumbnailBounds.height ) / 2);
+                } else {
+                    event.gc.drawImage(image, bounds.x + 4,
+                            bounds.y + ( bounds.height - imageBounds.height ) / 2);
+                }
 
                 int widthLeftForText = nameColumn.getColumn().getWidth() - image.getBounds().width;
 
@@ -39,6 +39,7 @@ package fr.petrus.tools.storagecrypt.desktop.windows.dialog;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Label;
@@ -47,6 +48,7 @@ import java.util.List;
 
 import fr.petrus.lib.core.crypto.KeyManager;
 import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.filesystem.LocalDocument;
 import fr.petrus.tools.storagecrypt.desktop.windows.AppWindow;
 
 import static fr.petrus.tools.storagecrypt.desktop.swt.GridLayoutUtil.applyGridLayout;
@@ -62,9 +64,10 @@ public class EncryptDocumentsDialog extends CustomDialog<EncryptDocumentsDialog>
 
     private KeyManager keyManager = null;
     private EncryptedDocument parentEncryptedDocument = null;
-    private List<String> documents = null;
+    private List<LocalDocument> documents = null;
 
     private String keyAlias = null;
+    private boolean watchFolders = false;
 
     /**
      * Creates a new {@code EncryptDocumentsDialog} instance to encrypt the given {@code documents}
@@ -76,7 +79,7 @@ public class EncryptDocumentsDialog extends CustomDialog<EncryptDocumentsDialog>
      */
     public EncryptDocumentsDialog(AppWindow appWindow,
                                   EncryptedDocument parentEncryptedDocument,
-                                  List<String> documents) {
+                                  List<LocalDocument> documents) {
         super(appWindow);
         setClosable(true);
         setResizable(false);
@@ -97,6 +100,16 @@ public class EncryptDocumentsDialog extends CustomDialog<EncryptDocumentsDialog>
         return keyAlias;
     }
 
+    /**
+     * Returns whether the user chose to watch the encrypted folders, to automatically encrypt
+     * their changes.
+     *
+     * @return true if the encrypted folders should be watched
+     */
+    public boolean isWatchFolders() {
+        return watchFolders;
+    }
+
     @Override
     protected void createDialogContents(Composite parent) {
         applyGridLayout(parent).numColumns(2);
@@ -129,6 +142,16 @@ public class EncryptDocumentsDialog extends CustomDialog<EncryptDocumentsDialog>
         }
         keyAlias = keyAliasCombo.getText();
 
+        final Button watchFoldersButton = new Button(parent, SWT.CHECK);
+        watchFoldersButton.setText(textBundle.getString("encrypt_documents_dialog_watch_folders_text"));
+        applyGridData(watchFoldersButton).withHorizontalFill().horizontalSpan(2);
+        watchFoldersButton.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent selectionEvent) {
+                watchFolders = watchFoldersButton.getSelection();
+            }
+        });
+
         validateOnReturnPressed(keyAliasCombo);
     }
 }
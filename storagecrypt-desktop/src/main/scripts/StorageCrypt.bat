@@ -2,7 +2,7 @@
 
 REM set JAVA_HOME in the environment variables
 
-java -jar %~dp0StorageCrypt.jar
+java -jar %~dp0StorageCrypt.jar %*
 REM start java -jar %~dp0StorageCrypt.jar
 REM javaw -jar %~dp0StorageCrypt.jar
 REM start javaw -jar %~dp0StorageCrypt.jar
@@ -10,9 +10,9 @@ SCRIPT_DIR="$( cd -P "$( dirname "$SOURCE" )" && pwd )"
 #SCRIPT_DIR=$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )
 
 if [[ "$OSTYPE" == "linux-gnu" ]]; then
-	UBUNTU_MENUPROXY=0 java -jar $SCRIPT_DIR/StorageCrypt.jar
+	UBUNTU_MENUPROXY=0 java -jar $SCRIPT_DIR/StorageCrypt.jar "$@"
 elif [[ "$OSTYPE" == "darwin" ]]; then
-	java -XstartOnFirstThread -jar $SCRIPT_DIR/StorageCrypt.jar
+	java -XstartOnFirstThread -jar $SCRIPT_DIR/StorageCrypt.jar "$@"
 else
-	java -jar $SCRIPT_DIR/StorageCrypt.jar
+	java -jar $SCRIPT_DIR/StorageCrypt.jar "$@"
 fi
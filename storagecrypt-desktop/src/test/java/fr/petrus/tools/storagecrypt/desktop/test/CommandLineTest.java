@@ -0,0 +1,137 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import fr.petrus.tools.storagecrypt.desktop.DesktopConstants;
+import fr.petrus.tools.storagecrypt.desktop.headless.CommandLine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the headless command line parsing and exit codes
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class CommandLineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PrintStream systemOut;
+    private PrintStream systemErr;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void redirectOutput() throws UnsupportedEncodingException {
+        systemOut = System.out;
+        systemErr = System.err;
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true, "UTF-8"));
+        System.setErr(new PrintStream(err, true, "UTF-8"));
+    }
+
+    @After
+    public void restoreOutput() {
+        System.setOut(systemOut);
+        System.setErr(systemErr);
+    }
+
+    private void assertUsageError(String expectedError, String... args)
+            throws UnsupportedEncodingException {
+        assertEquals(DesktopConstants.HEADLESS.EXIT_USAGE, CommandLine.run(args));
+        String error = err.toString("UTF-8");
+        assertTrue(error, error.startsWith(expectedError));
+        assertTrue(error, error.contains("Usage :"));
+        err.reset();
+    }
+
+    @Test
+    public void helpPrintsUsage() throws UnsupportedEncodingException {
+        assertEquals(DesktopConstants.HEADLESS.EXIT_OK, CommandLine.run(new String[] { "help" }));
+        assertTrue(out.toString("UTF-8").startsWith("Usage :"));
+    }
+
+    @Test
+    public void wrongCommandsAreRejected() throws UnsupportedEncodingException {
+        assertUsageError("Missing command");
+        assertUsageError("Unknown command", "backup");
+        assertUsageError("The sync command takes no argument", "sync", "local");
+        assertUsageError("The encrypt command needs", "encrypt", "local/photos");
+        assertUsageError("The restore command needs", "restore", "local/photos");
+    }
+
+    @Test
+    public void wrongOptionsAreRejected() throws UnsupportedEncodingException {
+        assertUsageError("Unknown option --verbose", "sync", "--verbose", "true");
+        assertUsageError("Missing value for option --key", "encrypt", "local", "file", "--key");
+        assertUsageError("Invalid interval : ten", "daemon", "--interval", "ten");
+        assertUsageError("Invalid interval : 0", "daemon", "--interval", "0");
+    }
+
+    @Test
+    public void unreadablePasswordFileLocks() throws UnsupportedEncodingException {
+        String passwordFile = new File(folder.getRoot(), "missing").getAbsolutePath();
+        assertEquals(DesktopConstants.HEADLESS.EXIT_LOCKED,
+                CommandLine.run(new String[] { "sync", "--password-file", passwordFile }));
+        assertTrue(out.toString("UTF-8").contains("\"code\":" + DesktopConstants.HEADLESS.EXIT_LOCKED));
+    }
+
+    @Test
+    public void logsAreNotWrittenToTheJsonOutput() throws UnsupportedEncodingException {
+        String passwordFile = new File(folder.getRoot(), "missing").getAbsolutePath();
+        CommandLine.run(new String[] { "sync", "--password-file", passwordFile });
+        for (String line : out.toString("UTF-8").split("\n")) {
+            assertTrue(line, line.startsWith("{"));
+        }
+        assertTrue(err.toString("UTF-8").contains("ERROR"));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.test;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.crypto.CryptoException;
+import fr.petrus.lib.core.crypto.DecryptedChunksCache;
+import fr.petrus.lib.core.crypto.EncryptedDataChunk;
+import fr.petrus.lib.core.crypto.EncryptedDataReader;
+import fr.petrus.lib.core.crypto.EncryptedDataStream;
+import fr.petrus.lib.core.crypto.SecretKeys;
+import fr.petrus.lib.core.crypto.mac.Mac;
+import fr.petrus.lib.core.utils.NumberConv;
+import fr.petrus.tools.storagecrypt.desktop.platform.crypto.DesktopBCLightWeightApiCrypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the random access to the clear data of encrypted files
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class EncryptedDataReaderTest {
+
+    /* The section types written by EncryptedDataStream */
+    private static final int SECTION_TYPE_SIGNATURE = 0;
+    private static final int SECTION_TYPE_CHUNK = 1;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Crypto crypto = new DesktopBCLightWeightApiCrypto();
+    private SecretKeys secretKeys;
+
+    @Before
+    public void init() throws CryptoException {
+        secretKeys = new SecretKeys(crypto.generateEncryptionKey(256), crypto.generateSignatureKey(256));
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private File encryptWithStream(byte[] data) throws IOException, CryptoException {
+        File file = folder.newFile();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            new EncryptedDataStream(crypto, secretKeys)
+                    .encrypt(new ByteArrayInputStream(data), outputStream, null);
+        }
+        return file;
+    }
+
+    /* Writes each of the given chunks as a separate encrypted chunk, even the empty ones */
+    private File encryptChunks(byte[]... chunks) throws IOException, CryptoException {
+        File file = folder.newFile();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(Constants.CRYPTO.STREAM_PREFIX);
+            outputStream.write(NumberConv.shortToByteArray(Constants.CRYPTO.STREAM_VERSION));
+            Mac globalMac = crypto.initMac(secretKeys.getSignatureKey());
+            for (byte[] chunk : chunks) {
+                EncryptedDataChunk encryptedDataChunk = crypto.encrypt(secretKeys.getEncryptionKey(), chunk);
+                encryptedDataChunk.sign(secretKeys.getSignatureKey());
+                globalMac.update(encryptedDataChunk.getSignature());
+                outputStream.write(SECTION_TYPE_CHUNK);
+                encryptedDataChunk.write(outputStream);
+            }
+            byte[] globalSignature = globalMac.doFinal();
+            outputStream.write(SECTION_TYPE_SIGNATURE);
+            outputStream.write(NumberConv.intToByteArray(globalSignature.length));
+            outputStream.write(globalSignature);
+        }
+        return file;
+    }
+
+    private static byte[] read(EncryptedDataReader reader, long offset, int length)
+            throws IOException, CryptoException {
+        byte[] buffer = new byte[length];
+        int read = reader.read(offset, buffer, length);
+        return Arrays.copyOf(buffer, read);
+    }
+
+    @Test
+    public void readAcrossChunks() throws IOException, CryptoException {
+        byte[] data = randomData(2 * Constants.CRYPTO.MAX_CHUNK_SIZE + 1000);
+        try (EncryptedDataReader reader = new EncryptedDataReader(crypto, secretKeys,
+                encryptWithStream(data), 2)) {
+            assertEquals(data.length, reader.getSize());
+            assertArrayEquals(data, read(reader, 0, data.length));
+            for (int offset : new int[] { 0, 12345, Constants.CRYPTO.MAX_CHUNK_SIZE - 100000,
+                    Constants.CRYPTO.MAX_CHUNK_SIZE + 7, data.length - 10 }) {
+                assertArrayEquals(Arrays.copyOfRange(data, offset, Math.min(data.length, offset + 200000)),
+                        read(reader, offset, 200000));
+            }
+            assertEquals(0, read(reader, data.length, 100).length);
+        }
+    }
+
+    @Test
+    public void readSkipsEmptyChunks() throws IOException, CryptoException {
+        byte[] first = randomData(100);
+        byte[] second = randomData(50);
+        try (EncryptedDataReader reader = new EncryptedDataReader(crypto, secretKeys,
+                encryptChunks(new byte[0], first, new byte[0], new byte[0], second, new byte[0]), 4)) {
+            assertEquals(150, reader.getSize());
+            assertArrayEquals(first, read(reader, 0, 100));
+            assertArrayEquals(second, read(reader, 100, 100));
+            assertArrayEquals(Arrays.copyOfRange(first, 90, 100), read(reader, 90, 10));
+            assertEquals(140, read(reader, 10, 1000).length);
+            assertEquals(0, read(reader, 150, 10).length);
+        }
+    }
+
+    @Test
+    public void readEmptyFile() throws IOException, CryptoException {
+        try (EncryptedDataReader reader = new EncryptedDataReader(crypto, secretKeys,
+                encryptChunks(new byte[0]), 4)) {
+            assertEquals(0, reader.getSize());
+            assertEquals(0, read(reader, 0, 10).length);
+        }
+    }
+
+    @Test
+    public void readFromSharedCache() throws IOException, CryptoException {
+        byte[] data = randomData(1000);
+        File file = encryptWithStream(data);
+        DecryptedChunksCache sharedCache = new DecryptedChunksCache();
+        sharedCache.setEnabled(true);
+        sharedCache.setMaxSize(Constants.CRYPTO.MAX_CHUNK_SIZE);
+        try (EncryptedDataReader reader = new EncryptedDataReader(crypto, secretKeys, file, 1,
+                sharedCache, 1)) {
+            assertArrayEquals(data, read(reader, 0, data.length));
+        }
+        assertEquals(data.length, sharedCache.getSize());
+        try (EncryptedDataReader reader = new EncryptedDataReader(crypto, secretKeys, file, 1,
+                sharedCache, 1)) {
+            assertArrayEquals(data, read(reader, 0, data.length));
+        }
+    }
+
+    @Test(expected = CryptoException.class)
+    public void tamperedFileIsRejected() throws IOException, CryptoException {
+        File file = encryptWithStream(randomData(1000));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            long lastByte = randomAccessFile.length() - 1;
+            randomAccessFile.seek(lastByte);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(lastByte);
+            randomAccessFile.write(value ^ 0xff);
+        }
+        new EncryptedDataReader(crypto, secretKeys, file, 1).close();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright Pierre Sagne (12 december 2014)
+ *
+ * petrus.dev.fr@gmail.com
+ *
+ * This software is a computer program whose purpose is to encrypt and
+ * synchronize files on the cloud.
+ *
+ * This software is governed by the CeCILL license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ *
+ */
+
+package fr.petrus.tools.storagecrypt.desktop.test;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import fr.petrus.lib.core.Constants;
+import fr.petrus.lib.core.EncryptedDocument;
+import fr.petrus.lib.core.crypto.Crypto;
+import fr.petrus.lib.core.crypto.CryptoException;
+import fr.petrus.lib.core.crypto.EncryptedDataStream;
+import fr.petrus.lib.core.crypto.KeyManager;
+import fr.petrus.lib.core.crypto.SecretKeys;
+import fr.petrus.lib.core.db.exceptions.DatabaseConnectionClosedException;
+import fr.petrus.lib.core.filesystem.FileSystem;
+import fr.petrus.lib.core.result.ProcessProgressAdapter;
+import fr.petrus.lib.core.thumbnails.ThumbnailGenerator;
+import fr.petrus.lib.core.thumbnails.Thumbnails;
+import fr.petrus.tools.storagecrypt.desktop.platform.crypto.DesktopBCLightWeightApiCrypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the generation of the thumbnails from the encrypted images
+ *
+ * @author Pierre Sagne
+ * @since 18.10.2026
+ */
+public class ThumbnailsTest {
+
+    private static final String KEY_ALIAS = "thumbnails";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Crypto crypto = new DesktopBCLightWeightApiCrypto();
+    private FileSystem fileSystem;
+    private KeyManager keyManager;
+    private byte[] image;
+    private EncryptedDocument encryptedDocument;
+
+    /* A generator which "downscales" an image by returning it as it was read from its source */
+    private class CopyingGenerator implements ThumbnailGenerator {
+        private long maxSourceSize = Long.MAX_VALUE;
+        private int numGenerations = 0;
+
+        @Override
+        public long getMaxSourceSize() {
+            return maxSourceSize;
+        }
+
+        @Override
+        public byte[] generateThumbnail(ImageSource image, int maxSize) {
+            numGenerations++;
+            try (InputStream inputStream = image.open()) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1000];
+                int read;
+                while ((read = inputStream.read(buffer, 10, 500)) >= 0) {
+                    outputStream.write(buffer, 10, read);
+                }
+                return outputStream.toByteArray();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    @Before
+    public void init() throws IOException, CryptoException, DatabaseConnectionClosedException {
+        SecretKeys secretKeys = new SecretKeys(crypto.generateEncryptionKey(256),
+                crypto.generateSignatureKey(256));
+        keyManager = mock(KeyManager.class);
+        when(keyManager.getKeys(KEY_ALIAS)).thenReturn(secretKeys);
+
+        fileSystem = mock(FileSystem.class);
+        when(fileSystem.getAppDir()).thenReturn(folder.newFolder("app"));
+
+        image = new byte[300000];
+        new Random(image.length).nextBytes(image);
+        File file = folder.newFile();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            new EncryptedDataStream(crypto, secretKeys)
+                    .encrypt(new ByteArrayInputStream(image), outputStream, null);
+        }
+
+        encryptedDocument = mock(EncryptedDocument.class);
+        when(encryptedDocument.getId()).thenReturn(1L);
+        when(encryptedDocument.getMimeType()).thenReturn("image/jpeg");
+        when(encryptedDocument.getKeyAlias()).thenReturn(KEY_ALIAS);
+        when(encryptedDocument.file()).thenReturn(file);
+    }
+
+    @Test
+    public void thumbnailIsGeneratedFromTheDecryptedImageOnce() throws DatabaseConnectionClosedException {
+        CopyingGenerator generator = new CopyingGenerator();
+        Thumbnails thumbnails = new Thumbnails(crypto, keyManager, fileSystem, generator);
+        assertArrayEquals(image, thumbnails.getThumbnail(encryptedDocument));
+        assertArrayEquals(image, thumbnails.getThumbnail(encryptedDocument));
+        assertEquals(1, generator.numGenerations);
+    }
+
+    @Test
+    public void canceledGenerationIsNotCached() throws DatabaseConnectionClosedException {
+        CopyingGenerator generator = new CopyingGenerator();
+        Thumbnails thumbnails = new Thumbnails(crypto, keyManager, fileSystem, generator);
+        assertNull(thumbnails.getThumbnail(encryptedDocument, new ProcessProgressAdapter() {
+            @Override
+            public boolean isCanceled() {
+                return true;
+            }
+        }));
+        assertFalse(new File(thumbnails.getThumbnailsDir(), "1" + Constants.THUMBNAILS.FILE_EXTENSION).exists());
+        assertArrayEquals(image, thumbnails.getThumbnail(encryptedDocument));
+        assertEquals(2, generator.numGenerations);
+    }
+
+    @Test
+    public void tooLargeImagesHaveNoThumbnail() throws DatabaseConnectionClosedException {
+        CopyingGenerator generator = new CopyingGenerator();
+        generator.maxSourceSize = image.length - 1;
+        Thumbnails thumbnails = new Thumbnails(crypto, keyManager, fileSystem, generator);
+        assertNull(thumbnails.getThumbnail(encryptedDocument));
+        assertEquals(0, generator.numGenerations);
+    }
+}